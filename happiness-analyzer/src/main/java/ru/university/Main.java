@@ -1,9 +1,46 @@
 package ru.university;
 
+import ru.university.analytics.CentroidSearch;
+import ru.university.analytics.CountryAnalytics;
+import ru.university.analytics.KMeansClustering;
+import ru.university.analytics.RankSimulation;
+import ru.university.analytics.RegionFilter;
+import ru.university.analytics.RegressionAnalysis;
 import ru.university.database.DatabaseManager;
+import ru.university.ingest.CountryRowMapper;
+import ru.university.ingest.CountrySnapshot;
+import ru.university.ingest.IngestMetrics;
+import ru.university.ingest.MappedCsvParser;
+import ru.university.ingest.ParsedData;
+import ru.university.ingest.StreamingIngestionPipeline;
+import ru.university.ingest.YearlyIngestion;
+import ru.university.metrics.MetricsEndpoint;
+import ru.university.metrics.MetricsFormat;
+import ru.university.metrics.MetricsRegistry;
 import ru.university.model.Country;
+import ru.university.model.CountryTable;
+import ru.university.model.Metric;
 import ru.university.model.Region;
+import ru.university.report.ClusterReport;
+import ru.university.report.Column;
+import ru.university.report.FixedDecimalFormat;
+import ru.university.report.RankSimulationReport;
+import ru.university.report.RegressionReport;
+import ru.university.report.ReportDefinitions;
+import ru.university.report.ReportGraph;
+import ru.university.report.ReportTask;
+import ru.university.report.TableSink;
+import ru.university.server.AnalysisServer;
+import ru.university.server.DatasetLoader;
+import ru.university.sketch.CountMinSketch;
+import ru.university.sketch.RegionSketch;
+import ru.university.sketch.SketchIndex;
+import ru.university.sketch.SketchRow;
+import ru.university.visualization.ChartCache;
+import ru.university.visualization.ChartExporter;
 import ru.university.visualization.ChartGenerator;
+import ru.university.visualization.ChartRenderingService;
+import ru.university.visualization.ChartSpec;
 
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvValidationException;
@@ -12,235 +49,990 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
 public class Main {
 
     private static final String CSV_FILE_NAME = "happiness_data_2015.csv";
     private static final String DB_NAME = "happiness_data.db";
-    private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("0.0000");
+    // бинарный снимок разобранного CSV, отключается параметром --no-snapshot
+    private static final String SNAPSHOT_NAME = "happiness_data.snapshot";
+    // соединения только для чтения в пуле DatabaseManager
+    private static final int READ_CONNECTIONS = 4;
+    // год основного CSV файла, он загружается в country_years тем же путем, что и файлы других лет
+    private static final int BASE_YEAR = YearlyIngestion.detectYear(CSV_FILE_NAME);
+    // параметр запуска с CSV файлом другого года, может повторяться
+    private static final String YEAR_FILE_OPTION = "--year-file=";
+    // отчеты за другой загруженный год: --year=2017
+    private static final String YEAR_OPTION = "--year=";
+    // формат файлов диаграмм (png или svg) и уровень сжатия PNG от 0 до 9
+    private static final String FORMAT_OPTION = "--format=";
+    private static final String PNG_LEVEL_OPTION = "--png-level=";
+    // бюджет кэша диаграмм на диске в мегабайтах
+    private static final String CHART_CACHE_MB_OPTION = "--chart-cache-mb=";
+    // файл снимка метрик (.json или .prom) и порт HTTP-точки /metrics
+    private static final String METRICS_OPTION = "--metrics=";
+    private static final String METRICS_PORT_OPTION = "--metrics-port=";
+    // запросы, которые считаются по эскизам: --approx (все) или --approx=1,3
+    private static final String APPROX_OPTION = "--approx";
+    // режим сервера анализа: --serve (порт 8080) или --serve=порт, размер пула --serve-threads=N
+    private static final String SERVE_OPTION = "--serve";
+    private static final String SERVE_THREADS_OPTION = "--serve-threads=";
+    // число потоков графа отчетов: --report-threads=N, 1 - последовательное выполнение
+    private static final String REPORT_THREADS_OPTION = "--report-threads=";
+    // полная таблица стран в CSV или JSON: --export=countries.csv или --export=countries.json
+    private static final String EXPORT_OPTION = "--export=";
+    // регрессия индекса счастья на факторы: --regression (все факторы) или --regression=economy,health
+    private static final String REGRESSION_OPTION = "--regression";
+    // кластеризация стран k-means по профилю факторов на заданное число кластеров
+    private static final String CLUSTERS_OPTION = "--clusters=";
+    // фиксированное зерно: повторный запуск дает те же кластеры
+    private static final long CLUSTER_SEED = 2015;
+    // интервалы рангов по стандартной ошибке: --rank-simulation или --rank-simulation=<число итераций>
+    private static final String RANK_SIMULATION_OPTION = "--rank-simulation";
+    private static final int DEFAULT_RANK_SIMULATION_ITERATIONS = 100_000;
+    // фиксированное зерно симуляции рангов: повторный запуск дает те же интервалы
+    private static final long RANK_SIMULATION_SEED = 2015;
+    // неизменяемый и потокобезопасный: отчеты печатаются из потоков графа
+    private static final FixedDecimalFormat DECIMAL_FORMAT = new FixedDecimalFormat(4);
 
-    static {
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        symbols.setDecimalSeparator('.');
-        DECIMAL_FORMAT.setDecimalFormatSymbols(symbols);
-    }
+    // печатать план выполнения перед каждым SQL-запросом (--explain)
+    private static boolean explainPlans;
+    // читать и записывать снимок SNAPSHOT_NAME
+    private static boolean snapshotEnabled;
 
     public static void main(String[] args) {
         List<Country> countries = new ArrayList<>();
         Map<String, Region> regionsMap = new HashMap<>();
 
+        // метрики доступны по HTTP во время работы (--metrics-port)
+        MetricsEndpoint metricsEndpoint = startMetricsEndpoint(args);
+
+        // формат экспорта диаграмм
+        ChartGenerator.setExporter(createExporter(args));
+        // кэш диаграмм: неизмененные данные не перерисовываются (--no-chart-cache отключает)
+        if (!Arrays.asList(args).contains("--no-chart-cache")) {
+            ChartGenerator.setCache(new ChartCache(new File("charts"), chartCacheBudget(args)));
+        }
+
         // создаем папка для диаграмм перед началом работы
         createChartsDirectory();
 
         // подготовка CSV файла
         prepareCSVFile();
 
-        // Парсинг CSV файла
-        parseCSVFile(countries, regionsMap);
+        // режим потоковой загрузки: строки пишутся в БД по мере чтения, без списка в памяти
+        boolean streaming = Arrays.asList(args).contains("--stream");
+        // параллельный разбор через отображение файла в память
+        boolean mapped = Arrays.asList(args).contains("--mmap");
+        // эскизы для приближенных запросов заполняются при разборе, если такие запросы выбраны
+        Set<Integer> approximate = approximateQueries(args);
+        SketchIndex sketches = approximate.isEmpty() ? null : new SketchIndex(0);
 
         // работа с базой данных
-        DatabaseManager dbManager = new DatabaseManager(DB_NAME);
+        DatabaseManager dbManager = new DatabaseManager(DB_NAME, READ_CONNECTIONS);
         dbManager.createTables();
+        dbManager.createIndexes();
+        dbManager.applyBulkLoadPragmas();
+        explainPlans = Arrays.asList(args).contains("--explain");
+
+        // при неизменном CSV данные читаются из снимка: разбор и запись в БД пропускаются
+        snapshotEnabled = !Arrays.asList(args).contains("--no-snapshot");
+        CountrySnapshot.Source source = snapshotEnabled ? csvSource() : null;
+        CountryTable loadedTable = source != null ? loadSnapshot(dbManager, source) : null;
 
-        // преобразуем Map регионов в List для вставки в БД
-        List<Region> regionsList = new ArrayList<>(regionsMap.values());
-        dbManager.insertRegions(regionsList);
-        dbManager.insertCountries(countries);
+        if (loadedTable != null) {
+            if (sketches != null) {
+                addToSketches(sketches, loadedTable);
+            }
+            // в снимке нет country_years: базовый год записывается, если его еще нет в базе
+            if (!dbManager.hasYear(BASE_YEAR)) {
+                new YearlyIngestion(dbManager).ingest(Path.of(CSV_FILE_NAME), BASE_YEAR);
+            }
+        } else {
+            // файл разобран целиком и все строки записаны в базу
+            boolean loaded;
+            if (streaming) {
+                StreamingIngestionPipeline pipeline = new StreamingIngestionPipeline(dbManager);
+                pipeline.setSketches(sketches);
+                loaded = pipeline.run(CSV_FILE_NAME).isSuccessful();
+            } else {
+                // Парсинг CSV файла
+                boolean parsed = mapped ? parseMappedCSVFile(countries, regionsMap, sketches)
+                        : parseCSVFile(CSV_FILE_NAME, countries, regionsMap, sketches);
 
-        // выполнение SQL-запросов и вывод результатов
+                // преобразуем Map регионов в List для вставки в БД
+                List<Region> regionsList = new ArrayList<>(regionsMap.values());
+                boolean regionsSaved = dbManager.insertRegionsBatch(regionsList, DatabaseManager.DEFAULT_BATCH_SIZE);
+                boolean countriesSaved = dbManager.insertCountriesBatch(countries, DatabaseManager.DEFAULT_BATCH_SIZE);
+                loaded = parsed && regionsSaved && countriesSaved;
+            }
 
-        // Запрос 1
-        System.out.println("\n===== ЗАПРОС 1: ТОП-10 СТРАН ПО ПОКАЗАТЕЛЮ ЭКОНОМИКИ =====");
-        String query1 = "SELECT r.name AS region_name, AVG(c.economy) as avg_economy " +
-                "FROM countries c " +
-                "JOIN regions r ON c.region_id = r.id " +
-                "GROUP BY r.name " +
-                "ORDER BY avg_economy DESC";
-        Map<String, Double> economyData = new LinkedHashMap<>();
-        executeAndPrintQuery(dbManager, query1, rs -> {
+            // снимок неполной загрузки следующий запуск принял бы за готовые данные и пропустил бы CSV
+            if (source != null && loaded) {
+                loadedTable = streaming ? dbManager.loadCountryTable() : CountryTable.fromCountries(countries);
+                saveSnapshot(loadedTable, source);
+            } else if (source != null) {
+                System.out.println("Загрузка CSV файла завершилась с ошибкой, снимок данных не сохраняется");
+            }
+
+            // базовый год тем же инкрементальным путем, что и --year-file: в country_years пишутся
+            // только новые и измененные строки
+            new YearlyIngestion(dbManager).ingest(Path.of(CSV_FILE_NAME), BASE_YEAR);
+        }
+
+        // файлы других лет: --year-file=путь, год берется из имени файла
+        ingestYearFiles(dbManager, args);
+
+        // отчеты в памяти за другой год из country_years (--year=год)
+        CountryTable yearTable = selectedYearTable(dbManager, args);
+        if (yearTable != null) {
+            loadedTable = yearTable;
+            if (sketches != null) {
+                sketches = new SketchIndex(0);
+                addToSketches(sketches, yearTable);
+            }
+        }
+
+        if (sketches != null) {
+            System.out.printf("%nЭскизы для приближенных запросов %s: %d строк, %d регионов, около %d КБ%n",
+                    approximate, sketches.count(), sketches.getRegions().size(), sketches.estimatedBytes() / 1024);
+        }
+
+        // сервер анализа вместо разовых отчетов: данные остаются в памяти до остановки
+        int serverPort = serverPort(args);
+        if (serverPort >= 0) {
+            CountryTable table = countryTable(loadedTable, streaming, countries, dbManager);
+            countries.clear();
+            runServer(dbManager, table, streaming ? "db" : "csv", serverPort, args);
+            dbManager.closeConnection();
+            writeMetrics(args);
+            if (metricsEndpoint != null) {
+                metricsEndpoint.close();
+            }
+            return;
+        }
+
+        // выполнение запросов и вывод результатов: по умолчанию в памяти, с --sql через SQLite;
+        // запросы из --approx считаются по эскизам; независимые запросы и диаграммы выполняются параллельно
+        int reportThreads = reportThreads(args);
+        if (Arrays.asList(args).contains("--sql")) {
+            runSqlReports(dbManager, approximate, sketches, reportThreads);
+        } else {
+            CountryTable table = countryTable(loadedTable, streaming, countries, dbManager);
+            runInMemoryReports(new CountryAnalytics(table), approximate, sketches, reportThreads);
+        }
+        if (sketches != null) {
+            printHeavyHitters(sketches);
+        }
+
+        // полная таблица стран в файл (--export=файл)
+        String export = optionValue(args, EXPORT_OPTION);
+        if (export != null) {
+            exportCountries(countryTable(loadedTable, streaming, countries, dbManager), Path.of(export));
+        }
+
+        // регрессии индекса счастья на факторы по всей выборке и по регионам (--regression)
+        Metric[] regressionFactors = regressionFactors(args);
+        if (regressionFactors != null) {
+            runRegression(countryTable(loadedTable, streaming, countries, dbManager), regressionFactors);
+        }
+
+        // кластеры стран по профилю факторов с записью в country_clusters (--clusters=K)
+        String clusters = optionValue(args, CLUSTERS_OPTION);
+        if (clusters != null) {
+            int k;
             try {
-                System.out.printf("%-35s | %s%n", "Регион", "Средний GDP per Capita");
-                System.out.println("-".repeat(55));
-                while (rs.next()) {
-                    String regionName = rs.getString("region_name");
-                    double avgEconomy = rs.getDouble("avg_economy");
-                    System.out.printf("%-35s | %s%n", regionName, DECIMAL_FORMAT.format(avgEconomy));
-                    economyData.put(regionName, avgEconomy);
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
+                k = Integer.parseInt(clusters);
+            } catch (NumberFormatException e) {
+                k = 0;
+            }
+            if (k < 1) {
+                System.out.println("Некорректное число кластеров " + CLUSTERS_OPTION + clusters
+                        + ": ожидается целое число от 1. Кластеризация пропущена");
+            } else {
+                runClustering(countryTable(loadedTable, streaming, countries, dbManager), k, dbManager);
+            }
+        }
+
+        // устойчивость рангов при разбросе индекса в пределах стандартной ошибки (--rank-simulation)
+        int rankIterations = rankSimulationIterations(args);
+        if (rankIterations > 0) {
+            runRankSimulation(countryTable(loadedTable, streaming, countries, dbManager), rankIterations);
+        }
+
+        // диаграммы топ-10 стран каждого региона по каждому показателю (--region-charts)
+        if (Arrays.asList(args).contains("--region-charts")) {
+            CountryTable table = countryTable(loadedTable, streaming, countries, dbManager);
+            renderRegionCharts(new CountryAnalytics(table));
+        }
+
+        // вытеснение устаревших диаграмм сверх бюджета и сохранение манифеста
+        if (ChartGenerator.getCache() != null) {
+            ChartGenerator.getCache().evictAndSave();
+        }
+
+        // закрытие соединения с базой данных
+        dbManager.closeConnection();
+
+        System.out.println("\nПроект успешно выполнен!");
+        System.out.println("\nДиаграммы сохранены в папке: charts/");
+        System.out.println("- " + ChartGenerator.getExporter().fileName("economy_chart.png"));
+        System.out.println("- " + ChartGenerator.getExporter().fileName("happiness_chart.png"));
+        System.out.println("\nБаза данных сохранена в файле: " + DB_NAME);
+
+        writeMetrics(args);
+        if (metricsEndpoint != null) {
+            awaitMetricsScrape(metricsEndpoint);
+        }
+    }
+
+    private static void runSqlReports(DatabaseManager dbManager, Set<Integer> approximate, SketchIndex sketches,
+                                      int threads) {
+        ReportGraph graph = new ReportGraph(threads);
+
+        // Запрос 1
+        ReportGraph.Task<Map<String, Double>> query1 = graph.add("query1", out -> {
+            out.println("\n===== ЗАПРОС 1: ТОП-10 СТРАН ПО ПОКАЗАТЕЛЮ ЭКОНОМИКИ =====");
+            if (approximate.contains(1)) {
+                return printApproximateEconomy(sketches, out);
             }
+            Map<String, Double> economyData = new LinkedHashMap<>();
+            executeAndPrintQuery(dbManager, ReportDefinitions.ECONOMY_BY_REGION_SQL, out, rs -> {
+                try (TableSink sink = economyTable(out)) {
+                    while (rs.next()) {
+                        String regionName = rs.getString("region_name");
+                        double avgEconomy = rs.getDouble("avg_economy");
+                        sink.text(regionName).decimal(avgEconomy).endRow();
+                        economyData.put(regionName, avgEconomy);
+                    }
+                } catch (SQLException | IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            return economyData;
         });
 
         // Создание диаграммы для первого запроса
-        ChartGenerator.createEconomyChart(economyData, "economy_chart.png");
+        graph.add("economyChart", out -> {
+            ChartGenerator.createEconomyChart(query1.get(), "economy_chart.png", out);
+            return null;
+        }, query1);
 
         // запрос 2
-        System.out.println("\n===== ЗАПРОС 2: СТРАНА С САМЫМ ВЫСОКИМ ЭКОНОМИЧЕСКИМ ПОКАЗАТЕЛЕМ =====");
-        String query2 = "SELECT c.name, c.economy, r.name AS region_name " +
-                "FROM countries c " +
-                "JOIN regions r ON c.region_id = r.id " +
-                "WHERE r.name IN ('Latin America and Caribbean', 'Eastern Asia') " +
-                "ORDER BY c.economy DESC LIMIT 1";
-
-        executeAndPrintQuery(dbManager, query2, rs -> {
-            try {
-                if (rs.next()) {
-                    System.out.println("Результат:");
-                    System.out.println("-".repeat(50));
-                    System.out.printf("Страна: %s%n", rs.getString("name"));
-                    System.out.printf("Регион: %s%n", rs.getString("region_name"));
-                    System.out.printf("Экономический показатель (GDP per Capita): %s%n",
-                            DECIMAL_FORMAT.format(rs.getDouble("economy")));
-                } else {
-                    System.out.println("В указанных регионах не найдено стран");
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
+        graph.add("query2", out -> {
+            out.println("\n===== ЗАПРОС 2: СТРАНА С САМЫМ ВЫСОКИМ ЭКОНОМИЧЕСКИМ ПОКАЗАТЕЛЕМ =====");
+            if (approximate.contains(2)) {
+                printApproximateRichest(sketches, out);
+                return null;
             }
+            executeAndPrintQuery(dbManager, ReportDefinitions.RICHEST_COUNTRY_SQL, ReportDefinitions.RICHEST_REGIONS, out, rs -> {
+                try {
+                    if (rs.next()) {
+                        out.println("Результат:");
+                        out.println("-".repeat(50));
+                        out.printf("Страна: %s%n", rs.getString("name"));
+                        out.printf("Регион: %s%n", rs.getString("region_name"));
+                        out.printf("Экономический показатель (GDP per Capita): %s%n",
+                                DECIMAL_FORMAT.format(rs.getDouble("economy")));
+                    } else {
+                        out.println("В указанных регионах не найдено стран");
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            });
+            return null;
         });
 
-        // Запрос 3: Страна из регионов 'western Europe' и 'north America' со средними показателями по всем критериям
-        System.out.println("\n===== ЗАПРОС 3: СТРАНА СО СРЕДНИМИ ПОКАЗАТЕЛЯМИ =====");
-        // Сначала получаем средние значения по каждому критерию
-        String avgQuery = "SELECT AVG(economy) as avg_economy, AVG(family) as avg_family, " +
-                "AVG(health) as avg_health, AVG(freedom) as avg_freedom, " +
-                "AVG(trust) as avg_trust, AVG(generosity) as avg_generosity, " +
-                "AVG(happiness_score) as avg_happiness " +
-                "FROM countries c " +
-                "JOIN regions r ON c.region_id = r.id " +
-                "WHERE r.name IN ('Western Europe', 'North America')";
-
-        final double[] averages = new double[7];
-        executeAndPrintQuery(dbManager, avgQuery, rs -> {
-            try {
-                if (rs.next()) {
-                    averages[0] = rs.getDouble("avg_economy");
-                    averages[1] = rs.getDouble("avg_family");
-                    averages[2] = rs.getDouble("avg_health");
-                    averages[3] = rs.getDouble("avg_freedom");
-                    averages[4] = rs.getDouble("avg_trust");
-                    averages[5] = rs.getDouble("avg_generosity");
-                    averages[6] = rs.getDouble("avg_happiness");
-
-                    System.out.println("Средние показатели по регионам 'Western Europe' и 'North America':");
-                    System.out.println("-".repeat(50));
-                    System.out.printf("Экономика (GDP per Capita): %s%n", DECIMAL_FORMAT.format(averages[0]));
-                    System.out.printf("Семья: %s%n", DECIMAL_FORMAT.format(averages[1]));
-                    System.out.printf("Здоровье: %s%n", DECIMAL_FORMAT.format(averages[2]));
-                    System.out.printf("Свобода: %s%n", DECIMAL_FORMAT.format(averages[3]));
-                    System.out.printf("Доверие к правительству: %s%n", DECIMAL_FORMAT.format(averages[4]));
-                    System.out.printf("Щедрость: %s%n", DECIMAL_FORMAT.format(averages[5]));
-                    System.out.printf("Общий индекс счастья: %s%n", DECIMAL_FORMAT.format(averages[6]));
+        // Запрос 3: Страна из регионов 'western Europe' и 'north America' со средними показателями по всем критериям.
+        // Сначала получаем средние значения по каждому критерию, от них зависит только поиск ближайшей страны
+        addQuery3(graph, approximate, sketches, out -> {
+            final double[][] averages = new double[1][];
+            executeAndPrintQuery(dbManager, ReportDefinitions.WEST_AVERAGES_SQL, ReportDefinitions.WEST_REGIONS, out, rs -> {
+                try {
+                    if (rs.next()) {
+                        averages[0] = new double[]{rs.getDouble("avg_economy"), rs.getDouble("avg_family"),
+                                rs.getDouble("avg_health"), rs.getDouble("avg_freedom"), rs.getDouble("avg_trust"),
+                                rs.getDouble("avg_generosity"), rs.getDouble("avg_happiness")};
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            });
+            return averages[0];
+        }, (averages, out) -> {
+            final Country[] closestCountry = new Country[1];
+            final double[] minDeviation = {Double.MAX_VALUE};
+
+            executeAndPrintQuery(dbManager, ReportDefinitions.WEST_COUNTRIES_SQL, ReportDefinitions.WEST_REGIONS, out, rs -> {
+                try {
+                    while (rs.next()) {
+                        String countryName = rs.getString("name");
+                        double economy = rs.getDouble("economy");
+                        double family = rs.getDouble("family");
+                        double health = rs.getDouble("health");
+                        double freedom = rs.getDouble("freedom");
+                        double trust = rs.getDouble("trust");
+                        double generosity = rs.getDouble("generosity");
+                        double happinessScore = rs.getDouble("happiness_score");
+
+                        // Вычисляем отклонение от средних значений
+                        double deviation = Math.abs(economy - averages[0]) +
+                                Math.abs(family - averages[1]) +
+                                Math.abs(health - averages[2]) +
+                                Math.abs(freedom - averages[3]) +
+                                Math.abs(trust - averages[4]) +
+                                Math.abs(generosity - averages[5]) +
+                                Math.abs(happinessScore - averages[6]);
+
+                        if (deviation < minDeviation[0]) {
+                            minDeviation[0] = deviation;
+                            closestCountry[0] = new Country(0, countryName, null, 0, happinessScore, 0, economy, family, health, freedom, trust, generosity, 0);
+                        }
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
+            });
+            return closestCountry[0];
+        });
+
+        // дополнительная визуализация: топ-10 стран по общему индексу счастья
+        List<String> topCountries = new ArrayList<>();
+        List<Double> happinessScores = new ArrayList<>();
+        ReportGraph.Task<Void> topQuery = graph.add("topQuery", out -> {
+            out.println("\n===== ДОПОЛНИТЕЛЬНАЯ ВИЗУАЛИЗАЦИЯ: ТОП-10 СТРАН ПО ИНДЕКСУ СЧАСТЬЯ =====");
+            if (approximate.contains(4)) {
+                printApproximateTop(sketches, topCountries, happinessScores, out);
+                return null;
             }
+            executeAndPrintQuery(dbManager, ReportDefinitions.TOP_HAPPINESS_SQL, out, rs -> {
+                try {
+                    out.printf("%-30s | %s%n", "Страна", "Индекс счастья");
+                    out.println("-".repeat(50));
+                    int rank = 1;
+                    while (rs.next()) {
+                        String countryName = rs.getString("name");
+                        double score = rs.getDouble("happiness_score");
+                        out.printf("%2d. %-27s | %s%n", rank++, countryName, DECIMAL_FORMAT.format(score));
+                        topCountries.add(countryName);
+                        happinessScores.add(score);
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            });
+            return null;
         });
 
-        //  страна наиболее близкую к средним показателям:
-        String query3 = "SELECT name, economy, family, health, freedom, trust, generosity, happiness_score " +
-                "FROM countries " +
-                "WHERE region_id IN (SELECT id FROM regions WHERE name IN ('Western Europe', 'North America'))";
+        // создание диаграммы для топ-10 стран по счастью
+        graph.add("happinessChart", out -> {
+            ChartGenerator.createTopCountriesChart(topCountries, happinessScores, "happiness_chart.png", out);
+            return null;
+        }, topQuery);
 
-        final Country[] closestCountry = new Country[1];
-        final double[] minDeviation = {Double.MAX_VALUE};
+        graph.run().print(System.out);
+    }
 
-        executeAndPrintQuery(dbManager, query3, rs -> {
-            try {
-                while (rs.next()) {
-                    String countryName = rs.getString("name");
-                    double economy = rs.getDouble("economy");
-                    double family = rs.getDouble("family");
-                    double health = rs.getDouble("health");
-                    double freedom = rs.getDouble("freedom");
-                    double trust = rs.getDouble("trust");
-                    double generosity = rs.getDouble("generosity");
-                    double happinessScore = rs.getDouble("happiness_score");
-
-                    // Вычисляем отклонение от средних значений
-                    double deviation = Math.abs(economy - averages[0]) +
-                            Math.abs(family - averages[1]) +
-                            Math.abs(health - averages[2]) +
-                            Math.abs(freedom - averages[3]) +
-                            Math.abs(trust - averages[4]) +
-                            Math.abs(generosity - averages[5]) +
-                            Math.abs(happinessScore - averages[6]);
-
-                    if (deviation < minDeviation[0]) {
-                        minDeviation[0] = deviation;
-                        closestCountry[0] = new Country(0, countryName, null, 0, happinessScore, 0, economy, family, health, freedom, trust, generosity, 0);
-                    }
+    private static void runInMemoryReports(CountryAnalytics analytics, Set<Integer> approximate, SketchIndex sketches,
+                                           int threads) {
+        CountryTable table = analytics.getTable();
+        ReportGraph graph = new ReportGraph(threads);
+
+        // Запрос 1
+        ReportGraph.Task<Map<String, Double>> query1 = graph.add("query1", out -> {
+            out.println("\n===== ЗАПРОС 1: ТОП-10 СТРАН ПО ПОКАЗАТЕЛЮ ЭКОНОМИКИ =====");
+            if (approximate.contains(1)) {
+                return printApproximateEconomy(sketches, out);
+            }
+            out.println("\nВыполняется запрос в памяти: среднее economy по регионам");
+            Map<String, Double> economyData = analytics.averageByRegion(Metric.ECONOMY);
+            try (TableSink sink = economyTable(out)) {
+                for (Map.Entry<String, Double> entry : economyData.entrySet()) {
+                    sink.text(entry.getKey()).decimal(entry.getValue()).endRow();
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
             }
+            return economyData;
         });
 
-        if (closestCountry[0] != null) {
-            System.out.println("\nСтрана со средними показателями по всем критериям:");
-            System.out.println("-".repeat(50));
-            System.out.printf("Страна: %s%n", closestCountry[0].getName());
-            System.out.printf("Экономика (GDP per Capita): %s (среднее: %s)%n",
-                    DECIMAL_FORMAT.format(closestCountry[0].getEconomy()), DECIMAL_FORMAT.format(averages[0]));
-            System.out.printf("Семья: %s (среднее: %s)%n",
-                    DECIMAL_FORMAT.format(closestCountry[0].getFamily()), DECIMAL_FORMAT.format(averages[1]));
-            System.out.printf("Здоровье: %s (среднее: %s)%n",
-                    DECIMAL_FORMAT.format(closestCountry[0].getHealth()), DECIMAL_FORMAT.format(averages[2]));
-            System.out.printf("Свобода: %s (среднее: %s)%n",
-                    DECIMAL_FORMAT.format(closestCountry[0].getFreedom()), DECIMAL_FORMAT.format(averages[3]));
-            System.out.printf("Доверие к правительству: %s (среднее: %s)%n",
-                    DECIMAL_FORMAT.format(closestCountry[0].getTrust()), DECIMAL_FORMAT.format(averages[4]));
-            System.out.printf("Щедрость: %s (среднее: %s)%n",
-                    DECIMAL_FORMAT.format(closestCountry[0].getGenerosity()), DECIMAL_FORMAT.format(averages[5]));
-            System.out.printf("Общий индекс счастья: %s (среднее: %s)%n",
-                    DECIMAL_FORMAT.format(closestCountry[0].getHappinessScore()), DECIMAL_FORMAT.format(averages[6]));
-        }
+        // Создание диаграммы для первого запроса
+        graph.add("economyChart", out -> {
+            ChartGenerator.createEconomyChart(query1.get(), "economy_chart.png", out);
+            return null;
+        }, query1);
+
+        // запрос 2
+        graph.add("query2", out -> {
+            out.println("\n===== ЗАПРОС 2: СТРАНА С САМЫМ ВЫСОКИМ ЭКОНОМИЧЕСКИМ ПОКАЗАТЕЛЕМ =====");
+            if (approximate.contains(2)) {
+                printApproximateRichest(sketches, out);
+                return null;
+            }
+            out.println("\nВыполняется запрос в памяти: максимум economy в регионах "
+                    + "'Latin America and Caribbean', 'Eastern Asia'");
+            int richest = analytics.argMax(Metric.ECONOMY,
+                    analytics.regions("Latin America and Caribbean", "Eastern Asia"));
+            if (richest >= 0) {
+                out.println("Результат:");
+                out.println("-".repeat(50));
+                out.printf("Страна: %s%n", table.getName(richest));
+                out.printf("Регион: %s%n", table.getRegionName(table.getRegionId(richest)));
+                out.printf("Экономический показатель (GDP per Capita): %s%n",
+                        DECIMAL_FORMAT.format(table.getValue(richest, Metric.ECONOMY)));
+            } else {
+                out.println("В указанных регионах не найдено стран");
+            }
+            return null;
+        });
+
+        // Запрос 3: средние показатели по регионам 'Western Europe' и 'North America'
+        RegionFilter westFilter = analytics.regions("Western Europe", "North America");
+        CentroidSearch centroidSearch = new CentroidSearch(table);
+        addQuery3(graph, approximate, sketches, out -> {
+            out.println("\nВыполняется запрос в памяти: средние показатели в регионах "
+                    + "'Western Europe', 'North America'");
+            return analytics.count(westFilter) > 0 ? centroidSearch.centroid(westFilter) : null;
+        }, (averages, out) -> {
+            CentroidSearch.Neighbor[] closest = centroidSearch.nearest(averages, 1, westFilter);
+            return closest.length > 0 ? table.toCountry(closest[0].getRow(), null) : null;
+        });
 
         // дополнительная визуализация: топ-10 стран по общему индексу счастья
-        System.out.println("\n===== ДОПОЛНИТЕЛЬНАЯ ВИЗУАЛИЗАЦИЯ: ТОП-10 СТРАН ПО ИНДЕКСУ СЧАСТЬЯ =====");
-        String topHappinessQuery = "SELECT name, happiness_score FROM countries ORDER BY happiness_rank LIMIT 10";
         List<String> topCountries = new ArrayList<>();
         List<Double> happinessScores = new ArrayList<>();
-
-        executeAndPrintQuery(dbManager, topHappinessQuery, rs -> {
-            try {
-                System.out.printf("%-30s | %s%n", "Страна", "Индекс счастья");
-                System.out.println("-".repeat(50));
-                int rank = 1;
-                while (rs.next()) {
-                    String countryName = rs.getString("name");
-                    double score = rs.getDouble("happiness_score");
-                    System.out.printf("%2d. %-27s | %s%n", rank++, countryName, DECIMAL_FORMAT.format(score));
-                    topCountries.add(countryName);
-                    happinessScores.add(score);
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
+        ReportGraph.Task<Void> topQuery = graph.add("topQuery", out -> {
+            out.println("\n===== ДОПОЛНИТЕЛЬНАЯ ВИЗУАЛИЗАЦИЯ: ТОП-10 СТРАН ПО ИНДЕКСУ СЧАСТЬЯ =====");
+            if (approximate.contains(4)) {
+                printApproximateTop(sketches, topCountries, happinessScores, out);
+                return null;
+            }
+            out.println("\nВыполняется запрос в памяти: первые 10 стран по happiness_rank");
+            out.printf("%-30s | %s%n", "Страна", "Индекс счастья");
+            out.println("-".repeat(50));
+            int rank = 1;
+            for (int row : analytics.topByRank(10, RegionFilter.ALL)) {
+                String countryName = table.getName(row);
+                double score = table.getValue(row, Metric.HAPPINESS_SCORE);
+                out.printf("%2d. %-27s | %s%n", rank++, countryName, DECIMAL_FORMAT.format(score));
+                topCountries.add(countryName);
+                happinessScores.add(score);
             }
+            return null;
         });
 
         // создание диаграммы для топ-10 стран по счастью
-        ChartGenerator.createTopCountriesChart(topCountries, happinessScores, "happiness_chart.png");
+        graph.add("happinessChart", out -> {
+            ChartGenerator.createTopCountriesChart(topCountries, happinessScores, "happiness_chart.png", out);
+            return null;
+        }, topQuery);
 
-        // закрытие соединения с базой данных
-        dbManager.closeConnection();
+        graph.run().print(System.out);
+    }
 
-        System.out.println("\nПроект успешно выполнен!");
-        System.out.println("\nДиаграммы сохранены в папке: charts/");
-        System.out.println("- economy_chart.png");
-        System.out.println("- happiness_chart.png");
-        System.out.println("\nБаза данных сохранена в файле: " + DB_NAME);
+    // приближенные ответы по эскизам: время не зависит от числа строк. Средние и максимумы точные
+    // (суммы и максимумы сливаются без потерь), квантили - по t-digest, ближайшая страна - по выборке.
+    // Квантили t-digest сжимают буфер эскиза, поэтому эскизы читает только задача запроса 1
+    private static Map<String, Double> printApproximateEconomy(SketchIndex sketches, PrintStream out) throws IOException {
+        out.println("\nЗапрос по эскизам: среднее economy по регионам, медиана и 90-й перцентиль по t-digest");
+        Map<String, Double> economyData = new LinkedHashMap<>();
+        try (TableSink sink = TableSink.console(out, 80, Column.text("Регион", 35),
+                Column.decimal("Средний GDP per Capita", 22, 4), Column.decimal("Медиана", 8, 4),
+                Column.decimal("p90", 0, 4))) {
+            for (RegionSketch region : sketches.byAverage(Metric.ECONOMY)) {
+                double average = region.getAverage(Metric.ECONOMY);
+                sink.text(region.getRegion()).decimal(average)
+                        .decimal(region.getQuantile(Metric.ECONOMY, 0.5))
+                        .decimal(region.getQuantile(Metric.ECONOMY, 0.9)).endRow();
+                economyData.put(region.getRegion(), average);
+            }
+        }
+        return economyData;
+    }
+
+    // таблица запроса 1: регион и среднее economy
+    private static TableSink economyTable(PrintStream out) {
+        return TableSink.console(out, 55, Column.text("Регион", 35), Column.decimal("Средний GDP per Capita", 0, 4));
+    }
+
+    private static void printApproximateRichest(SketchIndex sketches, PrintStream out) {
+        out.println("\nЗапрос по эскизам: максимум economy в регионах "
+                + "'Latin America and Caribbean', 'Eastern Asia'");
+        SketchRow richest = sketches.argMax(Metric.ECONOMY, ReportDefinitions.RICHEST_REGIONS);
+        if (richest != null) {
+            out.println("Результат:");
+            out.println("-".repeat(50));
+            out.printf("Страна: %s%n", richest.getName());
+            out.printf("Регион: %s%n", richest.getRegion());
+            out.printf("Экономический показатель (GDP per Capita): %s%n",
+                    DECIMAL_FORMAT.format(richest.getValue(Metric.ECONOMY)));
+        } else {
+            out.println("В указанных регионах не найдено стран");
+        }
+    }
+
+    // Запрос 3 в графе отчетов: средние показатели по регионам 'Western Europe' и 'North America' и ближайшая к ним
+    // страна. averages возвращает средние или null, если в регионах нет строк, nearest - ближайшую страну или null;
+    // при --approx с запросом 3 оба шага выполняются по эскизам. Печать результатов общая для всех вариантов
+    private static void addQuery3(ReportGraph graph, Set<Integer> approximate, SketchIndex sketches,
+                                  ReportTask<double[]> averages, BiFunction<double[], PrintStream, Country> nearest) {
+        ReportGraph.Task<double[]> averagesQuery = graph.add("averagesQuery", out -> {
+            out.println("\n===== ЗАПРОС 3: СТРАНА СО СРЕДНИМИ ПОКАЗАТЕЛЯМИ =====");
+            double[] result = approximate.contains(3) ? approximateAverages(sketches, out) : averages.run(out);
+            if (result != null) {
+                printAverages(result, out);
+            }
+            return result;
+        });
+
+        //  страна наиболее близкую к средним показателям:
+        graph.add("query3", out -> {
+            double[] result = averagesQuery.get();
+            if (result == null) {
+                return null;
+            }
+            Country closest = approximate.contains(3) ? approximateNearest(sketches, result, out)
+                    : nearest.apply(result, out);
+            if (closest != null) {
+                printClosestCountry(closest, result, out);
+            }
+            return null;
+        }, averagesQuery);
+    }
+
+    // средние показатели по эскизам или null, если в регионах нет строк
+    private static double[] approximateAverages(SketchIndex sketches, PrintStream out) {
+        out.println("\nЗапрос по эскизам: средние показатели в регионах 'Western Europe', 'North America'");
+        if (sketches.count(ReportDefinitions.WEST_REGIONS) == 0) {
+            return null;
+        }
+        return sketches.centroid(CentroidSearch.DEFAULT_FACTORS, ReportDefinitions.WEST_REGIONS);
+    }
+
+    private static Country approximateNearest(SketchIndex sketches, double[] averages, PrintStream out) {
+        SketchRow closest = sketches.nearestInSample(averages, ReportDefinitions.WEST_REGIONS);
+        if (closest == null) {
+            return null;
+        }
+        out.printf("%nПоиск ближайшей страны по выборке из %d строк (всего строк: %d)%n",
+                sketches.sampleSize(ReportDefinitions.WEST_REGIONS), sketches.count(ReportDefinitions.WEST_REGIONS));
+        return new Country(0, closest.getName(), null, closest.getRank(),
+                closest.getValue(Metric.HAPPINESS_SCORE), 0, closest.getValue(Metric.ECONOMY),
+                closest.getValue(Metric.FAMILY), closest.getValue(Metric.HEALTH), closest.getValue(Metric.FREEDOM),
+                closest.getValue(Metric.TRUST), closest.getValue(Metric.GENEROSITY), 0);
+    }
+
+    // топ по индексу счастья собирается из топов регионов; совпадает с топом по рангу, если ранг выставлен по индексу
+    private static void printApproximateTop(SketchIndex sketches, List<String> topCountries, List<Double> happinessScores,
+                                            PrintStream out) {
+        out.println("\nЗапрос по эскизам: первые 10 стран по индексу счастья");
+        out.printf("%-30s | %s%n", "Страна", "Индекс счастья");
+        out.println("-".repeat(50));
+        int rank = 1;
+        for (SketchRow row : sketches.topByHappiness(10)) {
+            double score = row.getValue(Metric.HAPPINESS_SCORE);
+            out.printf("%2d. %-27s | %s%n", rank++, row.getName(), DECIMAL_FORMAT.format(score));
+            topCountries.add(row.getName());
+            happinessScores.add(score);
+        }
+    }
+
+    // страны, которые встречаются в файле чаще всего (например, несколько строк подрегионов одной страны)
+    private static void printHeavyHitters(SketchIndex sketches) {
+        System.out.println("\n===== ЧАСТО ВСТРЕЧАЮЩИЕСЯ СТРАНЫ (COUNT-MIN) =====");
+        System.out.printf("Оценка количества строк завышена не более чем на %d с вероятностью %.0f%%%n",
+                sketches.heavyHitterErrorBound(), (1 - CountMinSketch.DEFAULT_DELTA) * 100);
+        // оценка в пределах границы может состоять только из коллизий хешей, такие ключи не печатаются
+        long threshold = Math.max(1, sketches.heavyHitterErrorBound());
+        boolean found = false;
+        for (Map.Entry<String, Long> entry : sketches.heavyHitters(5)) {
+            if (entry.getValue() > threshold) {
+                System.out.printf("%-30s | ~%d строк%n", entry.getKey(), entry.getValue());
+                found = true;
+            }
+        }
+        if (!found) {
+            System.out.println("Повторяющихся названий стран не найдено");
+        }
+    }
+
+    private static void runServer(DatabaseManager dbManager, CountryTable table, String initialSource, int port,
+                                  String[] args) {
+        Map<String, DatasetLoader> sources = new LinkedHashMap<>();
+        // csv: файл в текущей директории перечитывается и записывается в БД (строки заменяются по ключу страны)
+        sources.put("csv", () -> reloadCSVFile(dbManager));
+        // db: таблица countries, измененная другим процессом
+        sources.put("db", dbManager::loadCountryTable);
+        try (AnalysisServer server = new AnalysisServer(port, serverThreads(args), table, initialSource, sources)) {
+            System.out.printf("%nСервер анализа запущен: http://localhost:%d/reports/1 (строк в памяти: %d)%n",
+                    server.getPort(), server.getRowCount());
+            System.out.println("Перезагрузка данных: POST /reload?source=csv или source=db");
+            System.out.println("Нажмите Enter, чтобы остановить сервер");
+            // если стандартный ввод закрыт (запуск в фоне), сервер работает до завершения процесса
+            Thread stdinWatcher = new Thread(() -> {
+                try {
+                    if (System.in.read() >= 0) {
+                        server.requestStop();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, "analysis-server-stdin");
+            stdinWatcher.setDaemon(true);
+            stdinWatcher.start();
+            server.awaitStop();
+            System.out.println("Сервер анализа остановлен");
+        } catch (IOException e) {
+            System.out.println("Не удалось запустить сервер анализа на порту " + port);
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static CountryTable reloadCSVFile(DatabaseManager dbManager) {
+        List<Country> countries = new ArrayList<>();
+        Map<String, Region> regionsMap = new HashMap<>();
+        if (!parseCSVFile(CSV_FILE_NAME, countries, regionsMap)) {
+            throw new IllegalStateException("Ошибка при чтении файла " + CSV_FILE_NAME);
+        }
+        if (countries.isEmpty()) {
+            throw new IllegalStateException("В файле " + CSV_FILE_NAME + " нет корректных строк");
+        }
+        // при ошибке записи сервер остается на прежних данных, снимок не сохраняется
+        if (!dbManager.insertRegionsBatch(new ArrayList<>(regionsMap.values()), DatabaseManager.DEFAULT_BATCH_SIZE)
+                || !dbManager.insertCountriesBatch(countries, DatabaseManager.DEFAULT_BATCH_SIZE)) {
+            throw new IllegalStateException("Ошибка при записи файла " + CSV_FILE_NAME + " в базу данных");
+        }
+        new YearlyIngestion(dbManager).ingest(Path.of(CSV_FILE_NAME), BASE_YEAR);
+        CountryTable table = CountryTable.fromCountries(countries);
+        if (snapshotEnabled) {
+            saveSnapshot(table, csvSource());
+        }
+        return table;
+    }
+
+    // таблица для отчетов в памяти: готовая (из снимка или за год --year), из разобранного списка
+    // или (потоковый режим) из БД
+    private static CountryTable countryTable(CountryTable loadedTable, boolean streaming, List<Country> countries,
+                                             DatabaseManager dbManager) {
+        if (loadedTable != null) {
+            return loadedTable;
+        }
+        return streaming ? dbManager.loadCountryTable() : CountryTable.fromCountries(countries);
+    }
+
+    private static CountrySnapshot.Source csvSource() {
+        try {
+            return CountrySnapshot.Source.of(Path.of(CSV_FILE_NAME));
+        } catch (IOException e) {
+            System.out.println("Не удалось посчитать контрольную сумму CSV файла, снимок данных не используется");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // снимок подходит, только если он построен по тому же CSV; БД сверяется по числу стран
+    // и при расхождении (например, файл БД удален) заполняется из снимка
+    private static CountryTable loadSnapshot(DatabaseManager dbManager, CountrySnapshot.Source source) {
+        long start = System.nanoTime();
+        CountryTable table;
+        try {
+            table = CountrySnapshot.load(Path.of(SNAPSHOT_NAME), source);
+        } catch (IOException e) {
+            System.out.println("Ошибка при чтении снимка данных, CSV файл будет разобран заново");
+            e.printStackTrace();
+            return null;
+        }
+        if (table == null) {
+            return null;
+        }
+        System.out.printf("%nДанные загружены из снимка %s без разбора CSV: %d строк, %d регионов за %.3f с%n",
+                SNAPSHOT_NAME, table.size(), table.getRegions().size(), (System.nanoTime() - start) / 1_000_000_000.0);
+
+        // строки с одинаковым названием страны имеют один ключ и занимают в countries одну строку
+        if (dbManager.countCountries() != Arrays.stream(table.idColumn()).distinct().count()) {
+            System.out.println("Число строк в базе данных не совпадает со снимком, база заполняется из снимка");
+            List<Region> regions = table.getRegions();
+            Region[] byId = new Region[table.regionIdBound()];
+            for (Region region : regions) {
+                byId[region.getId()] = region;
+            }
+            List<Country> countries = new ArrayList<>(table.size());
+            for (int row = 0; row < table.size(); row++) {
+                countries.add(table.toCountry(row, byId[table.getRegionId(row)]));
+            }
+            boolean regionsSaved = dbManager.insertRegionsBatch(regions, DatabaseManager.DEFAULT_BATCH_SIZE);
+            if (regionsSaved && dbManager.insertCountriesBatch(countries, DatabaseManager.DEFAULT_BATCH_SIZE)) {
+                // ключи стран в новой базе могут отличаться от ключей в снимке
+                table = CountryTable.fromCountries(countries);
+                saveSnapshot(table, source);
+            } else {
+                System.out.println("Не удалось заполнить базу данных из снимка, отчеты строятся по снимку");
+            }
+        }
+        return table;
+    }
+
+    private static void saveSnapshot(CountryTable table, CountrySnapshot.Source source) {
+        if (source == null) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            CountrySnapshot.write(Path.of(SNAPSHOT_NAME), table, source);
+            System.out.printf("Снимок данных сохранен в файл %s за %.3f с%n",
+                    SNAPSHOT_NAME, (System.nanoTime() - start) / 1_000_000_000.0);
+        } catch (IOException e) {
+            System.out.println("Ошибка при сохранении снимка данных " + SNAPSHOT_NAME);
+            e.printStackTrace();
+        }
+    }
+
+    private static void addToSketches(SketchIndex sketches, CountryTable table) {
+        Metric[] metrics = Metric.values();
+        double[] values = new double[metrics.length];
+        for (int row = 0; row < table.size(); row++) {
+            for (int m = 0; m < metrics.length; m++) {
+                values[m] = table.getValue(row, metrics[m]);
+            }
+            sketches.add(table.getRegionName(table.getRegionId(row)), table.getName(row), table.getRank(row), values);
+        }
+    }
+
+    // строки пишутся через TableSink: без строки формата на каждую строку, значения дописываются в общий буфер
+    private static void exportCountries(CountryTable table, Path file) {
+        Metric[] metrics = Metric.values();
+        Column[] columns = new Column[4 + metrics.length];
+        columns[0] = Column.integer("id", 0);
+        columns[1] = Column.text("name", 0);
+        columns[2] = Column.text("region", 0);
+        columns[3] = Column.integer("happiness_rank", 0);
+        double[][] values = new double[metrics.length][];
+        for (int m = 0; m < metrics.length; m++) {
+            columns[4 + m] = Column.decimal(metrics[m].getColumn(), 0, 5);
+            values[m] = table.column(metrics[m]);
+        }
+
+        String format = TableSink.isJson(file) ? "json" : "csv";
+        long start = System.nanoTime();
+        try (TableSink sink = TableSink.open(file, columns)) {
+            for (int row = 0; row < table.size(); row++) {
+                sink.integer(table.getId(row)).text(table.getName(row))
+                        .text(table.getRegionName(table.getRegionId(row))).integer(table.getRank(row));
+                for (double[] column : values) {
+                    sink.decimal(column[row]);
+                }
+                sink.endRow();
+            }
+        } catch (IOException e) {
+            System.out.println("Ошибка при выгрузке таблицы стран в файл " + file);
+            e.printStackTrace();
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        MetricsRegistry.DEFAULT.timer("report_export_seconds", "Выгрузка таблицы стран", "format", format)
+                .record(elapsed);
+        System.out.printf("%nТаблица стран выгружена в файл %s (%s): %d строк за %.3f с%n",
+                file, format, table.size(), elapsed / 1e9);
+    }
+
+    private static void renderRegionCharts(CountryAnalytics analytics) {
+        CountryTable table = analytics.getTable();
+        List<ChartSpec> specs = new ArrayList<>();
+        for (Region region : table.getRegions()) {
+            RegionFilter filter = analytics.regions(region.getName());
+            String slug = ChartGenerator.regionSlug(region.getName());
+            for (Metric metric : Metric.values()) {
+                ChartSpec.Builder builder = ChartSpec.builder("regions/" + slug + "_" + metric.getColumn() + ".png")
+                        .title(metric.getTitle() + ": " + region.getName())
+                        .axes("Country", metric.getTitle())
+                        .series(metric.getTitle());
+                for (int row : analytics.topN(metric, 10, true, filter)) {
+                    builder.value(table.getName(row), table.getValue(row, metric));
+                }
+                specs.add(builder.build());
+            }
+        }
+
+        System.out.println("\n===== ДИАГРАММЫ ПО РЕГИОНАМ =====");
+        long start = System.nanoTime();
+        try (ChartRenderingService renderer = new ChartRenderingService(new File("charts"),
+                ChartGenerator.getExporter(), ChartGenerator.getCache())) {
+            List<ChartRenderingService.RenderResult> results = renderer.renderAll(specs);
+            ChartRenderingService.printSummary(results);
+        }
+        System.out.printf("Время пакетной отрисовки: %d мс%n", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // моменты по регионам считаются за один проход fork-join, общая модель - слиянием моментов регионов
+    private static void runRegression(CountryTable table, Metric[] factors) {
+        System.out.println("\n===== РЕГРЕССИЯ ИНДЕКСА СЧАСТЬЯ НА ФАКТОРЫ =====");
+        long start = System.nanoTime();
+        RegressionAnalysis.Result result = new RegressionAnalysis(table)
+                .run(Metric.HAPPINESS_SCORE, factors, RegionFilter.ALL);
+        long elapsed = System.nanoTime() - start;
+        MetricsRegistry.DEFAULT.timer("analytics_regression_seconds", "Расчет регрессий и корреляций").record(elapsed);
+        try {
+            RegressionReport.print(result, elapsed, System.out);
+        } catch (IOException e) {
+            System.out.println("Ошибка при выводе результатов регрессии");
+            e.printStackTrace();
+        }
+        RegressionReport.renderCharts(result, new File("charts"));
+    }
+
+    // факторы регрессии из --regression[=economy,health,...] или null, если регрессия не запрашивалась
+    private static Metric[] regressionFactors(String[] args) {
+        for (String arg : args) {
+            if (arg.equals(REGRESSION_OPTION)) {
+                return RegressionAnalysis.DEFAULT_FACTORS;
+            } else if (arg.startsWith(REGRESSION_OPTION + "=")) {
+                List<Metric> factors = new ArrayList<>();
+                for (String part : arg.substring(REGRESSION_OPTION.length() + 1).split(",")) {
+                    if (part.isBlank()) {
+                        continue;
+                    }
+                    Metric factor;
+                    try {
+                        factor = Metric.fromColumn(part.trim());
+                    } catch (IllegalArgumentException e) {
+                        System.out.println(e.getMessage() + ", фактор регрессии пропущен");
+                        continue;
+                    }
+                    if (factor == Metric.HAPPINESS_SCORE) {
+                        System.out.println("Индекс счастья - зависимая переменная регрессии, а не фактор, значение пропущено");
+                        continue;
+                    }
+                    if (!factors.contains(factor)) {
+                        factors.add(factor);
+                    }
+                }
+                if (factors.isEmpty()) {
+                    System.out.println("Не задано ни одного корректного фактора для " + REGRESSION_OPTION
+                            + ", используются факторы по умолчанию");
+                    return RegressionAnalysis.DEFAULT_FACTORS;
+                }
+                return factors.toArray(new Metric[0]);
+            }
+        }
+        return null;
+    }
+
+    private static void runClustering(CountryTable table, int k, DatabaseManager dbManager) {
+        System.out.println("\n===== КЛАСТЕРИЗАЦИЯ СТРАН ПО ФАКТОРАМ (K-MEANS) =====");
+        if (k > table.size()) {
+            System.out.println("Число кластеров " + k + " больше числа стран (" + table.size()
+                    + "). Кластеризация пропущена");
+            return;
+        }
+        KMeansClustering clustering = new KMeansClustering(table);
+        long start = System.nanoTime();
+        KMeansClustering.Result result = clustering.run(k, CLUSTER_SEED);
+        long elapsed = System.nanoTime() - start;
+        MetricsRegistry.DEFAULT.timer("analytics_kmeans_seconds", "Кластеризация стран k-means").record(elapsed);
+        try {
+            ClusterReport.print(table, result, clustering.nearestRows(result), elapsed, System.out);
+        } catch (IOException e) {
+            System.out.println("Ошибка при выводе кластеров");
+            e.printStackTrace();
+        }
+
+        dbManager.createClusterTables();
+        long saveStart = System.nanoTime();
+        try {
+            int rows = dbManager.saveClusters(table.idColumn(), result.getAssignments(), result.getFactors(),
+                    result.getCentroids());
+            System.out.printf("Назначения кластеров записаны в country_clusters: %d строк за %.1f мс%n",
+                    rows, (System.nanoTime() - saveStart) / 1e6);
+        } catch (SQLException e) {
+            System.out.println("Ошибка при записи кластеров в базу данных");
+            e.printStackTrace();
+        }
+    }
+
+    private static void runRankSimulation(CountryTable table, int iterations) {
+        System.out.println("\n===== УСТОЙЧИВОСТЬ РАНГОВ (МОНТЕ-КАРЛО ПО СТАНДАРТНОЙ ОШИБКЕ) =====");
+        long start = System.nanoTime();
+        RankSimulation.Result result;
+        try {
+            result = new RankSimulation(table).run(iterations, RANK_SIMULATION_SEED);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage() + ". Симуляция рангов пропущена");
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        MetricsRegistry.DEFAULT.timer("analytics_rank_simulation_seconds", "Симуляция рангов по стандартной ошибке")
+                .record(elapsed);
+        try {
+            RankSimulationReport.print(table, result, elapsed, System.out);
+        } catch (IOException e) {
+            System.out.println("Ошибка при выводе интервалов рангов");
+            e.printStackTrace();
+        }
+    }
+
+    // число итераций симуляции рангов или 0, если симуляция не запрашивалась
+    private static int rankSimulationIterations(String[] args) {
+        for (String arg : args) {
+            if (arg.equals(RANK_SIMULATION_OPTION)) {
+                return DEFAULT_RANK_SIMULATION_ITERATIONS;
+            } else if (arg.startsWith(RANK_SIMULATION_OPTION + "=")) {
+                String value = arg.substring(RANK_SIMULATION_OPTION.length() + 1);
+                int iterations;
+                try {
+                    iterations = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    iterations = 0;
+                }
+                if (iterations < 1) {
+                    System.out.println("Некорректное число итераций " + RANK_SIMULATION_OPTION + "=" + value
+                            + ": ожидается целое число от 1. Симуляция рангов пропущена");
+                }
+                return Math.max(iterations, 0);
+            }
+        }
+        return 0;
+    }
+
+    private static void printAverages(double[] averages, PrintStream out) {
+        out.println("Средние показатели по регионам 'Western Europe' и 'North America':");
+        out.println("-".repeat(50));
+        out.printf("Экономика (GDP per Capita): %s%n", DECIMAL_FORMAT.format(averages[0]));
+        out.printf("Семья: %s%n", DECIMAL_FORMAT.format(averages[1]));
+        out.printf("Здоровье: %s%n", DECIMAL_FORMAT.format(averages[2]));
+        out.printf("Свобода: %s%n", DECIMAL_FORMAT.format(averages[3]));
+        out.printf("Доверие к правительству: %s%n", DECIMAL_FORMAT.format(averages[4]));
+        out.printf("Щедрость: %s%n", DECIMAL_FORMAT.format(averages[5]));
+        out.printf("Общий индекс счастья: %s%n", DECIMAL_FORMAT.format(averages[6]));
+    }
+
+    private static void printClosestCountry(Country country, double[] averages, PrintStream out) {
+        out.println("\nСтрана со средними показателями по всем критериям:");
+        out.println("-".repeat(50));
+        out.printf("Страна: %s%n", country.getName());
+        out.printf("Экономика (GDP per Capita): %s (среднее: %s)%n",
+                DECIMAL_FORMAT.format(country.getEconomy()), DECIMAL_FORMAT.format(averages[0]));
+        out.printf("Семья: %s (среднее: %s)%n",
+                DECIMAL_FORMAT.format(country.getFamily()), DECIMAL_FORMAT.format(averages[1]));
+        out.printf("Здоровье: %s (среднее: %s)%n",
+                DECIMAL_FORMAT.format(country.getHealth()), DECIMAL_FORMAT.format(averages[2]));
+        out.printf("Свобода: %s (среднее: %s)%n",
+                DECIMAL_FORMAT.format(country.getFreedom()), DECIMAL_FORMAT.format(averages[3]));
+        out.printf("Доверие к правительству: %s (среднее: %s)%n",
+                DECIMAL_FORMAT.format(country.getTrust()), DECIMAL_FORMAT.format(averages[4]));
+        out.printf("Щедрость: %s (среднее: %s)%n",
+                DECIMAL_FORMAT.format(country.getGenerosity()), DECIMAL_FORMAT.format(averages[5]));
+        out.printf("Общий индекс счастья: %s (среднее: %s)%n",
+                DECIMAL_FORMAT.format(country.getHappinessScore()), DECIMAL_FORMAT.format(averages[6]));
     }
 
     private static void createChartsDirectory() {
@@ -267,8 +1059,19 @@ public class Main {
                 return;
             }
 
+            // файл перезаписывается, только если отличается от ресурса: иначе меняется время изменения
+            // и повторные запуски выполняют лишнюю запись
             Path tempFile = Path.of(CSV_FILE_NAME);
-            Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            byte[] resource;
+            try (InputStream in = inputStream) {
+                resource = in.readAllBytes();
+            }
+            if (Files.exists(tempFile) && Files.size(tempFile) == resource.length
+                    && Arrays.equals(Files.readAllBytes(tempFile), resource)) {
+                System.out.println("CSV файл в корневой директории совпадает с ресурсом, копирование пропущено");
+                return;
+            }
+            Files.write(tempFile, resource);
             System.out.println("CSV файл успешно скопирован из ресурсов в корневую директорию");
         } catch (IOException e) {
             System.out.println("Ошибка при копировании CSV файла из ресурсов");
@@ -276,15 +1079,280 @@ public class Main {
         }
     }
 
-    private static void parseCSVFile(List<Country> countries, Map<String, Region> regionsMap) {
-        try (CSVReader reader = new CSVReader(new FileReader(CSV_FILE_NAME))) {
+    private static ChartExporter createExporter(String[] args) {
+        ChartExporter.Format format = ChartExporter.Format.PNG;
+        int level = ChartExporter.DEFAULT_DEFLATE_LEVEL;
+        for (String arg : args) {
+            if (arg.startsWith(FORMAT_OPTION)) {
+                String value = arg.substring(FORMAT_OPTION.length());
+                try {
+                    format = ChartExporter.Format.valueOf(value.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Неизвестный формат диаграмм " + FORMAT_OPTION + value
+                            + ": допустимые значения png, svg. Используется png");
+                }
+            } else if (arg.startsWith(PNG_LEVEL_OPTION)) {
+                String value = arg.substring(PNG_LEVEL_OPTION.length());
+                try {
+                    level = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    level = -1;
+                }
+                if (level < 0 || level > 9) {
+                    System.out.println("Некорректный уровень сжатия " + PNG_LEVEL_OPTION + value
+                            + ": допустимы значения от 0 до 9. Используется " + ChartExporter.DEFAULT_DEFLATE_LEVEL);
+                    level = ChartExporter.DEFAULT_DEFLATE_LEVEL;
+                }
+            }
+        }
+        return new ChartExporter(format, level);
+    }
+
+    private static Set<Integer> approximateQueries(String[] args) {
+        Set<Integer> queries = new TreeSet<>();
+        for (String arg : args) {
+            if (arg.equals(APPROX_OPTION)) {
+                queries.addAll(List.of(1, 2, 3, 4));
+            } else if (arg.startsWith(APPROX_OPTION + "=")) {
+                for (String part : arg.substring(APPROX_OPTION.length() + 1).split(",")) {
+                    int query;
+                    try {
+                        query = Integer.parseInt(part.trim());
+                    } catch (NumberFormatException e) {
+                        query = 0;
+                    }
+                    if (query < 1 || query > 4) {
+                        System.out.println("Номер запроса для " + APPROX_OPTION + " должен быть от 1 до 4, значение '"
+                                + part.trim() + "' пропущено");
+                        continue;
+                    }
+                    queries.add(query);
+                }
+            }
+        }
+        return queries;
+    }
+
+    // порт сервера анализа или -1, если сервер не запрашивался
+    private static int serverPort(String[] args) {
+        for (String arg : args) {
+            if (arg.equals(SERVE_OPTION)) {
+                return AnalysisServer.DEFAULT_PORT;
+            } else if (arg.startsWith(SERVE_OPTION + "=")) {
+                String value = arg.substring(SERVE_OPTION.length() + 1);
+                int port = parsePort(value);
+                if (port < 0) {
+                    System.out.println("Некорректный порт " + SERVE_OPTION + "=" + value
+                            + ": ожидается число от 0 до 65535. Используется " + AnalysisServer.DEFAULT_PORT);
+                    return AnalysisServer.DEFAULT_PORT;
+                }
+                return port;
+            }
+        }
+        return -1;
+    }
+
+    private static int serverThreads(String[] args) {
+        String value = optionValue(args, SERVE_THREADS_OPTION);
+        if (value == null) {
+            return AnalysisServer.DEFAULT_THREADS;
+        }
+        int threads;
+        try {
+            threads = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            threads = 0;
+        }
+        if (threads < 1) {
+            System.out.println("Некорректное число потоков " + SERVE_THREADS_OPTION + value
+                    + ": ожидается целое число от 1. Используется " + AnalysisServer.DEFAULT_THREADS);
+            return AnalysisServer.DEFAULT_THREADS;
+        }
+        return threads;
+    }
+
+    // по умолчанию не меньше двух потоков: SQL-запросы и запись диаграмм частично ждут диск
+    private static int reportThreads(String[] args) {
+        String value = optionValue(args, REPORT_THREADS_OPTION);
+        if (value == null) {
+            return Math.max(2, Runtime.getRuntime().availableProcessors());
+        }
+        int threads;
+        try {
+            threads = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            threads = 0;
+        }
+        if (threads < 1) {
+            int defaultThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            System.out.println("Некорректное число потоков " + REPORT_THREADS_OPTION + value
+                    + ": ожидается целое число от 1. Используется " + defaultThreads);
+            return defaultThreads;
+        }
+        return threads;
+    }
+
+    private static long chartCacheBudget(String[] args) {
+        String value = optionValue(args, CHART_CACHE_MB_OPTION);
+        if (value == null) {
+            return ChartCache.DEFAULT_BUDGET_BYTES;
+        }
+        long megabytes;
+        try {
+            megabytes = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            megabytes = -1;
+        }
+        // бюджет в байтах не должен переполнить long
+        if (megabytes < 0 || megabytes > Long.MAX_VALUE / (1024 * 1024)) {
+            System.out.println("Некорректный бюджет кэша диаграмм " + CHART_CACHE_MB_OPTION + value
+                    + ": ожидается целое число мегабайт от 0. Используется "
+                    + ChartCache.DEFAULT_BUDGET_BYTES / (1024 * 1024) + " МБ");
+            return ChartCache.DEFAULT_BUDGET_BYTES;
+        }
+        return megabytes * 1024 * 1024;
+    }
+
+    private static String optionValue(String[] args, String option) {
+        for (String arg : args) {
+            if (arg.startsWith(option)) {
+                return arg.substring(option.length());
+            }
+        }
+        return null;
+    }
+
+    private static MetricsEndpoint startMetricsEndpoint(String[] args) {
+        String port = optionValue(args, METRICS_PORT_OPTION);
+        if (port == null) {
+            return null;
+        }
+        int number = parsePort(port);
+        if (number < 0) {
+            System.out.println("Некорректный порт " + METRICS_PORT_OPTION + port
+                    + ": ожидается число от 0 до 65535. HTTP-точка метрик не запущена");
+            return null;
+        }
+        try {
+            MetricsEndpoint endpoint = new MetricsEndpoint(MetricsRegistry.DEFAULT, number);
+            System.out.println("Метрики доступны по адресу: http://localhost:" + endpoint.getPort() + "/metrics");
+            return endpoint;
+        } catch (IOException e) {
+            System.out.println("Не удалось запустить HTTP-точку метрик на порту " + port);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // номер TCP-порта или -1, если значение не число или вне диапазона 0..65535
+    private static int parsePort(String value) {
+        try {
+            int port = Integer.parseInt(value);
+            return port >= 0 && port <= 65535 ? port : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeMetrics(String[] args) {
+        String file = optionValue(args, METRICS_OPTION);
+        if (file == null) {
+            return;
+        }
+        try {
+            MetricsFormat.write(MetricsRegistry.DEFAULT, Path.of(file));
+            System.out.println("Метрики сохранены в файл: " + file);
+        } catch (IOException e) {
+            System.out.println("Ошибка при сохранении метрик в файл " + file);
+            e.printStackTrace();
+        }
+    }
+
+    // после окончания работы точка метрик остается доступной, пока не нажат Enter
+    private static void awaitMetricsScrape(MetricsEndpoint endpoint) {
+        System.out.println("Нажмите Enter, чтобы остановить HTTP-точку метрик");
+        try {
+            System.in.read();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            endpoint.close();
+        }
+    }
+
+    private static void ingestYearFiles(DatabaseManager dbManager, String[] args) {
+        List<Path> yearFiles = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(YEAR_FILE_OPTION)) {
+                yearFiles.add(Path.of(arg.substring(YEAR_FILE_OPTION.length())));
+            }
+        }
+        if (yearFiles.isEmpty()) {
+            return;
+        }
+
+        YearlyIngestion ingestion = new YearlyIngestion(dbManager);
+        for (Path yearFile : yearFiles) {
+            int year = YearlyIngestion.detectYear(yearFile.getFileName().toString());
+            if (year < 0) {
+                System.out.println("Не удалось определить год по имени файла: " + yearFile);
+                continue;
+            }
+            ingestion.ingest(yearFile, year);
+        }
+    }
+
+    // таблица стран года из --year=год; null - параметр не задан, задан базовый год или данных за год нет
+    private static CountryTable selectedYearTable(DatabaseManager dbManager, String[] args) {
+        String value = optionValue(args, YEAR_OPTION);
+        if (value == null) {
+            return null;
+        }
+        int year;
+        try {
+            year = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            year = -1;
+        }
+        if (year < 0) {
+            System.out.println("Некорректный год " + YEAR_OPTION + value + ": отчеты строятся по данным за "
+                    + BASE_YEAR + " год");
+            return null;
+        }
+        if (year == BASE_YEAR) {
+            return null;
+        }
+        if (Arrays.asList(args).contains("--sql")) {
+            System.out.println("SQL-отчеты (--sql) строятся по таблице countries за " + BASE_YEAR
+                    + " год, параметр " + YEAR_OPTION + value + " пропущен");
+            return null;
+        }
+        CountryTable table = dbManager.loadCountryTable(year);
+        if (table.size() == 0) {
+            System.out.println("Нет данных за " + year + " год (файл года загружается параметром "
+                    + YEAR_FILE_OPTION + "), отчеты строятся по данным за " + BASE_YEAR + " год");
+            return null;
+        }
+        System.out.printf("%nОтчеты строятся по данным за %d год из country_years: %d строк%n", year, table.size());
+        return table;
+    }
+
+    public static boolean parseCSVFile(String csvFileName, List<Country> countries, Map<String, Region> regionsMap) {
+        return parseCSVFile(csvFileName, countries, regionsMap, null);
+    }
+
+    // sketches != null - каждая корректная строка сразу добавляется в эскизы;
+    // false - файл не прочитан до конца (ошибочные строки при этом не считаются ошибкой)
+    private static boolean parseCSVFile(String csvFileName, List<Country> countries, Map<String, Region> regionsMap,
+                                     SketchIndex sketches) {
+        long start = System.nanoTime();
+        try (CSVReader reader = new CSVReader(new FileReader(csvFileName))) {
             // пропускаем заголовок
             String[] header = reader.readNext();
             System.out.println("Заголовки CSV файла:");
             System.out.println(Arrays.toString(header));
 
-            int regionCounter = 1;
-            int countryCounter = 1;
+            CountryRowMapper mapper = new CountryRowMapper(regionsMap);
 
             String[] nextLine;
             int validRows = 0;
@@ -292,51 +1360,18 @@ public class Main {
 
             while ((nextLine = reader.readNext()) != null) {
                 try {
-                    if (nextLine.length < 12) {
+                    // создаем объект Country
+                    Country country = mapper.map(nextLine);
+                    if (country == null) {
                         System.out.println("Пропущена строка с недостаточным количеством данных: " + Arrays.toString(nextLine));
                         invalidRows++;
                         continue;
                     }
 
-                    // Извлекаем данные из CSv
-                    String countryName = nextLine[0];
-                    String regionName = nextLine[1];
-                    int happinessRank = Integer.parseInt(nextLine[2]);
-                    double happinessScore = Double.parseDouble(nextLine[3]);
-                    double standardError = Double.parseDouble(nextLine[4]);
-                    double economy = Double.parseDouble(nextLine[5]);
-                    double family = Double.parseDouble(nextLine[6]);
-                    double health = Double.parseDouble(nextLine[7]);
-                    double freedom = Double.parseDouble(nextLine[8]);
-                    double trust = Double.parseDouble(nextLine[9]);
-                    double generosity = Double.parseDouble(nextLine[10]);
-                    double dystopiaResidual = Double.parseDouble(nextLine[11]);
-
-                    // проверяем существует ли регион
-                    Region region = regionsMap.get(regionName);
-                    if (region == null) {
-                        region = new Region(regionCounter++, regionName);
-                        regionsMap.put(regionName, region);
-                    }
-
-                    // создаем объект Country
-                    Country country = new Country(
-                            countryCounter++,
-                            countryName,
-                            region,
-                            happinessRank,
-                            happinessScore,
-                            standardError,
-                            economy,
-                            family,
-                            health,
-                            freedom,
-                            trust,
-                            generosity,
-                            dystopiaResidual
-                    );
-
                     countries.add(country);
+                    if (sketches != null) {
+                        sketches.add(country);
+                    }
                     validRows++;
                 } catch (Exception e) {
                     System.out.println("Ошибка при обработке строки: " + Arrays.toString(nextLine));
@@ -350,24 +1385,65 @@ public class Main {
             System.out.println("- Количество ошибочных строк: " + invalidRows);
             System.out.println("- Всего стран: " + countries.size());
             System.out.println("- Всего уникальных регионов: " + regionsMap.size());
+
+            long elapsed = System.nanoTime() - start;
+            IngestMetrics.recordParse("opencsv", validRows, invalidRows, elapsed);
+            double seconds = elapsed / 1_000_000_000.0;
+            System.out.printf("- Скорость разбора: %d строк/с%n", seconds > 0 ? Math.round(validRows / seconds) : validRows);
+            return true;
         } catch (IOException | CsvValidationException e) {
             System.out.println("Ошибка при чтении CSV файла");
             e.printStackTrace();
+            return false;
         }
     }
 
-    private static void executeAndPrintQuery(DatabaseManager dbManager, String query, Consumer<ResultSet> resultProcessor) {
-        System.out.println("\nВыполняется SQL-запрос:");
-        System.out.println(query);
-
-        ResultSet rs = dbManager.executeQuery(query);
-        if (rs != null) {
-            resultProcessor.accept(rs);
-            try {
-                rs.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+    private static boolean parseMappedCSVFile(List<Country> countries, Map<String, Region> regionsMap,
+                                           SketchIndex sketches) {
+        try {
+            MappedCsvParser parser = new MappedCsvParser();
+            parser.setBuildSketches(sketches != null);
+            ParsedData data = parser.parse(Path.of(CSV_FILE_NAME), countries, regionsMap);
+            if (sketches != null) {
+                sketches.merge(data.getSketches());
             }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ошибка при параллельном разборе CSV файла");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static void executeAndPrintQuery(DatabaseManager dbManager, String query, PrintStream out,
+                                             Consumer<ResultSet> resultProcessor) {
+        executeAndPrintQuery(dbManager, query, Collections.emptyList(), out, resultProcessor);
+    }
+
+    private static void printQueryPlan(DatabaseManager dbManager, String query, List<?> params, PrintStream out) {
+        out.println("План выполнения (EXPLAIN QUERY PLAN):");
+        for (String detail : dbManager.explainQueryPlan(query, params)) {
+            String warning = DatabaseManager.isFullScan(detail) ? "  <-- полный просмотр таблицы!" : "";
+            out.println("  " + detail + warning);
         }
     }
+
+    // запросы отчетов выполняются из задач графа параллельно, поэтому только через executeReadQuery
+    private static void executeAndPrintQuery(DatabaseManager dbManager, String query, List<?> params, PrintStream out,
+                                             Consumer<ResultSet> resultProcessor) {
+        out.println("\nВыполняется SQL-запрос:");
+        out.println(query);
+        if (!params.isEmpty()) {
+            out.println("Параметры: " + params);
+        }
+        if (explainPlans) {
+            printQueryPlan(dbManager, query, params, out);
+        }
+
+        // ResultSet закрывается внутри DatabaseManager, выражение остается в кэше
+        dbManager.executeReadQuery(query, params, rs -> {
+            resultProcessor.accept(rs);
+            return null;
+        });
+    }
 }
\ No newline at end of file
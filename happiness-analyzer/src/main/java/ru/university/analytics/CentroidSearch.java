@@ -0,0 +1,191 @@
+package ru.university.analytics;
+
+import ru.university.model.CountryTable;
+import ru.university.model.Metric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Поиск k стран, ближайших к центроиду (например к средним показателям группы регионов).
+// Строки обрабатываются блоками: для блока расстояния накапливаются по одному столбцу за раз
+// в простых циклах по массивам, которые JIT-компилятор векторизует сам (SIMD без Vector API).
+// За один проход по данным можно ответить сразу на несколько центроидов.
+public class CentroidSearch {
+    // показатели, по которым запрос 3 в Main ищет страну со средними значениями
+    public static final Metric[] DEFAULT_FACTORS = {Metric.ECONOMY, Metric.FAMILY, Metric.HEALTH, Metric.FREEDOM,
+            Metric.TRUST, Metric.GENEROSITY, Metric.HAPPINESS_SCORE};
+
+    private static final int BLOCK_SIZE = 1024;
+
+    public enum Distance {
+        L1, L2
+    }
+
+    private final CountryTable table;
+    private final Metric[] factors;
+    private final double[][] columns;
+    private final Distance distance;
+    private final double[] weights;
+
+    public CentroidSearch(CountryTable table) {
+        this(table, DEFAULT_FACTORS, Distance.L1, null);
+    }
+
+    // weights == null означает одинаковый вес 1 для всех показателей
+    public CentroidSearch(CountryTable table, Metric[] factors, Distance distance, double[] weights) {
+        if (weights != null && weights.length != factors.length) {
+            throw new IllegalArgumentException("Количество весов не совпадает с количеством показателей");
+        }
+        this.table = table;
+        this.factors = factors.clone();
+        this.distance = distance;
+        this.weights = weights != null ? weights.clone() : null;
+        this.columns = new double[factors.length][];
+        for (int d = 0; d < factors.length; d++) {
+            columns[d] = table.column(factors[d]);
+        }
+    }
+
+    public Metric[] getFactors() {
+        return factors.clone();
+    }
+
+    // центроид группы строк - средние значения показателей
+    public double[] centroid(RegionFilter filter) {
+        return new CountryAnalytics(table).averages(factors, filter);
+    }
+
+    public Neighbor[] nearest(double[] centroid, int k, RegionFilter filter) {
+        return nearest(Collections.singletonList(new Query(centroid, filter)), k).get(0);
+    }
+
+    // результаты для каждого запроса отсортированы по возрастанию расстояния
+    public List<Neighbor[]> nearest(List<Query> queries, int k) {
+        for (Query query : queries) {
+            if (query.centroid.length != factors.length) {
+                throw new IllegalArgumentException("Размерность центроида не совпадает с количеством показателей");
+            }
+        }
+        List<TopK> results = new ArrayList<>(queries.size());
+        for (int q = 0; q < queries.size(); q++) {
+            results.add(new TopK(k));
+        }
+
+        int[] regionIds = table.regionIdColumn();
+        double[] blockDistances = new double[BLOCK_SIZE];
+        for (int blockStart = 0; blockStart < table.size(); blockStart += BLOCK_SIZE) {
+            int blockLength = Math.min(BLOCK_SIZE, table.size() - blockStart);
+            for (int q = 0; q < queries.size(); q++) {
+                Query query = queries.get(q);
+                computeBlock(query.centroid, blockStart, blockLength, blockDistances);
+                TopK top = results.get(q);
+                for (int i = 0; i < blockLength; i++) {
+                    int row = blockStart + i;
+                    if (query.filter.matches(regionIds[row])) {
+                        top.offer(row, blockDistances[i]);
+                    }
+                }
+            }
+        }
+
+        List<Neighbor[]> neighbors = new ArrayList<>(results.size());
+        for (TopK top : results) {
+            neighbors.add(top.toNeighbors(distance));
+        }
+        return neighbors;
+    }
+
+    // расстояния блока строк до центроида; внутренние циклы без ветвлений и зависимостей между итерациями
+    private void computeBlock(double[] centroid, int start, int length, double[] out) {
+        Arrays.fill(out, 0, length, 0.0);
+        for (int d = 0; d < columns.length; d++) {
+            double[] column = columns[d];
+            double c = centroid[d];
+            double w = weights != null ? weights[d] : 1.0;
+            if (distance == Distance.L1) {
+                for (int i = 0; i < length; i++) {
+                    out[i] += w * Math.abs(column[start + i] - c);
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    double diff = column[start + i] - c;
+                    out[i] += w * diff * diff;
+                }
+            }
+        }
+    }
+
+    public static class Query {
+        private final double[] centroid;
+        private final RegionFilter filter;
+
+        public Query(double[] centroid, RegionFilter filter) {
+            this.centroid = centroid.clone();
+            this.filter = filter;
+        }
+
+        public double[] getCentroid() {
+            return centroid.clone();
+        }
+
+        public RegionFilter getFilter() {
+            return filter;
+        }
+    }
+
+    public static class Neighbor {
+        private final int row;
+        private final double distance;
+
+        public Neighbor(int row, double distance) {
+            this.row = row;
+            this.distance = distance;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public double getDistance() {
+            return distance;
+        }
+    }
+
+    // k лучших строк в отсортированных массивах; при равных расстояниях остается строка с меньшим номером
+    private static final class TopK {
+        private final int[] rows;
+        private final double[] distances;
+        private int size;
+
+        private TopK(int k) {
+            rows = new int[Math.max(0, k)];
+            distances = new double[Math.max(0, k)];
+        }
+
+        private void offer(int row, double dist) {
+            if (rows.length == 0 || (size == rows.length && dist >= distances[size - 1])) {
+                return;
+            }
+            int position = size < rows.length ? size++ : size - 1;
+            while (position > 0 && distances[position - 1] > dist) {
+                distances[position] = distances[position - 1];
+                rows[position] = rows[position - 1];
+                position--;
+            }
+            distances[position] = dist;
+            rows[position] = row;
+        }
+
+        private Neighbor[] toNeighbors(Distance distance) {
+            Neighbor[] neighbors = new Neighbor[size];
+            for (int i = 0; i < size; i++) {
+                // для L2 накапливался квадрат расстояния
+                double value = distance == Distance.L2 ? Math.sqrt(distances[i]) : distances[i];
+                neighbors[i] = new Neighbor(rows[i], value);
+            }
+            return neighbors;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,226 @@
+package ru.university.analytics;
+
+import ru.university.model.CountryTable;
+import ru.university.model.Metric;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Агрегаты и выборки по загруженной колоночной таблице стран без обращения к SQLite.
+// Результаты совпадают с SQL-запросами отчетов в Main (с точностью до порядка равных значений).
+public class CountryAnalytics {
+    private final CountryTable table;
+
+    public CountryAnalytics(CountryTable table) {
+        this.table = table;
+    }
+
+    public CountryTable getTable() {
+        return table;
+    }
+
+    public RegionFilter regions(String... regionNames) {
+        return RegionFilter.of(table, regionNames);
+    }
+
+    public GroupStats groupByRegion(Metric metric) {
+        return groupByRegion(metric, RegionFilter.ALL);
+    }
+
+    public GroupStats groupByRegion(Metric metric, RegionFilter filter) {
+        double[] values = table.column(metric);
+        int[] regionIds = table.regionIdColumn();
+        GroupStats stats = new GroupStats(table.regionIdBound());
+        for (int row = 0; row < table.size(); row++) {
+            int regionId = regionIds[row];
+            if (filter.matches(regionId)) {
+                stats.accept(regionId, values[row]);
+            }
+        }
+        return stats;
+    }
+
+    // аналог GROUP BY r.name ORDER BY AVG(metric) DESC
+    public Map<String, Double> averageByRegion(Metric metric) {
+        GroupStats stats = groupByRegion(metric);
+        List<Integer> regionIds = new ArrayList<>();
+        for (int id = 0; id < stats.regionIdBound(); id++) {
+            if (stats.getCount(id) > 0) {
+                regionIds.add(id);
+            }
+        }
+        regionIds.sort((a, b) -> Double.compare(stats.getAverage(b), stats.getAverage(a)));
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int id : regionIds) {
+            result.put(table.getRegionName(id), stats.getAverage(id));
+        }
+        return result;
+    }
+
+    public long count(RegionFilter filter) {
+        if (filter.isAll()) {
+            return table.size();
+        }
+        int[] regionIds = table.regionIdColumn();
+        long count = 0;
+        for (int row = 0; row < table.size(); row++) {
+            if (filter.matches(regionIds[row])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public double average(Metric metric, RegionFilter filter) {
+        return averages(new Metric[]{metric}, filter)[0];
+    }
+
+    // средние сразу по нескольким показателям за один проход; NaN если строк нет
+    public double[] averages(Metric[] metrics, RegionFilter filter) {
+        double[][] columns = new double[metrics.length][];
+        for (int m = 0; m < metrics.length; m++) {
+            columns[m] = table.column(metrics[m]);
+        }
+        int[] regionIds = table.regionIdColumn();
+        double[] sums = new double[metrics.length];
+        long count = 0;
+        for (int row = 0; row < table.size(); row++) {
+            if (filter.matches(regionIds[row])) {
+                for (int m = 0; m < columns.length; m++) {
+                    sums[m] += columns[m][row];
+                }
+                count++;
+            }
+        }
+        for (int m = 0; m < sums.length; m++) {
+            sums[m] = count == 0 ? Double.NaN : sums[m] / count;
+        }
+        return sums;
+    }
+
+    public double min(Metric metric, RegionFilter filter) {
+        int row = argMin(metric, filter);
+        return row < 0 ? Double.NaN : table.getValue(row, metric);
+    }
+
+    public double max(Metric metric, RegionFilter filter) {
+        int row = argMax(metric, filter);
+        return row < 0 ? Double.NaN : table.getValue(row, metric);
+    }
+
+    // номер строки с максимальным значением показателя или -1
+    public int argMax(Metric metric, RegionFilter filter) {
+        double[] values = table.column(metric);
+        int[] regionIds = table.regionIdColumn();
+        int best = -1;
+        for (int row = 0; row < table.size(); row++) {
+            if (filter.matches(regionIds[row]) && (best < 0 || values[row] > values[best])) {
+                best = row;
+            }
+        }
+        return best;
+    }
+
+    public int argMin(Metric metric, RegionFilter filter) {
+        double[] values = table.column(metric);
+        int[] regionIds = table.regionIdColumn();
+        int best = -1;
+        for (int row = 0; row < table.size(); row++) {
+            if (filter.matches(regionIds[row]) && (best < 0 || values[row] < values[best])) {
+                best = row;
+            }
+        }
+        return best;
+    }
+
+    // первые n строк по значению показателя, отсортированные; частичный отбор через кучу размера n
+    public int[] topN(Metric metric, int n, boolean descending, RegionFilter filter) {
+        double[] values = table.column(metric);
+        return select(n, filter, (a, b) -> {
+            int cmp = descending ? Double.compare(values[b], values[a]) : Double.compare(values[a], values[b]);
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+    }
+
+    // аналог ORDER BY happiness_rank LIMIT n
+    public int[] topByRank(int n, RegionFilter filter) {
+        int[] ranks = table.rankColumn();
+        return select(n, filter, (a, b) -> {
+            int cmp = Integer.compare(ranks[a], ranks[b]);
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+    }
+
+    private int[] select(int n, RegionFilter filter, RowComparator order) {
+        if (n <= 0) {
+            return new int[0];
+        }
+        int[] regionIds = table.regionIdColumn();
+        // max-куча по порядку order: в вершине худшая из отобранных строк
+        int[] heap = new int[n];
+        int size = 0;
+        for (int row = 0; row < table.size(); row++) {
+            if (!filter.matches(regionIds[row])) {
+                continue;
+            }
+            if (size < n) {
+                heap[size] = row;
+                siftUp(heap, size++, order);
+            } else if (order.compare(row, heap[0]) < 0) {
+                heap[0] = row;
+                siftDown(heap, size, order);
+            }
+        }
+        // извлекаем по одному, заполняя результат с конца
+        int[] result = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(heap, i, order);
+        }
+        return result;
+    }
+
+    private static void siftUp(int[] heap, int index, RowComparator order) {
+        int row = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (order.compare(row, heap[parent]) <= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = row;
+    }
+
+    private static void siftDown(int[] heap, int size, RowComparator order) {
+        if (size == 0) {
+            return;
+        }
+        int index = 0;
+        int row = heap[0];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && order.compare(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (order.compare(heap[child], row) <= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = row;
+    }
+
+    @FunctionalInterface
+    private interface RowComparator {
+        int compare(int rowA, int rowB);
+    }
+}
\ No newline at end of file
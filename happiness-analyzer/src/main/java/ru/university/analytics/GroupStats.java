@@ -0,0 +1,55 @@
+package ru.university.analytics;
+
+import java.util.Arrays;
+
+// Агрегаты одного показателя по регионам, массивы индексированы id региона
+public class GroupStats {
+    private final long[] counts;
+    private final double[] sums;
+    private final double[] mins;
+    private final double[] maxs;
+
+    GroupStats(int regionIdBound) {
+        counts = new long[regionIdBound];
+        sums = new double[regionIdBound];
+        mins = new double[regionIdBound];
+        maxs = new double[regionIdBound];
+        Arrays.fill(mins, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+    }
+
+    void accept(int regionId, double value) {
+        counts[regionId]++;
+        sums[regionId] += value;
+        if (value < mins[regionId]) {
+            mins[regionId] = value;
+        }
+        if (value > maxs[regionId]) {
+            maxs[regionId] = value;
+        }
+    }
+
+    public int regionIdBound() {
+        return counts.length;
+    }
+
+    public long getCount(int regionId) {
+        return counts[regionId];
+    }
+
+    public double getSum(int regionId) {
+        return sums[regionId];
+    }
+
+    public double getAverage(int regionId) {
+        return counts[regionId] == 0 ? Double.NaN : sums[regionId] / counts[regionId];
+    }
+
+    public double getMin(int regionId) {
+        return counts[regionId] == 0 ? Double.NaN : mins[regionId];
+    }
+
+    public double getMax(int regionId) {
+        return counts[regionId] == 0 ? Double.NaN : maxs[regionId];
+    }
+}
\ No newline at end of file
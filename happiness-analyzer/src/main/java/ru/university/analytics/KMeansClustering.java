@@ -0,0 +1,434 @@
+package ru.university.analytics;
+
+import ru.university.model.CountryTable;
+import ru.university.model.Metric;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Кластеризация стран k-means по профилю факторов (евклидово расстояние).
+// Точки не копируются: расстояния считаются прямо по столбцам колоночной таблицы, центроиды хранятся
+// в одном массиве k * d. Начальные центры выбираются k-means++, затем итерации Ллойда: задачи fork-join
+// назначают строки своего диапазона ближайшему центроиду и копят суммы и количества в собственных
+// аккумуляторах, которые сливаются попарно в конце итерации. Итерации прекращаются, когда назначения
+// не изменились или сумма квадратов смещений центроидов не больше tolerance * средняя дисперсия факторов:
+// на миллионах строк назначения меняются у единиц строк еще десятки итераций без заметного изменения центров.
+// После остановки по порогу или пределу итераций выполняется еще один проход назначения, чтобы назначения,
+// размеры кластеров и сумма квадратов расстояний соответствовали итоговым центроидам.
+// Факторы измеряются в одних единицах (вклад в индекс счастья), поэтому значения не нормируются
+public class KMeansClustering {
+    public static final Metric[] DEFAULT_FACTORS = {Metric.ECONOMY, Metric.FAMILY, Metric.HEALTH, Metric.FREEDOM,
+            Metric.TRUST, Metric.GENEROSITY};
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+    public static final double DEFAULT_TOLERANCE = 1e-4;
+
+    // строк в одной задаче; аккумулятор задачи - k * d сумм, слияние дешевле счета на порядки
+    static final int LEAF_ROWS = 32 * 1024;
+    private static final int BLOCK_SIZE = 1024;
+
+    private final CountryTable table;
+    private final Metric[] factors;
+    private final double[][] columns;
+    private final ForkJoinPool pool;
+
+    public KMeansClustering(CountryTable table) {
+        this(table, DEFAULT_FACTORS, ForkJoinPool.commonPool());
+    }
+
+    public KMeansClustering(CountryTable table, Metric[] factors, ForkJoinPool pool) {
+        this.table = table;
+        this.factors = factors.clone();
+        this.pool = pool;
+        this.columns = new double[factors.length][];
+        for (int d = 0; d < factors.length; d++) {
+            columns[d] = table.column(factors[d]);
+        }
+    }
+
+    public Metric[] getFactors() {
+        return factors.clone();
+    }
+
+    public Result run(int k, long seed) {
+        return run(k, DEFAULT_MAX_ITERATIONS, DEFAULT_TOLERANCE, seed);
+    }
+
+    public Result run(int k, int maxIterations, double tolerance, long seed) {
+        int n = table.size();
+        if (k < 1 || k > n) {
+            throw new IllegalArgumentException("Число кластеров должно быть от 1 до числа стран (" + n + "): " + k);
+        }
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("Число итераций должно быть не меньше 1: " + maxIterations);
+        }
+        double threshold = tolerance * meanVariance();
+        double[] centroids = seedCentroids(k, new SplittableRandom(seed));
+        int[] assignments = new int[n];
+        Arrays.fill(assignments, -1);
+
+        int iterations = 0;
+        boolean converged = false;
+        Accumulator last;
+        while (true) {
+            last = pool.invoke(new AssignTask(columns, centroids, k, assignments, 0, n));
+            iterations++;
+            // назначения не изменились - центроиды уже равны средним своих кластеров
+            if (last.changed == 0) {
+                converged = true;
+                break;
+            }
+            double shift = updateCentroids(centroids, k, last);
+            converged = shift <= threshold;
+            if (converged || iterations == maxIterations) {
+                // центроиды сдвинулись после назначения: проход по итоговым центроидам, итерацией не считается
+                last = pool.invoke(new AssignTask(columns, centroids, k, assignments, 0, n));
+                break;
+            }
+        }
+        return new Result(factors, k, centroids, assignments, last.counts, last.inertia, iterations, converged);
+    }
+
+    // для каждого кластера строка, ближайшая к его центроиду (-1 для пустого кластера)
+    public int[] nearestRows(Result result) {
+        int dimension = columns.length;
+        int[] rows = new int[result.k];
+        double[] distances = new double[result.k];
+        Arrays.fill(rows, -1);
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        int[] assignments = result.assignments;
+        for (int row = 0; row < assignments.length; row++) {
+            int offset = assignments[row] * dimension;
+            double distance = 0;
+            for (int d = 0; d < dimension; d++) {
+                double delta = columns[d][row] - result.centroids[offset + d];
+                distance += delta * delta;
+            }
+            if (distance < distances[assignments[row]]) {
+                distances[assignments[row]] = distance;
+                rows[assignments[row]] = row;
+            }
+        }
+        return rows;
+    }
+
+    // k-means++: первый центр - случайная строка, каждый следующий - строка с вероятностью, пропорциональной
+    // квадрату расстояния до ближайшего из уже выбранных центров
+    private double[] seedCentroids(int k, SplittableRandom random) {
+        int n = table.size();
+        int dimension = columns.length;
+        double[] centroids = new double[k * dimension];
+        double[] nearest = new double[n];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        int row = random.nextInt(n);
+        for (int c = 0; c < k; c++) {
+            for (int d = 0; d < dimension; d++) {
+                centroids[c * dimension + d] = columns[d][row];
+            }
+            if (c == k - 1) {
+                break;
+            }
+            // расстояния обновляются только по новому центру, сумма считается параллельно
+            double total = pool.invoke(new NearestTask(columns, centroids, c, nearest, 0, n));
+            if (!(total > 0)) {
+                // все строки совпадают с выбранными центрами
+                row = random.nextInt(n);
+                continue;
+            }
+            double target = random.nextDouble() * total;
+            double cumulative = 0;
+            row = -1;
+            for (int i = 0; i < n; i++) {
+                if (nearest[i] > 0) {
+                    row = i;
+                    cumulative += nearest[i];
+                    if (cumulative > target) {
+                        break;
+                    }
+                }
+            }
+        }
+        return centroids;
+    }
+
+    // новые центроиды - средние кластеров; пустой кластер получает строку, самую далекую от своего центроида.
+    // Возвращает сумму квадратов смещений центроидов
+    private double updateCentroids(double[] centroids, int k, Accumulator accumulator) {
+        int dimension = columns.length;
+        double totalShift = 0;
+        boolean reseeded = false;
+        for (int c = 0; c < k; c++) {
+            int offset = c * dimension;
+            if (accumulator.counts[c] > 0) {
+                for (int d = 0; d < dimension; d++) {
+                    double value = accumulator.sums[offset + d] / accumulator.counts[c];
+                    double delta = value - centroids[offset + d];
+                    totalShift += delta * delta;
+                    centroids[offset + d] = value;
+                }
+            } else if (!reseeded && accumulator.farthestDistance > 0) {
+                reseeded = true;
+                for (int d = 0; d < dimension; d++) {
+                    double value = columns[d][accumulator.farthestRow];
+                    double delta = value - centroids[offset + d];
+                    totalShift += delta * delta;
+                    centroids[offset + d] = value;
+                }
+            }
+        }
+        return totalShift;
+    }
+
+    // средняя по факторам дисперсия - масштаб для порога сходимости
+    private double meanVariance() {
+        int n = table.size();
+        double total = 0;
+        for (double[] column : columns) {
+            double sum = 0;
+            for (int row = 0; row < n; row++) {
+                sum += column[row];
+            }
+            double mean = sum / n;
+            double squares = 0;
+            for (int row = 0; row < n; row++) {
+                double delta = column[row] - mean;
+                squares += delta * delta;
+            }
+            total += squares / n;
+        }
+        return total / columns.length;
+    }
+
+    public static final class Result {
+        private final Metric[] factors;
+        private final int k;
+        private final double[] centroids;
+        private final int[] assignments;
+        private final int[] sizes;
+        private final double inertia;
+        private final int iterations;
+        private final boolean converged;
+
+        private Result(Metric[] factors, int k, double[] centroids, int[] assignments, int[] sizes, double inertia,
+                       int iterations, boolean converged) {
+            this.factors = factors;
+            this.k = k;
+            this.centroids = centroids;
+            this.assignments = assignments;
+            this.sizes = sizes;
+            this.inertia = inertia;
+            this.iterations = iterations;
+            this.converged = converged;
+        }
+
+        public Metric[] getFactors() {
+            return factors.clone();
+        }
+
+        public int getK() {
+            return k;
+        }
+
+        // значения центроида в порядке getFactors()
+        public double[] getCentroid(int cluster) {
+            return Arrays.copyOfRange(centroids, cluster * factors.length, (cluster + 1) * factors.length);
+        }
+
+        public double[][] getCentroids() {
+            double[][] result = new double[k][];
+            for (int c = 0; c < k; c++) {
+                result[c] = getCentroid(c);
+            }
+            return result;
+        }
+
+        // номер кластера каждой строки таблицы; массив не копируется
+        public int[] getAssignments() {
+            return assignments;
+        }
+
+        public int getSize(int cluster) {
+            return sizes[cluster];
+        }
+
+        // сумма квадратов расстояний строк до итоговых центроидов
+        public double getInertia() {
+            return inertia;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        // false - достигнут предел итераций
+        public boolean isConverged() {
+            return converged;
+        }
+    }
+
+    // суммы координат и количества строк по кластерам для одного диапазона строк
+    private static final class Accumulator {
+        private final double[] sums;
+        private final int[] counts;
+        private int changed;
+        private double inertia;
+        private int farthestRow = -1;
+        private double farthestDistance = -1;
+
+        private Accumulator(int k, int dimension) {
+            sums = new double[k * dimension];
+            counts = new int[k];
+        }
+
+        private void merge(Accumulator other) {
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += other.sums[i];
+            }
+            for (int c = 0; c < counts.length; c++) {
+                counts[c] += other.counts[c];
+            }
+            changed += other.changed;
+            inertia += other.inertia;
+            if (other.farthestDistance > farthestDistance) {
+                farthestDistance = other.farthestDistance;
+                farthestRow = other.farthestRow;
+            }
+        }
+    }
+
+    // одна итерация Ллойда для строк [from, to): назначение ближайшему центроиду и накопление сумм.
+    // Диапазоны задач не пересекаются, поэтому assignments пишется без синхронизации
+    private static final class AssignTask extends RecursiveTask<Accumulator> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[][] columns;
+        private final double[] centroids;
+        private final int k;
+        private final int[] assignments;
+        private final int from;
+        private final int to;
+
+        private AssignTask(double[][] columns, double[] centroids, int k, int[] assignments, int from, int to) {
+            this.columns = columns;
+            this.centroids = centroids;
+            this.k = k;
+            this.assignments = assignments;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (to - from <= LEAF_ROWS) {
+                return assign();
+            }
+            int middle = (from + to) >>> 1;
+            AssignTask left = new AssignTask(columns, centroids, k, assignments, from, middle);
+            AssignTask right = new AssignTask(columns, centroids, k, assignments, middle, to);
+            left.fork();
+            Accumulator result = right.compute();
+            result.merge(left.join());
+            return result;
+        }
+
+        // строки обрабатываются блоками, как в CentroidSearch: расстояния блока до центроида накапливаются
+        // по одному столбцу в простых циклах без ветвлений, которые JIT-компилятор векторизует
+        private Accumulator assign() {
+            int dimension = columns.length;
+            Accumulator accumulator = new Accumulator(k, dimension);
+            double[] distances = new double[BLOCK_SIZE];
+            double[] bestDistances = new double[BLOCK_SIZE];
+            int[] best = new int[BLOCK_SIZE];
+            for (int blockStart = from; blockStart < to; blockStart += BLOCK_SIZE) {
+                int length = Math.min(BLOCK_SIZE, to - blockStart);
+                Arrays.fill(bestDistances, 0, length, Double.POSITIVE_INFINITY);
+                for (int c = 0; c < k; c++) {
+                    Arrays.fill(distances, 0, length, 0.0);
+                    for (int d = 0; d < dimension; d++) {
+                        double[] column = columns[d];
+                        double center = centroids[c * dimension + d];
+                        for (int i = 0; i < length; i++) {
+                            double delta = column[blockStart + i] - center;
+                            distances[i] += delta * delta;
+                        }
+                    }
+                    for (int i = 0; i < length; i++) {
+                        if (distances[i] < bestDistances[i]) {
+                            bestDistances[i] = distances[i];
+                            best[i] = c;
+                        }
+                    }
+                }
+                for (int i = 0; i < length; i++) {
+                    int row = blockStart + i;
+                    if (assignments[row] != best[i]) {
+                        assignments[row] = best[i];
+                        accumulator.changed++;
+                    }
+                    accumulator.counts[best[i]]++;
+                    accumulator.inertia += bestDistances[i];
+                    if (bestDistances[i] > accumulator.farthestDistance) {
+                        accumulator.farthestDistance = bestDistances[i];
+                        accumulator.farthestRow = row;
+                    }
+                }
+                for (int d = 0; d < dimension; d++) {
+                    double[] column = columns[d];
+                    for (int i = 0; i < length; i++) {
+                        accumulator.sums[best[i] * dimension + d] += column[blockStart + i];
+                    }
+                }
+            }
+            return accumulator;
+        }
+    }
+
+    // обновляет квадраты расстояний строк [from, to) до ближайшего центра по центру center, возвращает их сумму
+    private static final class NearestTask extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[][] columns;
+        private final double[] centroids;
+        private final int center;
+        private final double[] nearest;
+        private final int from;
+        private final int to;
+
+        private NearestTask(double[][] columns, double[] centroids, int center, double[] nearest, int from, int to) {
+            this.columns = columns;
+            this.centroids = centroids;
+            this.center = center;
+            this.nearest = nearest;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from > LEAF_ROWS) {
+                int middle = (from + to) >>> 1;
+                NearestTask left = new NearestTask(columns, centroids, center, nearest, from, middle);
+                NearestTask right = new NearestTask(columns, centroids, center, nearest, middle, to);
+                left.fork();
+                double sum = right.compute();
+                return sum + left.join();
+            }
+            int dimension = columns.length;
+            int offset = center * dimension;
+            double sum = 0;
+            for (int row = from; row < to; row++) {
+                double distance = 0;
+                for (int d = 0; d < dimension; d++) {
+                    double delta = columns[d][row] - centroids[offset + d];
+                    distance += delta * delta;
+                }
+                if (distance < nearest[row]) {
+                    nearest[row] = distance;
+                }
+                sum += nearest[row];
+            }
+            return sum;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+package ru.university.analytics;
+
+// Сливаемые моменты первого и второго порядка для нескольких переменных: количество строк, суммы и суммы
+// попарных произведений. Из них получаются средние, ковариации, корреляции и центрированные X'X, X'y для
+// регрессии. Суммы считаются от сдвига - первой добавленной строки: значения показателей близки к среднему,
+// поэтому вычитание при переходе к ковариациям не теряет точность даже на миллиардах строк.
+// Частичные моменты фрагментов складываются merge в любом порядке, объект не потокобезопасен
+public final class Moments {
+    private final int dimension;
+    private long count;
+    private final double[] shift;
+    // суммы (x - shift) и (x - shift)(x - shift)' (полная симметричная матрица построчно)
+    private final double[] sums;
+    private final double[] products;
+
+    public Moments(int dimension) {
+        if (dimension < 1) {
+            throw new IllegalArgumentException("Число переменных должно быть не меньше 1: " + dimension);
+        }
+        this.dimension = dimension;
+        this.shift = new double[dimension];
+        this.sums = new double[dimension];
+        this.products = new double[dimension * dimension];
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    // values - значения переменных одной строки, длина не меньше dimension
+    public void add(double[] values) {
+        if (count == 0) {
+            System.arraycopy(values, 0, shift, 0, dimension);
+        }
+        count++;
+        for (int i = 0; i < dimension; i++) {
+            double zi = values[i] - shift[i];
+            sums[i] += zi;
+            int offset = i * dimension;
+            // нижний треугольник; верхний заполняется при чтении
+            for (int j = 0; j <= i; j++) {
+                products[offset + j] += zi * (values[j] - shift[j]);
+            }
+        }
+    }
+
+    // добавляет моменты other, пересчитывая их к своему сдвигу: z' = z + d, где d = shift(other) - shift
+    public void merge(Moments other) {
+        if (other.dimension != dimension) {
+            throw new IllegalArgumentException("Нельзя слить моменты " + other.dimension + " и " + dimension + " переменных");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            System.arraycopy(other.shift, 0, shift, 0, dimension);
+            System.arraycopy(other.sums, 0, sums, 0, dimension);
+            System.arraycopy(other.products, 0, products, 0, products.length);
+            return;
+        }
+        double[] delta = new double[dimension];
+        for (int i = 0; i < dimension; i++) {
+            delta[i] = other.shift[i] - shift[i];
+        }
+        double n = other.count;
+        for (int i = 0; i < dimension; i++) {
+            int offset = i * dimension;
+            for (int j = 0; j <= i; j++) {
+                products[offset + j] += other.products[offset + j] + delta[i] * other.sums[j]
+                        + delta[j] * other.sums[i] + n * delta[i] * delta[j];
+            }
+        }
+        for (int i = 0; i < dimension; i++) {
+            sums[i] += other.sums[i] + n * delta[i];
+        }
+        count += other.count;
+    }
+
+    public double getMean(int i) {
+        return count == 0 ? Double.NaN : shift[i] + sums[i] / count;
+    }
+
+    // центрированная сумма произведений sum((x_i - mean_i)(x_j - mean_j))
+    public double getComoment(int i, int j) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double product = i >= j ? products[i * dimension + j] : products[j * dimension + i];
+        return product - sums[i] * sums[j] / count;
+    }
+
+    // выборочная ковариация (делитель n - 1)
+    public double getCovariance(int i, int j) {
+        return count < 2 ? Double.NaN : getComoment(i, j) / (count - 1);
+    }
+
+    // корреляция Пирсона; NaN, если одна из переменных постоянна
+    public double getCorrelation(int i, int j) {
+        double denominator = Math.sqrt(getComoment(i, i) * getComoment(j, j));
+        return denominator > 0 ? getComoment(i, j) / denominator : Double.NaN;
+    }
+
+    public double[][] covarianceMatrix() {
+        double[][] matrix = new double[dimension][dimension];
+        for (int i = 0; i < dimension; i++) {
+            for (int j = 0; j < dimension; j++) {
+                matrix[i][j] = getCovariance(i, j);
+            }
+        }
+        return matrix;
+    }
+
+    public double[][] correlationMatrix() {
+        double[][] matrix = new double[dimension][dimension];
+        for (int i = 0; i < dimension; i++) {
+            for (int j = 0; j < dimension; j++) {
+                matrix[i][j] = i == j && getComoment(i, i) > 0 ? 1.0 : getCorrelation(i, j);
+            }
+        }
+        return matrix;
+    }
+}
\ No newline at end of file
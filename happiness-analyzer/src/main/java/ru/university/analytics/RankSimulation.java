@@ -0,0 +1,270 @@
+package ru.university.analytics;
+
+import ru.university.generator.Gaussian;
+import ru.university.model.CountryTable;
+import ru.university.model.Metric;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Устойчивость рангов стран по методу Монте-Карло: в каждой итерации индекс счастья каждой страны
+// разыгрывается как score + standardError * N(0, 1), страны заново ранжируются, и для каждой страны
+// считается, сколько раз она заняла каждое место. Перцентили ранга берутся из этих счетчиков,
+// поэтому сами ранги итераций не хранятся и не сортируются.
+// Итерации делятся на диапазоны задачами fork-join, у каждой задачи свой поток SplittableRandom (split).
+// Счетчики и буферы заводятся по одному набору на поток пула и переиспользуются всеми его задачами,
+// после расчета наборы потоков сливаются. Разыгранные индексы почти упорядочены
+// так же, как исходные, поэтому ранжирование - сортировка вставками от исходного порядка:
+// O(n + число перестановок) вместо полной сортировки. Индексы и ошибки заранее переставлены в исходный
+// порядок, а сортируются пары (разыгранный индекс, исходная позиция) в двух массивах подряд,
+// поэтому итерация не обращается к памяти вразнобой.
+// Счетчики хранятся по смещению ранга от исходного в пределах MAX_SHIFT мест; более далекие смещения
+// учитываются на границе окна и подсчитываются в getClampedSamples.
+// Память: n * (2 * MAX_SHIFT + 1) счетчиков int на каждый поток пула, при MAX_COUNTRIES странах - около 20 МБ
+public class RankSimulation {
+    public static final int MAX_SHIFT = 256;
+    public static final int MAX_COUNTRIES = 10_000;
+
+    // итераций в одной задаче
+    static final int LEAF_ITERATIONS = 16 * 1024;
+
+    private final CountryTable table;
+    private final ForkJoinPool pool;
+
+    public RankSimulation(CountryTable table) {
+        this(table, ForkJoinPool.commonPool());
+    }
+
+    public RankSimulation(CountryTable table, ForkJoinPool pool) {
+        this.table = table;
+        this.pool = pool;
+    }
+
+    public Result run(int iterations, long seed) {
+        int n = table.size();
+        if (n == 0 || n > MAX_COUNTRIES) {
+            throw new IllegalArgumentException("Симуляция рангов рассчитана на таблицы от 1 до " + MAX_COUNTRIES
+                    + " стран: " + n);
+        }
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Число итераций должно быть не меньше 1: " + iterations);
+        }
+        double[] scores = table.column(Metric.HAPPINESS_SCORE);
+        double[] errors = table.column(Metric.STANDARD_ERROR);
+
+        // исходный порядок - по убыванию индекса, равные индексы - по номеру строки
+        Integer[] sorted = new Integer[n];
+        for (int row = 0; row < n; row++) {
+            sorted[row] = row;
+        }
+        Arrays.sort(sorted, (a, b) -> {
+            int byScore = Double.compare(scores[b], scores[a]);
+            return byScore != 0 ? byScore : Integer.compare(a, b);
+        });
+        int[] basePositions = new int[n];
+        double[] baseScores = new double[n];
+        double[] baseSigmas = new double[n];
+        for (int position = 0; position < n; position++) {
+            int row = sorted[position];
+            basePositions[row] = position;
+            baseScores[position] = scores[row];
+            // страны без стандартной ошибки не разыгрываются
+            baseSigmas[position] = Double.isFinite(errors[row]) && errors[row] > 0 ? errors[row] : 0;
+        }
+
+        int shift = Math.min(n - 1, MAX_SHIFT);
+        Map<Thread, Worker> workers = new ConcurrentHashMap<>();
+        pool.invoke(new SimulationTask(new Setup(baseScores, baseSigmas, shift), workers,
+                new SplittableRandom(seed), 0, iterations));
+        // счетчики - целые числа, поэтому результат не зависит от того, какой поток выполнил какую задачу
+        Counts counts = null;
+        for (Worker worker : workers.values()) {
+            if (counts == null) {
+                counts = worker.counts;
+            } else {
+                counts.merge(worker.counts);
+            }
+        }
+        return new Result(iterations, basePositions, shift, counts);
+    }
+
+    public static final class Result {
+        private final int iterations;
+        private final int[] basePositions;
+        private final int shift;
+        private final int bins;
+        private final int[] counts;
+        private final long clampedSamples;
+
+        private Result(int iterations, int[] basePositions, int shift, Counts counts) {
+            this.iterations = iterations;
+            this.basePositions = basePositions;
+            this.shift = shift;
+            this.bins = 2 * shift + 1;
+            this.counts = counts.histogram;
+            this.clampedSamples = counts.clamped;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        // ранг строки по исходным индексам (1 - самая счастливая страна)
+        public int getBaseRank(int row) {
+            return basePositions[row] + 1;
+        }
+
+        // ранг, не превышенный в доле percentile итераций (метод ближайшего ранга), percentile от 0 до 1
+        public int getPercentileRank(int row, double percentile) {
+            long target = Math.max(1, (long) Math.ceil(percentile * iterations));
+            int offset = basePositions[row] * bins;
+            long cumulative = 0;
+            for (int bin = 0; bin < bins; bin++) {
+                cumulative += counts[offset + bin];
+                if (cumulative >= target) {
+                    return basePositions[row] + bin - shift + 1;
+                }
+            }
+            return basePositions[row] + shift + 1;
+        }
+
+        // доля итераций, в которых страна сохранила исходный ранг
+        public double getStableShare(int row) {
+            return (double) counts[basePositions[row] * bins + shift] / iterations;
+        }
+
+        // выборки, смещение ранга которых вышло за MAX_SHIFT и было ограничено границей окна
+        public long getClampedSamples() {
+            return clampedSamples;
+        }
+    }
+
+    // неизменяемые входные данные, общие для всех задач: индексы и ошибки в исходном порядке
+    private static final class Setup {
+        private final double[] scores;
+        private final double[] sigmas;
+        private final int shift;
+
+        private Setup(double[] scores, double[] sigmas, int shift) {
+            this.scores = scores;
+            this.sigmas = sigmas;
+            this.shift = shift;
+        }
+    }
+
+    // счетчики рангов: для исходной позиции p и смещения ранга s - элемент p * (2 * shift + 1) + s + shift
+    private static final class Counts {
+        private final int[] histogram;
+        private long clamped;
+
+        private Counts(int rows, int bins) {
+            histogram = new int[rows * bins];
+        }
+
+        private void merge(Counts other) {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += other.histogram[i];
+            }
+            clamped += other.clamped;
+        }
+    }
+
+    // счетчики и буферы одного потока пула; листовые задачи не ветвятся, поэтому поток выполняет
+    // не больше одной листовой задачи одновременно
+    private static final class Worker {
+        private final Counts counts;
+        private final double[] sampled;
+        private final int[] positions;
+
+        private Worker(int rows, int bins) {
+            counts = new Counts(rows, bins);
+            sampled = new double[rows];
+            positions = new int[rows];
+        }
+    }
+
+    private static final class SimulationTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Setup setup;
+        private final Map<Thread, Worker> workers;
+        private final SplittableRandom random;
+        private final int from;
+        private final int to;
+
+        private SimulationTask(Setup setup, Map<Thread, Worker> workers, SplittableRandom random, int from, int to) {
+            this.setup = setup;
+            this.workers = workers;
+            this.random = random;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_ITERATIONS) {
+                simulate();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            // split до fork: потоки случайных чисел задач не зависят от порядка их выполнения
+            SimulationTask left = new SimulationTask(setup, workers, random.split(), from, middle);
+            SimulationTask right = new SimulationTask(setup, workers, random, middle, to);
+            left.fork();
+            right.compute();
+            left.join();
+        }
+
+        private void simulate() {
+            double[] scores = setup.scores;
+            double[] sigmas = setup.sigmas;
+            int n = scores.length;
+            int shift = setup.shift;
+            int bins = 2 * shift + 1;
+            Worker worker = workers.computeIfAbsent(Thread.currentThread(), thread -> new Worker(n, bins));
+            Counts counts = worker.counts;
+            int[] histogram = counts.histogram;
+            double[] sampled = worker.sampled;
+            int[] positions = worker.positions;
+            for (int iteration = from; iteration < to; iteration++) {
+                Gaussian.fill(random, sampled, n);
+                for (int p = 0; p < n; p++) {
+                    sampled[p] = scores[p] + sigmas[p] * sampled[p];
+                    positions[p] = p;
+                }
+                // сортировка вставками по убыванию от исходного порядка
+                for (int i = 1; i < n; i++) {
+                    double score = sampled[i];
+                    if (sampled[i - 1] >= score) {
+                        continue;
+                    }
+                    int position = positions[i];
+                    int j = i - 1;
+                    while (j >= 0 && sampled[j] < score) {
+                        sampled[j + 1] = sampled[j];
+                        positions[j + 1] = positions[j];
+                        j--;
+                    }
+                    sampled[j + 1] = score;
+                    positions[j + 1] = position;
+                }
+                for (int rank = 0; rank < n; rank++) {
+                    int position = positions[rank];
+                    int offset = rank - position;
+                    if (offset > shift) {
+                        offset = shift;
+                        counts.clamped++;
+                    } else if (offset < -shift) {
+                        offset = -shift;
+                        counts.clamped++;
+                    }
+                    histogram[position * bins + offset + shift]++;
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
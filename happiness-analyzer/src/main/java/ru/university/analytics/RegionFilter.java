@@ -0,0 +1,50 @@
+package ru.university.analytics;
+
+import ru.university.model.CountryTable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Набор регионов для фильтрации строк: маска, индексированная id региона
+public class RegionFilter {
+    public static final RegionFilter ALL = new RegionFilter(null, Collections.emptyList());
+
+    private final boolean[] allowed;
+    private final List<String> names;
+
+    private RegionFilter(boolean[] allowed, List<String> names) {
+        this.allowed = allowed;
+        this.names = names;
+    }
+
+    // регионы, которых нет в таблице, просто не попадут в выборку (как в SQL-запросе с IN)
+    public static RegionFilter of(CountryTable table, String... regionNames) {
+        boolean[] allowed = new boolean[table.regionIdBound()];
+        List<String> names = new ArrayList<>();
+        for (String name : regionNames) {
+            int id = table.findRegionId(name);
+            if (id >= 0) {
+                allowed[id] = true;
+            }
+            names.add(name);
+        }
+        return new RegionFilter(allowed, Collections.unmodifiableList(names));
+    }
+
+    public static RegionFilter of(CountryTable table, List<String> regionNames) {
+        return of(table, regionNames.toArray(new String[0]));
+    }
+
+    public boolean matches(int regionId) {
+        return allowed == null || (regionId >= 0 && regionId < allowed.length && allowed[regionId]);
+    }
+
+    public boolean isAll() {
+        return allowed == null;
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,174 @@
+package ru.university.analytics;
+
+import ru.university.model.CountryTable;
+import ru.university.model.Metric;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Регрессии показателя счастья на факторы, ковариации и корреляции за один параллельный проход по таблице.
+// Строки делятся на диапазоны задачами fork-join, каждая задача считает моменты (суммы для X'X, X'y)
+// отдельно по каждому региону, результаты задач сливаются попарно. Общая модель строится слиянием моментов
+// регионов, поэтому модели по регионам и по всей выборке получаются из одного прохода
+public class RegressionAnalysis {
+    // шесть факторов и остаток антиутопии в сумме дают индекс счастья
+    public static final Metric[] DEFAULT_FACTORS = {Metric.ECONOMY, Metric.FAMILY, Metric.HEALTH, Metric.FREEDOM,
+            Metric.TRUST, Metric.GENEROSITY, Metric.DYSTOPIA_RESIDUAL};
+
+    // строк в одной задаче; меньше - накладные расходы на слияние матриц регионов превышают счет
+    static final int LEAF_ROWS = 32 * 1024;
+
+    private final CountryTable table;
+    private final ForkJoinPool pool;
+
+    public RegressionAnalysis(CountryTable table) {
+        this(table, ForkJoinPool.commonPool());
+    }
+
+    public RegressionAnalysis(CountryTable table, ForkJoinPool pool) {
+        this.table = table;
+        this.pool = pool;
+    }
+
+    public Result run() {
+        return run(Metric.HAPPINESS_SCORE, DEFAULT_FACTORS, RegionFilter.ALL);
+    }
+
+    public Result run(Metric target, Metric[] factors, RegionFilter filter) {
+        double[][] columns = new double[factors.length + 1][];
+        columns[0] = table.column(target);
+        for (int i = 0; i < factors.length; i++) {
+            columns[i + 1] = table.column(factors[i]);
+        }
+        Moments[] byRegion = pool.invoke(new MomentsTask(columns, table.regionIdColumn(), table.regionIdBound(),
+                filter, 0, table.size()));
+        String[] regionNames = new String[byRegion.length];
+        for (int id = 0; id < regionNames.length; id++) {
+            regionNames[id] = table.getRegionName(id);
+        }
+        return new Result(target, factors.clone(), byRegion, regionNames);
+    }
+
+    public static final class Result {
+        private final Metric target;
+        private final Metric[] factors;
+        private final Moments overall;
+        private final RegressionModel overallModel;
+        private final Map<String, Moments> regionMoments = new LinkedHashMap<>();
+        private final Map<String, RegressionModel> regionModels = new LinkedHashMap<>();
+
+        private Result(Metric target, Metric[] factors, Moments[] byRegion, String[] regionNames) {
+            this.target = target;
+            this.factors = factors;
+            overall = new Moments(factors.length + 1);
+            for (int id = 0; id < byRegion.length; id++) {
+                Moments moments = byRegion[id];
+                if (moments != null && moments.getCount() > 0) {
+                    overall.merge(moments);
+                    regionMoments.put(regionNames[id], moments);
+                    regionModels.put(regionNames[id], RegressionModel.fit(moments, target, factors));
+                }
+            }
+            overallModel = RegressionModel.fit(overall, target, factors);
+        }
+
+        // переменные матриц ковариаций и корреляций: target, затем факторы
+        public Metric[] getVariables() {
+            Metric[] variables = new Metric[factors.length + 1];
+            variables[0] = target;
+            System.arraycopy(factors, 0, variables, 1, factors.length);
+            return variables;
+        }
+
+        public Moments getMoments() {
+            return overall;
+        }
+
+        public RegressionModel getModel() {
+            return overallModel;
+        }
+
+        // модели регионов в порядке id региона, только регионы со строками
+        public Map<String, RegressionModel> getRegionModels() {
+            return regionModels;
+        }
+
+        public Map<String, Moments> getRegionMoments() {
+            return regionMoments;
+        }
+
+        public double[][] getCovarianceMatrix() {
+            return overall.covarianceMatrix();
+        }
+
+        public double[][] getCorrelationMatrix() {
+            return overall.correlationMatrix();
+        }
+    }
+
+    // моменты строк [from, to) по id региона; элемент null - в диапазоне нет строк региона
+    private static final class MomentsTask extends RecursiveTask<Moments[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[][] columns;
+        private final int[] regionIds;
+        private final int regionIdBound;
+        private final RegionFilter filter;
+        private final int from;
+        private final int to;
+
+        private MomentsTask(double[][] columns, int[] regionIds, int regionIdBound, RegionFilter filter,
+                            int from, int to) {
+            this.columns = columns;
+            this.regionIds = regionIds;
+            this.regionIdBound = regionIdBound;
+            this.filter = filter;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Moments[] compute() {
+            if (to - from <= LEAF_ROWS) {
+                return accumulate();
+            }
+            int middle = (from + to) >>> 1;
+            MomentsTask left = new MomentsTask(columns, regionIds, regionIdBound, filter, from, middle);
+            MomentsTask right = new MomentsTask(columns, regionIds, regionIdBound, filter, middle, to);
+            left.fork();
+            Moments[] result = right.compute();
+            Moments[] other = left.join();
+            for (int id = 0; id < regionIdBound; id++) {
+                if (result[id] == null) {
+                    result[id] = other[id];
+                } else if (other[id] != null) {
+                    result[id].merge(other[id]);
+                }
+            }
+            return result;
+        }
+
+        private Moments[] accumulate() {
+            Moments[] result = new Moments[regionIdBound];
+            double[] values = new double[columns.length];
+            for (int row = from; row < to; row++) {
+                int regionId = regionIds[row];
+                if (!filter.matches(regionId)) {
+                    continue;
+                }
+                for (int v = 0; v < values.length; v++) {
+                    values[v] = columns[v][row];
+                }
+                Moments moments = result[regionId];
+                if (moments == null) {
+                    moments = new Moments(columns.length);
+                    result[regionId] = moments;
+                }
+                moments.add(values);
+            }
+            return result;
+        }
+    }
+}
\ No newline at end of file
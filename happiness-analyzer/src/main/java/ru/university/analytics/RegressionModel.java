@@ -0,0 +1,224 @@
+package ru.university.analytics;
+
+import ru.university.model.Metric;
+
+import java.util.Arrays;
+
+// Линейная регрессия (МНК) показателя target на факторы со свободным членом, построенная по моментам:
+// переменная 0 в Moments - target, переменные 1..p - факторы. Система решается на центрированных X'X и X'y
+// разложением Холецкого, поэтому строки данных после подсчета моментов не нужны.
+// Если строк не больше, чем параметров, или факторы линейно зависимы, модель вырождена: коэффициенты NaN
+public final class RegressionModel {
+    // ведущий элемент Холецкого меньше этой доли диагонали считается нулем (линейная зависимость факторов)
+    private static final double SINGULARITY_TOLERANCE = 1e-12;
+
+    private final Metric target;
+    private final Metric[] factors;
+    private final long count;
+    private final double intercept;
+    private final double interceptStdError;
+    private final double[] coefficients;
+    private final double[] stdErrors;
+    private final double rSquared;
+    private final double adjustedRSquared;
+    private final double residualStdError;
+    private final boolean singular;
+
+    private RegressionModel(Metric target, Metric[] factors, long count, double intercept, double interceptStdError,
+                            double[] coefficients, double[] stdErrors, double rSquared, double adjustedRSquared,
+                            double residualStdError, boolean singular) {
+        this.target = target;
+        this.factors = factors;
+        this.count = count;
+        this.intercept = intercept;
+        this.interceptStdError = interceptStdError;
+        this.coefficients = coefficients;
+        this.stdErrors = stdErrors;
+        this.rSquared = rSquared;
+        this.adjustedRSquared = adjustedRSquared;
+        this.residualStdError = residualStdError;
+        this.singular = singular;
+    }
+
+    public static RegressionModel fit(Moments moments, Metric target, Metric[] factors) {
+        int p = factors.length;
+        if (moments.getDimension() != p + 1) {
+            throw new IllegalArgumentException("Моменты должны содержать target и " + p + " факторов");
+        }
+        long n = moments.getCount();
+        double[] nan = new double[p];
+        Arrays.fill(nan, Double.NaN);
+        if (n <= p + 1) {
+            return new RegressionModel(target, factors.clone(), n, Double.NaN, Double.NaN, nan, nan.clone(),
+                    Double.NaN, Double.NaN, Double.NaN, true);
+        }
+
+        double[][] sxx = new double[p][p];
+        double[] sxy = new double[p];
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                sxx[i][j] = moments.getComoment(i + 1, j + 1);
+            }
+            sxy[i] = moments.getComoment(i + 1, 0);
+        }
+        double[][] inverse = invertSymmetric(sxx);
+        if (inverse == null) {
+            return new RegressionModel(target, factors.clone(), n, Double.NaN, Double.NaN, nan, nan.clone(),
+                    Double.NaN, Double.NaN, Double.NaN, true);
+        }
+
+        double[] beta = new double[p];
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                beta[i] += inverse[i][j] * sxy[j];
+            }
+        }
+        double syy = moments.getComoment(0, 0);
+        double explained = 0;
+        for (int i = 0; i < p; i++) {
+            explained += beta[i] * sxy[i];
+        }
+        // остаточная сумма квадратов не может быть отрицательной, отрицательное значение - ошибка округления
+        double residual = Math.max(0, syy - explained);
+        long degreesOfFreedom = n - p - 1;
+        double sigma2 = residual / degreesOfFreedom;
+
+        double[] means = new double[p];
+        double intercept = moments.getMean(0);
+        for (int i = 0; i < p; i++) {
+            means[i] = moments.getMean(i + 1);
+            intercept -= beta[i] * means[i];
+        }
+        double[] stdErrors = new double[p];
+        for (int i = 0; i < p; i++) {
+            stdErrors[i] = Math.sqrt(sigma2 * inverse[i][i]);
+        }
+        // Var(b0) = sigma^2 (1/n + mean' Sxx^-1 mean)
+        double quadratic = 0;
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                quadratic += means[i] * inverse[i][j] * means[j];
+            }
+        }
+        double interceptStdError = Math.sqrt(sigma2 * (1.0 / n + quadratic));
+        double rSquared = syy > 0 ? 1 - residual / syy : Double.NaN;
+        double adjustedRSquared = syy > 0 ? 1 - (1 - rSquared) * (n - 1) / degreesOfFreedom : Double.NaN;
+        return new RegressionModel(target, factors.clone(), n, intercept, interceptStdError, beta, stdErrors,
+                rSquared, adjustedRSquared, Math.sqrt(sigma2), false);
+    }
+
+    // обратная к симметричной положительно определенной матрице через разложение Холецкого A = L L';
+    // null, если матрица вырождена
+    private static double[][] invertSymmetric(double[][] a) {
+        int p = a.length;
+        double[][] l = new double[p][p];
+        for (int j = 0; j < p; j++) {
+            double diagonal = a[j][j];
+            for (int k = 0; k < j; k++) {
+                diagonal -= l[j][k] * l[j][k];
+            }
+            if (!(diagonal > SINGULARITY_TOLERANCE * Math.abs(a[j][j])) || a[j][j] <= 0) {
+                return null;
+            }
+            l[j][j] = Math.sqrt(diagonal);
+            for (int i = j + 1; i < p; i++) {
+                double value = a[i][j];
+                for (int k = 0; k < j; k++) {
+                    value -= l[i][k] * l[j][k];
+                }
+                l[i][j] = value / l[j][j];
+            }
+        }
+        // столбцы обратной матрицы: L y = e, затем L' x = y
+        double[][] inverse = new double[p][p];
+        double[] y = new double[p];
+        for (int column = 0; column < p; column++) {
+            for (int i = 0; i < p; i++) {
+                double value = i == column ? 1 : 0;
+                for (int k = 0; k < i; k++) {
+                    value -= l[i][k] * y[k];
+                }
+                y[i] = value / l[i][i];
+            }
+            for (int i = p - 1; i >= 0; i--) {
+                double value = y[i];
+                for (int k = i + 1; k < p; k++) {
+                    value -= l[k][i] * inverse[k][column];
+                }
+                inverse[i][column] = value / l[i][i];
+            }
+        }
+        return inverse;
+    }
+
+    public Metric getTarget() {
+        return target;
+    }
+
+    public Metric[] getFactors() {
+        return factors.clone();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isSingular() {
+        return singular;
+    }
+
+    public double getIntercept() {
+        return intercept;
+    }
+
+    public double getInterceptStdError() {
+        return interceptStdError;
+    }
+
+    public double getCoefficient(int factor) {
+        return coefficients[factor];
+    }
+
+    public double getCoefficient(Metric factor) {
+        return coefficients[indexOf(factor)];
+    }
+
+    public double getStdError(int factor) {
+        return stdErrors[factor];
+    }
+
+    // t-статистика коэффициента: оценка, деленная на стандартную ошибку
+    public double getTStatistic(int factor) {
+        return coefficients[factor] / stdErrors[factor];
+    }
+
+    public double getRSquared() {
+        return rSquared;
+    }
+
+    public double getAdjustedRSquared() {
+        return adjustedRSquared;
+    }
+
+    public double getResidualStdError() {
+        return residualStdError;
+    }
+
+    // прогноз target по значениям факторов в порядке getFactors()
+    public double predict(double[] values) {
+        double result = intercept;
+        for (int i = 0; i < coefficients.length; i++) {
+            result += coefficients[i] * values[i];
+        }
+        return result;
+    }
+
+    private int indexOf(Metric factor) {
+        for (int i = 0; i < factors.length; i++) {
+            if (factors[i] == factor) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Показатель " + factor.getColumn() + " не входит в модель");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,188 @@
+package ru.university.database;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Небольшой пул соединений SQLite: одно соединение для записи и N соединений только для чтения.
+// База переводится в режим WAL, поэтому читатели из разных потоков работают параллельно
+// и не блокируются писателем. У каждого соединения свой кэш подготовленных выражений.
+class ConnectionPool {
+    private final String url;
+    private final int statementCacheSize;
+    private final PooledConnection writer;
+    private final BlockingQueue<PooledConnection> idleReaders;
+    private final List<PooledConnection> allReaders = new ArrayList<>();
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong replacedConnections = new AtomicLong();
+
+    private volatile boolean closed;
+
+    ConnectionPool(String dbName, int readConnections, int statementCacheSize) throws SQLException {
+        this.url = "jdbc:sqlite:" + dbName;
+        this.statementCacheSize = statementCacheSize;
+
+        // писатель создает файл базы и включает WAL, режим сохраняется в самом файле
+        Connection writerConnection = DriverManager.getConnection(url);
+        try (Statement stmt = writerConnection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+        }
+        writer = new PooledConnection(writerConnection, statementCacheSize);
+
+        idleReaders = new ArrayBlockingQueue<>(Math.max(1, readConnections));
+        for (int i = 0; i < readConnections; i++) {
+            PooledConnection reader = openReader();
+            allReaders.add(reader);
+            idleReaders.add(reader);
+        }
+    }
+
+    PooledConnection writer() {
+        return writer;
+    }
+
+    int readerCount() {
+        return allReaders.size();
+    }
+
+    // выдает свободное соединение для чтения, ожидая не дольше timeout
+    PooledConnection borrowReader(long timeout, TimeUnit unit) throws SQLException {
+        if (closed) {
+            throw new SQLException("Пул соединений закрыт");
+        }
+        long start = System.nanoTime();
+        PooledConnection reader;
+        try {
+            reader = idleReaders.poll(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения прервано", e);
+        }
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        DatabaseMetrics.CONNECTION_WAIT.record(waited);
+        if (reader == null) {
+            timeouts.incrementAndGet();
+            DatabaseMetrics.CONNECTION_TIMEOUTS.increment();
+            throw new SQLException("Нет свободных соединений для чтения за " + unit.toMillis(timeout) + " мс");
+        }
+        checkouts.incrementAndGet();
+        active.incrementAndGet();
+
+        // проверка работоспособности, неисправное соединение заменяется новым; если новое открыть
+        // не удалось, старое возвращается в пул и замена повторяется при следующей выдаче
+        if (!isHealthy(reader)) {
+            try {
+                reader = replace(reader);
+            } catch (SQLException e) {
+                active.decrementAndGet();
+                idleReaders.offer(reader);
+                throw e;
+            }
+        }
+        return reader;
+    }
+
+    // broken = true, если соединение не прошло проверку isHealthy после ошибки
+    void release(PooledConnection reader, boolean broken) {
+        active.decrementAndGet();
+        if (closed) {
+            reader.close();
+            return;
+        }
+        if (broken) {
+            try {
+                reader = replace(reader);
+            } catch (SQLException e) {
+                System.out.println("Не удалось заменить неисправное соединение для чтения, замена повторится при следующей выдаче");
+                e.printStackTrace();
+            }
+        }
+        idleReaders.offer(reader);
+    }
+
+    PoolMetrics getMetrics() {
+        return new PoolMetrics(allReaders.size(), active.get(), idleReaders.size(), checkouts.get(),
+                totalWaitNanos.get(), maxWaitNanos.get(), timeouts.get(), replacedConnections.get());
+    }
+
+    void close() {
+        closed = true;
+        writer.close();
+        synchronized (allReaders) {
+            for (PooledConnection reader : allReaders) {
+                reader.close();
+            }
+        }
+    }
+
+    private PooledConnection openReader() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        return new PooledConnection(config.createConnection(url), statementCacheSize);
+    }
+
+    // новое соединение открывается до закрытия старого: при ошибке старое остается в пуле и в allReaders
+    private PooledConnection replace(PooledConnection reader) throws SQLException {
+        PooledConnection fresh = openReader();
+        reader.close();
+        synchronized (allReaders) {
+            allReaders.remove(reader);
+            allReaders.add(fresh);
+        }
+        replacedConnections.incrementAndGet();
+        return fresh;
+    }
+
+    static boolean isHealthy(PooledConnection reader) {
+        try {
+            return !reader.getConnection().isClosed() && reader.getConnection().isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    static final class PooledConnection {
+        private final Connection connection;
+        private final PreparedStatementCache statementCache;
+
+        private PooledConnection(Connection connection, int statementCacheSize) {
+            this.connection = connection;
+            this.statementCache = new PreparedStatementCache(connection, statementCacheSize);
+        }
+
+        Connection getConnection() {
+            return connection;
+        }
+
+        PreparedStatementCache getStatementCache() {
+            return statementCache;
+        }
+
+        private void close() {
+            statementCache.closeAll();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.out.println("Ошибка при закрытии соединения пула");
+                e.printStackTrace();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,19 +1,74 @@
 package ru.university.database;
 
 import ru.university.model.Country;
+import ru.university.model.CountryTable;
+import ru.university.model.CountryYearRecord;
+import ru.university.model.Metric;
 import ru.university.model.Region;
+import ru.university.model.RegionAggregate;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class DatabaseManager {
+    // размер пакета по умолчанию для массовой загрузки
+    public static final int DEFAULT_BATCH_SIZE = 5000;
+
+    private static final String INSERT_REGION_SQL = "INSERT OR IGNORE INTO regions(id, name) VALUES(?, ?)";
+    private static final String INSERT_COUNTRY_SQL = "INSERT OR REPLACE INTO countries(id, name, region_id, happiness_rank, happiness_score, " +
+            "standard_error, economy, family, health, freedom, trust, generosity, dystopia_residual) " +
+            "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPSERT_YEAR_SQL = "INSERT OR REPLACE INTO country_years(country_id, year, region_id, " +
+            "happiness_rank, happiness_score, standard_error, economy, family, health, freedom, trust, generosity, " +
+            "dystopia_residual, content_hash) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_COUNTRY_KEY_SQL = "INSERT INTO country_keys(id, name, region_id) VALUES(?, ?, ?)";
+    private static final String INSERT_COUNTRY_CLUSTER_SQL = "INSERT INTO country_clusters(country_id, cluster_id) VALUES(?, ?)";
+    private static final String INSERT_CLUSTER_CENTROID_SQL = "INSERT INTO cluster_centroids(cluster_id, metric, value) VALUES(?, ?, ?)";
+
+    // регион стран, для которых ни один загруженный год не указывает регион
+    public static final String NO_REGION_NAME = "Регион не указан";
+
+    // сколько ждать свободное соединение для чтения
+    private static final long READ_TIMEOUT_MILLIS = 30_000;
+
     private Connection connection;
+    private PreparedStatementCache statementCache;
+    private ConnectionPool pool;
+
+    // с пулом: соединение для записи плюс readConnections соединений только для чтения в режиме WAL.
+    // Методы записи по-прежнему предназначены для одного потока, executeReadQuery можно вызывать из разных потоков
+    public DatabaseManager(String dbName, int readConnections) {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            pool = new ConnectionPool(dbName, readConnections, PreparedStatementCache.DEFAULT_CAPACITY);
+            connection = pool.writer().getConnection();
+            statementCache = pool.writer().getStatementCache();
+            System.out.println("Подключение к SQLite успешно установлено (соединений для чтения: "
+                    + pool.readerCount() + ")");
+        } catch (ClassNotFoundException e) {
+            System.out.println("Драйвер SQLite не найден");
+            e.printStackTrace();
+        } catch (SQLException e) {
+            System.out.println("Ошибка при подключении к SQLite");
+            e.printStackTrace();
+        }
+    }
 
     public DatabaseManager(String dbName) {
         try {
             Class.forName("org.sqlite.JDBC");
             // устанавливаем соединение
             connection = DriverManager.getConnection("jdbc:sqlite:" + dbName);
+            statementCache = new PreparedStatementCache(connection, PreparedStatementCache.DEFAULT_CAPACITY);
             System.out.println("Подключение к SQLite успешно установлено");
         } catch (ClassNotFoundException e) {
             System.out.println("Драйвер SQLite не найден");
@@ -52,6 +107,15 @@ public class DatabaseManager {
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(createRegionsTable);
             stmt.execute(createCountriesTable);
+            createYearlyTables(stmt);
+            RegionAggregates.createTable(stmt);
+            // база из предыдущей версии: страны уже есть, а агрегатов еще нет
+            try (ResultSet rs = stmt.executeQuery("SELECT NOT EXISTS (SELECT 1 FROM region_aggregates) "
+                    + "AND EXISTS (SELECT 1 FROM countries)")) {
+                if (rs.next() && rs.getBoolean(1)) {
+                    rebuildRegionAggregates();
+                }
+            }
             System.out.println("Таблицы успешно созданы");
         } catch (SQLException e) {
             System.out.println("Ошибка при создании таблиц");
@@ -59,55 +123,736 @@ public class DatabaseManager {
         }
     }
 
-    public void insertRegions(List<Region> regions) {
-        String sql = "INSERT OR IGNORE INTO regions(id, name) VALUES(?, ?)";
+    // пересчитывает region_aggregates полным просмотром countries (после вставок в обход DatabaseManager)
+    public void rebuildRegionAggregates() {
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                RegionAggregates.rebuild(stmt);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            System.out.println("Ошибка при пересчете агрегатов по регионам");
+            e.printStackTrace();
+        }
+    }
+
+    // агрегаты регионов с хотя бы одной страной, по названию региона; O(число регионов)
+    public Map<String, RegionAggregate> loadRegionAggregates() {
+        Map<String, RegionAggregate> result = executeQuery(RegionAggregates.SELECT_SQL, Collections.emptyList(), rs -> {
+            Map<String, RegionAggregate> aggregates = new LinkedHashMap<>();
+            int metrics = Metric.values().length;
+            while (rs.next()) {
+                double[] sums = new double[metrics];
+                double[] squares = new double[metrics];
+                for (int m = 0; m < metrics; m++) {
+                    sums[m] = rs.getDouble(4 + 2 * m);
+                    squares[m] = rs.getDouble(5 + 2 * m);
+                }
+                aggregates.put(rs.getString(2), new RegionAggregate(rs.getInt(1), rs.getString(2), rs.getLong(3), sums, squares));
+            }
+            return aggregates;
+        });
+        return result != null ? result : Collections.emptyMap();
+    }
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+    // Индексы под запросы отчетов:
+    // (region_id, economy) - фильтр по региону, сортировка и AVG по economy без обращения к таблице;
+    // happiness_rank - ORDER BY happiness_rank LIMIT n без сортировки всей таблицы.
+    // Для regions(name) отдельный индекс не нужен: его создает ограничение UNIQUE,
+    // и он уже покрывающий, так как id является rowid.
+    public void createIndexes() {
+        String[] indexes = {
+                "CREATE INDEX IF NOT EXISTS idx_countries_region_economy ON countries(region_id, economy)",
+                "CREATE INDEX IF NOT EXISTS idx_countries_rank ON countries(happiness_rank)"
+        };
+        try (Statement stmt = connection.createStatement()) {
+            for (String index : indexes) {
+                stmt.execute(index);
+            }
+            System.out.println("Индексы успешно созданы");
+        } catch (SQLException e) {
+            System.out.println("Ошибка при создании индексов");
+            e.printStackTrace();
+        }
+    }
+
+    // обновляет статистику для планировщика запросов, вызывается после массовой загрузки
+    public void analyze() {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ANALYZE");
+        } catch (SQLException e) {
+            System.out.println("Ошибка при выполнении ANALYZE");
+            e.printStackTrace();
+        }
+    }
+
+    // строки EXPLAIN QUERY PLAN для запроса; можно вызывать из разных потоков, как executeReadQuery
+    public List<String> explainQueryPlan(String sql, List<?> params) {
+        List<String> plan = executeReadQuery("EXPLAIN QUERY PLAN " + sql, params, rs -> {
+            List<String> details = new ArrayList<>();
+            while (rs.next()) {
+                details.add(rs.getString("detail"));
+            }
+            return details;
+        });
+        return plan != null ? plan : Collections.emptyList();
+    }
+
+    // строка плана означает полный просмотр таблицы без индекса, например "SCAN countries" или "SCAN c"
+    public static boolean isFullScan(String planDetail) {
+        return planDetail.startsWith("SCAN") && !planDetail.contains(" INDEX ");
+    }
+
+    // методы записи регионов и стран возвращают false, если часть строк не записана
+    public boolean insertRegions(List<Region> regions) {
+        try (PreparedStatement pstmt = connection.prepareStatement(INSERT_REGION_SQL)) {
             for (Region region : regions) {
                 pstmt.setInt(1, region.getId());
                 pstmt.setString(2, region.getName());
                 pstmt.executeUpdate();
             }
             System.out.println("Регионы успешно добавлены в базу данных");
+            return true;
         } catch (SQLException e) {
             System.out.println("Ошибка при добавлении регионов");
             e.printStackTrace();
+            return false;
         }
     }
 
-    public void insertCountries(List<Country> countries) {
-        String sql = "INSERT OR REPLACE INTO countries(id, name, region_id, happiness_rank, happiness_score, " +
-                "standard_error, economy, family, health, freedom, trust, generosity, dystopia_residual) " +
-                "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // каждая строка в своей транзакции вместе с изменением region_aggregates
+    public boolean insertCountries(List<Country> countries) {
+        try {
+            resolveCountryIdsInTransaction(countries);
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = connection.prepareStatement(INSERT_COUNTRY_SQL)) {
+                for (Country country : countries) {
+                    RegionAggregates.applyBatch(connection, Collections.singletonList(country));
+                    bindCountry(pstmt, country);
+                    pstmt.executeUpdate();
+                    connection.commit();
+                }
+                System.out.println("Страны успешно добавлены в базу данных");
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            System.out.println("Ошибка при добавлении стран");
+            e.printStackTrace();
+            return false;
+        }
+    }
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+    // PRAGMA для массовой загрузки: WAL-журнал, fsync только на контрольных точках и увеличенный кэш страниц
+    public void applyBulkLoadPragmas() {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+            stmt.execute("PRAGMA synchronous=NORMAL");
+            // отрицательное значение задает размер кэша в килобайтах (~64 МБ)
+            stmt.execute("PRAGMA cache_size=-65536");
+            stmt.execute("PRAGMA temp_store=MEMORY");
+        } catch (SQLException e) {
+            System.out.println("Ошибка при установке PRAGMA для массовой загрузки");
+            e.printStackTrace();
+        }
+    }
+
+    public boolean insertRegionsBatch(List<Region> regions, int batchSize) {
+        long start = System.nanoTime();
+        try {
+            resolveRegionIds(regions);
+            int rows = executeInBatches(INSERT_REGION_SQL, regions, batchSize, (pstmt, region) -> {
+                pstmt.setInt(1, region.getId());
+                pstmt.setString(2, region.getName());
+            }, null);
+            printLoadStats("Регионы", rows, start);
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Ошибка при пакетном добавлении регионов, используется построчная вставка");
+            e.printStackTrace();
+            return insertRegions(regions);
+        }
+    }
+
+    public boolean insertCountriesBatch(List<Country> countries, int batchSize) {
+        long start = System.nanoTime();
+        try {
+            resolveCountryIdsInTransaction(countries);
+            int rows = executeInBatches(INSERT_COUNTRY_SQL, countries, batchSize, DatabaseManager::bindCountry,
+                    batch -> RegionAggregates.applyBatch(connection, batch));
+            printLoadStats("Страны", rows, start);
+            analyze();
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Ошибка при пакетном добавлении стран, используется построчная вставка");
+            e.printStackTrace();
+            return insertCountries(countries);
+        }
+    }
+
+    // записывает новые регионы и пакет стран в одной транзакции, используется потоковой загрузкой
+    public int insertChunk(List<Region> newRegions, List<Country> countries) throws SQLException {
+        long start = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement regionStmt = connection.prepareStatement(INSERT_REGION_SQL);
+             PreparedStatement countryStmt = connection.prepareStatement(INSERT_COUNTRY_SQL)) {
+            resolveRegionIds(newRegions);
+            for (Region region : newRegions) {
+                regionStmt.setInt(1, region.getId());
+                regionStmt.setString(2, region.getName());
+                regionStmt.addBatch();
+            }
+            if (!newRegions.isEmpty()) {
+                regionStmt.executeBatch();
+            }
+            resolveCountryIds(countries);
+            RegionAggregates.applyBatch(connection, countries);
             for (Country country : countries) {
-                pstmt.setInt(1, country.getId());
-                pstmt.setString(2, country.getName());
-                pstmt.setInt(3, country.getRegion().getId());
-                pstmt.setInt(4, country.getHappinessRank());
-                pstmt.setDouble(5, country.getHappinessScore());
-                pstmt.setDouble(6, country.getStandardError());
-                pstmt.setDouble(7, country.getEconomy());
-                pstmt.setDouble(8, country.getFamily());
-                pstmt.setDouble(9, country.getHealth());
-                pstmt.setDouble(10, country.getFreedom());
-                pstmt.setDouble(11, country.getTrust());
-                pstmt.setDouble(12, country.getGenerosity());
-                pstmt.setDouble(13, country.getDystopiaResidual());
-                pstmt.executeUpdate();
+                bindCountry(countryStmt, country);
+                countryStmt.addBatch();
             }
-            System.out.println("Страны успешно добавлены в базу данных");
+            countryStmt.executeBatch();
+            connection.commit();
+            DatabaseMetrics.recordBatch(INSERT_COUNTRY_SQL, countries.size(), start);
+            return countries.size();
         } catch (SQLException e) {
-            System.out.println("Ошибка при добавлении стран");
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Согласует id регионов с таблицей regions по названию: регион, уже записанный в базу (в том числе
+    // загрузкой по годам, которая добавляет регионы по названию), получает его id, а новый регион с занятым id -
+    // следующий свободный. Объекты Region общие со странами, поэтому страны пишутся с теми же id
+    private void resolveRegionIds(Collection<Region> regions) throws SQLException {
+        if (regions.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> idsByName = new HashMap<>();
+        Set<Integer> usedIds = new HashSet<>();
+        int maxId = 0;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM regions")) {
+            while (rs.next()) {
+                idsByName.put(rs.getString(2), rs.getInt(1));
+                usedIds.add(rs.getInt(1));
+                maxId = Math.max(maxId, rs.getInt(1));
+            }
+        }
+        for (Region region : regions) {
+            Integer knownId = idsByName.get(region.getName());
+            if (knownId != null) {
+                region.setId(knownId);
+                continue;
+            }
+            if (usedIds.contains(region.getId())) {
+                region.setId(maxId + 1);
+            }
+            usedIds.add(region.getId());
+            idsByName.put(region.getName(), region.getId());
+            maxId = Math.max(maxId, region.getId());
+        }
+    }
+
+    // Заменяет id стран (номера строк файла) постоянными ключами country_keys по названию: те же ключи
+    // использует country_years, поэтому строка страны в countries при повторной загрузке заменяется, а не
+    // дублируется, и совпадает со строками этой страны по годам. Страны с одинаковым названием получают один
+    // ключ, в countries остается последняя из них
+    private void resolveCountryIds(List<Country> countries) throws SQLException {
+        try (CountryKeyResolver keys = new CountryKeyResolver()) {
+            for (Country country : countries) {
+                country.setId(keys.resolve(country.getName(), country.getRegion().getId()).id);
+            }
+            keys.flush();
+        }
+    }
+
+    private void resolveCountryIdsInTransaction(List<Country> countries) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            resolveCountryIds(countries);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // каждый пакет выполняется в отдельной явной транзакции, при ошибке весь незафиксированный пакет откатывается;
+    // beforeBatch (может быть null) выполняется в транзакции пакета до его вставки
+    private <T> int executeInBatches(String sql, List<T> items, int batchSize, RowBinder<T> binder,
+                                     BatchHook<T> beforeBatch) throws SQLException {
+        if (batchSize <= 0) {
+            batchSize = DEFAULT_BATCH_SIZE;
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        int rows = 0;
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            int pending = 0;
+            long batchStart = System.nanoTime();
+            for (T item : items) {
+                binder.bind(pstmt, item);
+                pstmt.addBatch();
+                if (++pending == batchSize) {
+                    if (beforeBatch != null) {
+                        beforeBatch.run(items.subList(rows, rows + pending));
+                    }
+                    pstmt.executeBatch();
+                    connection.commit();
+                    DatabaseMetrics.recordBatch(sql, pending, batchStart);
+                    rows += pending;
+                    pending = 0;
+                    batchStart = System.nanoTime();
+                }
+            }
+            if (pending > 0) {
+                if (beforeBatch != null) {
+                    beforeBatch.run(items.subList(rows, rows + pending));
+                }
+                pstmt.executeBatch();
+                connection.commit();
+                DatabaseMetrics.recordBatch(sql, pending, batchStart);
+                rows += pending;
+            }
+            return rows;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void bindCountry(PreparedStatement pstmt, Country country) throws SQLException {
+        pstmt.setInt(1, country.getId());
+        pstmt.setString(2, country.getName());
+        pstmt.setInt(3, country.getRegion().getId());
+        pstmt.setInt(4, country.getHappinessRank());
+        pstmt.setDouble(5, country.getHappinessScore());
+        pstmt.setDouble(6, country.getStandardError());
+        pstmt.setDouble(7, country.getEconomy());
+        pstmt.setDouble(8, country.getFamily());
+        pstmt.setDouble(9, country.getHealth());
+        pstmt.setDouble(10, country.getFreedom());
+        pstmt.setDouble(11, country.getTrust());
+        pstmt.setDouble(12, country.getGenerosity());
+        pstmt.setDouble(13, country.getDystopiaResidual());
+    }
+
+    private static void printLoadStats(String what, int rows, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        long rowsPerSecond = seconds > 0 ? Math.round(rows / seconds) : rows;
+        System.out.printf("%s успешно добавлены в базу данных: %d строк за %.3f с (%d строк/с)%n",
+                what, rows, seconds, rowsPerSecond);
+    }
+
+    @FunctionalInterface
+    private interface RowBinder<T> {
+        void bind(PreparedStatement pstmt, T item) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface BatchHook<T> {
+        void run(List<T> batch) throws SQLException;
+    }
+
+    private static final class CountryKey {
+        private final int id;
+        // последний известный регион страны, null - неизвестен
+        private Integer regionId;
+
+        private CountryKey(int id, Integer regionId) {
+            this.id = id;
+            this.regionId = regionId;
+        }
+    }
+
+    // Ключи стран в транзакции вызывающего кода: существующий ключ ищется по уникальному индексу названия,
+    // новый получает следующий id. Новые ключи и смена региона копятся в пакетах до flush
+    private final class CountryKeyResolver implements AutoCloseable {
+        private final PreparedStatement selectKey;
+        private final PreparedStatement insertKey;
+        private final PreparedStatement updateKeyRegion;
+        // ключи, уже выданные этим объектом, в том числе еще не записанные
+        private final Map<String, CountryKey> resolved = new HashMap<>();
+        private int maxId;
+        private int pendingInserts;
+        private int pendingUpdates;
+
+        private CountryKeyResolver() throws SQLException {
+            selectKey = connection.prepareStatement("SELECT id, region_id FROM country_keys WHERE name = ?");
+            insertKey = connection.prepareStatement(INSERT_COUNTRY_KEY_SQL);
+            updateKeyRegion = connection.prepareStatement("UPDATE country_keys SET region_id = ? WHERE id = ?");
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM country_keys")) {
+                maxId = rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+
+        // regionId == null - регион в данных не указан, у ключа остается последний известный
+        private CountryKey resolve(String name, Integer regionId) throws SQLException {
+            CountryKey key = resolved.get(name);
+            if (key == null) {
+                selectKey.setString(1, name);
+                try (ResultSet rs = selectKey.executeQuery()) {
+                    if (rs.next()) {
+                        int knownRegion = rs.getInt(2);
+                        key = new CountryKey(rs.getInt(1), rs.wasNull() ? null : knownRegion);
+                    }
+                }
+                if (key == null) {
+                    key = new CountryKey(++maxId, regionId);
+                    insertKey.setInt(1, key.id);
+                    insertKey.setString(2, name);
+                    insertKey.setObject(3, regionId);
+                    insertKey.addBatch();
+                    pendingInserts++;
+                }
+                resolved.put(name, key);
+            }
+            if (regionId != null && !regionId.equals(key.regionId)) {
+                key.regionId = regionId;
+                updateKeyRegion.setInt(1, regionId);
+                updateKeyRegion.setInt(2, key.id);
+                updateKeyRegion.addBatch();
+                pendingUpdates++;
+            }
+            return key;
+        }
+
+        private void flush() throws SQLException {
+            if (pendingInserts > 0) {
+                insertKey.executeBatch();
+                pendingInserts = 0;
+            }
+            if (pendingUpdates > 0) {
+                updateKeyRegion.executeBatch();
+                pendingUpdates = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                selectKey.close();
+            } finally {
+                try {
+                    insertKey.close();
+                } finally {
+                    updateKeyRegion.close();
+                }
+            }
+        }
+    }
+
+    // Таблицы многолетних данных: постоянные ключи стран (по названию) и показатели по годам.
+    // content_hash - хэш содержимого строки, по нему повторная загрузка года пропускает неизмененные строки.
+    // Базовый год пишется сюда же тем же путем, что и остальные, ключи стран общие с countries
+    private static void createYearlyTables(Statement stmt) throws SQLException {
+        String createCountryKeysTable = "CREATE TABLE IF NOT EXISTS country_keys (\n"
+                + " id INTEGER PRIMARY KEY,\n"
+                + " name TEXT NOT NULL UNIQUE,\n"
+                + " region_id INTEGER,\n"
+                + " FOREIGN KEY (region_id) REFERENCES regions(id)\n"
+                + ");";
+
+        String createCountryYearsTable = "CREATE TABLE IF NOT EXISTS country_years (\n"
+                + " country_id INTEGER NOT NULL,\n"
+                + " year INTEGER NOT NULL,\n"
+                + " region_id INTEGER,\n"
+                + " happiness_rank INTEGER,\n"
+                + " happiness_score REAL NOT NULL,\n"
+                + " standard_error REAL,\n"
+                + " economy REAL,\n"
+                + " family REAL,\n"
+                + " health REAL,\n"
+                + " freedom REAL,\n"
+                + " trust REAL,\n"
+                + " generosity REAL,\n"
+                + " dystopia_residual REAL,\n"
+                + " content_hash TEXT NOT NULL,\n"
+                + " PRIMARY KEY (country_id, year),\n"
+                + " FOREIGN KEY (country_id) REFERENCES country_keys(id),\n"
+                + " FOREIGN KEY (region_id) REFERENCES regions(id)\n"
+                + ");";
+
+        stmt.execute(createCountryKeysTable);
+        stmt.execute(createCountryYearsTable);
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_country_years_year ON country_years(year, region_id)");
+    }
+
+    // Результат кластеризации стран: номер кластера каждой страны и координаты центроидов по показателям
+    public void createClusterTables() {
+        String createCountryClustersTable = "CREATE TABLE IF NOT EXISTS country_clusters (\n"
+                + " country_id INTEGER PRIMARY KEY,\n"
+                + " cluster_id INTEGER NOT NULL,\n"
+                + " FOREIGN KEY (country_id) REFERENCES country_keys(id)\n"
+                + ");";
+
+        String createClusterCentroidsTable = "CREATE TABLE IF NOT EXISTS cluster_centroids (\n"
+                + " cluster_id INTEGER NOT NULL,\n"
+                + " metric TEXT NOT NULL,\n"
+                + " value REAL NOT NULL,\n"
+                + " PRIMARY KEY (cluster_id, metric)\n"
+                + ");";
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(createCountryClustersTable);
+            stmt.execute(createClusterCentroidsTable);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_country_clusters_cluster ON country_clusters(cluster_id)");
+            System.out.println("Таблицы кластеров успешно созданы");
+        } catch (SQLException e) {
+            System.out.println("Ошибка при создании таблиц кластеров");
             e.printStackTrace();
         }
     }
 
+    // Заменяет результат прошлой кластеризации: clusters[i] - кластер страны countryIds[i],
+    // centroids[c][m] - значение показателя factors[m] в центроиде c. Все в одной транзакции,
+    // назначения пишутся пакетами по DEFAULT_BATCH_SIZE. Возвращает число записанных стран.
+    public int saveClusters(int[] countryIds, int[] clusters, Metric[] factors, double[][] centroids)
+            throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement();
+             PreparedStatement insertCentroid = connection.prepareStatement(INSERT_CLUSTER_CENTROID_SQL);
+             PreparedStatement insertCluster = connection.prepareStatement(INSERT_COUNTRY_CLUSTER_SQL)) {
+            stmt.execute("DELETE FROM country_clusters");
+            stmt.execute("DELETE FROM cluster_centroids");
+
+            for (int c = 0; c < centroids.length; c++) {
+                for (int m = 0; m < factors.length; m++) {
+                    insertCentroid.setInt(1, c);
+                    insertCentroid.setString(2, factors[m].getColumn());
+                    insertCentroid.setDouble(3, centroids[c][m]);
+                    insertCentroid.addBatch();
+                }
+            }
+            insertCentroid.executeBatch();
+
+            int pending = 0;
+            long batchStart = System.nanoTime();
+            for (int i = 0; i < countryIds.length; i++) {
+                insertCluster.setInt(1, countryIds[i]);
+                insertCluster.setInt(2, clusters[i]);
+                insertCluster.addBatch();
+                if (++pending == DEFAULT_BATCH_SIZE) {
+                    insertCluster.executeBatch();
+                    DatabaseMetrics.recordBatch(INSERT_COUNTRY_CLUSTER_SQL, pending, batchStart);
+                    pending = 0;
+                    batchStart = System.nanoTime();
+                }
+            }
+            if (pending > 0) {
+                insertCluster.executeBatch();
+                DatabaseMetrics.recordBatch(INSERT_COUNTRY_CLUSTER_SQL, pending, batchStart);
+            }
+            connection.commit();
+            return countryIds.length;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // хэши содержимого уже загруженных строк года: название страны -> хэш
+    public Map<String, String> loadYearHashes(int year) {
+        Map<String, String> hashes = executeQuery("SELECT k.name, y.content_hash FROM country_years y " +
+                "JOIN country_keys k ON k.id = y.country_id WHERE y.year = ?", List.of(year), rs -> {
+            Map<String, String> result = new HashMap<>();
+            while (rs.next()) {
+                result.put(rs.getString(1), rs.getString(2));
+            }
+            return result;
+        });
+        return hashes != null ? hashes : new HashMap<>();
+    }
+
+    // Записывает новые и измененные строки года и удаляет строки стран, которых больше нет в файле.
+    // Все в одной транзакции; другие годы не затрагиваются. Возвращает число записанных строк.
+    public int saveYearRecords(int year, List<CountryYearRecord> records, Collection<String> removedCountries)
+            throws SQLException {
+        long start = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement insertRegion = connection.prepareStatement(
+                "INSERT OR IGNORE INTO regions(name) VALUES(?)");
+             PreparedStatement selectRegion = connection.prepareStatement("SELECT id FROM regions WHERE name = ?");
+             CountryKeyResolver keys = new CountryKeyResolver();
+             PreparedStatement upsertYear = connection.prepareStatement(UPSERT_YEAR_SQL);
+             PreparedStatement deleteYear = connection.prepareStatement(
+                     "DELETE FROM country_years WHERE year = ? AND country_id = (SELECT id FROM country_keys WHERE name = ?)")) {
+
+            Map<String, Integer> regionIds = new HashMap<>();
+            for (CountryYearRecord record : records) {
+                Integer regionId = null;
+                if (record.getRegionName() != null && !record.getRegionName().isEmpty()) {
+                    regionId = regionIds.get(record.getRegionName());
+                    if (regionId == null) {
+                        insertRegion.setString(1, record.getRegionName());
+                        insertRegion.executeUpdate();
+                        selectRegion.setString(1, record.getRegionName());
+                        try (ResultSet rs = selectRegion.executeQuery()) {
+                            rs.next();
+                            regionId = rs.getInt(1);
+                        }
+                        regionIds.put(record.getRegionName(), regionId);
+                    }
+                }
+
+                CountryKey key = keys.resolve(record.getCountryName(), regionId);
+                record.setCountryId(key.id);
+                // в файле года нет регионов - берем последний известный регион страны
+                regionId = key.regionId;
+                record.setRegionId(regionId != null ? regionId : 0);
+
+                upsertYear.setInt(1, record.getCountryId());
+                upsertYear.setInt(2, year);
+                upsertYear.setObject(3, regionId);
+                upsertYear.setObject(4, record.getHappinessRank() > 0 ? record.getHappinessRank() : null);
+                int column = 5;
+                for (Metric metric : Metric.values()) {
+                    upsertYear.setObject(column++, record.hasValue(metric) ? record.getValue(metric) : null);
+                }
+                upsertYear.setString(column, record.getContentHash());
+                upsertYear.addBatch();
+            }
+            keys.flush();
+            upsertYear.executeBatch();
+
+            for (String countryName : removedCountries) {
+                deleteYear.setInt(1, year);
+                deleteYear.setString(2, countryName);
+                deleteYear.addBatch();
+            }
+            if (!removedCountries.isEmpty()) {
+                deleteYear.executeBatch();
+            }
+            connection.commit();
+            DatabaseMetrics.recordBatch(UPSERT_YEAR_SQL, records.size(), start);
+            return records.size();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // есть ли в country_years строки года
+    public boolean hasYear(int year) {
+        Boolean exists = executeQuery("SELECT EXISTS(SELECT 1 FROM country_years WHERE year = ?)", List.of(year),
+                rs -> rs.next() && rs.getInt(1) == 1);
+        return exists != null && exists;
+    }
+
+    // число строк в таблице countries, -1 при ошибке запроса
+    public long countCountries() {
+        Long count = executeQuery("SELECT COUNT(*) FROM countries", Collections.emptyList(),
+                rs -> rs.next() ? rs.getLong(1) : 0L);
+        return count != null ? count : -1;
+    }
+
+    // загружает таблицы countries и regions в колоночное хранилище
+    public CountryTable loadCountryTable() {
+        CountryTable.Builder builder = new CountryTable.Builder();
+        try (Statement stmt = connection.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT id, name FROM regions")) {
+                while (rs.next()) {
+                    builder.region(rs.getInt(1), rs.getString(2));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT id, name, region_id, happiness_rank, happiness_score, " +
+                    "standard_error, economy, family, health, freedom, trust, generosity, dystopia_residual " +
+                    "FROM countries ORDER BY id")) {
+                while (rs.next()) {
+                    builder.add(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getInt(4),
+                            rs.getDouble(5), rs.getDouble(6), rs.getDouble(7), rs.getDouble(8), rs.getDouble(9),
+                            rs.getDouble(10), rs.getDouble(11), rs.getDouble(12), rs.getDouble(13));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Ошибка при загрузке таблицы стран из базы данных");
+            e.printStackTrace();
+        }
+        return builder.build();
+    }
+
+    // Таблица стран одного года из country_years в колоночное хранилище, id строк - ключи country_keys.
+    // Показатели, которых нет в выпуске года, равны 0; страны без известного региона попадают в регион
+    // NO_REGION_NAME. Пустая таблица, если данных за год нет
+    public CountryTable loadCountryTable(int year) {
+        CountryTable.Builder builder = new CountryTable.Builder();
+        try (PreparedStatement select = connection.prepareStatement("SELECT y.country_id, k.name, y.region_id, " +
+                "COALESCE(y.happiness_rank, 0), y.happiness_score, COALESCE(y.standard_error, 0), " +
+                "COALESCE(y.economy, 0), COALESCE(y.family, 0), COALESCE(y.health, 0), COALESCE(y.freedom, 0), " +
+                "COALESCE(y.trust, 0), COALESCE(y.generosity, 0), COALESCE(y.dystopia_residual, 0) " +
+                "FROM country_years y JOIN country_keys k ON k.id = y.country_id " +
+                "WHERE y.year = ? ORDER BY y.country_id");
+             Statement stmt = connection.createStatement()) {
+            int maxRegionId = 0;
+            try (ResultSet rs = stmt.executeQuery("SELECT id, name FROM regions")) {
+                while (rs.next()) {
+                    builder.region(rs.getInt(1), rs.getString(2));
+                    maxRegionId = Math.max(maxRegionId, rs.getInt(1));
+                }
+            }
+            int noRegionId = maxRegionId + 1;
+            boolean noRegion = false;
+            select.setInt(1, year);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    int regionId = rs.getInt(3);
+                    if (rs.wasNull()) {
+                        regionId = noRegionId;
+                        if (!noRegion) {
+                            builder.region(noRegionId, NO_REGION_NAME);
+                            noRegion = true;
+                        }
+                    }
+                    builder.add(rs.getInt(1), rs.getString(2), regionId, rs.getInt(4),
+                            rs.getDouble(5), rs.getDouble(6), rs.getDouble(7), rs.getDouble(8), rs.getDouble(9),
+                            rs.getDouble(10), rs.getDouble(11), rs.getDouble(12), rs.getDouble(13));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Ошибка при загрузке данных за " + year + " год из базы данных");
+            e.printStackTrace();
+        }
+        return builder.build();
+    }
+
+    // выражение закрывается вместе с ResultSet, вызывающий код обязан закрыть ResultSet
     public ResultSet executeQuery(String query) {
+        long start = System.nanoTime();
         try {
             Statement stmt = connection.createStatement();
-            return stmt.executeQuery(query);
+            stmt.closeOnCompletion();
+            ResultSet rs = stmt.executeQuery(query);
+            // результат читает вызывающий код, поэтому учитывается только выполнение
+            DatabaseMetrics.literalQueryTimer(query).recordSince(start);
+            return rs;
         } catch (SQLException e) {
             System.out.println("Ошибка при выполнении запроса: " + query);
             e.printStackTrace();
@@ -115,8 +860,96 @@ public class DatabaseManager {
         }
     }
 
+    // параметризованный запрос через кэш подготовленных выражений: ResultSet закрывается
+    // после обработки, а само выражение остается в кэше для повторного использования
+    public <T> T executeQuery(String sql, List<?> params, ResultSetHandler<T> handler) {
+        long start = System.nanoTime();
+        try {
+            PreparedStatement pstmt = statementCache.get(sql);
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                T result = handler.handle(rs);
+                DatabaseMetrics.queryTimer(sql).recordSince(start);
+                return result;
+            }
+        } catch (SQLException e) {
+            statementCache.invalidate(sql);
+            System.out.println("Ошибка при выполнении запроса: " + sql);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // чтение через пул: каждый поток получает свое соединение, без пула используется основное соединение
+    public <T> T executeReadQuery(String sql, List<?> params, ResultSetHandler<T> handler) {
+        if (pool == null || pool.readerCount() == 0) {
+            synchronized (this) {
+                return executeQuery(sql, params, handler);
+            }
+        }
+        ConnectionPool.PooledConnection reader = null;
+        boolean broken = false;
+        try {
+            reader = pool.borrowReader(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            // ожидание соединения учитывается отдельно в db_connection_wait_seconds
+            long start = System.nanoTime();
+            PreparedStatement pstmt = reader.getStatementCache().get(sql);
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                T result = handler.handle(rs);
+                DatabaseMetrics.queryTimer(sql).recordSince(start);
+                return result;
+            }
+        } catch (SQLException e) {
+            // ошибка в SQL или в обработчике не повод заменять исправное соединение
+            broken = reader != null && !ConnectionPool.isHealthy(reader);
+            System.out.println("Ошибка при выполнении запроса: " + sql);
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (reader != null) {
+                pool.release(reader, broken);
+            }
+        }
+    }
+
+    public PoolMetrics getPoolMetrics() {
+        return pool != null ? pool.getMetrics() : null;
+    }
+
+    // список плейсхолдеров для IN (...), например placeholders(3) = "?, ?, ?"
+    public static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append('?');
+        }
+        return sb.toString();
+    }
+
+    @FunctionalInterface
+    public interface ResultSetHandler<T> {
+        T handle(ResultSet rs) throws SQLException;
+    }
+
     public void closeConnection() {
         try {
+            if (pool != null) {
+                System.out.println("Статистика пула соединений: " + pool.getMetrics());
+                // пул закрывает и соединение для записи вместе с его кэшем выражений
+                pool.close();
+                System.out.println("Соединения с базой данных закрыты");
+                return;
+            }
+            if (statementCache != null) {
+                statementCache.closeAll();
+            }
             if (connection != null && !connection.isClosed()) {
                 connection.close();
                 System.out.println("Соединение с базой данных закрыто");
@@ -0,0 +1,57 @@
+package ru.university.database;
+
+import ru.university.metrics.Counter;
+import ru.university.metrics.Histogram;
+import ru.university.metrics.MetricsRegistry;
+import ru.university.metrics.Timer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+// Метрики работы с SQLite. Метка sql - шаблон запроса: текст с плейсхолдерами и схлопнутыми пробелами.
+// Таймеры кэшируются по исходному тексту SQL, чтобы на каждом запросе не строить ключ реестра заново;
+// в кэш попадают только SQL с параметрами, их число ограничено запросами в коде
+final class DatabaseMetrics {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+
+    static final Timer CONNECTION_WAIT = MetricsRegistry.DEFAULT.timer("db_connection_wait_seconds",
+            "Ожидание свободного соединения для чтения в пуле");
+    static final Counter CONNECTION_TIMEOUTS = MetricsRegistry.DEFAULT.counter("db_connection_timeouts_total",
+            "Запросы соединения, не дождавшиеся свободного соединения");
+
+    private static final ConcurrentMap<String, Timer> QUERY_TIMERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Histogram> BATCH_ROWS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Timer> BATCH_TIMERS = new ConcurrentHashMap<>();
+
+    private DatabaseMetrics() {
+    }
+
+    // SQL с параметрами: текст уже является шаблоном
+    static Timer queryTimer(String sql) {
+        return QUERY_TIMERS.computeIfAbsent(sql, key -> MetricsRegistry.DEFAULT.timer("db_query_seconds",
+                "Время выполнения запроса вместе с чтением результата", "sql", template(key)));
+    }
+
+    // SQL без параметров может содержать литералы, они заменяются на ? и кэш не используется
+    static Timer literalQueryTimer(String sql) {
+        String template = STRING_LITERAL.matcher(sql).replaceAll("?");
+        template = NUMBER_LITERAL.matcher(template).replaceAll("?");
+        return MetricsRegistry.DEFAULT.timer("db_query_seconds",
+                "Время выполнения запроса вместе с чтением результата", "sql", template(template));
+    }
+
+    // размер и время одного executeBatch вместе с фиксацией транзакции
+    static void recordBatch(String sql, int rows, long startNanos) {
+        BATCH_ROWS.computeIfAbsent(sql, key -> MetricsRegistry.DEFAULT.histogram("db_batch_rows",
+                "Строк в одном пакете executeBatch", "sql", template(key))).record(rows);
+        BATCH_TIMERS.computeIfAbsent(sql, key -> MetricsRegistry.DEFAULT.timer("db_batch_seconds",
+                "Выполнение пакета и фиксация транзакции", "sql", template(key))).recordSince(startNanos);
+    }
+
+    static String template(String sql) {
+        return WHITESPACE.matcher(sql).replaceAll(" ").trim();
+    }
+}
\ No newline at end of file
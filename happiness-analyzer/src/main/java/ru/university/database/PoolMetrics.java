@@ -0,0 +1,77 @@
+package ru.university.database;
+
+import java.util.Locale;
+
+// Снимок показателей пула соединений для чтения
+public class PoolMetrics {
+    private final int readers;
+    private final int active;
+    private final int idle;
+    private final long checkouts;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+    private final long timeouts;
+    private final long replacedConnections;
+
+    PoolMetrics(int readers, int active, int idle, long checkouts, long totalWaitNanos, long maxWaitNanos,
+                long timeouts, long replacedConnections) {
+        this.readers = readers;
+        this.active = active;
+        this.idle = idle;
+        this.checkouts = checkouts;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+        this.timeouts = timeouts;
+        this.replacedConnections = replacedConnections;
+    }
+
+    public int getReaders() {
+        return readers;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public long getCheckouts() {
+        return checkouts;
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos;
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    public double getAverageWaitMillis() {
+        return checkouts == 0 ? 0 : totalWaitNanos / 1_000_000.0 / checkouts;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getReplacedConnections() {
+        return replacedConnections;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolMetrics{" +
+                "readers=" + readers +
+                ", active=" + active +
+                ", idle=" + idle +
+                ", checkouts=" + checkouts +
+                ", avgWaitMs=" + String.format(Locale.ROOT, "%.3f", getAverageWaitMillis()) +
+                ", maxWaitMs=" + String.format(Locale.ROOT, "%.3f", maxWaitNanos / 1_000_000.0) +
+                ", timeouts=" + timeouts +
+                ", replaced=" + replacedConnections +
+                '}';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package ru.university.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// LRU-кэш подготовленных выражений одного соединения, ключ - текст SQL.
+// Вытесненные выражения закрываются. Кэш не потокобезопасен, как и само соединение.
+class PreparedStatementCache {
+    static final int DEFAULT_CAPACITY = 64;
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    private long hits;
+    private long misses;
+
+    PreparedStatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        int maxSize = capacity > 0 ? capacity : DEFAULT_CAPACITY;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    PreparedStatement get(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            hits++;
+            statement.clearParameters();
+            return statement;
+        }
+        misses++;
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    // убирает выражение из кэша, например после ошибки выполнения
+    void invalidate(String sql) {
+        PreparedStatement statement = statements.remove(sql);
+        if (statement != null) {
+            closeQuietly(statement);
+        }
+    }
+
+    void closeAll() {
+        List<PreparedStatement> toClose = new ArrayList<>(statements.values());
+        statements.clear();
+        for (PreparedStatement statement : toClose) {
+            closeQuietly(statement);
+        }
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.out.println("Ошибка при закрытии подготовленного выражения");
+            e.printStackTrace();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,225 @@
+package ru.university.database;
+
+import ru.university.model.Country;
+import ru.university.model.Metric;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Таблица region_aggregates: на регион количество стран, сумма и сумма квадратов каждого показателя.
+// Записи DatabaseManager в countries обновляют ее в транзакции своего пакета: сначала одним запросом
+// вычитаются строки, которые пакет заменит (INSERT OR REPLACE), затем добавляются изменения по регионам,
+// посчитанные в памяти, - по одному UPSERT на регион вместо триггера на каждую вставленную строку.
+// Прямые UPDATE и DELETE в countries поддерживаются триггерами, прочие вставки в обход DatabaseManager
+// требуют rebuild.
+final class RegionAggregates {
+    private static final Metric[] METRICS = Metric.values();
+
+    static final String SELECT_SQL = selectSql();
+    private static final String SUBTRACT_REPLACED_SQL = subtractReplacedSql();
+    private static final String ADD_SQL = upsertSql(parameters());
+    private static final String ANY_IN_RANGE_SQL = "SELECT EXISTS(SELECT 1 FROM countries WHERE id BETWEEN ? AND ?)";
+
+    private RegionAggregates() {
+    }
+
+    static void createTable(Statement stmt) throws SQLException {
+        StringBuilder table = new StringBuilder("CREATE TABLE IF NOT EXISTS region_aggregates (\n"
+                + " region_id INTEGER PRIMARY KEY,\n"
+                + " row_count INTEGER NOT NULL DEFAULT 0,\n");
+        for (Metric metric : METRICS) {
+            table.append(" sum_").append(metric.getColumn()).append(" REAL NOT NULL DEFAULT 0,\n");
+            table.append(" sq_").append(metric.getColumn()).append(" REAL NOT NULL DEFAULT 0,\n");
+        }
+        table.append(" FOREIGN KEY (region_id) REFERENCES regions(id)\n);");
+        stmt.execute(table.toString());
+
+        // триггер DELETE при INSERT OR REPLACE не срабатывает, пока выключен PRAGMA recursive_triggers (по умолчанию)
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_region_aggregates_update AFTER UPDATE ON countries BEGIN "
+                + "UPDATE region_aggregates SET " + subtractRow("OLD") + " WHERE region_id = OLD.region_id; "
+                + upsertSql(rowValues("NEW")) + "; END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_region_aggregates_delete AFTER DELETE ON countries BEGIN "
+                + "UPDATE region_aggregates SET " + subtractRow("OLD") + " WHERE region_id = OLD.region_id; END");
+    }
+
+    // вызывается в транзакции пакета до его вставки: countries еще содержит заменяемые строки
+    static void applyBatch(Connection connection, List<Country> countries) throws SQLException {
+        // при повторе id внутри пакета в таблице остается последняя строка
+        Map<Integer, Country> lastById = new LinkedHashMap<>(countries.size() * 2);
+        for (Country country : countries) {
+            lastById.put(country.getId(), country);
+        }
+
+        int minId = Integer.MAX_VALUE;
+        int maxId = Integer.MIN_VALUE;
+        StringBuilder ids = new StringBuilder("[");
+        for (int id : lastById.keySet()) {
+            if (ids.length() > 1) {
+                ids.append(',');
+            }
+            ids.append(id);
+            minId = Math.min(minId, id);
+            maxId = Math.max(maxId, id);
+        }
+        ids.append(']');
+        // при первой загрузке заменяемых строк нет: поиск диапазона по первичному ключу
+        // обходится дешевле вычитания, которое стоит около 10 мкс на id пакета
+        if (!lastById.isEmpty() && anyInRange(connection, minId, maxId)) {
+            try (PreparedStatement subtract = connection.prepareStatement(SUBTRACT_REPLACED_SQL)) {
+                subtract.setString(1, ids.toString());
+                subtract.executeUpdate();
+            }
+        }
+
+        // [количество, сумма и сумма квадратов по каждому показателю]
+        Map<Integer, double[]> deltas = new HashMap<>();
+        for (Country country : lastById.values()) {
+            double[] delta = deltas.computeIfAbsent(country.getRegion().getId(), id -> new double[1 + 2 * METRICS.length]);
+            delta[0]++;
+            for (int m = 0; m < METRICS.length; m++) {
+                double value = value(country, METRICS[m]);
+                delta[1 + 2 * m] += value;
+                delta[2 + 2 * m] += value * value;
+            }
+        }
+        try (PreparedStatement add = connection.prepareStatement(ADD_SQL)) {
+            for (Map.Entry<Integer, double[]> entry : deltas.entrySet()) {
+                double[] delta = entry.getValue();
+                add.setInt(1, entry.getKey());
+                add.setLong(2, (long) delta[0]);
+                for (int i = 1; i < delta.length; i++) {
+                    add.setDouble(2 + i, delta[i]);
+                }
+                add.addBatch();
+            }
+            add.executeBatch();
+        }
+    }
+
+    private static boolean anyInRange(Connection connection, int minId, int maxId) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(ANY_IN_RANGE_SQL)) {
+            query.setInt(1, minId);
+            query.setInt(2, maxId);
+            try (ResultSet rs = query.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    // полный пересчет по countries
+    static void rebuild(Statement stmt) throws SQLException {
+        StringBuilder columns = new StringBuilder("region_id, row_count");
+        StringBuilder values = new StringBuilder("region_id, COUNT(*)");
+        for (Metric metric : METRICS) {
+            String column = metric.getColumn();
+            columns.append(", sum_").append(column).append(", sq_").append(column);
+            values.append(", TOTAL(").append(column).append("), TOTAL(").append(column).append(" * ").append(column).append(')');
+        }
+        stmt.execute("DELETE FROM region_aggregates");
+        stmt.execute("INSERT INTO region_aggregates(" + columns + ") SELECT " + values + " FROM countries GROUP BY region_id");
+    }
+
+    // row_count = row_count - 1, sum_x = sum_x - OLD.x, sq_x = sq_x - OLD.x * OLD.x, ...
+    private static String subtractRow(String row) {
+        StringBuilder sql = new StringBuilder("row_count = row_count - 1");
+        for (Metric metric : METRICS) {
+            String value = row + "." + metric.getColumn();
+            String sum = "sum_" + metric.getColumn();
+            String square = "sq_" + metric.getColumn();
+            sql.append(", ").append(sum).append(" = ").append(sum).append(" - ").append(value);
+            sql.append(", ").append(square).append(" = ").append(square).append(" - ").append(value)
+                    .append(" * ").append(value);
+        }
+        return sql.toString();
+    }
+
+    // NEW.region_id, 1, NEW.x, NEW.x * NEW.x, ...
+    private static String rowValues(String row) {
+        StringBuilder values = new StringBuilder(row + ".region_id, 1");
+        for (Metric metric : METRICS) {
+            String value = row + "." + metric.getColumn();
+            values.append(", ").append(value).append(", ").append(value).append(" * ").append(value);
+        }
+        return values.toString();
+    }
+
+    private static String parameters() {
+        StringBuilder values = new StringBuilder("?, ?");
+        for (int m = 0; m < METRICS.length; m++) {
+            values.append(", ?, ?");
+        }
+        return values.toString();
+    }
+
+    // id пакета передаются одним параметром - JSON-массивом, разворачиваемым через json_each
+    private static String subtractReplacedSql() {
+        StringBuilder set = new StringBuilder("row_count = row_count - d.n");
+        StringBuilder select = new StringBuilder("SELECT region_id, COUNT(*) AS n");
+        for (Metric metric : METRICS) {
+            String column = metric.getColumn();
+            set.append(", sum_").append(column).append(" = region_aggregates.sum_").append(column)
+                    .append(" - d.sum_").append(column);
+            set.append(", sq_").append(column).append(" = region_aggregates.sq_").append(column)
+                    .append(" - d.sq_").append(column);
+            select.append(", TOTAL(").append(column).append(") AS sum_").append(column);
+            select.append(", TOTAL(").append(column).append(" * ").append(column).append(") AS sq_").append(column);
+        }
+        return "UPDATE region_aggregates SET " + set + " FROM (" + select
+                + " FROM countries WHERE id IN (SELECT value FROM json_each(?)) GROUP BY region_id) AS d "
+                + "WHERE region_aggregates.region_id = d.region_id";
+    }
+
+    // прибавляет значения к строке региона, строка создается при первой стране региона
+    private static String upsertSql(String values) {
+        StringBuilder columns = new StringBuilder("region_id, row_count");
+        StringBuilder update = new StringBuilder("row_count = row_count + excluded.row_count");
+        for (Metric metric : METRICS) {
+            String sum = "sum_" + metric.getColumn();
+            String square = "sq_" + metric.getColumn();
+            columns.append(", ").append(sum).append(", ").append(square);
+            update.append(", ").append(sum).append(" = ").append(sum).append(" + excluded.").append(sum);
+            update.append(", ").append(square).append(" = ").append(square).append(" + excluded.").append(square);
+        }
+        return "INSERT INTO region_aggregates(" + columns + ") VALUES(" + values + ") "
+                + "ON CONFLICT(region_id) DO UPDATE SET " + update;
+    }
+
+    private static String selectSql() {
+        StringBuilder sql = new StringBuilder("SELECT a.region_id, r.name, a.row_count");
+        for (Metric metric : METRICS) {
+            sql.append(", a.sum_").append(metric.getColumn()).append(", a.sq_").append(metric.getColumn());
+        }
+        return sql + " FROM region_aggregates a JOIN regions r ON r.id = a.region_id "
+                + "WHERE a.row_count > 0 ORDER BY a.region_id";
+    }
+
+    private static double value(Country country, Metric metric) {
+        switch (metric) {
+            case HAPPINESS_SCORE:
+                return country.getHappinessScore();
+            case STANDARD_ERROR:
+                return country.getStandardError();
+            case ECONOMY:
+                return country.getEconomy();
+            case FAMILY:
+                return country.getFamily();
+            case HEALTH:
+                return country.getHealth();
+            case FREEDOM:
+                return country.getFreedom();
+            case TRUST:
+                return country.getTrust();
+            case GENEROSITY:
+                return country.getGenerosity();
+            default:
+                return country.getDystopiaResidual();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package ru.university.generator;
+
+import java.util.SplittableRandom;
+
+// Стандартное нормальное значение из SplittableRandom (в Java 11 у него нет nextGaussian).
+// next - полярный метод Марсальи; второе значение пары отбрасывается, так как генератор
+// создается заново для каждой строки и хранить состояние между вызовами негде
+public final class Gaussian {
+    // 128 слоев равной площади LAYER_AREA под кривой exp(-x^2/2); константы из статьи Марсальи и Цанга (2000)
+    private static final int LAYERS = 128;
+    private static final double TAIL_START = 3.442619855899;
+    private static final double LAYER_AREA = 9.91256303526217e-3;
+    // правые границы слоев по убыванию: LAYER_X[0] - ширина нижнего слоя вместе с хвостом, LAYER_X[LAYERS] = 0
+    private static final double[] LAYER_X = new double[LAYERS + 1];
+    private static final double[] LAYER_F = new double[LAYERS + 1];
+
+    static {
+        LAYER_X[0] = LAYER_AREA / Math.exp(-0.5 * TAIL_START * TAIL_START);
+        LAYER_X[1] = TAIL_START;
+        for (int i = 1; i < LAYERS - 1; i++) {
+            LAYER_X[i + 1] = Math.sqrt(-2 * Math.log(LAYER_AREA / LAYER_X[i] + Math.exp(-0.5 * LAYER_X[i] * LAYER_X[i])));
+        }
+        LAYER_X[LAYERS] = 0;
+        for (int i = 0; i <= LAYERS; i++) {
+            LAYER_F[i] = Math.exp(-0.5 * LAYER_X[i] * LAYER_X[i]);
+        }
+    }
+
+    private Gaussian() {
+    }
+
+    public static double next(SplittableRandom random) {
+        double u;
+        double v;
+        double s;
+        do {
+            u = 2 * random.nextDouble() - 1;
+            v = 2 * random.nextDouble() - 1;
+            s = u * u + v * v;
+        } while (s >= 1 || s == 0);
+        return u * Math.sqrt(-2 * Math.log(s) / s);
+    }
+
+    // заполняет values[0..length) независимыми значениями методом зиккурата (Марсалья и Цанг):
+    // в ~99% случаев значение получается из одного nextLong без логарифмов и корней, поэтому метод
+    // в несколько раз быстрее next для длинных серий (симуляции). Младшие 7 бит выбирают слой,
+    // старшие 53 бита дают координату внутри слоя, так что слой и значение не коррелируют.
+    // next не переведен на зиккурат, чтобы генератор данных давал прежние наборы при том же зерне
+    public static void fill(SplittableRandom random, double[] values, int length) {
+        for (int i = 0; i < length; i++) {
+            values[i] = ziggurat(random);
+        }
+    }
+
+    private static double ziggurat(SplittableRandom random) {
+        while (true) {
+            long bits = random.nextLong();
+            int layer = (int) (bits & (LAYERS - 1));
+            double u = (bits >>> 11) * 0x1.0p-52 - 1.0;
+            double x = u * LAYER_X[layer];
+            if (Math.abs(x) < LAYER_X[layer + 1]) {
+                return x;
+            }
+            if (layer == 0) {
+                return tail(random, u < 0);
+            }
+            double y = LAYER_F[layer + 1] + (LAYER_F[layer] - LAYER_F[layer + 1]) * random.nextDouble();
+            if (y < Math.exp(-0.5 * x * x)) {
+                return x;
+            }
+        }
+    }
+
+    // значения дальше TAIL_START, метод Марсальи для хвоста
+    private static double tail(SplittableRandom random, boolean negative) {
+        double x;
+        double y;
+        do {
+            x = Math.log(random.nextDouble()) / TAIL_START;
+            y = Math.log(random.nextDouble());
+        } while (-2 * y < x * x);
+        return negative ? x - TAIL_START : TAIL_START - x;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,218 @@
+package ru.university.generator;
+
+import ru.university.model.Country;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Модель показателей одного региона: многомерное нормальное распределение факторов
+// (economy, family, health, freedom, trust, generosity, dystopia residual) со средними и разбросом региона
+// и общей корреляцией факторов. Корреляция считается по отклонениям от средних своего региона
+// (объединенная внутригрупповая), поэтому различия между регионами задаются средними,
+// а связь факторов внутри региона - матрицей корреляции; вместе они воспроизводят и общую корреляцию данных.
+final class RegionModel {
+    static final int FACTORS = 7;
+    // в малых регионах (North America - 2 страны) дисперсия сглаживается к общей внутригрупповой
+    private static final double SHRINKAGE = 4;
+    private static final double MIN_STANDARD_ERROR = 0.01;
+
+    private final String name;
+    private final int weight;
+    private final String[] countryNames;
+    private final double[] mean;
+    private final double[] sd;
+    private final double seMean;
+    private final double seSd;
+    // множитель Холецкого матрицы корреляции: z ~ N(0, I) -> L z имеет заданную корреляцию
+    private final double[][] cholesky;
+    // смещение средних за один год, задается при построении моделей (см. withDrift)
+    private final double[] drift;
+
+    private RegionModel(String name, int weight, String[] countryNames, double[] mean, double[] sd,
+                        double seMean, double seSd, double[][] cholesky, double[] drift) {
+        this.name = name;
+        this.weight = weight;
+        this.countryNames = countryNames;
+        this.mean = mean;
+        this.sd = sd;
+        this.seMean = seMean;
+        this.seSd = seSd;
+        this.cholesky = cholesky;
+        this.drift = drift;
+    }
+
+    // модели регионов в порядке первого появления региона в выборке
+    static List<RegionModel> fit(List<Country> sample) {
+        Map<String, List<Country>> byRegion = new LinkedHashMap<>();
+        for (Country country : sample) {
+            byRegion.computeIfAbsent(country.getRegion().getName(), key -> new ArrayList<>()).add(country);
+        }
+
+        // средние регионов и объединенная внутригрупповая ковариация
+        Map<String, double[]> means = new LinkedHashMap<>();
+        double[][] pooled = new double[FACTORS][FACTORS];
+        int degrees = 0;
+        for (Map.Entry<String, List<Country>> entry : byRegion.entrySet()) {
+            double[] mean = new double[FACTORS];
+            for (Country country : entry.getValue()) {
+                double[] x = factors(country);
+                for (int k = 0; k < FACTORS; k++) {
+                    mean[k] += x[k] / entry.getValue().size();
+                }
+            }
+            for (Country country : entry.getValue()) {
+                double[] x = factors(country);
+                for (int a = 0; a < FACTORS; a++) {
+                    for (int b = 0; b < FACTORS; b++) {
+                        pooled[a][b] += (x[a] - mean[a]) * (x[b] - mean[b]);
+                    }
+                }
+            }
+            means.put(entry.getKey(), mean);
+            degrees += entry.getValue().size() - 1;
+        }
+        double[] pooledVariance = new double[FACTORS];
+        for (int k = 0; k < FACTORS; k++) {
+            pooledVariance[k] = degrees > 0 ? pooled[k][k] / degrees : 0;
+        }
+        double[][] cholesky = cholesky(correlation(pooled));
+
+        List<RegionModel> models = new ArrayList<>();
+        for (Map.Entry<String, List<Country>> entry : byRegion.entrySet()) {
+            List<Country> countries = entry.getValue();
+            double[] mean = means.get(entry.getKey());
+            double[] sd = new double[FACTORS];
+            for (int k = 0; k < FACTORS; k++) {
+                double squares = 0;
+                for (Country country : countries) {
+                    double d = factors(country)[k] - mean[k];
+                    squares += d * d;
+                }
+                sd[k] = Math.sqrt((squares + SHRINKAGE * pooledVariance[k]) / (countries.size() - 1 + SHRINKAGE));
+            }
+            double seMean = 0;
+            for (Country country : countries) {
+                seMean += country.getStandardError() / countries.size();
+            }
+            double seSquares = 0;
+            for (Country country : countries) {
+                seSquares += Math.pow(country.getStandardError() - seMean, 2);
+            }
+            String[] names = new String[countries.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = countries.get(i).getName();
+            }
+            models.add(new RegionModel(entry.getKey(), countries.size(), names, mean, sd, seMean,
+                    Math.sqrt(seSquares / Math.max(1, countries.size() - 1)), cholesky, new double[FACTORS]));
+        }
+        return models;
+    }
+
+    // копия модели со смещением средних за год: по каждому фактору нормальное с разбросом driftScale * sd
+    RegionModel withDrift(SplittableRandom random, double driftScale) {
+        double[] yearlyDrift = new double[FACTORS];
+        for (int k = 0; k < FACTORS; k++) {
+            yearlyDrift[k] = Gaussian.next(random) * driftScale * sd[k];
+        }
+        return new RegionModel(name, weight, countryNames, mean, sd, seMean, seSd, cholesky, yearlyDrift);
+    }
+
+    // базовые показатели страны: mean + sd * (L z)
+    void sample(SplittableRandom random, double[] out) {
+        double[] z = new double[FACTORS];
+        for (int k = 0; k < FACTORS; k++) {
+            z[k] = Gaussian.next(random);
+        }
+        for (int a = 0; a < FACTORS; a++) {
+            double correlated = 0;
+            for (int b = 0; b <= a; b++) {
+                correlated += cholesky[a][b] * z[b];
+            }
+            out[a] = mean[a] + sd[a] * correlated;
+        }
+    }
+
+    // показатели страны в году yearIndex: базовые значения, смещение региона и годовой шум
+    void applyYear(SplittableRandom random, int yearIndex, double yearNoise, double[] values) {
+        for (int k = 0; k < FACTORS; k++) {
+            values[k] += yearIndex * drift[k] + Gaussian.next(random) * yearNoise * sd[k];
+        }
+    }
+
+    double sampleStandardError(SplittableRandom random) {
+        return Math.max(MIN_STANDARD_ERROR, seMean + Gaussian.next(random) * seSd);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getWeight() {
+        return weight;
+    }
+
+    String countryName(SplittableRandom random) {
+        return countryNames[random.nextInt(countryNames.length)];
+    }
+
+    static double[] factors(Country country) {
+        return new double[]{country.getEconomy(), country.getFamily(), country.getHealth(), country.getFreedom(),
+                country.getTrust(), country.getGenerosity(), country.getDystopiaResidual()};
+    }
+
+    private static double[][] correlation(double[][] covariance) {
+        double[][] result = new double[FACTORS][FACTORS];
+        for (int a = 0; a < FACTORS; a++) {
+            for (int b = 0; b < FACTORS; b++) {
+                double scale = Math.sqrt(covariance[a][a] * covariance[b][b]);
+                result[a][b] = a == b ? 1 : (scale > 0 ? covariance[a][b] / scale : 0);
+            }
+        }
+        return result;
+    }
+
+    // разложение Холецкого; если матрица не положительно определена из-за округлений,
+    // диагональ немного увеличивается и разложение повторяется
+    static double[][] cholesky(double[][] matrix) {
+        double ridge = 0;
+        while (true) {
+            double[][] l = new double[FACTORS][FACTORS];
+            boolean positive = true;
+            for (int i = 0; i < FACTORS && positive; i++) {
+                for (int j = 0; j <= i; j++) {
+                    double sum = matrix[i][j] + (i == j ? ridge : 0);
+                    for (int k = 0; k < j; k++) {
+                        sum -= l[i][k] * l[j][k];
+                    }
+                    if (i == j) {
+                        if (sum <= 0) {
+                            positive = false;
+                            break;
+                        }
+                        l[i][i] = Math.sqrt(sum);
+                    } else {
+                        l[i][j] = sum / l[j][j];
+                    }
+                }
+            }
+            if (positive) {
+                // строки нормируются, чтобы у L z дисперсия каждого фактора осталась равной 1
+                for (int i = 0; i < FACTORS; i++) {
+                    double norm = 0;
+                    for (int j = 0; j <= i; j++) {
+                        norm += l[i][j] * l[i][j];
+                    }
+                    norm = Math.sqrt(norm);
+                    for (int j = 0; j <= i; j++) {
+                        l[i][j] /= norm;
+                    }
+                }
+                return l;
+            }
+            ridge = ridge == 0 ? 1e-9 : ridge * 10;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,423 @@
+package ru.university.generator;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import ru.university.ingest.CountryRowMapper;
+import ru.university.model.Country;
+import ru.university.model.Region;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Генератор синтетического CSV в формате happiness_data_2015.csv для нагрузочных прогонов и бенчмарков.
+// По реальным данным строится модель каждого региона (RegionModel): доля стран региона, средние и разброс
+// факторов и общая корреляция факторов. Оценка счастья - сумма факторов, как в отчете; ранг - точное место
+// записанной (округленной) оценки среди всех строк файла. Файл пишется в два прохода без сортировки:
+// первый считает гистограмму округленных оценок, второй формирует строки и берет ранг из гистограммы.
+// В памяти только гистограмма (около 10 МБ), поэтому размер файла (до 10^8 строк и больше) не ограничен памятью.
+// Строка i всегда описывает одну и ту же страну: ее генератор зависит только от seed и i, поэтому
+// результат воспроизводим, а в файлах разных лет страна сохраняет регион, имя и базовые показатели.
+public class SyntheticDataGenerator {
+    public static final String HEADER = "Country,Region,Happiness Rank,Happiness Score,Standard Error,"
+            + "Economy (GDP per Capita),Family,Health (Life Expectancy),Freedom,Trust (Government Corruption),"
+            + "Generosity,Dystopia Residual";
+
+    private static final String SOURCE_CSV = "happiness_data_2015.csv";
+    private static final int DECIMALS = 5;
+    // смещение средних региона за год и годовой шум страны, в долях разброса фактора
+    private static final double DRIFT_SCALE = 0.05;
+    private static final double YEAR_NOISE = 0.1;
+    // соль генераторов смещения регионов по годам
+    private static final long RANK_SAMPLE_SALT = 0x5DEECE66DL;
+    // оценки хранятся в гистограмме с шагом 10^-5, как записываются в файл
+    private static final double SCORE_SCALE = 100_000;
+    private static final int INITIAL_SCORE_BINS = 1 << 20;
+    private static final long PROGRESS_ROWS = 10_000_000;
+    private static final int CHUNK_ROWS = 1 << 15;
+
+    private final List<RegionModel> regions;
+    private final double[] cumulativeWeights;
+    private final long seed;
+
+    public SyntheticDataGenerator(List<Country> sample, long seed) {
+        if (sample.isEmpty()) {
+            throw new IllegalArgumentException("Для генерации нужна хотя бы одна страна");
+        }
+        this.regions = RegionModel.fit(sample);
+        this.seed = seed;
+        this.cumulativeWeights = new double[regions.size()];
+        double total = 0;
+        for (int i = 0; i < regions.size(); i++) {
+            total += regions.get(i).getWeight();
+            cumulativeWeights[i] = total;
+        }
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            cumulativeWeights[i] /= total;
+        }
+    }
+
+    public void write(Path file, long rows) throws IOException {
+        write(file, rows, 0);
+    }
+
+    public void write(Writer out, long rows) throws IOException {
+        write(out, rows, 0);
+    }
+
+    public void write(Path file, long rows, int yearIndex) throws IOException {
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+            write(out, rows, yearIndex);
+        }
+    }
+
+    // yearIndex - номер моделируемого года от первого (0): средние регионов смещаются на yearIndex шагов,
+    // к показателям стран добавляется годовой шум.
+    // Строки независимы, поэтому в обоих проходах блоки по CHUNK_ROWS строк считаются параллельно
+    // и обрабатываются по порядку; в памяти одновременно не больше 2 * threads блоков
+    public void write(Writer out, long rows, int yearIndex) throws IOException {
+        List<RegionModel> yearModels = modelsForYear(yearIndex);
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "synthetic-data");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            ScoreRanks ranks = new ScoreRanks();
+            forEachChunk(pool, threads, rows, (from, to) -> scores(yearModels, yearIndex, from, to), ranks::count);
+            ranks.finish();
+
+            out.write(HEADER);
+            out.write('\n');
+            long[] written = {0};
+            forEachChunk(pool, threads, rows, (from, to) -> chunk(yearModels, yearIndex, from, to), lines -> {
+                lines.writeTo(out, ranks);
+                long total = written[0] + lines.rows();
+                if (total / PROGRESS_ROWS > written[0] / PROGRESS_ROWS) {
+                    System.out.printf("- записано строк: %d из %d%n", total, rows);
+                }
+                written[0] = total;
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // блоки [from, to) по CHUNK_ROWS строк считаются в пуле и передаются consumer в порядке строк
+    private static <T> void forEachChunk(ExecutorService pool, int threads, long rows, ChunkTask<T> task,
+                                         ChunkConsumer<T> consumer) throws IOException {
+        Deque<Future<T>> pending = new ArrayDeque<>();
+        for (long from = 0; from < rows; from += CHUNK_ROWS) {
+            long chunkFrom = from;
+            long chunkTo = Math.min(rows, from + CHUNK_ROWS);
+            pending.add(pool.submit(() -> task.run(chunkFrom, chunkTo)));
+            if (pending.size() >= 2 * threads) {
+                consumer.accept(await(pending.poll()));
+            }
+        }
+        while (!pending.isEmpty()) {
+            consumer.accept(await(pending.poll()));
+        }
+    }
+
+    private static <T> T await(Future<T> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Генерация прервана", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Ошибка при генерации строк", e.getCause());
+        }
+    }
+
+    // первый проход: округленные оценки строк [from, to), те же, что запишет второй проход
+    private int[] scores(List<RegionModel> yearModels, int yearIndex, long from, long to) {
+        double[] values = new double[RegionModel.FACTORS];
+        int[] scores = new int[(int) (to - from)];
+        for (long i = from; i < to; i++) {
+            generate(yearModels, new SplittableRandom(mix(seed, i)), i, yearIndex, values);
+            scores[(int) (i - from)] = scaledScore(score(values));
+        }
+        return scores;
+    }
+
+    // второй проход: строки [from, to) без рангов, ранг вставляет писатель в порядке строк файла
+    private Lines chunk(List<RegionModel> yearModels, int yearIndex, long from, long to) {
+        double[] values = new double[RegionModel.FACTORS];
+        int rows = (int) (to - from);
+        int[] scores = new int[rows];
+        int[] rankOffsets = new int[rows];
+        StringBuilder line = new StringBuilder(rows * 110);
+        for (long i = from; i < to; i++) {
+            SplittableRandom countryRandom = new SplittableRandom(mix(seed, i));
+            RegionModel region = generate(yearModels, countryRandom, i, yearIndex, values);
+            double score = score(values);
+            int row = (int) (i - from);
+            scores[row] = scaledScore(score);
+
+            appendField(line, region.countryName(countryRandom)).append(" #").append(i + 1).append(',');
+            appendField(line, region.getName()).append(',');
+            rankOffsets[row] = line.length();
+            line.append(',');
+            appendFixed(line, score).append(',');
+            appendFixed(line, region.sampleStandardError(countryRandom));
+            for (double value : values) {
+                appendFixed(line.append(','), value);
+            }
+            line.append('\n');
+        }
+        char[] text = new char[line.length()];
+        line.getChars(0, line.length(), text, 0);
+        return new Lines(text, rankOffsets, scores);
+    }
+
+    // файлы happiness_data_<год>.csv для years лет начиная с firstYear, возвращает пути файлов
+    public List<Path> writeYears(Path dir, long rows, int firstYear, int years) throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        for (int yearIndex = 0; yearIndex < years; yearIndex++) {
+            Path file = dir.resolve("happiness_data_" + (firstYear + yearIndex) + ".csv");
+            long start = System.nanoTime();
+            write(file, rows, yearIndex);
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            System.out.printf("Файл %s: %d строк за %.1f с (%d строк/с)%n", file, rows, seconds,
+                    seconds > 0 ? Math.round(rows / seconds) : rows);
+            files.add(file);
+        }
+        return files;
+    }
+
+    // регион, имя и показатели строки i в году yearIndex; генератор страны продолжает использоваться
+    // вызывающим кодом для имени и стандартной ошибки
+    private RegionModel generate(List<RegionModel> yearModels, SplittableRandom countryRandom, long i, int yearIndex,
+                                 double[] values) {
+        int regionIndex = pickRegion(countryRandom.nextDouble());
+        RegionModel region = yearModels.get(regionIndex);
+        region.sample(countryRandom, values);
+        if (yearIndex > 0) {
+            region.applyYear(new SplittableRandom(mix(mix(seed, i), yearIndex)), yearIndex, YEAR_NOISE, values);
+        }
+        for (int k = 0; k < values.length; k++) {
+            // вклады факторов в отчете неотрицательны
+            values[k] = Math.max(0, values[k]);
+        }
+        return region;
+    }
+
+    private List<RegionModel> modelsForYear(int yearIndex) {
+        if (yearIndex == 0) {
+            return regions;
+        }
+        // смещение региона одинаково для всех лет одного seed: тренд линейный по годам
+        List<RegionModel> models = new ArrayList<>(regions.size());
+        for (int r = 0; r < regions.size(); r++) {
+            models.add(regions.get(r).withDrift(new SplittableRandom(mix(seed ^ RANK_SAMPLE_SALT, -r - 1)), DRIFT_SCALE));
+        }
+        return models;
+    }
+
+    // Точные ранги по гистограмме округленных оценок: ранг 1 у наибольшей оценки, равные оценки
+    // получают соседние ранги в порядке строк файла, так что ранги образуют перестановку 1..rows
+    private static final class ScoreRanks {
+        // до finish - число строк с оценкой s, после - следующий ранг для оценки s
+        private long[] bins = new long[INITIAL_SCORE_BINS];
+        private int maxScore = -1;
+
+        private void count(int[] scores) {
+            for (int score : scores) {
+                if (score >= bins.length) {
+                    bins = Arrays.copyOf(bins, Math.max(score + 1, 2 * bins.length));
+                }
+                bins[score]++;
+                maxScore = Math.max(maxScore, score);
+            }
+        }
+
+        private void finish() {
+            long above = 0;
+            for (int score = maxScore; score >= 0; score--) {
+                long count = bins[score];
+                bins[score] = above + 1;
+                above += count;
+            }
+        }
+
+        private long next(int score) {
+            return bins[score]++;
+        }
+    }
+
+    // строки блока без рангов: rankOffsets[r] - позиция ранга строки r в text
+    private static final class Lines {
+        private final char[] text;
+        private final int[] rankOffsets;
+        private final int[] scores;
+
+        private Lines(char[] text, int[] rankOffsets, int[] scores) {
+            this.text = text;
+            this.rankOffsets = rankOffsets;
+            this.scores = scores;
+        }
+
+        private int rows() {
+            return scores.length;
+        }
+
+        private void writeTo(Writer out, ScoreRanks ranks) throws IOException {
+            int start = 0;
+            for (int row = 0; row < scores.length; row++) {
+                out.write(text, start, rankOffsets[row] - start);
+                out.write(Long.toString(ranks.next(scores[row])));
+                start = rankOffsets[row];
+            }
+            out.write(text, start, text.length - start);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkTask<T> {
+        T run(long from, long to);
+    }
+
+    @FunctionalInterface
+    private interface ChunkConsumer<T> {
+        void accept(T chunk) throws IOException;
+    }
+
+    private int pickRegion(double u) {
+        int index = Arrays.binarySearch(cumulativeWeights, u);
+        int region = index >= 0 ? index + 1 : -index - 1;
+        return Math.min(region, cumulativeWeights.length - 1);
+    }
+
+    // в отчете оценка счастья - сумма вкладов факторов и остатка антиутопии
+    private static double score(double[] values) {
+        double score = 0;
+        for (double value : values) {
+            score += value;
+        }
+        return score;
+    }
+
+    // SplitMix64 от пары (seed, i): независимые генераторы для каждой строки без общего состояния
+    private static long mix(long seed, long i) {
+        long z = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static StringBuilder appendField(StringBuilder sb, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return sb.append(value);
+        }
+        return sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    // оценка в единицах последнего записываемого знака; факторы неотрицательны, поэтому и оценка
+    private static int scaledScore(double score) {
+        return Math.toIntExact(Math.round(score * SCORE_SCALE));
+    }
+
+    // фиксированное число знаков без String.format: генерация миллионов строк упирается в форматирование
+    private static StringBuilder appendFixed(StringBuilder sb, double value) {
+        long scaled = Math.round(value * 100_000);
+        sb.append(scaled / 100_000).append('.');
+        String fraction = Long.toString(scaled % 100_000);
+        for (int i = fraction.length(); i < DECIMALS; i++) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    // Запуск: java -cp happiness-analyzer-jar-with-dependencies.jar ru.university.generator.SyntheticDataGenerator
+    //   --rows=1000000 [--seed=2015] [--years=2015-2019] [--out=generated] [--source=файл.csv]
+    public static void main(String[] args) throws IOException {
+        long rows = 100_000;
+        long seed = 2015;
+        int firstYear = 2015;
+        int years = 1;
+        Path out = Path.of("generated");
+        Path source = null;
+        for (String arg : args) {
+            if (arg.startsWith("--rows=")) {
+                // допускается запись вида 1e8
+                rows = (long) Double.parseDouble(arg.substring("--rows=".length()).replace("_", ""));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.startsWith("--years=")) {
+                String[] range = arg.substring("--years=".length()).split("-");
+                firstYear = Integer.parseInt(range[0]);
+                years = range.length > 1 ? Integer.parseInt(range[1]) - firstYear + 1 : 1;
+            } else if (arg.startsWith("--out=")) {
+                out = Path.of(arg.substring("--out=".length()));
+            } else if (arg.startsWith("--source=")) {
+                source = Path.of(arg.substring("--source=".length()));
+            } else {
+                System.out.println("Неизвестный параметр: " + arg);
+                return;
+            }
+        }
+        if (rows <= 0 || years <= 0) {
+            System.out.println("Число строк и лет должно быть положительным");
+            return;
+        }
+
+        List<Country> sample = readSample(source);
+        System.out.printf("Исходная выборка: %d стран; генерация %d строк x %d лет, seed %d%n",
+                sample.size(), rows, years, seed);
+        new SyntheticDataGenerator(sample, seed).writeYears(out, rows, firstYear, years);
+    }
+
+    private static List<Country> readSample(Path source) throws IOException {
+        List<Country> countries = new ArrayList<>();
+        Map<String, Region> regionsMap = new HashMap<>();
+        CountryRowMapper mapper = new CountryRowMapper(regionsMap);
+        try (Reader reader = source != null ? Files.newBufferedReader(source, StandardCharsets.UTF_8) : resourceReader();
+             CSVReader csv = new CSVReader(reader)) {
+            csv.readNext();
+            String[] row;
+            while ((row = csv.readNext()) != null) {
+                try {
+                    Country country = mapper.map(row);
+                    if (country != null) {
+                        countries.add(country);
+                    }
+                } catch (RuntimeException e) {
+                    System.out.println("Пропущена строка исходной выборки: " + Arrays.toString(row));
+                }
+            }
+        } catch (CsvValidationException e) {
+            throw new IOException("Ошибка формата исходного CSV", e);
+        }
+        return countries;
+    }
+
+    private static Reader resourceReader() throws IOException {
+        InputStream in = SyntheticDataGenerator.class.getClassLoader().getResourceAsStream(SOURCE_CSV);
+        if (in == null) {
+            throw new IOException("Ресурс не найден: " + SOURCE_CSV);
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package ru.university.ingest;
+
+import ru.university.model.Country;
+import ru.university.model.Region;
+
+import java.util.Map;
+
+// преобразует строку CSV в объект Country и ведет словарь регионов без дублирования
+public class CountryRowMapper {
+    public static final int MIN_COLUMNS = 12;
+
+    private final Map<String, Region> regionsMap;
+    private int regionCounter;
+    private int countryCounter;
+
+    public CountryRowMapper(Map<String, Region> regionsMap) {
+        this.regionsMap = regionsMap;
+        this.regionCounter = regionsMap.size() + 1;
+        this.countryCounter = 1;
+    }
+
+    // возвращает null если в строке недостаточно данных, при ошибке формата бросает исключение
+    public Country map(String[] row) {
+        if (row.length < MIN_COLUMNS) {
+            return null;
+        }
+
+        // Извлекаем данные из CSv
+        String countryName = row[0];
+        String regionName = row[1];
+        int happinessRank = Integer.parseInt(row[2]);
+        double happinessScore = Double.parseDouble(row[3]);
+        double standardError = Double.parseDouble(row[4]);
+        double economy = Double.parseDouble(row[5]);
+        double family = Double.parseDouble(row[6]);
+        double health = Double.parseDouble(row[7]);
+        double freedom = Double.parseDouble(row[8]);
+        double trust = Double.parseDouble(row[9]);
+        double generosity = Double.parseDouble(row[10]);
+        double dystopiaResidual = Double.parseDouble(row[11]);
+
+        // проверяем существует ли регион
+        Region region = regionsMap.get(regionName);
+        if (region == null) {
+            region = new Region(regionCounter++, regionName);
+            regionsMap.put(regionName, region);
+        }
+
+        return new Country(
+                countryCounter++,
+                countryName,
+                region,
+                happinessRank,
+                happinessScore,
+                standardError,
+                economy,
+                family,
+                health,
+                freedom,
+                trust,
+                generosity,
+                dystopiaResidual
+        );
+    }
+}
\ No newline at end of file
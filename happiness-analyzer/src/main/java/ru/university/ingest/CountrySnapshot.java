@@ -0,0 +1,319 @@
+package ru.university.ingest;
+
+import ru.university.model.CountryTable;
+import ru.university.model.Metric;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// Бинарный снимок разобранных данных (колоночной CountryTable) для быстрого запуска без разбора CSV.
+// Формат, little-endian:
+//   заголовок HEADER_SIZE байт - магическое число, версия формата, размер и CRC32C исходного CSV,
+//   количество строк, регионов, названий стран и показателей, длина блока строк, CRC32C всех данных после заголовка;
+//   блок строк - названия показателей, регионов и словарь названий стран (длина в байтах и UTF-8, null - длина -1);
+//   столбцы целиком: id, номер названия, ранг, id региона (int), затем показатели в порядке Metric (double).
+// Снимок подходит, если совпадают версия формата, порядок показателей, размер и контрольная сумма CSV.
+// При загрузке столбцы отображаются в память окнами и копируются в массивы одной операцией на окно
+public final class CountrySnapshot {
+    // 2: id строк - постоянные ключи стран из country_keys
+    public static final int FORMAT_VERSION = 2;
+
+    private static final int MAGIC = 0x48415053; // "HAPS"
+    private static final int HEADER_SIZE = 64;
+    private static final int WINDOW = 64 * 1024 * 1024;
+    private static final Metric[] METRICS = Metric.values();
+
+    private CountrySnapshot() {
+    }
+
+    // размер и CRC32C исходного файла; по ним проверяется, что снимок построен из того же CSV
+    public static final class Source {
+        private final long size;
+        private final long checksum;
+
+        private Source(long size, long checksum) {
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        public static Source of(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return new Source(channel.size(), checksum(channel, 0, channel.size()));
+            }
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getChecksum() {
+            return checksum;
+        }
+    }
+
+    // файл пишется во временный и атомарно переименовывается, поэтому оборванная запись не оставляет
+    // снимок, который прошел бы проверку
+    public static void write(Path file, CountryTable table, Source source) throws IOException {
+        String[] metricNames = new String[METRICS.length];
+        for (int m = 0; m < METRICS.length; m++) {
+            metricNames[m] = METRICS[m].getColumn();
+        }
+        String[] regionNames = new String[table.regionIdBound()];
+        for (int id = 0; id < regionNames.length; id++) {
+            regionNames[id] = table.getRegionName(id);
+        }
+        byte[] strings = encodeStrings(metricNames, regionNames, table.nameDictionary());
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = dir.resolve("." + file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                Output out = new Output(channel, HEADER_SIZE);
+                out.putBytes(strings);
+                out.putInts(table.idColumn());
+                out.putInts(table.nameIdColumn());
+                out.putInts(table.rankColumn());
+                out.putInts(table.regionIdColumn());
+                for (Metric metric : METRICS) {
+                    out.putDoubles(table.column(metric));
+                }
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(FORMAT_VERSION)
+                        .putLong(source.size).putLong(source.checksum)
+                        .putInt(table.size()).putInt(regionNames.length).putInt(table.nameDictionary().length)
+                        .putInt(METRICS.length).putLong(strings.length).putLong(out.crc.getValue());
+                header.clear();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // таблица из снимка или null, если снимка нет, он построен по другому CSV или поврежден (причина печатается)
+    public static CountryTable load(Path file, Source source) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                System.out.println("Снимок данных поврежден: файл короче заголовка");
+                return null;
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                System.out.println("Снимок данных записан в другом формате");
+                return null;
+            }
+            if (header.getLong() != source.size || header.getLong() != source.checksum) {
+                System.out.println("CSV файл изменился после записи снимка данных");
+                return null;
+            }
+            int rows = header.getInt();
+            int regionCount = header.getInt();
+            int dictionarySize = header.getInt();
+            int metricCount = header.getInt();
+            long stringsLength = header.getLong();
+            long payloadChecksum = header.getLong();
+            if (rows < 0 || regionCount < 0 || dictionarySize < 0 || metricCount != METRICS.length
+                    || stringsLength < 0 || stringsLength > Integer.MAX_VALUE
+                    || fileSize != HEADER_SIZE + stringsLength + rows * (4L * 4 + 8L * metricCount)) {
+                System.out.println("Снимок данных поврежден: размеры в заголовке не совпадают с файлом");
+                return null;
+            }
+            if (checksum(channel, HEADER_SIZE, fileSize - HEADER_SIZE) != payloadChecksum) {
+                System.out.println("Снимок данных поврежден: контрольная сумма не совпадает");
+                return null;
+            }
+
+            ByteBuffer strings = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, stringsLength)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            for (Metric metric : METRICS) {
+                if (!metric.getColumn().equals(readString(strings))) {
+                    System.out.println("Снимок данных записан с другим набором показателей");
+                    return null;
+                }
+            }
+            String[] regionNames = new String[regionCount];
+            for (int id = 0; id < regionCount; id++) {
+                regionNames[id] = readString(strings);
+            }
+            String[] dictionary = new String[dictionarySize];
+            for (int i = 0; i < dictionarySize; i++) {
+                dictionary[i] = readString(strings);
+            }
+
+            long position = HEADER_SIZE + stringsLength;
+            int[] ids = readInts(channel, position, rows);
+            position += 4L * rows;
+            int[] nameIds = readInts(channel, position, rows);
+            position += 4L * rows;
+            int[] ranks = readInts(channel, position, rows);
+            position += 4L * rows;
+            int[] regionIds = readInts(channel, position, rows);
+            position += 4L * rows;
+            double[][] metrics = new double[METRICS.length][];
+            for (int m = 0; m < METRICS.length; m++) {
+                metrics[m] = readDoubles(channel, position, rows);
+                position += 8L * rows;
+            }
+
+            CountryTable table;
+            try {
+                table = CountryTable.fromColumns(ids, nameIds, dictionary, ranks, regionIds, regionNames, metrics);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Снимок данных поврежден: " + e.getMessage());
+                return null;
+            }
+            IngestMetrics.recordParse("snapshot", rows, 0, System.nanoTime() - start);
+            return table;
+        }
+    }
+
+    private static long checksum(FileChannel channel, long position, long length) throws IOException {
+        CRC32C crc = new CRC32C();
+        long end = position + length;
+        while (position < end) {
+            int window = (int) Math.min(WINDOW, end - position);
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, window));
+            position += window;
+        }
+        return crc.getValue();
+    }
+
+    private static int[] readInts(FileChannel channel, long position, int count) throws IOException {
+        int[] values = new int[count];
+        int offset = 0;
+        while (offset < count) {
+            int n = Math.min(WINDOW / 4, count - offset);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position + 4L * offset, 4L * n);
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values, offset, n);
+            offset += n;
+        }
+        return values;
+    }
+
+    private static double[] readDoubles(FileChannel channel, long position, int count) throws IOException {
+        double[] values = new double[count];
+        int offset = 0;
+        while (offset < count) {
+            int n = Math.min(WINDOW / 8, count - offset);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position + 8L * offset, 8L * n);
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values, offset, n);
+            offset += n;
+        }
+        return values;
+    }
+
+    private static byte[] encodeStrings(String[]... groups) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] length = new byte[4];
+        for (String[] group : groups) {
+            for (String value : group) {
+                byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer.wrap(length).order(ByteOrder.LITTLE_ENDIAN).putInt(bytes == null ? -1 : bytes.length);
+                out.write(length);
+                if (bytes != null) {
+                    out.write(bytes);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // буферизованная запись столбцов в канал с подсчетом CRC32C записанных байтов
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+        private long position;
+
+        private Output(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        private void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int n = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, n);
+                offset += n;
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+            }
+        }
+
+        private void putInts(int[] values) throws IOException {
+            int offset = 0;
+            while (offset < values.length) {
+                int n = Math.min(buffer.remaining() / 4, values.length - offset);
+                if (n == 0) {
+                    flush();
+                    continue;
+                }
+                buffer.asIntBuffer().put(values, offset, n);
+                buffer.position(buffer.position() + 4 * n);
+                offset += n;
+            }
+        }
+
+        private void putDoubles(double[] values) throws IOException {
+            int offset = 0;
+            while (offset < values.length) {
+                int n = Math.min(buffer.remaining() / 8, values.length - offset);
+                if (n == 0) {
+                    flush();
+                    continue;
+                }
+                buffer.asDoubleBuffer().put(values, offset, n);
+                buffer.position(buffer.position() + 8 * n);
+                offset += n;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
\ No newline at end of file
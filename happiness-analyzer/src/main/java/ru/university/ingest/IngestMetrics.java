@@ -0,0 +1,17 @@
+package ru.university.ingest;
+
+import ru.university.metrics.MetricsRegistry;
+
+// Метрики разбора CSV, метка parser - способ разбора (opencsv, mmap, stream, yearly).
+// Скорость в строках в секунду: csv_rows_total / csv_parse_seconds_sum
+public final class IngestMetrics {
+    private IngestMetrics() {
+    }
+
+    public static void recordParse(String parser, int validRows, int invalidRows, long elapsedNanos) {
+        MetricsRegistry registry = MetricsRegistry.DEFAULT;
+        registry.counter("csv_rows_total", "Корректно разобранные строки CSV", "parser", parser).add(validRows);
+        registry.counter("csv_invalid_rows_total", "Пропущенные строки CSV", "parser", parser).add(invalidRows);
+        registry.timer("csv_parse_seconds", "Время разбора CSV файла", "parser", parser).record(elapsedNanos);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,342 @@
+package ru.university.ingest;
+
+import com.opencsv.CSVParser;
+import ru.university.model.Country;
+import ru.university.model.Region;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Параллельный разбор больших CSV: файл отображается в память через FileChannel.map,
+// делится на фрагменты по границам строк, фрагменты разбираются в ForkJoinPool.
+// Числа читаются прямо из байтов, без создания промежуточных строк.
+// Строки с кавычками разбираются через CSVParser из OpenCSV.
+// Ограничение: переводы строк внутри полей в кавычках не поддерживаются.
+public class MappedCsvParser {
+    public static final long DEFAULT_CHUNK_SIZE = 32L * 1024 * 1024;
+
+    // средняя длина строки в исходном файле, используется для оценки емкости фрагмента
+    private static final int ESTIMATED_LINE_LENGTH = 100;
+    private static final int MAX_FIELDS = 32;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+    private boolean buildSketches;
+
+    public MappedCsvParser() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public MappedCsvParser(ForkJoinPool pool, long chunkSize) {
+        this.pool = pool;
+        // размер одного отображения не может превышать Integer.MAX_VALUE
+        this.chunkSize = Math.max(1024, Math.min(chunkSize, Integer.MAX_VALUE - 1024 * 1024));
+    }
+
+    // строить эскизы для приближенных отчетов (см. ParsedData.getSketches) в задачах разбора фрагментов
+    public void setBuildSketches(boolean buildSketches) {
+        this.buildSketches = buildSketches;
+    }
+
+    public ParsedData parse(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<long[]> bounds = splitAtLineBoundaries(channel);
+            List<ParsedChunk> chunks = new ArrayList<>(bounds.size());
+            List<ChunkTask> tasks = new ArrayList<>(bounds.size());
+            for (int i = 0; i < bounds.size(); i++) {
+                long[] range = bounds.get(i);
+                int expectedRows = (int) Math.min(Integer.MAX_VALUE - 8, (range[1] - range[0]) / ESTIMATED_LINE_LENGTH);
+                ParsedChunk chunk = new ParsedChunk(i, expectedRows);
+                chunks.add(chunk);
+                tasks.add(new ChunkTask(channel, range[0], range[1], chunk, buildSketches));
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+            ParsedData data = ParsedData.merge(chunks, System.nanoTime() - start);
+            IngestMetrics.recordParse("mmap", data.getValidRows(), data.getInvalidRows(), data.getElapsedNanos());
+            return data;
+        }
+    }
+
+    // удобная обертка с той же семантикой, что и Main.parseCSVFile
+    public ParsedData parse(Path file, List<Country> countries, Map<String, Region> regionsMap) throws IOException {
+        ParsedData data = parse(file);
+        data.toCountries(countries, regionsMap);
+        System.out.println("\nCSV файл успешно обработан (параллельный разбор):");
+        System.out.println("- Количество корректно обработанных строк: " + data.getValidRows());
+        System.out.println("- Количество ошибочных строк: " + data.getInvalidRows());
+        System.out.println("- Всего стран: " + countries.size());
+        System.out.println("- Всего уникальных регионов: " + regionsMap.size());
+        System.out.println("- Фрагментов: " + data.getChunks().size());
+        System.out.printf("- Скорость разбора: %d строк/с%n", data.getRowsPerSecond());
+        return data;
+    }
+
+    // делит файл на диапазоны [start, end), каждая граница сдвигается до ближайшего перевода строки
+    private List<long[]> splitAtLineBoundaries(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        List<long[]> bounds = new ArrayList<>();
+        // первая строка - заголовок
+        long start = findLineEnd(channel, 0, fileSize);
+        while (start < fileSize) {
+            long end = start + chunkSize >= fileSize ? fileSize : findLineEnd(channel, start + chunkSize, fileSize);
+            bounds.add(new long[]{start, end});
+            start = end;
+        }
+        return bounds;
+    }
+
+    // возвращает позицию сразу после ближайшего '\n' начиная с from, либо конец файла
+    private static long findLineEnd(FileChannel channel, long from, long fileSize) throws IOException {
+        long position = from;
+        while (position < fileSize) {
+            int window = (int) Math.min(64 * 1024, fileSize - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+            for (int i = 0; i < window; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += window;
+        }
+        return fileSize;
+    }
+
+    private static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final ParsedChunk chunk;
+        private final boolean buildSketches;
+
+        private ChunkTask(FileChannel channel, long start, long end, ParsedChunk chunk, boolean buildSketches) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.chunk = chunk;
+            this.buildSketches = buildSketches;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                new ChunkParser(chunk).parse(buffer);
+                if (buildSketches) {
+                    chunk.buildSketches();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Ошибка при отображении фрагмента файла", e);
+            }
+        }
+    }
+
+    // разбор строк одного фрагмента; буферы переиспользуются для всех строк
+    private static final class ChunkParser {
+        private final ParsedChunk chunk;
+        private final int[] fieldStarts = new int[MAX_FIELDS];
+        private final int[] fieldEnds = new int[MAX_FIELDS];
+        private final double[] values = new double[ParsedChunk.METRIC_COUNT];
+        private byte[] line = new byte[512];
+        private CSVParser quotedParser;
+
+        private ChunkParser(ParsedChunk chunk) {
+            this.chunk = chunk;
+        }
+
+        private void parse(MappedByteBuffer buffer) {
+            int limit = buffer.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                boolean quoted = false;
+                byte b;
+                while (lineEnd < limit && (b = buffer.get(lineEnd)) != '\n') {
+                    if (b == '"') {
+                        quoted = true;
+                    }
+                    lineEnd++;
+                }
+                int next = lineEnd + 1;
+                if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+
+                int length = lineEnd - lineStart;
+                if (length > line.length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                buffer.position(lineStart);
+                buffer.get(line, 0, length);
+
+                try {
+                    if (quoted) {
+                        parseQuoted(new String(line, 0, length, StandardCharsets.UTF_8));
+                    } else {
+                        parseLine(length);
+                    }
+                } catch (NumberFormatException | IOException e) {
+                    chunk.markInvalid();
+                }
+                lineStart = next;
+            }
+        }
+
+        private void parseLine(int length) {
+            int fields = 0;
+            int fieldStart = 0;
+            for (int i = 0; i <= length && fields < MAX_FIELDS; i++) {
+                if (i == length || line[i] == ',') {
+                    fieldStarts[fields] = fieldStart;
+                    fieldEnds[fields] = i;
+                    fields++;
+                    fieldStart = i + 1;
+                }
+            }
+            if (fields < CountryRowMapper.MIN_COLUMNS) {
+                chunk.markInvalid();
+                return;
+            }
+
+            int rank = parseInt(line, fieldStarts[2], fieldEnds[2]);
+            for (int m = 0; m < ParsedChunk.METRIC_COUNT; m++) {
+                values[m] = parseDouble(line, fieldStarts[m + 3], fieldEnds[m + 3]);
+            }
+            int regionId = chunk.localRegionId(line, fieldStarts[1], fieldEnds[1]);
+            String name = new String(line, fieldStarts[0], fieldEnds[0] - fieldStarts[0], StandardCharsets.UTF_8);
+            storeRow(name, regionId, rank);
+        }
+
+        private void parseQuoted(String text) throws IOException {
+            if (quotedParser == null) {
+                quotedParser = new CSVParser();
+            }
+            String[] fields = quotedParser.parseLine(text);
+            if (fields.length < CountryRowMapper.MIN_COLUMNS) {
+                chunk.markInvalid();
+                return;
+            }
+            int rank = Integer.parseInt(fields[2]);
+            for (int m = 0; m < ParsedChunk.METRIC_COUNT; m++) {
+                values[m] = Double.parseDouble(fields[m + 3]);
+            }
+            storeRow(fields[0], chunk.localRegionId(fields[1]), rank);
+        }
+
+        private void storeRow(String name, int regionId, int rank) {
+            int row = chunk.addRow(name, regionId, rank);
+            for (int m = 0; m < ParsedChunk.METRIC_COUNT; m++) {
+                chunk.setMetric(row, m, values[m]);
+            }
+        }
+    }
+
+    static int parseInt(byte[] bytes, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException("Пустое значение");
+        }
+        boolean negative = false;
+        int i = from;
+        if (bytes[i] == '-' || bytes[i] == '+') {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        if (i == to || to - i > 9) {
+            // слишком длинные значения разбираются стандартным способом
+            return Integer.parseInt(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Некорректное целое число: "
+                        + new String(bytes, from, to - from, StandardCharsets.UTF_8));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // быстрый путь для записи вида [+-]digits[.digits][e[+-]digits] с не более чем 15 значащими цифрами;
+    // мантисса и степень десяти представимы точно, поэтому одно деление дает корректно округленный результат
+    static double parseDouble(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < to; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (mantissa != 0 || b != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        int exponent = 0;
+        if (i < to && (bytes[i] == 'e' || bytes[i] == 'E') && seenDigit) {
+            int j = i + 1;
+            boolean negativeExponent = false;
+            if (j < to && (bytes[j] == '-' || bytes[j] == '+')) {
+                negativeExponent = bytes[j] == '-';
+                j++;
+            }
+            int expStart = j;
+            for (; j < to && bytes[j] >= '0' && bytes[j] <= '9' && j - expStart < 4; j++) {
+                exponent = exponent * 10 + (bytes[j] - '0');
+            }
+            if (j > expStart) {
+                i = j;
+                exponent = negativeExponent ? -exponent : exponent;
+            }
+        }
+        int scale = exponent - fractionDigits;
+        if (i != to || !seenDigit || digits > 15 || Math.abs(scale) >= POWERS_OF_TEN.length) {
+            // все остальное (пробелы, NaN, длинные мантиссы) - через стандартный разбор
+            return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+        }
+        double value = mantissa;
+        if (scale < 0) {
+            value /= POWERS_OF_TEN[-scale];
+        } else if (scale > 0) {
+            value *= POWERS_OF_TEN[scale];
+        }
+        return negative ? -value : value;
+    }
+}
\ No newline at end of file
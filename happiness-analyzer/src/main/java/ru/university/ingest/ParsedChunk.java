@@ -0,0 +1,147 @@
+package ru.university.ingest;
+
+import ru.university.sketch.SketchIndex;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Результат разбора одного фрагмента файла: столбцы примитивов и локальный словарь регионов.
+// Локальные id регионов переводятся в глобальные при слиянии фрагментов (см. MappedCsvParser).
+public class ParsedChunk {
+    // порядок числовых столбцов совпадает с порядком колонок CSV начиная с Happiness Score и с Metric.ordinal()
+    public static final int HAPPINESS_SCORE = 0;
+    public static final int STANDARD_ERROR = 1;
+    public static final int ECONOMY = 2;
+    public static final int FAMILY = 3;
+    public static final int HEALTH = 4;
+    public static final int FREEDOM = 5;
+    public static final int TRUST = 6;
+    public static final int GENEROSITY = 7;
+    public static final int DYSTOPIA_RESIDUAL = 8;
+    public static final int METRIC_COUNT = 9;
+
+    private final int index;
+    private int size;
+    private int invalidRows;
+    private String[] names;
+    private int[] ranks;
+    private int[] localRegionIds;
+    private final double[][] metrics = new double[METRIC_COUNT][];
+
+    private final List<byte[]> localRegionBytes = new ArrayList<>();
+    private final List<String> localRegionNames = new ArrayList<>();
+    private int[] globalRegionIds = new int[0];
+    // эскизы фрагмента (MappedCsvParser.setBuildSketches), строятся в потоке разбора фрагмента
+    private SketchIndex sketches;
+
+    ParsedChunk(int index, int expectedRows) {
+        this.index = index;
+        int capacity = Math.max(16, expectedRows);
+        names = new String[capacity];
+        ranks = new int[capacity];
+        localRegionIds = new int[capacity];
+        for (int m = 0; m < METRIC_COUNT; m++) {
+            metrics[m] = new double[capacity];
+        }
+    }
+
+    // добавляет строку и возвращает ее позицию, числовые значения заполняет вызывающий код через setMetric
+    int addRow(String name, int localRegionId, int rank) {
+        if (size == names.length) {
+            int capacity = size * 2;
+            names = Arrays.copyOf(names, capacity);
+            ranks = Arrays.copyOf(ranks, capacity);
+            localRegionIds = Arrays.copyOf(localRegionIds, capacity);
+            for (int m = 0; m < METRIC_COUNT; m++) {
+                metrics[m] = Arrays.copyOf(metrics[m], capacity);
+            }
+        }
+        names[size] = name;
+        localRegionIds[size] = localRegionId;
+        ranks[size] = rank;
+        return size++;
+    }
+
+    void setMetric(int row, int metric, double value) {
+        metrics[metric][row] = value;
+    }
+
+    void markInvalid() {
+        invalidRows++;
+    }
+
+    // ищет регион в локальном словаре по байтам без создания строки
+    int localRegionId(byte[] source, int from, int to) {
+        int length = to - from;
+        for (int i = 0; i < localRegionBytes.size(); i++) {
+            byte[] candidate = localRegionBytes.get(i);
+            if (candidate.length == length && Arrays.equals(candidate, 0, length, source, from, to)) {
+                return i;
+            }
+        }
+        byte[] copy = Arrays.copyOfRange(source, from, to);
+        localRegionBytes.add(copy);
+        localRegionNames.add(new String(copy, StandardCharsets.UTF_8));
+        return localRegionBytes.size() - 1;
+    }
+
+    int localRegionId(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return localRegionId(bytes, 0, bytes.length);
+    }
+
+    // эскизы ключуются названием региона, поэтому их можно строить до перевода id регионов в глобальные
+    void buildSketches() {
+        SketchIndex index = new SketchIndex(this.index);
+        double[] values = new double[METRIC_COUNT];
+        for (int row = 0; row < size; row++) {
+            for (int m = 0; m < METRIC_COUNT; m++) {
+                values[m] = metrics[m][row];
+            }
+            index.add(localRegionNames.get(localRegionIds[row]), names[row], ranks[row], values);
+        }
+        sketches = index;
+    }
+
+    SketchIndex getSketches() {
+        return sketches;
+    }
+
+    void setGlobalRegionIds(int[] globalRegionIds) {
+        this.globalRegionIds = globalRegionIds;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getInvalidRows() {
+        return invalidRows;
+    }
+
+    public String getName(int row) {
+        return names[row];
+    }
+
+    public int getRank(int row) {
+        return ranks[row];
+    }
+
+    public double getMetric(int row, int metric) {
+        return metrics[metric][row];
+    }
+
+    public int getGlobalRegionId(int row) {
+        return globalRegionIds[localRegionIds[row]];
+    }
+
+    List<String> getLocalRegionNames() {
+        return localRegionNames;
+    }
+}
\ No newline at end of file
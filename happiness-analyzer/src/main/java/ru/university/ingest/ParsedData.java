@@ -0,0 +1,145 @@
+package ru.university.ingest;
+
+import ru.university.model.Country;
+import ru.university.model.CountryTable;
+import ru.university.model.Region;
+import ru.university.sketch.SketchIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Объединенный результат параллельного разбора: фрагменты в порядке следования в файле
+// и глобальный словарь регионов. Id регионов и стран совпадают с теми, что выдает Main.parseCSVFile.
+public class ParsedData {
+    private final List<ParsedChunk> chunks;
+    private final Map<String, Region> regions;
+    private final int validRows;
+    private final int invalidRows;
+    private final long elapsedNanos;
+    private SketchIndex sketches;
+
+    private ParsedData(List<ParsedChunk> chunks, Map<String, Region> regions, int validRows, int invalidRows,
+                       long elapsedNanos) {
+        this.chunks = chunks;
+        this.regions = regions;
+        this.validRows = validRows;
+        this.invalidRows = invalidRows;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // фрагменты сливаются по порядку, поэтому регионы получают id в порядке первого появления в файле
+    static ParsedData merge(List<ParsedChunk> chunks, long elapsedNanos) {
+        Map<String, Region> regions = new LinkedHashMap<>();
+        int validRows = 0;
+        int invalidRows = 0;
+        for (ParsedChunk chunk : chunks) {
+            List<String> localNames = chunk.getLocalRegionNames();
+            int[] globalIds = new int[localNames.size()];
+            for (int local = 0; local < localNames.size(); local++) {
+                String name = localNames.get(local);
+                Region region = regions.get(name);
+                if (region == null) {
+                    region = new Region(regions.size() + 1, name);
+                    regions.put(name, region);
+                }
+                globalIds[local] = region.getId();
+            }
+            chunk.setGlobalRegionIds(globalIds);
+            validRows += chunk.size();
+            invalidRows += chunk.getInvalidRows();
+        }
+        return new ParsedData(Collections.unmodifiableList(chunks), regions, validRows, invalidRows, elapsedNanos);
+    }
+
+    public void toCountries(List<Country> countries, Map<String, Region> regionsMap) {
+        regionsMap.putAll(regions);
+        Region[] byId = getRegionsById();
+        int countryId = 1;
+        for (ParsedChunk chunk : chunks) {
+            for (int row = 0; row < chunk.size(); row++) {
+                countries.add(new Country(
+                        countryId++,
+                        chunk.getName(row),
+                        byId[chunk.getGlobalRegionId(row)],
+                        chunk.getRank(row),
+                        chunk.getMetric(row, ParsedChunk.HAPPINESS_SCORE),
+                        chunk.getMetric(row, ParsedChunk.STANDARD_ERROR),
+                        chunk.getMetric(row, ParsedChunk.ECONOMY),
+                        chunk.getMetric(row, ParsedChunk.FAMILY),
+                        chunk.getMetric(row, ParsedChunk.HEALTH),
+                        chunk.getMetric(row, ParsedChunk.FREEDOM),
+                        chunk.getMetric(row, ParsedChunk.TRUST),
+                        chunk.getMetric(row, ParsedChunk.GENEROSITY),
+                        chunk.getMetric(row, ParsedChunk.DYSTOPIA_RESIDUAL)
+                ));
+            }
+        }
+    }
+
+    // колоночная таблица строится прямо из столбцов фрагментов, без промежуточных объектов Country
+    public CountryTable toCountryTable() {
+        CountryTable.Builder builder = new CountryTable.Builder(validRows);
+        for (Region region : regions.values()) {
+            builder.region(region.getId(), region.getName());
+        }
+        double[] values = new double[ParsedChunk.METRIC_COUNT];
+        int countryId = 1;
+        for (ParsedChunk chunk : chunks) {
+            for (int row = 0; row < chunk.size(); row++) {
+                for (int m = 0; m < ParsedChunk.METRIC_COUNT; m++) {
+                    values[m] = chunk.getMetric(row, m);
+                }
+                builder.add(countryId++, chunk.getName(row), chunk.getGlobalRegionId(row), chunk.getRank(row), values);
+            }
+        }
+        return builder.build();
+    }
+
+    // массив регионов, индексированный глобальным id (элемент 0 не используется)
+    public Region[] getRegionsById() {
+        Region[] byId = new Region[regions.size() + 1];
+        for (Region region : regions.values()) {
+            byId[region.getId()] = region;
+        }
+        return byId;
+    }
+
+    // эскизы фрагментов, слитые по порядку; null, если разбор шел без setBuildSketches(true)
+    public SketchIndex getSketches() {
+        if (sketches == null && !chunks.isEmpty() && chunks.get(0).getSketches() != null) {
+            sketches = new SketchIndex(0);
+            for (ParsedChunk chunk : chunks) {
+                sketches.merge(chunk.getSketches());
+            }
+        }
+        return sketches;
+    }
+
+    public List<ParsedChunk> getChunks() {
+        return chunks;
+    }
+
+    public List<Region> getRegions() {
+        return new ArrayList<>(regions.values());
+    }
+
+    public int getValidRows() {
+        return validRows;
+    }
+
+    public int getInvalidRows() {
+        return invalidRows;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getRowsPerSecond() {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        return seconds > 0 ? Math.round(validRows / seconds) : validRows;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,284 @@
+package ru.university.ingest;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import ru.university.database.DatabaseManager;
+import ru.university.model.Country;
+import ru.university.model.Region;
+import ru.university.sketch.SketchIndex;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Потоковая загрузка CSV в SQLite: чтение и разбор строк идут в текущем потоке,
+// а запись пакетов в базу - в отдельном потоке. Очередь ограничена, поэтому в памяти
+// одновременно находится не более (queueCapacity + 2) * batchSize строк независимо от размера файла.
+public class StreamingIngestionPipeline {
+    public static final int DEFAULT_BATCH_SIZE = DatabaseManager.DEFAULT_BATCH_SIZE;
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+    // ожидание потока записи после конца потока; по истечении поток записи прерывается
+    private static final long WRITER_JOIN_TIMEOUT_SECONDS = 60;
+
+    // пустой пакет служит признаком конца потока
+    private static final Chunk END_OF_STREAM = new Chunk(Collections.emptyList(), Collections.emptyList());
+
+    private final DatabaseManager dbManager;
+    private final int batchSize;
+    private final int queueCapacity;
+    // эскизы для приближенных отчетов заполняются в потоке разбора, null - не строить
+    private SketchIndex sketches;
+
+    public StreamingIngestionPipeline(DatabaseManager dbManager) {
+        this(dbManager, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public StreamingIngestionPipeline(DatabaseManager dbManager, int batchSize, int queueCapacity) {
+        this.dbManager = dbManager;
+        this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        this.queueCapacity = queueCapacity > 0 ? queueCapacity : DEFAULT_QUEUE_CAPACITY;
+    }
+
+    public void setSketches(SketchIndex sketches) {
+        this.sketches = sketches;
+    }
+
+    public Result run(String csvFileName) {
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(queueCapacity);
+        Writer writer = new Writer(queue);
+        Thread writerThread = new Thread(writer, "csv-ingest-writer");
+
+        Map<String, Region> regionsMap = new HashMap<>();
+        CountryRowMapper mapper = new CountryRowMapper(regionsMap);
+        int validRows = 0;
+        int invalidRows = 0;
+        // файл прочитан до конца без ошибок чтения и прерываний
+        boolean completed = false;
+        boolean interrupted = false;
+        long start = System.nanoTime();
+
+        writerThread.start();
+        try (CSVReader reader = new CSVReader(new FileReader(csvFileName))) {
+            // пропускаем заголовок
+            reader.readNext();
+
+            List<Country> batch = new ArrayList<>(batchSize);
+            List<Region> newRegions = new ArrayList<>();
+            String[] nextLine;
+
+            while ((nextLine = reader.readNext()) != null && !writer.isFailed()) {
+                try {
+                    int regionsBefore = regionsMap.size();
+                    Country country = mapper.map(nextLine);
+                    if (country == null) {
+                        System.out.println("Пропущена строка с недостаточным количеством данных: " + Arrays.toString(nextLine));
+                        invalidRows++;
+                        continue;
+                    }
+                    if (regionsMap.size() > regionsBefore) {
+                        newRegions.add(country.getRegion());
+                    }
+                    batch.add(country);
+                    if (sketches != null) {
+                        sketches.add(country);
+                    }
+                    validRows++;
+                } catch (Exception e) {
+                    System.out.println("Ошибка при обработке строки: " + Arrays.toString(nextLine));
+                    System.out.println("Причина: " + e.getMessage());
+                    invalidRows++;
+                }
+
+                if (batch.size() == batchSize) {
+                    publish(queue, writer, new Chunk(newRegions, batch));
+                    batch = new ArrayList<>(batchSize);
+                    newRegions = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty() || !newRegions.isEmpty()) {
+                publish(queue, writer, new Chunk(newRegions, batch));
+            }
+            completed = true;
+        } catch (IOException | CsvValidationException e) {
+            System.out.println("Ошибка при чтении CSV файла");
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            interrupted = true;
+            System.out.println("Потоковая загрузка прервана");
+        } finally {
+            // флаг прерывания снимается на время передачи конца потока, иначе offer сразу бросит
+            // InterruptedException и поток записи навсегда останется в queue.take()
+            interrupted |= Thread.interrupted();
+            interrupted |= stopWriter(queue, writer, writerThread);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        boolean successful = completed && !interrupted && !writer.isFailed() && writer.isFinished();
+
+        // статистика планировщика после загрузки, поток записи к этому моменту завершен
+        if (successful) {
+            dbManager.analyze();
+        }
+
+        Result result = new Result(validRows, invalidRows, writer.insertedRows, regionsMap.size(),
+                System.nanoTime() - start, successful);
+        // время включает запись в базу: разбор и запись идут параллельно
+        IngestMetrics.recordParse("stream", validRows, invalidRows, System.nanoTime() - start);
+        if (successful) {
+            System.out.println("\nCSV файл успешно обработан (потоковая загрузка):");
+        } else {
+            System.out.println("\nПотоковая загрузка CSV файла завершилась с ошибкой, в базе данных часть строк:");
+        }
+        System.out.println("- Количество корректно обработанных строк: " + result.getValidRows());
+        System.out.println("- Количество ошибочных строк: " + result.getInvalidRows());
+        System.out.println("- Записано строк в базу данных: " + result.getInsertedRows());
+        System.out.println("- Всего уникальных регионов: " + result.getRegionCount());
+        System.out.printf("- Скорость загрузки: %d строк/с%n", result.getRowsPerSecond());
+        return result;
+    }
+
+    // передает потоку записи конец потока и ждет его завершения с таймаутом; если поток записи
+    // не завершился, он прерывается. Возвращает true, если ожидание было прервано
+    private static boolean stopWriter(BlockingQueue<Chunk> queue, Writer writer, Thread writerThread) {
+        boolean interrupted = false;
+        try {
+            publish(queue, writer, END_OF_STREAM);
+        } catch (InterruptedException e) {
+            interrupted = true;
+            writerThread.interrupt();
+        }
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(WRITER_JOIN_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        if (writerThread.isAlive()) {
+            System.out.println("Поток записи в базу данных не завершился, он будет прерван");
+            writerThread.interrupt();
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(WRITER_JOIN_TIMEOUT_SECONDS));
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        return interrupted;
+    }
+
+    // put с таймаутом, чтобы производитель не завис навсегда, если поток записи упал
+    private static void publish(BlockingQueue<Chunk> queue, Writer writer, Chunk chunk) throws InterruptedException {
+        while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            if (writer.isFailed() || writer.isFinished()) {
+                return;
+            }
+        }
+    }
+
+    private static final class Chunk {
+        private final List<Region> newRegions;
+        private final List<Country> countries;
+
+        private Chunk(List<Region> newRegions, List<Country> countries) {
+            this.newRegions = newRegions;
+            this.countries = countries;
+        }
+    }
+
+    private final class Writer implements Runnable {
+        private final BlockingQueue<Chunk> queue;
+        private volatile boolean failed;
+        private volatile boolean finished;
+        private volatile int insertedRows;
+
+        private Writer(BlockingQueue<Chunk> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Chunk chunk = queue.take();
+                    if (chunk == END_OF_STREAM) {
+                        break;
+                    }
+                    insertedRows += dbManager.insertChunk(chunk.newRegions, chunk.countries);
+                }
+            } catch (SQLException e) {
+                failed = true;
+                System.out.println("Ошибка при записи пакета в базу данных, загрузка остановлена");
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                failed = true;
+                Thread.currentThread().interrupt();
+            } finally {
+                finished = true;
+            }
+        }
+
+        private boolean isFailed() {
+            return failed;
+        }
+
+        private boolean isFinished() {
+            return finished;
+        }
+    }
+
+    public static class Result {
+        private final int validRows;
+        private final int invalidRows;
+        private final int insertedRows;
+        private final int regionCount;
+        private final long elapsedNanos;
+        private final boolean successful;
+
+        public Result(int validRows, int invalidRows, int insertedRows, int regionCount,
+                      long elapsedNanos, boolean successful) {
+            this.validRows = validRows;
+            this.invalidRows = invalidRows;
+            this.insertedRows = insertedRows;
+            this.regionCount = regionCount;
+            this.elapsedNanos = elapsedNanos;
+            this.successful = successful;
+        }
+
+        public int getValidRows() {
+            return validRows;
+        }
+
+        public int getInvalidRows() {
+            return invalidRows;
+        }
+
+        public int getInsertedRows() {
+            return insertedRows;
+        }
+
+        public int getRegionCount() {
+            return regionCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public boolean isSuccessful() {
+            return successful;
+        }
+
+        public long getRowsPerSecond() {
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            return seconds > 0 ? Math.round(insertedRows / seconds) : insertedRows;
+        }
+    }
+}
\ No newline at end of file
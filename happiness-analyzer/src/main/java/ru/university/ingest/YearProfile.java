@@ -0,0 +1,193 @@
+package ru.university.ingest;
+
+import ru.university.model.Metric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Профиль сопоставления колонок CSV для выпусков World Happiness Report разных лет:
+// для каждого поля перечислены возможные заголовки колонки в файле этого года.
+public class YearProfile {
+    public enum Field {
+        COUNTRY, REGION, RANK
+    }
+
+    private final String name;
+    private final Map<Field, List<String>> fieldHeaders = new EnumMap<>(Field.class);
+    private final Map<Metric, List<String>> metricHeaders = new EnumMap<>(Metric.class);
+
+    private YearProfile(String name) {
+        this.name = name;
+    }
+
+    public static YearProfile forYear(int year) {
+        if (year <= 2015) {
+            return v2015();
+        }
+        if (year == 2016) {
+            return v2016();
+        }
+        if (year == 2017) {
+            return v2017();
+        }
+        if (year <= 2019) {
+            return v2018();
+        }
+        return v2020();
+    }
+
+    // 2015: исходный формат проекта
+    private static YearProfile v2015() {
+        return new YearProfile("2015")
+                .field(Field.COUNTRY, "Country")
+                .field(Field.REGION, "Region")
+                .field(Field.RANK, "Happiness Rank")
+                .metric(Metric.HAPPINESS_SCORE, "Happiness Score")
+                .metric(Metric.STANDARD_ERROR, "Standard Error")
+                .metric(Metric.ECONOMY, "Economy (GDP per Capita)")
+                .metric(Metric.FAMILY, "Family")
+                .metric(Metric.HEALTH, "Health (Life Expectancy)")
+                .metric(Metric.FREEDOM, "Freedom")
+                .metric(Metric.TRUST, "Trust (Government Corruption)")
+                .metric(Metric.GENEROSITY, "Generosity")
+                .metric(Metric.DYSTOPIA_RESIDUAL, "Dystopia Residual");
+    }
+
+    // 2016: вместо стандартной ошибки доверительный интервал
+    private static YearProfile v2016() {
+        YearProfile profile = v2015();
+        profile.metricHeaders.remove(Metric.STANDARD_ERROR);
+        return profile.rename("2016");
+    }
+
+    // 2017: заголовки через точки, регионов нет
+    private static YearProfile v2017() {
+        return new YearProfile("2017")
+                .field(Field.COUNTRY, "Country")
+                .field(Field.RANK, "Happiness.Rank")
+                .metric(Metric.HAPPINESS_SCORE, "Happiness.Score")
+                .metric(Metric.ECONOMY, "Economy..GDP.per.Capita.")
+                .metric(Metric.FAMILY, "Family")
+                .metric(Metric.HEALTH, "Health..Life.Expectancy.")
+                .metric(Metric.FREEDOM, "Freedom")
+                .metric(Metric.TRUST, "Trust..Government.Corruption.")
+                .metric(Metric.GENEROSITY, "Generosity")
+                .metric(Metric.DYSTOPIA_RESIDUAL, "Dystopia.Residual");
+    }
+
+    // 2018-2019: новые названия показателей, нет регионов и остатка антиутопии
+    private static YearProfile v2018() {
+        return new YearProfile("2018")
+                .field(Field.COUNTRY, "Country or region")
+                .field(Field.RANK, "Overall rank")
+                .metric(Metric.HAPPINESS_SCORE, "Score")
+                .metric(Metric.ECONOMY, "GDP per capita")
+                .metric(Metric.FAMILY, "Social support")
+                .metric(Metric.HEALTH, "Healthy life expectancy")
+                .metric(Metric.FREEDOM, "Freedom to make life choices")
+                .metric(Metric.TRUST, "Perceptions of corruption")
+                .metric(Metric.GENEROSITY, "Generosity");
+    }
+
+    // 2020 и позже: вклад факторов в колонках "Explained by: ...", ранга в ряде выпусков нет
+    private static YearProfile v2020() {
+        return new YearProfile("2020")
+                .field(Field.COUNTRY, "Country name", "Country")
+                .field(Field.REGION, "Regional indicator")
+                .field(Field.RANK, "RANK", "Overall rank")
+                .metric(Metric.HAPPINESS_SCORE, "Ladder score", "Happiness score")
+                .metric(Metric.STANDARD_ERROR, "Standard error of ladder score")
+                .metric(Metric.ECONOMY, "Explained by: Log GDP per capita", "Explained by: GDP per capita")
+                .metric(Metric.FAMILY, "Explained by: Social support")
+                .metric(Metric.HEALTH, "Explained by: Healthy life expectancy")
+                .metric(Metric.FREEDOM, "Explained by: Freedom to make life choices")
+                .metric(Metric.TRUST, "Explained by: Perceptions of corruption")
+                .metric(Metric.GENEROSITY, "Explained by: Generosity")
+                .metric(Metric.DYSTOPIA_RESIDUAL, "Dystopia + residual");
+    }
+
+    private YearProfile field(Field field, String... headers) {
+        fieldHeaders.put(field, Arrays.asList(headers));
+        return this;
+    }
+
+    private YearProfile metric(Metric metric, String... headers) {
+        metricHeaders.put(metric, Arrays.asList(headers));
+        return this;
+    }
+
+    private YearProfile rename(String newName) {
+        YearProfile copy = new YearProfile(newName);
+        copy.fieldHeaders.putAll(fieldHeaders);
+        copy.metricHeaders.putAll(metricHeaders);
+        return copy;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // сопоставление для конкретного заголовка файла
+    public Mapping resolve(String[] header) {
+        List<String> normalized = new ArrayList<>();
+        for (String column : header) {
+            normalized.add(normalize(column));
+        }
+        Map<Field, Integer> fields = new EnumMap<>(Field.class);
+        for (Map.Entry<Field, List<String>> entry : fieldHeaders.entrySet()) {
+            int index = find(normalized, entry.getValue());
+            if (index >= 0) {
+                fields.put(entry.getKey(), index);
+            }
+        }
+        int[] metrics = new int[Metric.values().length];
+        Arrays.fill(metrics, -1);
+        for (Map.Entry<Metric, List<String>> entry : metricHeaders.entrySet()) {
+            metrics[entry.getKey().ordinal()] = find(normalized, entry.getValue());
+        }
+        if (!fields.containsKey(Field.COUNTRY) || metrics[Metric.HAPPINESS_SCORE.ordinal()] < 0) {
+            throw new IllegalArgumentException("Заголовок не соответствует профилю " + name + ": "
+                    + Arrays.toString(header));
+        }
+        return new Mapping(fields, metrics);
+    }
+
+    private static int find(List<String> normalizedHeader, List<String> candidates) {
+        for (String candidate : candidates) {
+            int index = normalizedHeader.indexOf(normalize(candidate));
+            if (index >= 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static String normalize(String column) {
+        // BOM в начале файла и регистр не учитываются
+        return column.replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+    }
+
+    // индексы колонок для одного файла; -1 означает, что колонки нет
+    public static class Mapping {
+        private final Map<Field, Integer> fields;
+        private final int[] metrics;
+
+        private Mapping(Map<Field, Integer> fields, int[] metrics) {
+            this.fields = Collections.unmodifiableMap(fields);
+            this.metrics = metrics;
+        }
+
+        public int column(Field field) {
+            return fields.getOrDefault(field, -1);
+        }
+
+        public int column(Metric metric) {
+            return metrics[metric.ordinal()];
+        }
+    }
+}
\ No newline at end of file
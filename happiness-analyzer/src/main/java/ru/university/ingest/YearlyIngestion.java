@@ -0,0 +1,275 @@
+package ru.university.ingest;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import ru.university.database.DatabaseManager;
+import ru.university.model.CountryYearRecord;
+import ru.university.model.Metric;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Инкрементальная загрузка файла одного года в таблицу country_years.
+// Строки сравниваются с уже загруженными по хэшу содержимого: в базу пишутся только новые
+// и измененные строки, данные других лет не затрагиваются.
+public class YearlyIngestion {
+    private static final Pattern YEAR_PATTERN = Pattern.compile("(20\\d\\d)");
+
+    private final DatabaseManager dbManager;
+
+    public YearlyIngestion(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    // год выпуска по имени файла, например 2019.csv или whr_2021.csv; -1 если года в имени нет
+    public static int detectYear(String fileName) {
+        Matcher matcher = YEAR_PATTERN.matcher(fileName);
+        int year = -1;
+        while (matcher.find()) {
+            year = Integer.parseInt(matcher.group(1));
+        }
+        return year;
+    }
+
+    public Result ingest(Path csvFile, int year) {
+        return ingest(csvFile, year, YearProfile.forYear(year));
+    }
+
+    public Result ingest(Path csvFile, int year, YearProfile profile) {
+        List<CountryYearRecord> records = new ArrayList<>();
+        int invalidRows = 0;
+        // страны ошибочных строк: их сохраненные данные не удаляются, как если бы страны не было в файле
+        Set<String> invalidNames = new HashSet<>();
+        boolean unnamedInvalidRows = false;
+        boolean rankColumn;
+        long start = System.nanoTime();
+
+        try (CSVReader reader = new CSVReader(Files.newBufferedReader(csvFile, StandardCharsets.UTF_8))) {
+            String[] header = reader.readNext();
+            if (header == null) {
+                System.out.println("Файл " + csvFile + " пуст");
+                return new Result(year, 0, 0, 0, 0, 0, false);
+            }
+            YearProfile.Mapping mapping = profile.resolve(header);
+            rankColumn = mapping.column(YearProfile.Field.RANK) >= 0;
+
+            String[] nextLine;
+            while ((nextLine = reader.readNext()) != null) {
+                CountryYearRecord record = null;
+                try {
+                    record = map(nextLine, year, mapping);
+                    if (record == null) {
+                        System.out.println("Пропущена строка с недостаточным количеством данных: " + Arrays.toString(nextLine));
+                    }
+                } catch (Exception e) {
+                    System.out.println("Ошибка при обработке строки: " + Arrays.toString(nextLine));
+                    System.out.println("Причина: " + e.getMessage());
+                }
+                if (record != null) {
+                    records.add(record);
+                    continue;
+                }
+                invalidRows++;
+                String countryName = text(nextLine, mapping.column(YearProfile.Field.COUNTRY));
+                if (countryName == null || countryName.isEmpty()) {
+                    unnamedInvalidRows = true;
+                } else {
+                    invalidNames.add(countryName);
+                }
+            }
+        } catch (IOException | CsvValidationException | IllegalArgumentException e) {
+            System.out.println("Ошибка при чтении файла " + csvFile);
+            e.printStackTrace();
+            return new Result(year, 0, 0, 0, 0, invalidRows, false);
+        }
+
+        IngestMetrics.recordParse("yearly", records.size(), invalidRows, System.nanoTime() - start);
+        assignMissingRanks(records, rankColumn);
+
+        // повторяющиеся страны в одном файле: остается последняя строка
+        Map<String, CountryYearRecord> byName = new LinkedHashMap<>();
+        for (CountryYearRecord record : records) {
+            record.setContentHash(contentHash(record));
+            byName.put(record.getCountryName(), record);
+        }
+
+        Map<String, String> storedHashes = dbManager.loadYearHashes(year);
+        List<CountryYearRecord> changed = new ArrayList<>();
+        int newRows = 0;
+        int changedRows = 0;
+        for (CountryYearRecord record : byName.values()) {
+            String storedHash = storedHashes.get(record.getCountryName());
+            if (storedHash == null) {
+                newRows++;
+                changed.add(record);
+            } else if (!storedHash.equals(record.getContentHash())) {
+                changedRows++;
+                changed.add(record);
+            }
+        }
+        Set<String> removed = new HashSet<>(storedHashes.keySet());
+        removed.removeAll(byName.keySet());
+        removed.removeAll(invalidNames);
+        if (unnamedInvalidRows && !removed.isEmpty()) {
+            // ошибочная строка без названия может относиться к любой из отсутствующих стран
+            System.out.println("В файле есть ошибочные строки без названия страны, удаление "
+                    + removed.size() + " отсутствующих стран пропущено");
+            removed.clear();
+        }
+        int unchangedRows = byName.size() - newRows - changedRows;
+
+        boolean successful = true;
+        if (!changed.isEmpty() || !removed.isEmpty()) {
+            try {
+                dbManager.saveYearRecords(year, changed, removed);
+            } catch (SQLException e) {
+                System.out.println("Ошибка при записи данных за " + year + " год");
+                e.printStackTrace();
+                successful = false;
+            }
+        }
+
+        Result result = new Result(year, newRows, changedRows, unchangedRows, removed.size(), invalidRows, successful);
+        System.out.println("\nДанные за " + year + " год (профиль " + profile.getName() + "):");
+        System.out.println("- Новых строк: " + result.getNewRows());
+        System.out.println("- Измененных строк: " + result.getChangedRows());
+        System.out.println("- Без изменений: " + result.getUnchangedRows());
+        System.out.println("- Удалено строк: " + result.getRemovedRows());
+        System.out.println("- Количество ошибочных строк: " + result.getInvalidRows());
+        return result;
+    }
+
+    // возвращает null если в строке нет названия страны или оценки счастья
+    private static CountryYearRecord map(String[] row, int year, YearProfile.Mapping mapping) {
+        String countryName = text(row, mapping.column(YearProfile.Field.COUNTRY));
+        if (countryName == null || countryName.isEmpty()) {
+            return null;
+        }
+        double[] values = new double[Metric.values().length];
+        for (Metric metric : Metric.values()) {
+            values[metric.ordinal()] = number(row, mapping.column(metric));
+        }
+        if (Double.isNaN(values[Metric.HAPPINESS_SCORE.ordinal()])) {
+            return null;
+        }
+        String rankText = text(row, mapping.column(YearProfile.Field.RANK));
+        int rank = rankText == null || rankText.isEmpty() ? 0 : Integer.parseInt(rankText);
+        return new CountryYearRecord(year, countryName, text(row, mapping.column(YearProfile.Field.REGION)), rank, values);
+    }
+
+    private static String text(String[] row, int column) {
+        return column >= 0 && column < row.length ? row[column].trim() : null;
+    }
+
+    // пустая ячейка или отсутствующая колонка - NaN; в части выпусков дробная часть через запятую
+    private static double number(String[] row, int column) {
+        String value = text(row, column);
+        if (value == null || value.isEmpty()) {
+            return Double.NaN;
+        }
+        return Double.parseDouble(value.replace(',', '.'));
+    }
+
+    // в файлах без колонки ранга он вычисляется по убыванию оценки счастья; если колонка есть,
+    // опубликованные ранги не меняются и вычисляются только пустые - по месту строки среди всех оценок
+    private static void assignMissingRanks(List<CountryYearRecord> records, boolean rankColumn) {
+        boolean missing = records.stream().anyMatch(record -> record.getHappinessRank() <= 0);
+        if (!missing) {
+            return;
+        }
+        List<CountryYearRecord> sorted = new ArrayList<>(records);
+        sorted.sort(Comparator.comparingDouble((CountryYearRecord record) -> record.getValue(Metric.HAPPINESS_SCORE))
+                .reversed());
+        for (int i = 0; i < sorted.size(); i++) {
+            if (!rankColumn || sorted.get(i).getHappinessRank() <= 0) {
+                sorted.get(i).setHappinessRank(i + 1);
+            }
+        }
+    }
+
+    private static String contentHash(CountryYearRecord record) {
+        StringBuilder content = new StringBuilder();
+        content.append(record.getCountryName()).append('|')
+                .append(record.getRegionName()).append('|')
+                .append(record.getHappinessRank());
+        for (Metric metric : Metric.values()) {
+            content.append('|').append(record.getValue(metric));
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 обязателен для любой реализации Java
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class Result {
+        private final int year;
+        private final int newRows;
+        private final int changedRows;
+        private final int unchangedRows;
+        private final int removedRows;
+        private final int invalidRows;
+        private final boolean successful;
+
+        public Result(int year, int newRows, int changedRows, int unchangedRows, int removedRows,
+                      int invalidRows, boolean successful) {
+            this.year = year;
+            this.newRows = newRows;
+            this.changedRows = changedRows;
+            this.unchangedRows = unchangedRows;
+            this.removedRows = removedRows;
+            this.invalidRows = invalidRows;
+            this.successful = successful;
+        }
+
+        public int getYear() {
+            return year;
+        }
+
+        public int getNewRows() {
+            return newRows;
+        }
+
+        public int getChangedRows() {
+            return changedRows;
+        }
+
+        public int getUnchangedRows() {
+            return unchangedRows;
+        }
+
+        public int getRemovedRows() {
+            return removedRows;
+        }
+
+        public int getInvalidRows() {
+            return invalidRows;
+        }
+
+        public boolean isSuccessful() {
+            return successful;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package ru.university.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Монотонный счетчик. LongAdder распределяет запись по ячейкам, поэтому потоки
+// разбора и записи не конкурируют за одну кэш-линию
+public final class Counter {
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,60 @@
+package ru.university.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// HTTP-точка снятия метрик: /metrics - текст Prometheus, /metrics.json - JSON.
+// Слушает только localhost; один поток обработки, снимок строится на каждый запрос
+public class MetricsEndpoint implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public MetricsEndpoint(MetricsRegistry registry, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/metrics.json", exchange ->
+                respond(exchange, "application/json; charset=utf-8", MetricsFormat.toJson(registry)));
+        server.createContext("/metrics", exchange ->
+                respond(exchange, "text/plain; version=0.0.4; charset=utf-8", MetricsFormat.toPrometheus(registry)));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
\ No newline at end of file
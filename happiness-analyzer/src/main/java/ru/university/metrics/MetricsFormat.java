@@ -0,0 +1,192 @@
+package ru.university.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Снимок реестра в текстовом формате Prometheus или в JSON.
+// Таймеры и гистограммы выводятся как summary: count, sum, max и перцентили 0.5/0.9/0.99;
+// таймеры - в секундах, гистограммы - в исходных единицах
+public final class MetricsFormat {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private MetricsFormat() {
+    }
+
+    public static String toPrometheus(MetricsRegistry registry) {
+        StringBuilder sb = new StringBuilder();
+        for (MetricsRegistry.Family family : registry.getFamilies()) {
+            String name = family.getName();
+            sb.append("# HELP ").append(name).append(' ').append(escapeHelp(family.getHelp())).append('\n');
+            sb.append("# TYPE ").append(name).append(' ')
+                    .append(family.getType() == MetricsRegistry.Type.COUNTER ? "counter" : "summary").append('\n');
+            for (Map.Entry<List<String>, Object> child : sortedChildren(family)) {
+                List<String> labels = child.getKey();
+                if (child.getValue() instanceof Counter) {
+                    sample(sb, name, labels, null, ((Counter) child.getValue()).get());
+                    continue;
+                }
+                Histogram.Snapshot snapshot = snapshot(child.getValue());
+                double scale = scale(family);
+                for (double quantile : QUANTILES) {
+                    sample(sb, name, labels, String.valueOf(quantile), snapshot.getValueAtQuantile(quantile) / scale);
+                }
+                sample(sb, name + "_sum", labels, null, snapshot.getSum() / scale);
+                sample(sb, name + "_count", labels, null, snapshot.getCount());
+            }
+            // максимум не входит в summary, поэтому выводится отдельным семейством gauge
+            if (family.getType() != MetricsRegistry.Type.COUNTER) {
+                sb.append("# HELP ").append(name).append("_max Максимум: ").append(escapeHelp(family.getHelp())).append('\n');
+                sb.append("# TYPE ").append(name).append("_max gauge\n");
+                for (Map.Entry<List<String>, Object> child : sortedChildren(family)) {
+                    sample(sb, name + "_max", child.getKey(), null, snapshot(child.getValue()).getMax() / scale(family));
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    public static String toJson(MetricsRegistry registry) {
+        StringBuilder sb = new StringBuilder("{\n  \"metrics\": [");
+        boolean first = true;
+        for (MetricsRegistry.Family family : registry.getFamilies()) {
+            for (Map.Entry<List<String>, Object> child : sortedChildren(family)) {
+                sb.append(first ? "\n" : ",\n");
+                first = false;
+                sb.append("    {\"name\": ").append(jsonString(family.getName()))
+                        .append(", \"type\": ").append(jsonString(family.getType().name().toLowerCase(Locale.ROOT)))
+                        .append(", \"labels\": {");
+                List<String> labels = child.getKey();
+                for (int i = 0; i < labels.size(); i += 2) {
+                    sb.append(i > 0 ? ", " : "").append(jsonString(labels.get(i))).append(": ")
+                            .append(jsonString(labels.get(i + 1)));
+                }
+                sb.append('}');
+                if (child.getValue() instanceof Counter) {
+                    sb.append(", \"value\": ").append(((Counter) child.getValue()).get());
+                } else {
+                    Histogram.Snapshot snapshot = snapshot(child.getValue());
+                    double scale = scale(family);
+                    sb.append(", \"count\": ").append(snapshot.getCount())
+                            .append(", \"sum\": ").append(snapshot.getSum() / scale)
+                            .append(", \"mean\": ").append(snapshot.getMean() / scale)
+                            .append(", \"max\": ").append(snapshot.getMax() / scale);
+                    for (double quantile : QUANTILES) {
+                        sb.append(", \"p").append(Math.round(quantile * 100)).append("\": ")
+                                .append(snapshot.getValueAtQuantile(quantile) / scale);
+                    }
+                }
+                sb.append('}');
+            }
+        }
+        sb.append(first ? "]\n}\n" : "\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    // формат выбирается по расширению: .json - JSON, иначе текст Prometheus (.prom);
+    // файл пишется во временный и атомарно переименовывается
+    public static void write(MetricsRegistry registry, Path file) throws IOException {
+        String text = file.getFileName().toString().endsWith(".json") ? toJson(registry) : toPrometheus(registry);
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = dir.resolve("." + file.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                out.write(text.getBytes(StandardCharsets.UTF_8));
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static List<Map.Entry<List<String>, Object>> sortedChildren(MetricsRegistry.Family family) {
+        List<Map.Entry<List<String>, Object>> children = new ArrayList<>(family.getChildren().entrySet());
+        children.sort((a, b) -> String.join("\u0000", a.getKey()).compareTo(String.join("\u0000", b.getKey())));
+        return children;
+    }
+
+    private static Histogram.Snapshot snapshot(Object metric) {
+        return metric instanceof Timer ? ((Timer) metric).snapshot() : ((Histogram) metric).snapshot();
+    }
+
+    private static double scale(MetricsRegistry.Family family) {
+        return family.getType() == MetricsRegistry.Type.TIMER ? NANOS_PER_SECOND : 1;
+    }
+
+    private static void sample(StringBuilder sb, String name, List<String> labels, String quantile, double value) {
+        sb.append(name);
+        if (!labels.isEmpty() || quantile != null) {
+            sb.append('{');
+            for (int i = 0; i < labels.size(); i += 2) {
+                sb.append(i > 0 ? "," : "").append(labels.get(i)).append("=\"")
+                        .append(escapeLabel(labels.get(i + 1))).append('"');
+            }
+            if (quantile != null) {
+                sb.append(labels.isEmpty() ? "" : ",").append("quantile=\"").append(quantile).append('"');
+            }
+            sb.append('}');
+        }
+        sb.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String escapeHelp(String value) {
+        return value.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package ru.university.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+// Реестр метрик приложения. Метрика определяется именем и парами меток (ключ, значение),
+// например timer("db_query_seconds", "...", "sql", template). Повторный вызов с тем же именем
+// и метками возвращает тот же объект, поэтому на горячих путях его стоит сохранять в поле.
+public class MetricsRegistry {
+    public static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    public enum Type {
+        COUNTER, TIMER, HISTOGRAM
+    }
+
+    // семейства упорядочены по имени, чтобы экспорт был стабильным
+    private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String help, String... labels) {
+        return register(name, help, Type.COUNTER, labels, Counter::new);
+    }
+
+    public Timer timer(String name, String help, String... labels) {
+        return register(name, help, Type.TIMER, labels, Timer::new);
+    }
+
+    public Histogram histogram(String name, String help, String... labels) {
+        return register(name, help, Type.HISTOGRAM, labels, Histogram::new);
+    }
+
+    public List<Family> getFamilies() {
+        return new ArrayList<>(families.values());
+    }
+
+    private <T> T register(String name, String help, Type type, String[] labels, Supplier<T> factory) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Метки задаются парами ключ-значение: " + name);
+        }
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Метрика " + name + " уже зарегистрирована с типом " + family.type);
+        }
+        Object metric = family.children.computeIfAbsent(List.of(labels), key -> factory.get());
+        @SuppressWarnings("unchecked")
+        T typed = (T) metric;
+        return typed;
+    }
+
+    // все метрики одного имени с разными значениями меток
+    public static final class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final ConcurrentMap<List<String>, Object> children = new ConcurrentHashMap<>();
+
+        private Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHelp() {
+            return help;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        // метки -> Counter, Timer или Histogram в зависимости от типа
+        public Map<List<String>, Object> getChildren() {
+            return Collections.unmodifiableMap(children);
+        }
+    }
+}
\ No newline at end of file
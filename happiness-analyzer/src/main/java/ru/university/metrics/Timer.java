@@ -0,0 +1,22 @@
+package ru.university.metrics;
+
+// Длительности в наносекундах поверх Histogram; при экспорте переводятся в секунды
+public final class Timer {
+    private final Histogram histogram = new Histogram();
+
+    Timer() {
+    }
+
+    public void record(long nanos) {
+        histogram.record(nanos);
+    }
+
+    // использование: long start = System.nanoTime(); ...; timer.recordSince(start);
+    public void recordSince(long startNanos) {
+        histogram.record(System.nanoTime() - startNanos);
+    }
+
+    public Histogram.Snapshot snapshot() {
+        return histogram.snapshot();
+    }
+}
\ No newline at end of file
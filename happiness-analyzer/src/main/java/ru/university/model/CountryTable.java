@@ -0,0 +1,266 @@
+package ru.university.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Колоночное хранилище показателей стран: по одному массиву примитивов на показатель,
+// названия стран закодированы словарем. Позволяет выполнять сканирование и агрегаты
+// в простых циклах по массивам без создания объекта на каждую строку.
+public class CountryTable {
+    private final int size;
+    private final int[] ids;
+    private final int[] nameIds;
+    private final String[] nameDictionary;
+    private final int[] ranks;
+    private final int[] regionIds;
+    private final String[] regionNames;
+    private final double[][] metrics;
+
+    private CountryTable(int size, int[] ids, int[] nameIds, String[] nameDictionary, int[] ranks, int[] regionIds,
+                         String[] regionNames, double[][] metrics) {
+        this.size = size;
+        this.ids = ids;
+        this.nameIds = nameIds;
+        this.nameDictionary = nameDictionary;
+        this.ranks = ranks;
+        this.regionIds = regionIds;
+        this.regionNames = regionNames;
+        this.metrics = metrics;
+    }
+
+    public static CountryTable fromCountries(List<Country> countries) {
+        Builder builder = new Builder(countries.size());
+        for (Country country : countries) {
+            Region region = country.getRegion();
+            builder.region(region.getId(), region.getName());
+            builder.add(country.getId(), country.getName(), region.getId(), country.getHappinessRank(),
+                    country.getHappinessScore(), country.getStandardError(), country.getEconomy(),
+                    country.getFamily(), country.getHealth(), country.getFreedom(), country.getTrust(),
+                    country.getGenerosity(), country.getDystopiaResidual());
+        }
+        return builder.build();
+    }
+
+    // таблица из готовых столбцов (например, из бинарного снимка); массивы не копируются
+    public static CountryTable fromColumns(int[] ids, int[] nameIds, String[] nameDictionary, int[] ranks,
+                                           int[] regionIds, String[] regionNames, double[][] metrics) {
+        int size = ids.length;
+        if (nameIds.length != size || ranks.length != size || regionIds.length != size
+                || metrics.length != Metric.values().length) {
+            throw new IllegalArgumentException("Столбцы таблицы стран имеют разную длину");
+        }
+        for (double[] column : metrics) {
+            if (column.length != size) {
+                throw new IllegalArgumentException("Столбцы таблицы стран имеют разную длину");
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            if (nameIds[row] < 0 || nameIds[row] >= nameDictionary.length
+                    || regionIds[row] < 0 || regionIds[row] >= regionNames.length) {
+                throw new IllegalArgumentException("Некорректный номер названия или региона в строке " + row);
+            }
+        }
+        return new CountryTable(size, ids, nameIds, nameDictionary, ranks, regionIds, regionNames, metrics);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    public String getName(int row) {
+        return nameDictionary[nameIds[row]];
+    }
+
+    public int getNameId(int row) {
+        return nameIds[row];
+    }
+
+    public int getRank(int row) {
+        return ranks[row];
+    }
+
+    public int getRegionId(int row) {
+        return regionIds[row];
+    }
+
+    public double getValue(int row, Metric metric) {
+        return metrics[metric.ordinal()][row];
+    }
+
+    // массивы возвращаются без копирования и не должны изменяться вызывающим кодом
+    public double[] column(Metric metric) {
+        return metrics[metric.ordinal()];
+    }
+
+    public int[] idColumn() {
+        return ids;
+    }
+
+    public int[] nameIdColumn() {
+        return nameIds;
+    }
+
+    // названия стран по номеру из nameIdColumn
+    public String[] nameDictionary() {
+        return nameDictionary;
+    }
+
+    public int[] rankColumn() {
+        return ranks;
+    }
+
+    public int[] regionIdColumn() {
+        return regionIds;
+    }
+
+    // максимальный id региона + 1, удобно для массивов, индексированных id региона
+    public int regionIdBound() {
+        return regionNames.length;
+    }
+
+    public String getRegionName(int regionId) {
+        return regionId >= 0 && regionId < regionNames.length ? regionNames[regionId] : null;
+    }
+
+    // id региона по названию или -1, если такого региона нет
+    public int findRegionId(String regionName) {
+        for (int id = 0; id < regionNames.length; id++) {
+            if (regionName.equals(regionNames[id])) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    public List<Region> getRegions() {
+        List<Region> regions = new ArrayList<>();
+        for (int id = 0; id < regionNames.length; id++) {
+            if (regionNames[id] != null) {
+                regions.add(new Region(id, regionNames[id]));
+            }
+        }
+        return regions;
+    }
+
+    // восстановление объекта Country для строки, например для вывода отчетов
+    public Country toCountry(int row, Region region) {
+        return new Country(ids[row], getName(row), region, ranks[row],
+                getValue(row, Metric.HAPPINESS_SCORE), getValue(row, Metric.STANDARD_ERROR),
+                getValue(row, Metric.ECONOMY), getValue(row, Metric.FAMILY), getValue(row, Metric.HEALTH),
+                getValue(row, Metric.FREEDOM), getValue(row, Metric.TRUST), getValue(row, Metric.GENEROSITY),
+                getValue(row, Metric.DYSTOPIA_RESIDUAL));
+    }
+
+    public static class Builder {
+        private int size;
+        private int[] ids;
+        private int[] nameIds;
+        private int[] ranks;
+        private int[] regionIds;
+        private final double[][] metrics = new double[Metric.values().length][];
+        private final Map<String, Integer> nameIndex = new HashMap<>();
+        private final List<String> nameDictionary = new ArrayList<>();
+        private String[] regionNames = new String[16];
+
+        public Builder() {
+            this(1024);
+        }
+
+        public Builder(int expectedRows) {
+            int capacity = Math.max(16, expectedRows);
+            ids = new int[capacity];
+            nameIds = new int[capacity];
+            ranks = new int[capacity];
+            regionIds = new int[capacity];
+            for (int m = 0; m < metrics.length; m++) {
+                metrics[m] = new double[capacity];
+            }
+        }
+
+        public Builder region(int regionId, String name) {
+            if (regionId >= regionNames.length) {
+                regionNames = Arrays.copyOf(regionNames, Math.max(regionId + 1, regionNames.length * 2));
+            }
+            regionNames[regionId] = name;
+            return this;
+        }
+
+        public Builder add(int id, String name, int regionId, int rank, double happinessScore, double standardError,
+                           double economy, double family, double health, double freedom, double trust,
+                           double generosity, double dystopiaResidual) {
+            int row = addRow(id, name, regionId, rank);
+            metrics[Metric.HAPPINESS_SCORE.ordinal()][row] = happinessScore;
+            metrics[Metric.STANDARD_ERROR.ordinal()][row] = standardError;
+            metrics[Metric.ECONOMY.ordinal()][row] = economy;
+            metrics[Metric.FAMILY.ordinal()][row] = family;
+            metrics[Metric.HEALTH.ordinal()][row] = health;
+            metrics[Metric.FREEDOM.ordinal()][row] = freedom;
+            metrics[Metric.TRUST.ordinal()][row] = trust;
+            metrics[Metric.GENEROSITY.ordinal()][row] = generosity;
+            metrics[Metric.DYSTOPIA_RESIDUAL.ordinal()][row] = dystopiaResidual;
+            return this;
+        }
+
+        // значения передаются в порядке Metric.values()
+        public Builder add(int id, String name, int regionId, int rank, double[] values) {
+            int row = addRow(id, name, regionId, rank);
+            for (int m = 0; m < metrics.length; m++) {
+                metrics[m][row] = values[m];
+            }
+            return this;
+        }
+
+        private int addRow(int id, String name, int regionId, int rank) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                nameIds = Arrays.copyOf(nameIds, capacity);
+                ranks = Arrays.copyOf(ranks, capacity);
+                regionIds = Arrays.copyOf(regionIds, capacity);
+                for (int m = 0; m < metrics.length; m++) {
+                    metrics[m] = Arrays.copyOf(metrics[m], capacity);
+                }
+            }
+            Integer nameId = nameIndex.get(name);
+            if (nameId == null) {
+                nameId = nameDictionary.size();
+                nameDictionary.add(name);
+                nameIndex.put(name, nameId);
+            }
+            ids[size] = id;
+            nameIds[size] = nameId;
+            ranks[size] = rank;
+            regionIds[size] = regionId;
+            if (regionId >= regionNames.length) {
+                regionNames = Arrays.copyOf(regionNames, Math.max(regionId + 1, regionNames.length * 2));
+            }
+            return size++;
+        }
+
+        public CountryTable build() {
+            int regionBound = 0;
+            for (int id = 0; id < regionNames.length; id++) {
+                if (regionNames[id] != null) {
+                    regionBound = id + 1;
+                }
+            }
+            for (int row = 0; row < size; row++) {
+                regionBound = Math.max(regionBound, regionIds[row] + 1);
+            }
+            double[][] trimmed = new double[metrics.length][];
+            for (int m = 0; m < metrics.length; m++) {
+                trimmed[m] = Arrays.copyOf(metrics[m], size);
+            }
+            return new CountryTable(size, Arrays.copyOf(ids, size), Arrays.copyOf(nameIds, size),
+                    nameDictionary.toArray(new String[0]), Arrays.copyOf(ranks, size),
+                    Arrays.copyOf(regionIds, size), Arrays.copyOf(regionNames, regionBound), trimmed);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package ru.university.model;
+
+import java.util.Arrays;
+
+// Показатели страны за один год отчета. Показатели, которых нет в файле этого года, равны NaN.
+public class CountryYearRecord {
+    private int countryId;
+    private int regionId;
+    private final int year;
+    private final String countryName;
+    private final String regionName;
+    private int happinessRank;
+    private final double[] values;
+    private String contentHash;
+
+    public CountryYearRecord(int year, String countryName, String regionName, int happinessRank, double[] values) {
+        if (values.length != Metric.values().length) {
+            throw new IllegalArgumentException("Ожидается " + Metric.values().length + " показателей");
+        }
+        this.year = year;
+        this.countryName = countryName;
+        this.regionName = regionName;
+        this.happinessRank = happinessRank;
+        this.values = values.clone();
+    }
+
+    public int getCountryId() {
+        return countryId;
+    }
+
+    public void setCountryId(int countryId) {
+        this.countryId = countryId;
+    }
+
+    public int getRegionId() {
+        return regionId;
+    }
+
+    public void setRegionId(int regionId) {
+        this.regionId = regionId;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public String getCountryName() {
+        return countryName;
+    }
+
+    public String getRegionName() {
+        return regionName;
+    }
+
+    public int getHappinessRank() {
+        return happinessRank;
+    }
+
+    public void setHappinessRank(int happinessRank) {
+        this.happinessRank = happinessRank;
+    }
+
+    public double getValue(Metric metric) {
+        return values[metric.ordinal()];
+    }
+
+    public boolean hasValue(Metric metric) {
+        return !Double.isNaN(values[metric.ordinal()]);
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    @Override
+    public String toString() {
+        return "CountryYearRecord{" +
+                "year=" + year +
+                ", countryName='" + countryName + '\'' +
+                ", regionName='" + regionName + '\'' +
+                ", happinessRank=" + happinessRank +
+                ", values=" + Arrays.toString(values) +
+                '}';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+package ru.university.model;
+
+// числовые показатели страны и соответствующие им столбцы таблицы countries
+public enum Metric {
+    HAPPINESS_SCORE("happiness_score", "Индекс счастья"),
+    STANDARD_ERROR("standard_error", "Стандартная ошибка"),
+    ECONOMY("economy", "Экономика (GDP per Capita)"),
+    FAMILY("family", "Семья"),
+    HEALTH("health", "Здоровье"),
+    FREEDOM("freedom", "Свобода"),
+    TRUST("trust", "Доверие к правительству"),
+    GENEROSITY("generosity", "Щедрость"),
+    DYSTOPIA_RESIDUAL("dystopia_residual", "Остаток антиутопии");
+
+    private final String column;
+    private final String title;
+
+    Metric(String column, String title) {
+        this.column = column;
+        this.title = title;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public static Metric fromColumn(String column) {
+        for (Metric metric : values()) {
+            if (metric.column.equalsIgnoreCase(column) || metric.name().equalsIgnoreCase(column)) {
+                return metric;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный показатель: " + column);
+    }
+}
\ No newline at end of file
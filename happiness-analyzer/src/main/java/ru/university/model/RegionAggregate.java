@@ -0,0 +1,73 @@
+package ru.university.model;
+
+import java.util.Collection;
+
+// Строка таблицы region_aggregates: количество стран региона, суммы и суммы квадратов показателей.
+// Средние и дисперсии считаются из них без просмотра стран, агрегаты нескольких регионов складываются (combine).
+public class RegionAggregate {
+    private final int regionId;
+    private final String regionName;
+    private final long count;
+    private final double[] sums;
+    private final double[] squares;
+
+    public RegionAggregate(int regionId, String regionName, long count, double[] sums, double[] squares) {
+        if (sums.length != Metric.values().length || squares.length != Metric.values().length) {
+            throw new IllegalArgumentException("Ожидается " + Metric.values().length + " показателей");
+        }
+        this.regionId = regionId;
+        this.regionName = regionName;
+        this.count = count;
+        this.sums = sums.clone();
+        this.squares = squares.clone();
+    }
+
+    // объединенный агрегат группы регионов, например 'Western Europe' и 'North America' в запросе 3
+    public static RegionAggregate combine(String name, Collection<RegionAggregate> aggregates) {
+        long count = 0;
+        double[] sums = new double[Metric.values().length];
+        double[] squares = new double[Metric.values().length];
+        for (RegionAggregate aggregate : aggregates) {
+            count += aggregate.count;
+            for (int m = 0; m < sums.length; m++) {
+                sums[m] += aggregate.sums[m];
+                squares[m] += aggregate.squares[m];
+            }
+        }
+        return new RegionAggregate(0, name, count, sums, squares);
+    }
+
+    public int getRegionId() {
+        return regionId;
+    }
+
+    public String getRegionName() {
+        return regionName;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum(Metric metric) {
+        return sums[metric.ordinal()];
+    }
+
+    public double getAverage(Metric metric) {
+        return count == 0 ? Double.NaN : sums[metric.ordinal()] / count;
+    }
+
+    // выборочная дисперсия (n - 1 в знаменателе); отрицательный результат из-за округления обрезается до 0
+    public double getVariance(Metric metric) {
+        if (count < 2) {
+            return Double.NaN;
+        }
+        double sum = sums[metric.ordinal()];
+        double variance = (squares[metric.ordinal()] - sum * sum / count) / (count - 1);
+        return Math.max(0, variance);
+    }
+
+    public double getStandardDeviation(Metric metric) {
+        return Math.sqrt(getVariance(metric));
+    }
+}
\ No newline at end of file
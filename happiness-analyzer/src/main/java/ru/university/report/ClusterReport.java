@@ -0,0 +1,48 @@
+package ru.university.report;
+
+import ru.university.analytics.KMeansClustering;
+import ru.university.model.CountryTable;
+import ru.university.model.Metric;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+// Вывод результата KMeansClustering (--clusters): сводка прогона и центроиды кластеров
+// с ближайшей к центру страной
+public final class ClusterReport {
+    private static final FixedDecimalFormat FORMAT = new FixedDecimalFormat(4);
+
+    private ClusterReport() {
+    }
+
+    // nearest - строки таблицы, ближайшие к центроидам (KMeansClustering.nearestRows), -1 для пустого кластера
+    public static void print(CountryTable table, KMeansClustering.Result result, int[] nearest, long elapsedNanos,
+                             PrintStream out) throws IOException {
+        int k = result.getK();
+        out.printf("%d строк, %d кластеров: %d итераций (%s) за %.1f мс, сумма квадратов расстояний %s%n",
+                table.size(), k, result.getIterations(), result.isConverged() ? "сошлось" : "достигнут предел итераций",
+                elapsedNanos / 1e6, FORMAT.format(result.getInertia()));
+
+        Metric[] factors = result.getFactors();
+        Column[] columns = new Column[factors.length + 3];
+        columns[0] = Column.integer("Кластер", 7);
+        columns[1] = Column.integer("Стран", 8);
+        int ruleWidth = 7 + 3 + 8;
+        for (int i = 0; i < factors.length; i++) {
+            int width = Math.max(factors[i].getColumn().length(), 6);
+            columns[i + 2] = Column.decimal(factors[i].getColumn(), width, 4);
+            ruleWidth += 3 + width;
+        }
+        columns[factors.length + 2] = Column.text("Ближайшая к центру страна", 0);
+        ruleWidth += 3 + 25;
+        try (TableSink sink = TableSink.console(out, ruleWidth, columns)) {
+            for (int c = 0; c < k; c++) {
+                sink.integer(c).integer(result.getSize(c));
+                for (double value : result.getCentroid(c)) {
+                    sink.decimal(value);
+                }
+                sink.text(nearest[c] >= 0 ? table.getName(nearest[c]) : null).endRow();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,48 @@
+package ru.university.report;
+
+// Столбец таблицы отчета: название, ширина в консоли и тип значения.
+// Для десятичных столбцов задается число знаков после точки, форматтер общий для всех потоков
+public final class Column {
+    enum Kind { TEXT, INTEGER, DECIMAL }
+
+    private final String name;
+    private final int width;
+    private final Kind kind;
+    private final FixedDecimalFormat format;
+
+    private Column(String name, int width, Kind kind, FixedDecimalFormat format) {
+        this.name = name;
+        this.width = width;
+        this.kind = kind;
+        this.format = format;
+    }
+
+    // width - ширина столбца в консоли, 0 - без выравнивания
+    public static Column text(String name, int width) {
+        return new Column(name, width, Kind.TEXT, null);
+    }
+
+    public static Column integer(String name, int width) {
+        return new Column(name, width, Kind.INTEGER, null);
+    }
+
+    public static Column decimal(String name, int width, int decimals) {
+        return new Column(name, width, Kind.DECIMAL, new FixedDecimalFormat(decimals));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    FixedDecimalFormat getFormat() {
+        return format;
+    }
+}
\ No newline at end of file
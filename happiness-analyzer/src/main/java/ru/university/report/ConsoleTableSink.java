@@ -0,0 +1,75 @@
+package ru.university.report;
+
+import java.io.Writer;
+
+// столбцы выравниваются пробелами до ширины и разделяются " | ", как "%-35s | %s" в printf
+final class ConsoleTableSink extends TableSink {
+    private static final String SEPARATOR = " | ";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final int ruleWidth;
+
+    ConsoleTableSink(Writer out, boolean closeOut, int ruleWidth, Column[] columns) {
+        super(out, closeOut, columns);
+        this.ruleWidth = ruleWidth;
+    }
+
+    @Override
+    void header() {
+        for (int i = 0; i < columns.length; i++) {
+            beginCell(i);
+            int start = buffer.length();
+            buffer.append(columns[i].getName());
+            endCell(i, start);
+        }
+        buffer.append(LINE_SEPARATOR);
+        if (ruleWidth > 0) {
+            for (int i = 0; i < ruleWidth; i++) {
+                buffer.append('-');
+            }
+            buffer.append(LINE_SEPARATOR);
+        }
+    }
+
+    @Override
+    void beginRow(long index) {
+    }
+
+    @Override
+    void beginCell(int index) {
+        if (index > 0) {
+            buffer.append(SEPARATOR);
+        }
+    }
+
+    @Override
+    void appendText(int index, String value) {
+        buffer.append(value);
+    }
+
+    @Override
+    void appendNull(int index) {
+        buffer.append("null");
+    }
+
+    @Override
+    void appendNonFinite(int index, double value) {
+        format(index).append(buffer, value);
+    }
+
+    @Override
+    void endCell(int index, int start) {
+        for (int i = buffer.length() - start; i < columns[index].getWidth(); i++) {
+            buffer.append(' ');
+        }
+    }
+
+    @Override
+    void finishRow() {
+        buffer.append(LINE_SEPARATOR);
+    }
+
+    @Override
+    void footer() {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package ru.university.report;
+
+import java.io.Writer;
+
+// CSV с заголовком из названий столбцов; пропущенные и нечисловые значения - пустые поля
+final class CsvTableSink extends TableSink {
+
+    CsvTableSink(Writer out, boolean closeOut, Column[] columns) {
+        super(out, closeOut, columns);
+    }
+
+    @Override
+    void header() {
+        for (int i = 0; i < columns.length; i++) {
+            beginCell(i);
+            appendText(i, columns[i].getName());
+        }
+        finishRow();
+    }
+
+    @Override
+    void beginRow(long index) {
+    }
+
+    @Override
+    void beginCell(int index) {
+        if (index > 0) {
+            buffer.append(',');
+        }
+    }
+
+    // кавычки только для полей с запятой, кавычкой или переводом строки
+    @Override
+    void appendText(int index, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            buffer.append(value);
+            return;
+        }
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                buffer.append('"');
+            }
+            buffer.append(c);
+        }
+        buffer.append('"');
+    }
+
+    @Override
+    void appendNull(int index) {
+    }
+
+    @Override
+    void appendNonFinite(int index, double value) {
+    }
+
+    @Override
+    void endCell(int index, int start) {
+    }
+
+    @Override
+    void finishRow() {
+        buffer.append('\n');
+    }
+
+    @Override
+    void footer() {
+    }
+}
\ No newline at end of file
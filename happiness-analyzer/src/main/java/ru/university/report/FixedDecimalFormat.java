@@ -0,0 +1,79 @@
+package ru.university.report;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+// Потокобезопасная замена DecimalFormat("0.000...") с фиксированным числом знаков после точки.
+// Объект неизменяемый, число дописывается в переданный StringBuilder без промежуточных строк.
+// Результат совпадает с DecimalFormat. Обычно хватает умножения на 10^decimals и округления; если
+// произведение слишком близко к половине единицы (DecimalFormat решает такие случаи по своим правилам HALF_EVEN)
+// или не помещается в long, число форматируется DecimalFormat своего потока
+public final class FixedDecimalFormat {
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+    // произведения больше 2^53 уже не различают соседние целые
+    private static final double MAX_EXACT = 9_007_199_254_740_992.0;
+
+    private final int decimals;
+    private final long scale;
+    private final ThreadLocal<DecimalFormat> fallback;
+
+    public FixedDecimalFormat(int decimals) {
+        if (decimals < 0 || decimals >= POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("Число знаков после точки должно быть от 0 до "
+                    + (POWERS_OF_TEN.length - 1) + ": " + decimals);
+        }
+        this.decimals = decimals;
+        this.scale = POWERS_OF_TEN[decimals];
+        this.fallback = ThreadLocal.withInitial(() -> {
+            DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+            symbols.setDecimalSeparator('.');
+            return new DecimalFormat(decimals == 0 ? "0" : "0." + "0".repeat(decimals), symbols);
+        });
+    }
+
+    public int getDecimals() {
+        return decimals;
+    }
+
+    public String format(double value) {
+        return append(new StringBuilder(24), value).toString();
+    }
+
+    public StringBuilder append(StringBuilder sb, double value) {
+        if (!Double.isFinite(value)) {
+            return appendFallback(sb, value);
+        }
+        // знак сохраняется и у значений, округленных до нуля, как у DecimalFormat: -0.00001 -> -0.0000
+        boolean negative = value < 0 || (value == 0 && 1 / value < 0);
+        double magnitude = Math.abs(value);
+        double scaled = magnitude * scale;
+        if (scaled >= MAX_EXACT) {
+            return appendFallback(sb, value);
+        }
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) <= 4 * Math.ulp(scaled)) {
+            return appendFallback(sb, value);
+        }
+        long units = (long) floor + (fraction > 0.5 ? 1 : 0);
+        if (negative) {
+            sb.append('-');
+        }
+        sb.append(units / scale);
+        if (decimals > 0) {
+            sb.append('.');
+            long remainder = units % scale;
+            for (long digit = scale / 10; digit > 1 && remainder < digit; digit /= 10) {
+                sb.append('0');
+            }
+            sb.append(remainder);
+        }
+        return sb;
+    }
+
+    private StringBuilder appendFallback(StringBuilder sb, double value) {
+        return sb.append(fallback.get().format(value));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+package ru.university.report;
+
+import java.io.Writer;
+
+// массив JSON-объектов, по объекту на строку, ключи - названия столбцов; NaN и бесконечности - null
+final class JsonTableSink extends TableSink {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // "ключ": для каждого столбца, экранируется один раз
+    private final String[] keys;
+
+    JsonTableSink(Writer out, boolean closeOut, Column[] columns) {
+        super(out, closeOut, columns);
+        keys = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            int start = buffer.length();
+            appendText(i, columns[i].getName());
+            keys[i] = buffer.substring(start) + ':';
+            buffer.setLength(start);
+        }
+    }
+
+    @Override
+    void header() {
+        buffer.append('[');
+    }
+
+    @Override
+    void beginRow(long index) {
+        buffer.append(index == 0 ? "\n{" : ",\n{");
+    }
+
+    @Override
+    void beginCell(int index) {
+        if (index > 0) {
+            buffer.append(',');
+        }
+        buffer.append(keys[index]);
+    }
+
+    @Override
+    void appendText(int index, String value) {
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    buffer.append("\\\"");
+                    break;
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        buffer.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        buffer.append(c);
+                    }
+            }
+        }
+        buffer.append('"');
+    }
+
+    @Override
+    void appendNull(int index) {
+        buffer.append("null");
+    }
+
+    @Override
+    void appendNonFinite(int index, double value) {
+        buffer.append("null");
+    }
+
+    @Override
+    void endCell(int index, int start) {
+    }
+
+    @Override
+    void finishRow() {
+        buffer.append('}');
+    }
+
+    @Override
+    void footer() {
+        buffer.append("\n]\n");
+    }
+}
\ No newline at end of file
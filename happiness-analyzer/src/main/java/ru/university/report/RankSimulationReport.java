@@ -0,0 +1,46 @@
+package ru.university.report;
+
+import ru.university.analytics.RankSimulation;
+import ru.university.model.CountryTable;
+import ru.university.model.Metric;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+// Вывод результата RankSimulation (--rank-simulation): скорость прогона и интервалы рангов стран
+// в порядке исходного ранга
+public final class RankSimulationReport {
+    private RankSimulationReport() {
+    }
+
+    public static void print(CountryTable table, RankSimulation.Result result, long elapsedNanos, PrintStream out)
+            throws IOException {
+        int iterations = result.getIterations();
+        out.printf("%d итераций по %d странам за %.1f мс (%.0f итераций/с)%n", iterations, table.size(),
+                elapsedNanos / 1e6, iterations / (elapsedNanos / 1e9));
+        if (result.getClampedSamples() > 0) {
+            out.printf("Смещений ранга больше чем на %d мест: %d, они учтены как %d%n",
+                    RankSimulation.MAX_SHIFT, result.getClampedSamples(), RankSimulation.MAX_SHIFT);
+        }
+
+        // строки в порядке исходного ранга
+        int[] rows = new int[table.size()];
+        for (int row = 0; row < rows.length; row++) {
+            rows[result.getBaseRank(row) - 1] = row;
+        }
+        try (TableSink sink = TableSink.console(out, 110, Column.integer("Ранг", 5),
+                Column.text("Страна", 30), Column.decimal("Индекс", 7, 4), Column.decimal("Ст. ошибка", 10, 5),
+                Column.integer("Медиана", 7), Column.integer("5%", 5), Column.integer("95%", 5),
+                Column.decimal("Ранг сохранен", 0, 4))) {
+            for (int row : rows) {
+                sink.integer(result.getBaseRank(row)).text(table.getName(row))
+                        .decimal(table.getValue(row, Metric.HAPPINESS_SCORE))
+                        .decimal(table.getValue(row, Metric.STANDARD_ERROR))
+                        .integer(result.getPercentileRank(row, 0.5))
+                        .integer(result.getPercentileRank(row, 0.05))
+                        .integer(result.getPercentileRank(row, 0.95))
+                        .decimal(result.getStableShare(row)).endRow();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,134 @@
+package ru.university.report;
+
+import ru.university.analytics.RegressionAnalysis;
+import ru.university.analytics.RegressionModel;
+import ru.university.model.Metric;
+import ru.university.visualization.ChartGenerator;
+import ru.university.visualization.ChartRenderingService;
+import ru.university.visualization.ChartSpec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Вывод результата RegressionAnalysis (--regression): общая модель с коэффициентами и их ошибками,
+// матрица корреляций, модели регионов и диаграммы коэффициентов
+public final class RegressionReport {
+    private static final FixedDecimalFormat FORMAT = new FixedDecimalFormat(6);
+
+    private RegressionReport() {
+    }
+
+    // elapsedNanos - время расчета, печатается в первой строке
+    public static void print(RegressionAnalysis.Result result, long elapsedNanos, PrintStream out) throws IOException {
+        RegressionModel model = result.getModel();
+        out.printf("Один проход по таблице: %d строк, %d регионов за %.1f мс%n",
+                model.getCount(), result.getRegionModels().size(), elapsedNanos / 1e6);
+        printModel(model, out);
+        printCorrelations(result, out);
+        printRegionModels(result, out);
+    }
+
+    private static void printModel(RegressionModel model, PrintStream out) throws IOException {
+        List<String> terms = new ArrayList<>();
+        for (Metric factor : model.getFactors()) {
+            terms.add("b*" + factor.getColumn());
+        }
+        out.printf("%nМодель: %s = b0 + %s%n", model.getTarget().getColumn(), String.join(" + ", terms));
+        if (model.isSingular()) {
+            out.println("Модель не построена: строк не больше числа параметров или факторы линейно зависимы");
+            return;
+        }
+        out.printf("n = %d, R^2 = %s, скорректированный R^2 = %s, стандартная ошибка остатков = %s%n",
+                model.getCount(), FORMAT.format(model.getRSquared()),
+                FORMAT.format(model.getAdjustedRSquared()),
+                FORMAT.format(model.getResidualStdError()));
+        try (TableSink sink = TableSink.console(out, 72, Column.text("Фактор", 28),
+                Column.decimal("Коэффициент", 12, 6), Column.decimal("Ст. ошибка", 12, 6), Column.decimal("t", 0, 2))) {
+            sink.text("Свободный член").decimal(model.getIntercept()).decimal(model.getInterceptStdError())
+                    .decimal(model.getIntercept() / model.getInterceptStdError()).endRow();
+            Metric[] factors = model.getFactors();
+            for (int i = 0; i < factors.length; i++) {
+                sink.text(factors[i].getTitle()).decimal(model.getCoefficient(i)).decimal(model.getStdError(i))
+                        .decimal(model.getTStatistic(i)).endRow();
+            }
+        }
+    }
+
+    private static void printCorrelations(RegressionAnalysis.Result result, PrintStream out) throws IOException {
+        out.println("\nКорреляции Пирсона:");
+        Metric[] variables = result.getVariables();
+        Column[] columns = new Column[variables.length + 1];
+        columns[0] = Column.text("", 17);
+        int ruleWidth = 17;
+        for (int i = 0; i < variables.length; i++) {
+            String name = variables[i].getColumn();
+            // ширина под название и число вида -0.1234
+            int width = i == variables.length - 1 ? 0 : Math.max(name.length(), 7);
+            columns[i + 1] = Column.decimal(name, width, 4);
+            ruleWidth += 3 + Math.max(name.length(), 7);
+        }
+        double[][] correlations = result.getCorrelationMatrix();
+        try (TableSink sink = TableSink.console(out, ruleWidth, columns)) {
+            for (int i = 0; i < variables.length; i++) {
+                sink.text(variables[i].getColumn());
+                for (double value : correlations[i]) {
+                    sink.decimal(value);
+                }
+                sink.endRow();
+            }
+        }
+    }
+
+    private static void printRegionModels(RegressionAnalysis.Result result, PrintStream out) throws IOException {
+        out.println("\nМодели по регионам (коэффициенты факторов; NaN - недостаточно строк для модели):");
+        Metric[] factors = result.getModel().getFactors();
+        Column[] columns = new Column[factors.length + 3];
+        columns[0] = Column.text("Регион", 31);
+        columns[1] = Column.integer("n", 8);
+        columns[2] = Column.decimal("R^2", 6, 4);
+        int ruleWidth = 31 + 3 + 8 + 3 + 6;
+        for (int i = 0; i < factors.length; i++) {
+            String name = factors[i].getColumn();
+            int width = i == factors.length - 1 ? 0 : Math.max(name.length(), 7);
+            columns[i + 3] = Column.decimal(name, width, 4);
+            ruleWidth += 3 + Math.max(name.length(), 7);
+        }
+        try (TableSink sink = TableSink.console(out, ruleWidth, columns)) {
+            for (Map.Entry<String, RegressionModel> entry : result.getRegionModels().entrySet()) {
+                RegressionModel model = entry.getValue();
+                sink.text(entry.getKey()).integer(model.getCount()).decimal(model.getRSquared());
+                for (int i = 0; i < factors.length; i++) {
+                    sink.decimal(model.getCoefficient(i));
+                }
+                sink.endRow();
+            }
+        }
+    }
+
+    // общая диаграмма коэффициентов и диаграммы регионов с построенной моделью, пакетом через ChartRenderingService
+    public static void renderCharts(RegressionAnalysis.Result result, File chartsDir) {
+        List<ChartSpec> specs = new ArrayList<>();
+        if (!result.getModel().isSingular()) {
+            specs.add(ChartGenerator.coefficientChartSpec(result.getModel(),
+                    "Коэффициенты регрессии индекса счастья", "regression/coefficients.png"));
+        }
+        for (Map.Entry<String, RegressionModel> entry : result.getRegionModels().entrySet()) {
+            if (!entry.getValue().isSingular()) {
+                specs.add(ChartGenerator.coefficientChartSpec(entry.getValue(), "Коэффициенты регрессии: "
+                        + entry.getKey(), "regression/" + ChartGenerator.regionSlug(entry.getKey()) + ".png"));
+            }
+        }
+        if (specs.isEmpty()) {
+            return;
+        }
+        System.out.println("\nДиаграммы коэффициентов регрессии:");
+        try (ChartRenderingService renderer = new ChartRenderingService(chartsDir,
+                ChartGenerator.getExporter(), ChartGenerator.getCache())) {
+            ChartRenderingService.printSummary(renderer.renderAll(specs));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package ru.university.report;
+
+import ru.university.database.DatabaseManager;
+
+import java.util.List;
+
+// Определения отчетов 1-4: регионы по умолчанию и SQL-запросы режима --sql.
+// Общие для Main, сервера анализа и модуля бенчмарков
+public final class ReportDefinitions {
+    // регионы отчетов по умолчанию: запрос 2 и запрос 3
+    public static final List<String> RICHEST_REGIONS = List.of("Latin America and Caribbean", "Eastern Asia");
+    public static final List<String> WEST_REGIONS = List.of("Western Europe", "North America");
+
+    // запрос 1: среднее economy по регионам из материализованных агрегатов (строка на регион, без просмотра countries)
+    public static final String ECONOMY_BY_REGION_SQL = "SELECT r.name AS region_name, a.sum_economy / a.row_count as avg_economy " +
+            "FROM region_aggregates a " +
+            "JOIN regions r ON a.region_id = r.id " +
+            "WHERE a.row_count > 0 " +
+            "ORDER BY avg_economy DESC";
+
+    // запрос 2: страна с максимальным economy в RICHEST_REGIONS
+    public static final String RICHEST_COUNTRY_SQL = "SELECT c.name, c.economy, r.name AS region_name " +
+            "FROM countries c " +
+            "JOIN regions r ON c.region_id = r.id " +
+            "WHERE r.name IN (" + DatabaseManager.placeholders(RICHEST_REGIONS.size()) + ") " +
+            "ORDER BY c.economy DESC LIMIT 1";
+
+    // запрос 3: средние показатели WEST_REGIONS (объединение агрегатов регионов) и страны этих регионов
+    // для поиска ближайшей к средним
+    public static final String WEST_AVERAGES_SQL = "SELECT SUM(a.sum_economy) / SUM(a.row_count) as avg_economy, " +
+            "SUM(a.sum_family) / SUM(a.row_count) as avg_family, " +
+            "SUM(a.sum_health) / SUM(a.row_count) as avg_health, SUM(a.sum_freedom) / SUM(a.row_count) as avg_freedom, " +
+            "SUM(a.sum_trust) / SUM(a.row_count) as avg_trust, SUM(a.sum_generosity) / SUM(a.row_count) as avg_generosity, " +
+            "SUM(a.sum_happiness_score) / SUM(a.row_count) as avg_happiness " +
+            "FROM region_aggregates a " +
+            "JOIN regions r ON a.region_id = r.id " +
+            "WHERE r.name IN (" + DatabaseManager.placeholders(WEST_REGIONS.size()) + ")";
+    // соединение, как в запросе 2: строки регионов берутся поиском по idx_countries_region_economy
+    public static final String WEST_COUNTRIES_SQL =
+            "SELECT c.name, c.economy, c.family, c.health, c.freedom, c.trust, c.generosity, c.happiness_score " +
+            "FROM countries c " +
+            "JOIN regions r ON c.region_id = r.id " +
+            "WHERE r.name IN (" + DatabaseManager.placeholders(WEST_REGIONS.size()) + ")";
+
+    // запрос 4: топ-10 стран по рангу счастья
+    public static final String TOP_HAPPINESS_SQL =
+            "SELECT name, happiness_score FROM countries ORDER BY happiness_rank LIMIT 10";
+
+    private ReportDefinitions() {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,272 @@
+package ru.university.report;
+
+import ru.university.metrics.MetricsRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Граф задач отчетов: каждая задача объявляется со списком задач, результаты которых ей нужны,
+// независимые задачи выполняются параллельно на пуле из parallelism потоков (CompletableFuture).
+// Зависимости объявляются раньше зависимой задачи, поэтому порядок объявления - топологический
+// и циклы невозможны. Время всего графа ограничено самой длинной цепочкой зависимостей
+// (критическим путем), а не суммой задач.
+// Вывод каждой задачи буферизуется и печатается в порядке объявления, как только все предыдущие
+// задачи завершены, поэтому консольный вывод совпадает с последовательным выполнением.
+// Задача, зависимость которой завершилась ошибкой, не выполняется.
+public final class ReportGraph {
+    private final int parallelism;
+    private final PrintStream console;
+    private final List<Task<?>> tasks = new ArrayList<>();
+    // задачи с номером меньше printed уже напечатаны
+    private int printed;
+    private long startNanos;
+
+    public ReportGraph(int parallelism) {
+        this(parallelism, System.out);
+    }
+
+    public ReportGraph(int parallelism, PrintStream console) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Число потоков графа отчетов должно быть не меньше 1");
+        }
+        this.parallelism = parallelism;
+        this.console = console;
+    }
+
+    public <T> Task<T> add(String name, ReportTask<T> body, Task<?>... dependencies) {
+        for (Task<?> dependency : dependencies) {
+            if (dependency.graph != this) {
+                throw new IllegalArgumentException("Зависимость " + dependency.name + " объявлена в другом графе");
+            }
+        }
+        Task<T> task = new Task<>(this, tasks.size(), name, body, List.of(dependencies));
+        tasks.add(task);
+        return task;
+    }
+
+    // выполняет все задачи и возвращает их времена; повторный запуск не поддерживается
+    public Summary run() {
+        if (startNanos != 0) {
+            throw new IllegalStateException("Граф отчетов уже выполнен");
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, tasks.size())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        startNanos = System.nanoTime();
+        try {
+            for (Task<?> task : tasks) {
+                task.schedule(executor);
+            }
+            CompletableFuture.allOf(tasks.stream().map(task -> task.future.handle((value, error) -> null))
+                    .toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdown();
+        }
+        long wallNanos = System.nanoTime() - startNanos;
+        printCompleted();
+        return new Summary(tasks, wallNanos, parallelism);
+    }
+
+    // печатает буферы завершенных задач подряд, начиная с первой ненапечатанной
+    private synchronized void printCompleted() {
+        while (printed < tasks.size() && tasks.get(printed).isDone()) {
+            Task<?> task = tasks.get(printed++);
+            task.output.flush();
+            console.write(task.buffer.toByteArray(), 0, task.buffer.size());
+            console.flush();
+        }
+    }
+
+    public static final class Task<T> {
+        private final ReportGraph graph;
+        private final int index;
+        private final String name;
+        private final ReportTask<T> body;
+        private final List<Task<?>> dependencies;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final PrintStream output = new PrintStream(buffer, true);
+        private volatile CompletableFuture<T> future;
+        private volatile long startNanos;
+        private volatile long endNanos;
+        private volatile String thread;
+        private volatile Throwable error;
+
+        private Task(ReportGraph graph, int index, String name, ReportTask<T> body, List<Task<?>> dependencies) {
+            this.graph = graph;
+            this.index = index;
+            this.name = name;
+            this.body = body;
+            this.dependencies = dependencies;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // результат задачи; внутри зависимой задачи доступен без ожидания
+        public T get() {
+            return future.join();
+        }
+
+        private void schedule(ExecutorService executor) {
+            List<CompletableFuture<?>> inputs = new ArrayList<>(dependencies.size());
+            for (Task<?> dependency : dependencies) {
+                inputs.add(dependency.future);
+            }
+            future = CompletableFuture.allOf(inputs.toArray(new CompletableFuture<?>[0]))
+                    .handle((ignored, failure) -> failure)
+                    .thenApplyAsync(failure -> failure == null ? execute() : skip(failure), executor);
+            future.whenComplete((value, failure) -> graph.printCompleted());
+        }
+
+        private boolean isDone() {
+            CompletableFuture<T> scheduled = future;
+            return scheduled != null && scheduled.isDone();
+        }
+
+        // зависимость завершилась ошибкой, сама задача не запускается
+        private T skip(Throwable failure) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            error = cause;
+            output.println("Задача " + name + " пропущена: ошибка в зависимости (" + cause + ")");
+            throw new CompletionException(cause);
+        }
+
+        private T execute() {
+            thread = Thread.currentThread().getName();
+            startNanos = System.nanoTime();
+            try {
+                return body.run(output);
+            } catch (Exception e) {
+                error = e;
+                output.println("Ошибка при выполнении задачи " + name);
+                e.printStackTrace(output);
+                throw new CompletionException(e);
+            } finally {
+                endNanos = System.nanoTime();
+                MetricsRegistry.DEFAULT.timer("report_task_seconds", "Время выполнения задачи графа отчетов",
+                        "task", name).record(endNanos - startNanos);
+            }
+        }
+
+        private boolean ran() {
+            return endNanos != 0;
+        }
+
+        private long durationNanos() {
+            return ran() ? endNanos - startNanos : 0;
+        }
+    }
+
+    // времена задач и критический путь - цепочка зависимостей с наибольшей суммой времен задач
+    public static final class Summary {
+        private final List<Task<?>> tasks;
+        private final long wallNanos;
+        private final int parallelism;
+        private final List<Task<?>> criticalPath;
+
+        private Summary(List<Task<?>> tasks, long wallNanos, int parallelism) {
+            this.tasks = tasks;
+            this.wallNanos = wallNanos;
+            this.parallelism = parallelism;
+            this.criticalPath = criticalPath(tasks);
+        }
+
+        private static List<Task<?>> criticalPath(List<Task<?>> tasks) {
+            long[] chain = new long[tasks.size()];
+            int[] previous = new int[tasks.size()];
+            int last = -1;
+            // задачи в топологическом порядке: зависимости всегда раньше
+            for (Task<?> task : tasks) {
+                previous[task.index] = -1;
+                long longest = 0;
+                for (Task<?> dependency : task.dependencies) {
+                    if (chain[dependency.index] > longest) {
+                        longest = chain[dependency.index];
+                        previous[task.index] = dependency.index;
+                    }
+                }
+                chain[task.index] = longest + task.durationNanos();
+                if (last < 0 || chain[task.index] > chain[last]) {
+                    last = task.index;
+                }
+            }
+            List<Task<?>> path = new ArrayList<>();
+            for (int i = last; i >= 0; i = previous[i]) {
+                path.add(tasks.get(i));
+            }
+            Collections.reverse(path);
+            return path;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getTotalTaskNanos() {
+            long total = 0;
+            for (Task<?> task : tasks) {
+                total += task.durationNanos();
+            }
+            return total;
+        }
+
+        public long getCriticalPathNanos() {
+            long total = 0;
+            for (Task<?> task : criticalPath) {
+                total += task.durationNanos();
+            }
+            return total;
+        }
+
+        public List<String> getCriticalPath() {
+            List<String> names = new ArrayList<>();
+            for (Task<?> task : criticalPath) {
+                names.add(task.name);
+            }
+            return names;
+        }
+
+        public boolean hasFailures() {
+            for (Task<?> task : tasks) {
+                if (task.error != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%nГраф отчетов: %d задач, потоков: %d%n", tasks.size(), parallelism);
+            out.printf("%-16s | %-16s | %9s | %9s | %s%n", "Задача", "Зависит от", "Старт, мс", "Время, мс", "Поток");
+            out.println("-".repeat(76));
+            for (Task<?> task : tasks) {
+                List<String> dependencies = new ArrayList<>();
+                for (Task<?> dependency : task.dependencies) {
+                    dependencies.add(dependency.name);
+                }
+                String start = task.ran() ? String.format("%9.1f", (task.startNanos - task.graph.startNanos) / 1e6) : "-";
+                String status = task.error != null ? " (ошибка)" : "";
+                out.printf("%-16s | %-16s | %9s | %9.1f | %s%s%n", task.name, String.join(",", dependencies), start,
+                        task.durationNanos() / 1e6, task.thread != null ? task.thread : "-", status);
+            }
+            out.printf("Критический путь: %s = %.1f мс%n", String.join(" -> ", getCriticalPath()),
+                    getCriticalPathNanos() / 1e6);
+            out.printf("Общее время: %.1f мс, сумма времен задач: %.1f мс%n", wallNanos / 1e6,
+                    getTotalTaskNanos() / 1e6);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+package ru.university.report;
+
+import java.io.PrintStream;
+
+// Тело задачи графа отчетов. Весь вывод задачи пишется в out: задачи выполняются параллельно,
+// а их вывод печатается целиком и в порядке объявления
+@FunctionalInterface
+public interface ReportTask<T> {
+    T run(PrintStream out) throws Exception;
+}
\ No newline at end of file
@@ -0,0 +1,215 @@
+package ru.university.report;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+// Буферизованный вывод таблицы отчета построчно: в консоль (столбцы фиксированной ширины), CSV или JSON.
+// Значения дописываются в один переиспользуемый StringBuilder без строки формата и промежуточных строк,
+// буфер сбрасывается в Writer блоками, поэтому выгрузка миллионов строк не разбирает формат на каждой строке.
+// Объект не потокобезопасен: каждая задача отчета пишет в свой вывод
+//
+//   try (TableSink sink = TableSink.console(out, 55, Column.text("Регион", 35), Column.decimal("GDP", 0, 4))) {
+//       sink.text(region).decimal(value).endRow();
+//   }
+public abstract class TableSink implements Closeable, Flushable {
+    private static final int DRAIN_CHARS = 32 * 1024;
+    private static final FixedDecimalFormat DEFAULT_FORMAT = new FixedDecimalFormat(4);
+
+    final Column[] columns;
+    final StringBuilder buffer = new StringBuilder(DRAIN_CHARS + 1024);
+    private final Writer out;
+    private final boolean closeOut;
+    private char[] chars = new char[DRAIN_CHARS];
+    // номер следующего столбца текущей строки, -1 - строка не начата
+    private int column = -1;
+    // начало текущей строки в буфере
+    private int rowStart;
+    private long rows;
+    private boolean started;
+    private boolean closed;
+
+    TableSink(Writer out, boolean closeOut, Column[] columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("У таблицы должен быть хотя бы один столбец");
+        }
+        this.out = out;
+        this.closeOut = closeOut;
+        this.columns = columns.clone();
+    }
+
+    // таблица в консоль или в буфер задачи отчета: после заголовка печатается линия из ruleWidth дефисов
+    // (0 - без линии); поток out не закрывается
+    public static TableSink console(PrintStream out, int ruleWidth, Column... columns) {
+        Writer writer = new OutputStreamWriter(out, Charset.defaultCharset());
+        return new ConsoleTableSink(writer, false, ruleWidth, columns);
+    }
+
+    public static TableSink csv(Writer out, Column... columns) {
+        return new CsvTableSink(out, false, columns);
+    }
+
+    public static TableSink json(Writer out, Column... columns) {
+        return new JsonTableSink(out, false, columns);
+    }
+
+    // файл .json - массив объектов JSON, остальные - CSV с заголовком; кодировка UTF-8
+    public static TableSink open(Path file, Column... columns) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        Writer writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16);
+        if (isJson(file)) {
+            return new JsonTableSink(writer, true, columns);
+        }
+        return new CsvTableSink(writer, true, columns);
+    }
+
+    public static boolean isJson(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json");
+    }
+
+    public TableSink text(String value) throws IOException {
+        int index = nextColumn();
+        int start = buffer.length();
+        if (value == null) {
+            appendNull(index);
+        } else {
+            appendText(index, value);
+        }
+        endCell(index, start);
+        return this;
+    }
+
+    public TableSink integer(long value) throws IOException {
+        int index = nextColumn();
+        int start = buffer.length();
+        buffer.append(value);
+        endCell(index, start);
+        return this;
+    }
+
+    // число с точностью столбца; для недесятичного столбца - с 4 знаками
+    public TableSink decimal(double value) throws IOException {
+        int index = nextColumn();
+        int start = buffer.length();
+        if (Double.isFinite(value)) {
+            format(index).append(buffer, value);
+        } else {
+            appendNonFinite(index, value);
+        }
+        endCell(index, start);
+        return this;
+    }
+
+    public void endRow() throws IOException {
+        if (column != columns.length) {
+            throw new IllegalStateException("В строке заполнено " + Math.max(column, 0) + " столбцов из " + columns.length);
+        }
+        finishRow();
+        column = -1;
+        rows++;
+        if (buffer.length() >= DRAIN_CHARS) {
+            drain();
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    // завершает таблицу (для пустой - печатает заголовок), недописанная строка отбрасывается
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (column >= 0) {
+                buffer.setLength(rowStart);
+                column = -1;
+            }
+            start();
+            footer();
+            flush();
+        } finally {
+            if (closeOut) {
+                out.close();
+            }
+        }
+    }
+
+    FixedDecimalFormat format(int index) {
+        FixedDecimalFormat format = columns[index].getFormat();
+        return format != null ? format : DEFAULT_FORMAT;
+    }
+
+    private int nextColumn() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Таблица уже закрыта");
+        }
+        if (column < 0) {
+            start();
+            rowStart = buffer.length();
+            beginRow(rows);
+            column = 0;
+        }
+        if (column >= columns.length) {
+            throw new IllegalStateException("В строке больше " + columns.length + " столбцов");
+        }
+        beginCell(column);
+        return column++;
+    }
+
+    private void start() {
+        if (!started) {
+            started = true;
+            header();
+        }
+    }
+
+    private void drain() throws IOException {
+        int length = buffer.length();
+        if (chars.length < length) {
+            chars = new char[length];
+        }
+        buffer.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+        buffer.setLength(0);
+    }
+
+    abstract void header();
+
+    abstract void beginRow(long index);
+
+    abstract void beginCell(int index);
+
+    abstract void appendText(int index, String value);
+
+    abstract void appendNull(int index);
+
+    abstract void appendNonFinite(int index, double value);
+
+    abstract void endCell(int index, int start);
+
+    abstract void finishRow();
+
+    abstract void footer();
+}
\ No newline at end of file
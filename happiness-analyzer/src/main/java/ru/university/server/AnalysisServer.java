@@ -0,0 +1,314 @@
+package ru.university.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ru.university.metrics.Counter;
+import ru.university.metrics.MetricsFormat;
+import ru.university.metrics.MetricsRegistry;
+import ru.university.metrics.Timer;
+import ru.university.model.CountryTable;
+import ru.university.model.Metric;
+import ru.university.report.ReportDefinitions;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Сервер анализа: данные загружаются один раз и остаются в памяти (колоночная CountryTable),
+// отчеты и их варианты с параметрами отдаются по HTTP в JSON без повторного запуска JVM и разбора CSV.
+// Слушает только localhost. Запросы обрабатываются пулом потоков фиксированного размера:
+// все они считаются в памяти и упираются в процессор, поэтому потоков больше числа ядер не нужно.
+// Перезагрузка (/reload) строит новый снимок и подменяет ссылку; запросы во время перезагрузки
+// продолжают отвечать по старому снимку.
+//
+// GET  /health, /regions
+// GET  /averages?metric=economy&regions=A,B   - средние по регионам и по всей выборке
+// GET  /extreme?metric=economy&order=max&regions=A,B
+// GET  /top?metric=economy&n=10&order=desc&regions=A,B   (без metric - по рангу счастья)
+// GET  /nearest?k=1&regions=A,B                - страны, ближайшие к средним показателям
+// GET  /reports/1 ... /reports/4                - отчеты Main с параметрами по умолчанию
+// GET  /metrics, /metrics.json
+// POST /reload?source=csv                       - перечитать данные из источника
+public class AnalysisServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    static final int MAX_ROWS = 1000;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, DatasetLoader> sources;
+    private final AtomicReference<WarmDataset> dataset = new AtomicReference<>();
+    // перезагрузки выполняются по одной: загрузчики пишут в общую базу данных
+    private final Object reloadLock = new Object();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final Counter reloadFailures = MetricsRegistry.DEFAULT.counter("server_reload_failures_total",
+            "Неудачные перезагрузки данных сервера");
+    private final Timer reloadTimer = MetricsRegistry.DEFAULT.timer("server_reload_seconds",
+            "Перезагрузка данных сервера");
+
+    // sources - именованные источники для /reload, первый используется по умолчанию
+    public AnalysisServer(int port, int threads, CountryTable initial, String initialSource,
+                          Map<String, DatasetLoader> sources) throws IOException {
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("Не задан ни один источник данных");
+        }
+        this.sources = new LinkedHashMap<>(sources);
+        dataset.set(new WarmDataset(initial, 1, initialSource, 0));
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "analysis-server-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        route("/health", "GET", (ds, params) -> ReportQueries.health(ds));
+        route("/regions", "GET", (ds, params) -> ReportQueries.regions(ds));
+        route("/averages", "GET", (ds, params) ->
+                ReportQueries.averages(ds, metric(params, Metric.ECONOMY), regions(params)));
+        route("/extreme", "GET", (ds, params) ->
+                ReportQueries.extreme(ds, metric(params, Metric.ECONOMY), !"min".equals(order(params, "max", "min")),
+                        regions(params)));
+        route("/top", "GET", (ds, params) -> ReportQueries.top(ds, metric(params, null), intParam(params, "n", 10),
+                "desc".equals(order(params, "desc", "asc")), regions(params)));
+        route("/nearest", "GET", (ds, params) ->
+                ReportQueries.nearest(ds, intParam(params, "k", 1), regions(params)));
+        route("/reports/", "GET", (ds, params) -> report(ds, params.get("path")));
+        route("/reload", "POST", (ds, params) -> reload(params.getOrDefault("source", defaultSource())));
+        server.createContext("/metrics.json", exchange -> respond(exchange, 200,
+                "application/json; charset=utf-8", MetricsFormat.toJson(MetricsRegistry.DEFAULT)));
+        server.createContext("/metrics", exchange -> respond(exchange, 200,
+                "text/plain; version=0.0.4; charset=utf-8", MetricsFormat.toPrometheus(MetricsRegistry.DEFAULT)));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public int getRowCount() {
+        return dataset.get().getTable().size();
+    }
+
+    // блокирует вызывающий поток до requestStop() или close()
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    // сигнал остановки из другого потока: awaitStop() возвращается, а сервер закрывает его владелец
+    public void requestStop() {
+        stopped.countDown();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+        stopped.countDown();
+    }
+
+    // загрузка выполняется вне обработки других запросов, подмена снимка атомарна;
+    // при ошибке загрузчика остается прежний снимок
+    String reload(String source) {
+        DatasetLoader loader = sources.get(source);
+        if (loader == null) {
+            throw new IllegalArgumentException("Неизвестный источник данных: " + source
+                    + ", доступны: " + sources.keySet());
+        }
+        synchronized (reloadLock) {
+            long start = System.nanoTime();
+            CountryTable table;
+            try {
+                table = loader.load();
+            } catch (Exception e) {
+                reloadFailures.increment();
+                throw new IllegalStateException("Ошибка при загрузке данных из источника " + source + ": " + e, e);
+            }
+            long elapsed = System.nanoTime() - start;
+            reloadTimer.record(elapsed);
+            WarmDataset previous = dataset.get();
+            WarmDataset next = new WarmDataset(table, previous.getVersion() + 1, source, elapsed);
+            dataset.set(next);
+            System.out.printf("Данные сервера перезагружены из источника %s: %d строк за %d мс (версия %d)%n",
+                    source, table.size(), elapsed / 1_000_000, next.getVersion());
+            return new Json().beginObject()
+                    .field("previousVersion", previous.getVersion())
+                    .field("previousRows", previous.getTable().size())
+                    .key("current").beginObject()
+                    .field("version", next.getVersion())
+                    .field("source", source)
+                    .field("rows", table.size())
+                    .field("loadMillis", elapsed / 1_000_000)
+                    .endObject()
+                    .endObject().toString();
+        }
+    }
+
+    private String defaultSource() {
+        return sources.keySet().iterator().next();
+    }
+
+    // отчеты 1-4 с регионами по умолчанию из ReportDefinitions
+    private static String report(WarmDataset ds, String number) {
+        switch (number) {
+            case "1":
+                return ReportQueries.averages(ds, Metric.ECONOMY, null);
+            case "2":
+                return ReportQueries.extreme(ds, Metric.ECONOMY, true, ReportDefinitions.RICHEST_REGIONS);
+            case "3":
+                return ReportQueries.nearest(ds, 1, ReportDefinitions.WEST_REGIONS);
+            case "4":
+                return ReportQueries.top(ds, null, 10, false, null);
+            default:
+                throw new NotFoundException("Отчет не найден: " + number + ", доступны 1-4");
+        }
+    }
+
+    private void route(String path, String method, Handler handler) {
+        Timer timer = MetricsRegistry.DEFAULT.timer("server_request_seconds", "Обработка запроса сервера анализа",
+                "path", path);
+        Counter errors = MetricsRegistry.DEFAULT.counter("server_request_errors_total",
+                "Запросы сервера анализа, завершенные ошибкой", "path", path);
+        server.createContext(path, exchange -> {
+            long start = System.nanoTime();
+            int status = 200;
+            String body;
+            try {
+                if (!method.equals(exchange.getRequestMethod())) {
+                    status = 405;
+                    body = error("Метод " + exchange.getRequestMethod() + " не поддерживается, ожидается " + method);
+                } else {
+                    Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                    String rest = exchange.getRequestURI().getPath().substring(path.length());
+                    if (path.endsWith("/")) {
+                        params.put("path", rest);
+                    } else if (!rest.isEmpty()) {
+                        throw new NotFoundException("Путь не найден: " + exchange.getRequestURI().getPath());
+                    }
+                    body = handler.handle(dataset.get(), params);
+                }
+            } catch (NotFoundException e) {
+                status = 404;
+                body = error(e.getMessage());
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = error(e.getMessage());
+            } catch (RuntimeException e) {
+                status = 500;
+                body = error(e.getMessage());
+                e.printStackTrace();
+            }
+            if (status != 200) {
+                errors.increment();
+            }
+            respond(exchange, status, "application/json; charset=utf-8", body);
+            timer.recordSince(start);
+        });
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        try {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String error(String message) {
+        return new Json().beginObject().field("error", message).endObject().toString();
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    // regions=A,B (названия регионов не содержат запятых); отсутствие параметра - все регионы
+    private static List<String> regions(Map<String, String> params) {
+        String value = params.get("regions");
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : value.split(",")) {
+            if (!name.isBlank()) {
+                names.add(name.trim());
+            }
+        }
+        return names;
+    }
+
+    private static Metric metric(Map<String, String> params, Metric defaultMetric) {
+        String value = params.get("metric");
+        return value == null || value.isBlank() ? defaultMetric : Metric.fromColumn(value.trim());
+    }
+
+    private static String order(Map<String, String> params, String... allowed) {
+        String value = params.get("order");
+        if (value == null || value.isBlank()) {
+            return allowed[0];
+        }
+        if (!Arrays.asList(allowed).contains(value)) {
+            throw new IllegalArgumentException("Параметр order должен быть одним из " + Arrays.toString(allowed));
+        }
+        return value;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        int result;
+        try {
+            result = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Параметр " + name + " должен быть целым числом: " + value);
+        }
+        if (result < 1 || result > MAX_ROWS) {
+            throw new IllegalArgumentException("Параметр " + name + " должен быть от 1 до " + MAX_ROWS);
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        String handle(WarmDataset dataset, Map<String, String> params);
+    }
+
+    private static final class NotFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private NotFoundException(String message) {
+            super(message);
+        }
+    }
+}
\ No newline at end of file
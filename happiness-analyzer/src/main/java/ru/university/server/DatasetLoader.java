@@ -0,0 +1,10 @@
+package ru.university.server;
+
+import ru.university.model.CountryTable;
+
+// Источник данных для сервера анализа: CSV файл, база данных и т.п.
+// Вызывается при запуске и при каждой горячей перезагрузке (/reload)
+@FunctionalInterface
+public interface DatasetLoader {
+    CountryTable load() throws Exception;
+}
\ No newline at end of file
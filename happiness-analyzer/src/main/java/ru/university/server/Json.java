@@ -0,0 +1,151 @@
+package ru.university.server;
+
+import java.util.Arrays;
+
+// Минимальная запись JSON для ответов сервера: объекты, массивы, строки и числа.
+// Запятые между элементами расставляются автоматически; NaN и бесконечности записываются как null
+final class Json {
+    private final StringBuilder sb = new StringBuilder();
+    // на каждом уровне вложенности: был ли уже элемент
+    private boolean[] hasElement = new boolean[8];
+    private int depth;
+    private boolean afterKey;
+
+    Json beginObject() {
+        separator();
+        sb.append('{');
+        push();
+        return this;
+    }
+
+    Json endObject() {
+        depth--;
+        sb.append('}');
+        return this;
+    }
+
+    Json beginArray() {
+        separator();
+        sb.append('[');
+        push();
+        return this;
+    }
+
+    Json endArray() {
+        depth--;
+        sb.append(']');
+        return this;
+    }
+
+    Json key(String name) {
+        separator();
+        string(name);
+        sb.append(':');
+        afterKey = true;
+        return this;
+    }
+
+    Json value(String value) {
+        separator();
+        if (value == null) {
+            sb.append("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    Json value(double value) {
+        separator();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            sb.append("null");
+        } else {
+            sb.append(value);
+        }
+        return this;
+    }
+
+    Json value(long value) {
+        separator();
+        sb.append(value);
+        return this;
+    }
+
+    Json value(boolean value) {
+        separator();
+        sb.append(value);
+        return this;
+    }
+
+    Json field(String name, String value) {
+        return key(name).value(value);
+    }
+
+    Json field(String name, double value) {
+        return key(name).value(value);
+    }
+
+    Json field(String name, long value) {
+        return key(name).value(value);
+    }
+
+    Json field(String name, boolean value) {
+        return key(name).value(value);
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+
+    private void push() {
+        if (++depth == hasElement.length) {
+            hasElement = Arrays.copyOf(hasElement, depth * 2);
+        }
+        hasElement[depth] = false;
+    }
+
+    private void separator() {
+        if (afterKey) {
+            afterKey = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasElement[depth]) {
+                sb.append(',');
+            }
+            hasElement[depth] = true;
+        }
+    }
+
+    private void string(String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+package ru.university.server;
+
+import ru.university.analytics.CentroidSearch;
+import ru.university.analytics.CountryAnalytics;
+import ru.university.analytics.GroupStats;
+import ru.university.analytics.RegionFilter;
+import ru.university.model.CountryTable;
+import ru.university.model.Metric;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Запросы сервера анализа по снимку данных, ответы в JSON.
+// Отчеты 1-4 из Main - частные случаи с параметрами по умолчанию (см. AnalysisServer)
+final class ReportQueries {
+    private ReportQueries() {
+    }
+
+    static String health(WarmDataset dataset) {
+        return new Json().beginObject()
+                .field("status", "ok")
+                .field("rows", dataset.getTable().size())
+                .field("regions", dataset.getTable().getRegions().size())
+                .field("version", dataset.getVersion())
+                .field("source", dataset.getSource())
+                .field("loadedAt", dataset.getLoadedAtMillis())
+                .field("loadMillis", dataset.getLoadNanos() / 1_000_000)
+                .endObject().toString();
+    }
+
+    static String regions(WarmDataset dataset) {
+        CountryTable table = dataset.getTable();
+        GroupStats stats = dataset.getAnalytics().groupByRegion(Metric.HAPPINESS_SCORE);
+        Json json = new Json().beginObject().field("version", dataset.getVersion()).key("regions").beginArray();
+        for (int id = 0; id < stats.regionIdBound(); id++) {
+            if (table.getRegionName(id) != null) {
+                json.beginObject().field("id", id).field("name", table.getRegionName(id))
+                        .field("count", stats.getCount(id)).endObject();
+            }
+        }
+        return json.endArray().endObject().toString();
+    }
+
+    // среднее, минимум и максимум показателя по каждому региону (по убыванию среднего) и по всей выборке
+    static String averages(WarmDataset dataset, Metric metric, List<String> regionNames) {
+        CountryTable table = dataset.getTable();
+        RegionFilter filter = dataset.filter(regionNames);
+        GroupStats stats = dataset.getAnalytics().groupByRegion(metric, filter);
+        List<Integer> regionIds = new ArrayList<>();
+        long count = 0;
+        double sum = 0;
+        for (int id = 0; id < stats.regionIdBound(); id++) {
+            if (stats.getCount(id) > 0) {
+                regionIds.add(id);
+                count += stats.getCount(id);
+                sum += stats.getSum(id);
+            }
+        }
+        regionIds.sort((a, b) -> Double.compare(stats.getAverage(b), stats.getAverage(a)));
+
+        Json json = new Json().beginObject().field("version", dataset.getVersion())
+                .field("metric", metric.getColumn());
+        regionsField(json, regionNames);
+        json.key("groups").beginArray();
+        for (int id : regionIds) {
+            json.beginObject()
+                    .field("region", table.getRegionName(id))
+                    .field("count", stats.getCount(id))
+                    .field("average", stats.getAverage(id))
+                    .field("min", stats.getMin(id))
+                    .field("max", stats.getMax(id))
+                    .endObject();
+        }
+        json.endArray();
+        json.key("combined").beginObject()
+                .field("count", count)
+                .field("average", count > 0 ? sum / count : Double.NaN)
+                .endObject();
+        return json.endObject().toString();
+    }
+
+    // строка с максимальным (или минимальным) значением показателя; row = null, если строк нет
+    static String extreme(WarmDataset dataset, Metric metric, boolean max, List<String> regionNames) {
+        CountryAnalytics analytics = dataset.getAnalytics();
+        RegionFilter filter = dataset.filter(regionNames);
+        int row = max ? analytics.argMax(metric, filter) : analytics.argMin(metric, filter);
+        Json json = new Json().beginObject().field("version", dataset.getVersion())
+                .field("metric", metric.getColumn()).field("order", max ? "max" : "min");
+        regionsField(json, regionNames);
+        json.key("row");
+        if (row < 0) {
+            json.value((String) null);
+        } else {
+            row(json, dataset.getTable(), row);
+        }
+        return json.endObject().toString();
+    }
+
+    // первые n строк по показателю; metric == null - по рангу счастья, как запрос 4
+    static String top(WarmDataset dataset, Metric metric, int n, boolean descending, List<String> regionNames) {
+        CountryAnalytics analytics = dataset.getAnalytics();
+        RegionFilter filter = dataset.filter(regionNames);
+        int[] rows = metric == null ? analytics.topByRank(n, filter) : analytics.topN(metric, n, descending, filter);
+        Json json = new Json().beginObject().field("version", dataset.getVersion())
+                .field("metric", metric == null ? "happiness_rank" : metric.getColumn())
+                .field("order", metric == null || !descending ? "asc" : "desc")
+                .field("n", n);
+        regionsField(json, regionNames);
+        json.key("rows").beginArray();
+        for (int row : rows) {
+            row(json, dataset.getTable(), row);
+        }
+        return json.endArray().endObject().toString();
+    }
+
+    // средние показатели CentroidSearch.DEFAULT_FACTORS по выборке и k ближайших к ним стран (L1), как запрос 3
+    static String nearest(WarmDataset dataset, int k, List<String> regionNames) {
+        CentroidSearch search = dataset.getCentroidSearch();
+        RegionFilter filter = dataset.filter(regionNames);
+        long count = dataset.getAnalytics().count(filter);
+        Json json = new Json().beginObject().field("version", dataset.getVersion()).field("count", count);
+        regionsField(json, regionNames);
+        json.key("centroid").beginObject();
+        Metric[] factors = search.getFactors();
+        double[] centroid = search.centroid(filter);
+        for (int d = 0; d < factors.length; d++) {
+            json.field(factors[d].getColumn(), centroid[d]);
+        }
+        json.endObject().key("nearest").beginArray();
+        if (count > 0) {
+            for (CentroidSearch.Neighbor neighbor : search.nearest(centroid, k, filter)) {
+                json.beginObject().field("distance", neighbor.getDistance()).key("row");
+                row(json, dataset.getTable(), neighbor.getRow());
+                json.endObject();
+            }
+        }
+        return json.endArray().endObject().toString();
+    }
+
+    private static void regionsField(Json json, List<String> regionNames) {
+        json.key("regions");
+        if (regionNames == null || regionNames.isEmpty()) {
+            json.value("all");
+            return;
+        }
+        json.beginArray();
+        for (String name : regionNames) {
+            json.value(name);
+        }
+        json.endArray();
+    }
+
+    private static void row(Json json, CountryTable table, int row) {
+        json.beginObject()
+                .field("id", table.getId(row))
+                .field("name", table.getName(row))
+                .field("region", table.getRegionName(table.getRegionId(row)))
+                .field("rank", table.getRank(row));
+        for (Metric metric : Metric.values()) {
+            json.field(metric.getColumn(), table.getValue(row, metric));
+        }
+        json.endObject();
+    }
+}
\ No newline at end of file
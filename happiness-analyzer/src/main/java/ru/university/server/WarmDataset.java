@@ -0,0 +1,63 @@
+package ru.university.server;
+
+import ru.university.analytics.CentroidSearch;
+import ru.university.analytics.CountryAnalytics;
+import ru.university.analytics.RegionFilter;
+import ru.university.model.CountryTable;
+
+import java.util.List;
+
+// Неизменяемый снимок загруженных данных. Перезагрузка строит новый снимок и подменяет ссылку,
+// запросы, начатые на старом снимке, дорабатывают на нем без блокировок
+final class WarmDataset {
+    private final CountryTable table;
+    private final CountryAnalytics analytics;
+    private final CentroidSearch centroidSearch;
+    private final long version;
+    private final String source;
+    private final long loadedAtMillis;
+    private final long loadNanos;
+
+    WarmDataset(CountryTable table, long version, String source, long loadNanos) {
+        this.table = table;
+        this.analytics = new CountryAnalytics(table);
+        this.centroidSearch = new CentroidSearch(table);
+        this.version = version;
+        this.source = source;
+        this.loadedAtMillis = System.currentTimeMillis();
+        this.loadNanos = loadNanos;
+    }
+
+    CountryTable getTable() {
+        return table;
+    }
+
+    CountryAnalytics getAnalytics() {
+        return analytics;
+    }
+
+    CentroidSearch getCentroidSearch() {
+        return centroidSearch;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    long getLoadedAtMillis() {
+        return loadedAtMillis;
+    }
+
+    long getLoadNanos() {
+        return loadNanos;
+    }
+
+    // null или пустой список - все регионы
+    RegionFilter filter(List<String> regionNames) {
+        return regionNames == null || regionNames.isEmpty() ? RegionFilter.ALL : RegionFilter.of(table, regionNames);
+    }
+}
\ No newline at end of file
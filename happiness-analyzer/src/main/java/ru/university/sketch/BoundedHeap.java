@@ -0,0 +1,112 @@
+package ru.university.sketch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// k элементов с наименьшими ключами: куча с наибольшим ключом в корне.
+// Проверка admits дешевая, поэтому объект элемента создается только если он попадет в кучу.
+// Используется для выборки (ключ - случайное число) и для топа по показателю (ключ - значение со знаком минус).
+final class BoundedHeap<T> {
+    private final int capacity;
+    private final double[] keys;
+    private final Object[] items;
+    private int size;
+
+    BoundedHeap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер должен быть положительным: " + capacity);
+        }
+        this.capacity = capacity;
+        this.keys = new double[capacity];
+        this.items = new Object[capacity];
+    }
+
+    boolean admits(double key) {
+        return size < capacity || key < keys[0];
+    }
+
+    void offer(double key, T item) {
+        if (size < capacity) {
+            keys[size] = key;
+            items[size] = item;
+            siftUp(size++);
+        } else if (key < keys[0]) {
+            keys[0] = key;
+            items[0] = item;
+            siftDown(0);
+        }
+    }
+
+    void merge(BoundedHeap<T> other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.keys[i], other.item(i));
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    // элементы в порядке возрастания ключа
+    List<T> sorted() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(keys[a], keys[b]));
+        List<T> result = new ArrayList<>(size);
+        for (int i : order) {
+            result.add(item(i));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(int index) {
+        return (T) items[index];
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (keys[parent] >= keys[index]) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int largest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && keys[left] > keys[largest]) {
+                largest = left;
+            }
+            if (right < size && keys[right] > keys[largest]) {
+                largest = right;
+            }
+            if (largest == index) {
+                return;
+            }
+            swap(index, largest);
+            index = largest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        double key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        Object item = items[a];
+        items[a] = items[b];
+        items[b] = item;
+    }
+}
\ No newline at end of file
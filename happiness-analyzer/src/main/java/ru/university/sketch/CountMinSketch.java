@@ -0,0 +1,158 @@
+package ru.university.sketch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Частоты строковых ключей в фиксированной памяти (count-min, Cormode и Muthukrishnan):
+// depth строк по width счетчиков, ключ увеличивает по одному счетчику в каждой строке,
+// оценка - минимум из них. Оценка не меньше истинной и с вероятностью 1 - delta
+// превышает ее не более чем на epsilon * N, где width = e / epsilon, depth = ln(1 / delta).
+// Для поиска частых ключей (heavy hitters) рядом хранится небольшой набор кандидатов с наибольшими оценками.
+public final class CountMinSketch {
+    public static final double DEFAULT_EPSILON = 0.001;
+    public static final double DEFAULT_DELTA = 0.01;
+    public static final int DEFAULT_TRACKED_KEYS = 32;
+
+    private final int width;
+    private final int depth;
+    private final long seed;
+    private final long[] counts;
+    private long total;
+
+    private final int trackedKeys;
+    private final Map<String, Long> candidates = new HashMap<>();
+    // кандидат с наименьшей оценкой; null - нужно найти заново
+    private String minKey;
+    private long minEstimate;
+
+    public CountMinSketch(long seed) {
+        this(DEFAULT_EPSILON, DEFAULT_DELTA, DEFAULT_TRACKED_KEYS, seed);
+    }
+
+    public CountMinSketch(double epsilon, double delta, int trackedKeys, long seed) {
+        if (epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("epsilon и delta должны быть в интервале (0, 1)");
+        }
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.seed = seed;
+        this.counts = new long[width * depth];
+        this.trackedKeys = trackedKeys;
+    }
+
+    public void add(String key) {
+        add(key, 1);
+    }
+
+    public void add(String key, long count) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + Math.floorMod(h1 + row * h2, width);
+            counts[index] += count;
+            estimate = Math.min(estimate, counts[index]);
+        }
+        total += count;
+        track(key, estimate);
+    }
+
+    public long estimate(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts[row * width + Math.floorMod(h1 + row * h2, width)]);
+        }
+        return estimate;
+    }
+
+    // сливаются только эскизы одинакового размера с одним seed: тогда ключ попадает в те же счетчики
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth || other.seed != seed) {
+            throw new IllegalArgumentException("Эскизы count-min с разными параметрами нельзя слить");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        List<String> keys = new ArrayList<>(candidates.keySet());
+        keys.addAll(other.candidates.keySet());
+        candidates.clear();
+        minKey = null;
+        for (String key : keys) {
+            track(key, estimate(key));
+        }
+    }
+
+    // до k ключей с наибольшими оценками частоты, по убыванию
+    public List<Map.Entry<String, Long>> heavyHitters(int k) {
+        List<Map.Entry<String, Long>> result = new ArrayList<>();
+        for (String key : candidates.keySet()) {
+            result.add(Map.entry(key, estimate(key)));
+        }
+        result.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    // граница завышения оценки epsilon * N (выполняется с вероятностью 1 - delta)
+    public long errorBound() {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+
+    public long estimatedBytes() {
+        return 8L * counts.length + 64L * candidates.size() + 64;
+    }
+
+    private void track(String key, long estimate) {
+        if (candidates.containsKey(key)) {
+            candidates.put(key, estimate);
+            if (key.equals(minKey)) {
+                minKey = null;
+            }
+            return;
+        }
+        if (candidates.size() < trackedKeys) {
+            candidates.put(key, estimate);
+            if (minKey != null && estimate < minEstimate) {
+                minKey = key;
+                minEstimate = estimate;
+            }
+            return;
+        }
+        if (minKey == null) {
+            findMin();
+        }
+        if (estimate > minEstimate) {
+            candidates.remove(minKey);
+            candidates.put(key, estimate);
+            findMin();
+        }
+    }
+
+    private void findMin() {
+        minKey = null;
+        minEstimate = Long.MAX_VALUE;
+        for (Map.Entry<String, Long> entry : candidates.entrySet()) {
+            if (entry.getValue() < minEstimate) {
+                minKey = entry.getKey();
+                minEstimate = entry.getValue();
+            }
+        }
+    }
+
+    private long hash(String key) {
+        long z = key.hashCode() + seed * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+package ru.university.sketch;
+
+import ru.university.model.Metric;
+
+import java.util.List;
+
+// Эскизы одного региона: по каждому показателю t-digest, сумма и строка с максимумом,
+// count-min по названиям стран, равномерная выборка строк и топ строк по индексу счастья.
+// Сумма, максимум и топ точные и тоже сливаются, приближенные только квантили, частоты и выборка.
+public final class RegionSketch {
+    private static final Metric[] METRICS = Metric.values();
+
+    private final String region;
+    private long count;
+    private final TDigest[] digests = new TDigest[METRICS.length];
+    private final double[] sums = new double[METRICS.length];
+    private final SketchRow[] maxRows = new SketchRow[METRICS.length];
+    private final CountMinSketch names;
+    private final ReservoirSample<SketchRow> sample;
+    private final BoundedHeap<SketchRow> top;
+
+    RegionSketch(String region, int sampleSize, int topSize, long seed) {
+        this.region = region;
+        for (int m = 0; m < METRICS.length; m++) {
+            digests[m] = new TDigest();
+        }
+        // count-min должен иметь одинаковый seed во всех фрагментах, иначе эскизы не сливаются
+        this.names = new CountMinSketch(region.hashCode());
+        this.sample = new ReservoirSample<>(sampleSize, seed);
+        this.top = new BoundedHeap<>(topSize);
+    }
+
+    // values индексированы Metric.ordinal()
+    void add(String name, int rank, double[] values) {
+        count++;
+        SketchRow row = null;
+        for (int m = 0; m < METRICS.length; m++) {
+            double value = values[m];
+            digests[m].add(value);
+            sums[m] += value;
+            if (maxRows[m] == null || value > maxRows[m].getValue(METRICS[m])) {
+                row = row != null ? row : new SketchRow(name, region, rank, values);
+                maxRows[m] = row;
+            }
+        }
+        names.add(name);
+        double key = sample.nextKey();
+        if (key >= 0) {
+            row = row != null ? row : new SketchRow(name, region, rank, values);
+            sample.put(key, row);
+        }
+        double topKey = -values[Metric.HAPPINESS_SCORE.ordinal()];
+        if (top.admits(topKey)) {
+            top.offer(topKey, row != null ? row : new SketchRow(name, region, rank, values));
+        }
+    }
+
+    void merge(RegionSketch other) {
+        count += other.count;
+        for (int m = 0; m < METRICS.length; m++) {
+            digests[m].merge(other.digests[m]);
+            sums[m] += other.sums[m];
+            SketchRow otherMax = other.maxRows[m];
+            if (otherMax != null && (maxRows[m] == null
+                    || otherMax.getValue(METRICS[m]) > maxRows[m].getValue(METRICS[m]))) {
+                maxRows[m] = otherMax;
+            }
+        }
+        names.merge(other.names);
+        sample.merge(other.sample);
+        top.merge(other.top);
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum(Metric metric) {
+        return sums[metric.ordinal()];
+    }
+
+    public double getAverage(Metric metric) {
+        return count == 0 ? Double.NaN : sums[metric.ordinal()] / count;
+    }
+
+    public double getQuantile(Metric metric, double q) {
+        return digests[metric.ordinal()].quantile(q);
+    }
+
+    public SketchRow getMaxRow(Metric metric) {
+        return maxRows[metric.ordinal()];
+    }
+
+    public CountMinSketch getNames() {
+        return names;
+    }
+
+    public List<SketchRow> getSample() {
+        return sample.items();
+    }
+
+    // строки с наибольшим индексом счастья по убыванию
+    public List<SketchRow> getTop() {
+        return top.sorted();
+    }
+
+    public long estimatedBytes() {
+        long bytes = names.estimatedBytes() + 128L * (sample.capacity() + top.capacity());
+        for (TDigest digest : digests) {
+            bytes += digest.estimatedBytes();
+        }
+        return bytes;
+    }
+}
\ No newline at end of file
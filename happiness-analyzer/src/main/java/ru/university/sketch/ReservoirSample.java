@@ -0,0 +1,58 @@
+package ru.university.sketch;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Равномерная выборка фиксированного размера из потока (bottom-k): каждому элементу назначается
+// случайный ключ, хранятся capacity элементов с наименьшими ключами. В отличие от алгоритма R
+// такие выборки сливаются точно: объединение двух выборок и отбор наименьших ключей дает
+// равномерную выборку из объединенного потока. После заполнения элемент создается только при попадании.
+public final class ReservoirSample<T> {
+    private final BoundedHeap<T> heap;
+    private final SplittableRandom random;
+    private long seen;
+
+    public ReservoirSample(int capacity, long seed) {
+        this.heap = new BoundedHeap<>(capacity);
+        this.random = new SplittableRandom(seed);
+    }
+
+    // ключ для очередного элемента потока или -1, если элемент в выборку не попадает
+    public double nextKey() {
+        seen++;
+        double key = random.nextDouble();
+        return heap.admits(key) ? key : -1;
+    }
+
+    public void put(double key, T item) {
+        heap.offer(key, item);
+    }
+
+    public void add(T item) {
+        double key = nextKey();
+        if (key >= 0) {
+            put(key, item);
+        }
+    }
+
+    public void merge(ReservoirSample<T> other) {
+        heap.merge(other.heap);
+        seen += other.seen;
+    }
+
+    public long getSeen() {
+        return seen;
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    public int capacity() {
+        return heap.capacity();
+    }
+
+    public List<T> items() {
+        return heap.sorted();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,206 @@
+package ru.university.sketch;
+
+import ru.university.analytics.CentroidSearch;
+import ru.university.model.Country;
+import ru.university.model.Metric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Эскизы по регионам, которые заполняются при загрузке CSV и отвечают на запросы отчетов
+// за время, не зависящее от числа строк. Память тоже постоянна: несколько сотен КБ на регион.
+// Индексы разных фрагментов файла (или разных файлов) сливаются через merge.
+// Не потокобезопасен: параллельный разбор заполняет по индексу на фрагмент.
+public final class SketchIndex {
+    public static final int DEFAULT_SAMPLE_SIZE = 256;
+    public static final int DEFAULT_TOP_SIZE = 10;
+
+    private final Map<String, RegionSketch> regions = new LinkedHashMap<>();
+    private final int sampleSize;
+    private final int topSize;
+    private final long seed;
+    private final double[] values = new double[Metric.values().length];
+
+    public SketchIndex(long seed) {
+        this(DEFAULT_SAMPLE_SIZE, DEFAULT_TOP_SIZE, seed);
+    }
+
+    // seed задает случайные ключи выборки, у сливаемых индексов он должен различаться
+    public SketchIndex(int sampleSize, int topSize, long seed) {
+        this.sampleSize = sampleSize;
+        this.topSize = topSize;
+        this.seed = seed;
+    }
+
+    public void add(Country country) {
+        values[Metric.HAPPINESS_SCORE.ordinal()] = country.getHappinessScore();
+        values[Metric.STANDARD_ERROR.ordinal()] = country.getStandardError();
+        values[Metric.ECONOMY.ordinal()] = country.getEconomy();
+        values[Metric.FAMILY.ordinal()] = country.getFamily();
+        values[Metric.HEALTH.ordinal()] = country.getHealth();
+        values[Metric.FREEDOM.ordinal()] = country.getFreedom();
+        values[Metric.TRUST.ordinal()] = country.getTrust();
+        values[Metric.GENEROSITY.ordinal()] = country.getGenerosity();
+        values[Metric.DYSTOPIA_RESIDUAL.ordinal()] = country.getDystopiaResidual();
+        add(country.getRegion().getName(), country.getName(), country.getHappinessRank(), values);
+    }
+
+    // values индексированы Metric.ordinal(), массив не сохраняется
+    public void add(String region, String name, int rank, double[] values) {
+        RegionSketch sketch = regions.get(region);
+        if (sketch == null) {
+            sketch = new RegionSketch(region, sampleSize, topSize, seed * 31 + region.hashCode());
+            regions.put(region, sketch);
+        }
+        sketch.add(name, rank, values);
+    }
+
+    public void merge(SketchIndex other) {
+        for (RegionSketch sketch : other.regions.values()) {
+            RegionSketch target = regions.get(sketch.getRegion());
+            if (target == null) {
+                regions.put(sketch.getRegion(), sketch);
+            } else {
+                target.merge(sketch);
+            }
+        }
+    }
+
+    public Collection<RegionSketch> getRegions() {
+        return regions.values();
+    }
+
+    public RegionSketch getRegion(String region) {
+        return regions.get(region);
+    }
+
+    public long count() {
+        long count = 0;
+        for (RegionSketch sketch : regions.values()) {
+            count += sketch.getCount();
+        }
+        return count;
+    }
+
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (RegionSketch sketch : regions.values()) {
+            bytes += sketch.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    // регионы по убыванию среднего значения показателя, как CountryAnalytics.averageByRegion
+    public List<RegionSketch> byAverage(Metric metric) {
+        List<RegionSketch> result = new ArrayList<>(regions.values());
+        result.removeIf(sketch -> sketch.getCount() == 0);
+        result.sort((a, b) -> Double.compare(b.getAverage(metric), a.getAverage(metric)));
+        return result;
+    }
+
+    // строка с максимальным значением показателя в указанных регионах или null
+    public SketchRow argMax(Metric metric, List<String> regionNames) {
+        SketchRow best = null;
+        for (RegionSketch sketch : select(regionNames)) {
+            SketchRow row = sketch.getMaxRow(metric);
+            if (row != null && (best == null || row.getValue(metric) > best.getValue(metric))) {
+                best = row;
+            }
+        }
+        return best;
+    }
+
+    public long count(List<String> regionNames) {
+        long count = 0;
+        for (RegionSketch sketch : select(regionNames)) {
+            count += sketch.getCount();
+        }
+        return count;
+    }
+
+    // средние значения показателей по указанным регионам (точные, из сумм)
+    public double[] centroid(Metric[] factors, List<String> regionNames) {
+        double[] centroid = new double[factors.length];
+        long count = count(regionNames);
+        for (RegionSketch sketch : select(regionNames)) {
+            for (int d = 0; d < factors.length; d++) {
+                centroid[d] += sketch.getSum(factors[d]);
+            }
+        }
+        for (int d = 0; d < factors.length; d++) {
+            centroid[d] = count > 0 ? centroid[d] / count : Double.NaN;
+        }
+        return centroid;
+    }
+
+    // ближайшая к точке строка (расстояние L1, как CentroidSearch по умолчанию) среди выборок регионов;
+    // настоящая ближайшая строка может не попасть в выборку, поэтому ответ приближенный
+    public SketchRow nearestInSample(double[] point, List<String> regionNames) {
+        Metric[] factors = CentroidSearch.DEFAULT_FACTORS;
+        SketchRow best = null;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (RegionSketch sketch : select(regionNames)) {
+            for (SketchRow row : sketch.getSample()) {
+                double distance = 0;
+                for (int d = 0; d < factors.length; d++) {
+                    distance += Math.abs(row.getValue(factors[d]) - point[d]);
+                }
+                if (distance < bestDistance) {
+                    best = row;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    public int sampleSize(List<String> regionNames) {
+        int size = 0;
+        for (RegionSketch sketch : select(regionNames)) {
+            size += sketch.getSample().size();
+        }
+        return size;
+    }
+
+    // первые n строк по индексу счастья среди топов всех регионов
+    public List<SketchRow> topByHappiness(int n) {
+        List<SketchRow> rows = new ArrayList<>();
+        for (RegionSketch sketch : regions.values()) {
+            rows.addAll(sketch.getTop());
+        }
+        rows.sort((a, b) -> Double.compare(b.getValue(Metric.HAPPINESS_SCORE), a.getValue(Metric.HAPPINESS_SCORE)));
+        return rows.size() > n ? new ArrayList<>(rows.subList(0, n)) : rows;
+    }
+
+    // самые частые названия стран по всем регионам: оценка count-min и ее граница завышения
+    public List<Map.Entry<String, Long>> heavyHitters(int k) {
+        List<Map.Entry<String, Long>> result = new ArrayList<>();
+        for (RegionSketch sketch : regions.values()) {
+            result.addAll(sketch.getNames().heavyHitters(k));
+        }
+        result.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+
+    public long heavyHitterErrorBound() {
+        long bound = 0;
+        for (RegionSketch sketch : regions.values()) {
+            bound = Math.max(bound, sketch.getNames().errorBound());
+        }
+        return bound;
+    }
+
+    private List<RegionSketch> select(List<String> regionNames) {
+        List<RegionSketch> result = new ArrayList<>();
+        for (String name : regionNames) {
+            RegionSketch sketch = regions.get(name);
+            if (sketch != null) {
+                result.add(sketch);
+            }
+        }
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package ru.university.sketch;
+
+import ru.university.model.Metric;
+
+// Строка, сохраненная в эскизе (элемент выборки, топа или максимума показателя)
+public final class SketchRow {
+    private final String name;
+    private final String region;
+    private final int rank;
+    private final double[] values;
+
+    SketchRow(String name, String region, int rank, double[] values) {
+        this.name = name;
+        this.region = region;
+        this.rank = rank;
+        this.values = values.clone();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public double getValue(Metric metric) {
+        return values[metric.ordinal()];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,249 @@
+package ru.university.sketch;
+
+import java.util.Arrays;
+
+// Оценка квантилей t-digest (вариант со слиянием буфера, Dunning): значения копятся в буфере,
+// при заполнении буфер сортируется и сливается с центроидами. Размер центроида ограничен функцией
+// масштаба k1 = compression / (2 pi) * asin(2q - 1), поэтому на хвостах центроиды мелкие и крайние
+// квантили точнее медианы. Память не зависит от числа значений: около compression центроидов.
+// Два дайджеста сливаются без потери гарантий, поэтому их можно строить по фрагментам параллельно.
+// Не потокобезопасен: каждый поток заполняет свой дайджест, затем они сливаются.
+public final class TDigest {
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    private double[] means;
+    private double[] weights;
+    private int centroids;
+
+    private final double[] bufferMeans;
+    private final double[] bufferWeights;
+    private int buffered;
+    // в буфере только значения с весом 1 (обычная загрузка): их можно сортировать без массива весов
+    private boolean unitWeights = true;
+
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public TDigest(double compression) {
+        if (compression < 10) {
+            throw new IllegalArgumentException("compression должен быть не меньше 10: " + compression);
+        }
+        this.compression = compression;
+        int capacity = (int) Math.ceil(compression) + 16;
+        means = new double[capacity];
+        weights = new double[capacity];
+        bufferMeans = new double[capacity * 5];
+        bufferWeights = new double[capacity * 5];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, double weight) {
+        if (Double.isNaN(value) || weight <= 0) {
+            return;
+        }
+        if (buffered == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[buffered] = value;
+        bufferWeights[buffered] = weight;
+        buffered++;
+        unitWeights &= weight == 1;
+        totalWeight += weight;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    // центроиды другого дайджеста добавляются как взвешенные значения
+    public void merge(TDigest other) {
+        other.compress();
+        // общий вес обновляется заранее: compress внутри цикла считает границы центроидов от него
+        totalWeight += other.totalWeight;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        for (int i = 0; i < other.centroids; i++) {
+            if (buffered == bufferMeans.length) {
+                compress();
+            }
+            bufferMeans[buffered] = other.means[i];
+            bufferWeights[buffered] = other.weights[i];
+            buffered++;
+            unitWeights = false;
+        }
+    }
+
+    public long getCount() {
+        return Math.round(totalWeight);
+    }
+
+    public double getMin() {
+        return totalWeight > 0 ? min : Double.NaN;
+    }
+
+    public double getMax() {
+        return totalWeight > 0 ? max : Double.NaN;
+    }
+
+    public int centroidCount() {
+        compress();
+        return centroids;
+    }
+
+    // линейная интерполяция между центрами соседних центроидов; на краях - до точных min и max
+    public double quantile(double q) {
+        compress();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        if (centroids == 1) {
+            return means[0];
+        }
+        double index = q * totalWeight;
+        if (index < weights[0] / 2) {
+            return min + (means[0] - min) * index / (weights[0] / 2);
+        }
+        double center = weights[0] / 2;
+        for (int i = 0; i < centroids - 1; i++) {
+            double nextCenter = center + (weights[i] + weights[i + 1]) / 2;
+            if (index < nextCenter) {
+                double fraction = (index - center) / (nextCenter - center);
+                return means[i] + (means[i + 1] - means[i]) * fraction;
+            }
+            center = nextCenter;
+        }
+        double lastHalf = weights[centroids - 1] / 2;
+        double fraction = Math.min(1, (index - center) / lastHalf);
+        return means[centroids - 1] + (max - means[centroids - 1]) * fraction;
+    }
+
+    // приблизительный объем памяти в байтах
+    public long estimatedBytes() {
+        return 16L * (means.length + bufferMeans.length) + 64;
+    }
+
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        // центроиды уже упорядочены, буфер сортируется и сливается с ними за один проход
+        if (unitWeights) {
+            Arrays.sort(bufferMeans, 0, buffered);
+        } else {
+            sort(bufferMeans, bufferWeights, 0, buffered - 1);
+        }
+        int total = centroids + buffered;
+        double[] sortedMeans = new double[total];
+        double[] sortedWeights = new double[total];
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < total; i++) {
+            if (b >= buffered || (a < centroids && means[a] <= bufferMeans[b])) {
+                sortedMeans[i] = means[a];
+                sortedWeights[i] = weights[a++];
+            } else {
+                sortedMeans[i] = bufferMeans[b];
+                sortedWeights[i] = bufferWeights[b++];
+            }
+        }
+        buffered = 0;
+        unitWeights = true;
+
+        int count = 0;
+        double currentMean = sortedMeans[0];
+        double currentWeight = sortedWeights[0];
+        double weightSoFar = 0;
+        double limit = totalWeight * inverseScale(scale(0) + 1);
+        for (int i = 1; i < total; i++) {
+            if (weightSoFar + currentWeight + sortedWeights[i] <= limit) {
+                currentWeight += sortedWeights[i];
+                currentMean += (sortedMeans[i] - currentMean) * sortedWeights[i] / currentWeight;
+            } else {
+                count = append(count, currentMean, currentWeight);
+                weightSoFar += currentWeight;
+                limit = totalWeight * inverseScale(scale(weightSoFar / totalWeight) + 1);
+                currentMean = sortedMeans[i];
+                currentWeight = sortedWeights[i];
+            }
+        }
+        centroids = append(count, currentMean, currentWeight);
+    }
+
+    private int append(int count, double mean, double weight) {
+        if (count == means.length) {
+            means = Arrays.copyOf(means, count * 2);
+            weights = Arrays.copyOf(weights, count * 2);
+        }
+        means[count] = mean;
+        weights[count] = weight;
+        return count + 1;
+    }
+
+    private double scale(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.max(0, Math.min(1, q)) - 1);
+    }
+
+    private double inverseScale(double k) {
+        double angle = k * 2 * Math.PI / compression;
+        return angle >= Math.PI / 2 ? 1 : (Math.sin(angle) + 1) / 2;
+    }
+
+    // быстрая сортировка двух параллельных массивов по первому, без упаковки в объекты
+    private static void sort(double[] keys, double[] values, int from, int to) {
+        while (to - from > 16) {
+            double pivot = keys[(from + to) >>> 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+            // рекурсия по меньшей части, чтобы глубина стека оставалась логарифмической
+            if (j - from < to - i) {
+                sort(keys, values, from, j);
+                from = i;
+            } else {
+                sort(keys, values, i, to);
+                to = j;
+            }
+        }
+        for (int i = from + 1; i <= to; i++) {
+            for (int j = i; j > from && keys[j - 1] > keys[j]; j--) {
+                swap(keys, values, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(double[] keys, double[] values, int i, int j) {
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,181 @@
+package ru.university.visualization;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Кэш файлов диаграмм. Для каждой диаграммы считается отпечаток данных и параметров отрисовки;
+// если файл с таким отпечатком уже есть, диаграмма не перерисовывается. Манифест хранится рядом
+// с папкой диаграмм (charts.manifest), строка манифеста: файл, отпечаток, размер, время последнего использования.
+// Файлы, не использованные в текущем запуске, удаляются в порядке давности использования,
+// пока суммарный размер больше бюджета.
+public class ChartCache {
+    public static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+
+    // увеличить при изменении ChartTheme, чтобы старые файлы не считались актуальными
+    private static final int RENDER_VERSION = 1;
+    private static final String MANIFEST_SUFFIX = ".manifest";
+
+    private final File outputDir;
+    private final Path manifest;
+    private final long budgetBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Set<String> usedInRun = new HashSet<>();
+    private int hits;
+    private int misses;
+
+    public ChartCache(File outputDir, long budgetBytes) {
+        this.outputDir = outputDir;
+        File absoluteDir = outputDir.getAbsoluteFile();
+        this.manifest = new File(absoluteDir.getParentFile(), absoluteDir.getName() + MANIFEST_SUFFIX).toPath();
+        this.budgetBytes = budgetBytes;
+        load();
+    }
+
+    public static String fingerprint(ChartSpec spec, ChartExporter exporter) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((RENDER_VERSION + "|" + exporter.getFormat() + "|" + exporter.getDeflateLevel())
+                    .getBytes(StandardCharsets.UTF_8));
+            spec.updateDigest(digest);
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 обязателен для любой реализации Java
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // true, если файл с этим отпечатком уже лежит в папке диаграмм
+    public synchronized boolean isFresh(String fileName, String fingerprint) {
+        Entry entry = entries.get(fileName);
+        File file = new File(outputDir, fileName);
+        if (entry != null && entry.fingerprint.equals(fingerprint) && file.isFile() && file.length() == entry.bytes) {
+            entry.lastUsed = System.currentTimeMillis();
+            usedInRun.add(fileName);
+            hits++;
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    public synchronized void record(String fileName, String fingerprint, long bytes) {
+        entries.put(fileName, new Entry(fingerprint, bytes, System.currentTimeMillis()));
+        usedInRun.add(fileName);
+    }
+
+    // удаляет давно не использованные файлы сверх бюджета и сохраняет манифест
+    public synchronized void evictAndSave() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.bytes;
+        }
+        List<Map.Entry<String, Entry>> candidates = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (!usedInRun.contains(entry.getKey())) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+
+        int evicted = 0;
+        for (Map.Entry<String, Entry> candidate : candidates) {
+            if (total <= budgetBytes) {
+                break;
+            }
+            File file = new File(outputDir, candidate.getKey());
+            if (!file.exists() || file.delete()) {
+                total -= candidate.getValue().bytes;
+                entries.remove(candidate.getKey());
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            System.out.println("Удалено устаревших диаграмм из кэша: " + evicted);
+        }
+        save();
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(manifest)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length != 4) {
+                    continue;
+                }
+                try {
+                    entries.put(parts[0], new Entry(parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3])));
+                } catch (NumberFormatException e) {
+                    // поврежденная строка: диаграмма просто будет перерисована
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Не удалось прочитать манифест кэша диаграмм, кэш будет построен заново");
+            entries.clear();
+        }
+    }
+
+    private void save() {
+        Path temp = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    Entry value = entry.getValue();
+                    writer.write(entry.getKey() + "\t" + value.fingerprint + "\t" + value.bytes + "\t" + value.lastUsed);
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.out.println("Ошибка при сохранении манифеста кэша диаграмм");
+            e.printStackTrace();
+        }
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final long bytes;
+        private long lastUsed;
+
+        private Entry(String fingerprint, long bytes, long lastUsed) {
+            this.fingerprint = fingerprint;
+            this.bytes = bytes;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
\ No newline at end of file
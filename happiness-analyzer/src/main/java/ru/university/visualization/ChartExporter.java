@@ -0,0 +1,160 @@
+package ru.university.visualization;
+
+import org.jfree.chart.JFreeChart;
+import org.jfree.svg.SVGGraphics2D;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Экспорт диаграмм в файл. PNG кодируется с настраиваемым уровнем сжатия deflate,
+// SVG записывается векторно, без растеризации. Экспорт делится на два этапа - отрисовку (draw)
+// и кодирование с записью (write), чтобы ChartRenderingService мог выполнять их в разных пулах.
+// Файл сначала пишется во временный файл рядом с целевым и затем атомарно переименовывается,
+// поэтому читатели каталога никогда не видят недописанную диаграмму.
+public class ChartExporter {
+    public enum Format {
+        PNG("png"), SVG("svg");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    // уровень по умолчанию совпадает с уровнем ImageIO
+    public static final int DEFAULT_DEFLATE_LEVEL = 4;
+
+    // буфер кодирования и ImageWriter переиспользуются потоком между диаграммами
+    private static final ThreadLocal<ByteArrayOutputStream> BUFFERS =
+            ThreadLocal.withInitial(() -> new ByteArrayOutputStream(128 * 1024));
+    private static final ThreadLocal<ImageWriter> PNG_WRITERS =
+            ThreadLocal.withInitial(() -> ImageIO.getImageWritersByFormatName("png").next());
+
+    // уникальные имена временных файлов внутри процесса
+    private static final AtomicLong TEMP_COUNTER = new AtomicLong(System.nanoTime());
+
+    private final Format format;
+    private final int deflateLevel;
+
+    public ChartExporter() {
+        this(Format.PNG, DEFAULT_DEFLATE_LEVEL);
+    }
+
+    public ChartExporter(Format format, int deflateLevel) {
+        if (deflateLevel < 0 || deflateLevel > 9) {
+            throw new IllegalArgumentException("Уровень сжатия должен быть от 0 до 9: " + deflateLevel);
+        }
+        this.format = format;
+        this.deflateLevel = deflateLevel;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public int getDeflateLevel() {
+        return deflateLevel;
+    }
+
+    // имя файла с расширением формата: economy_chart.png -> economy_chart.svg
+    public String fileName(String name) {
+        int dot = name.lastIndexOf('.');
+        int slash = Math.max(name.lastIndexOf('/'), name.lastIndexOf(File.separatorChar));
+        String base = dot > slash ? name.substring(0, dot) : name;
+        return base + "." + format.getExtension();
+    }
+
+    public Drawing draw(JFreeChart chart, int width, int height) {
+        if (format == Format.SVG) {
+            SVGGraphics2D g2 = new SVGGraphics2D(width, height);
+            chart.draw(g2, new Rectangle(width, height));
+            return new Drawing(null, g2.getSVGDocument());
+        }
+        // фон диаграммы непрозрачный, поэтому альфа-канал не нужен: PNG без него меньше и кодируется быстрее
+        BufferedImage image = chart.createBufferedImage(width, height, BufferedImage.TYPE_INT_RGB, null);
+        return new Drawing(image, null);
+    }
+
+    // кодирует отрисованную диаграмму и атомарно записывает ее в файл, возвращает размер файла в байтах
+    public long write(Drawing drawing, File target) throws IOException {
+        ByteArrayOutputStream buffer = BUFFERS.get();
+        buffer.reset();
+        if (drawing.svg != null) {
+            buffer.write(drawing.svg.getBytes(StandardCharsets.UTF_8));
+        } else {
+            encodePng(drawing.image, buffer);
+        }
+        writeAtomically(target.toPath(), buffer);
+        return buffer.size();
+    }
+
+    public long export(JFreeChart chart, File target, int width, int height) throws IOException {
+        return write(draw(chart, width, height), target);
+    }
+
+    private void encodePng(BufferedImage image, OutputStream out) throws IOException {
+        ImageWriter writer = PNG_WRITERS.get();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        // PNGImageWriter переводит качество в уровень deflate как 9 - round(9 * quality)
+        param.setCompressionQuality((9 - deflateLevel) / 9f);
+        try (ImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.reset();
+        }
+    }
+
+    private static void writeAtomically(Path target, ByteArrayOutputStream data) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        // не Files.createTempFile: он создает файл с правами только для владельца
+        Path temp = dir.resolve("." + target.getFileName() + "." + TEMP_COUNTER.incrementAndGet() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                data.writeTo(out);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // результат отрисовки: растровое изображение для PNG или SVG-документ
+    public static final class Drawing {
+        private final BufferedImage image;
+        private final String svg;
+
+        private Drawing(BufferedImage image, String svg) {
+            this.image = image;
+            this.svg = svg;
+        }
+    }
+}
\ No newline at end of file
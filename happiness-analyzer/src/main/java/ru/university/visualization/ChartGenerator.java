@@ -1,148 +1,153 @@
 package ru.university.visualization;
 
-import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartUtils;
 import org.jfree.chart.JFreeChart;
-import org.jfree.chart.labels.StandardCategoryItemLabelGenerator;
-import org.jfree.chart.plot.CategoryPlot;
-import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.chart.renderer.category.BarRenderer;
-import org.jfree.chart.axis.CategoryAxis;
-import org.jfree.chart.axis.CategoryLabelPositions;
-import org.jfree.data.category.DefaultCategoryDataset;
-import org.jfree.chart.axis.NumberAxis;
-import org.jfree.chart.axis.ValueAxis;
+import ru.university.analytics.RegressionModel;
+import ru.university.model.Metric;
 
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
+import java.io.PrintStream;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 public class ChartGenerator {
 
-    private static final DecimalFormat DECIMAL_FORMAT;
+    // формат и сжатие файлов диаграмм, по умолчанию PNG
+    private static volatile ChartExporter exporter = new ChartExporter();
 
-    static {
-        DECIMAL_FORMAT = new DecimalFormat("0.00");
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        symbols.setDecimalSeparator('.');
-        DECIMAL_FORMAT.setDecimalFormatSymbols(symbols);
+    public static ChartExporter getExporter() {
+        return exporter;
     }
 
-    public static void createEconomyChart(Map<String, Double> economyData, String filename) {
-        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+    public static void setExporter(ChartExporter chartExporter) {
+        exporter = chartExporter;
+    }
+
+    // кэш файлов диаграмм по отпечатку данных; null - диаграммы перерисовываются всегда
+    private static volatile ChartCache cache;
+
+    public static ChartCache getCache() {
+        return cache;
+    }
+
+    public static void setCache(ChartCache chartCache) {
+        cache = chartCache;
+    }
 
+    // описание диаграммы средних значений GDP по регионам
+    public static ChartSpec economyChartSpec(Map<String, Double> economyData, String filename) {
+        ChartSpec.Builder builder = ChartSpec.builder(filename)
+                .title("Средний GDP per Capita по регионам")
+                .axes("Country", "GDP per Capita")
+                .series("Economy")
+                .barPaint(new Color(41, 98, 255)) // Цвет столбцов
+                .integerTicks(true);
         // добавл все данные в датасет
         for (Map.Entry<String, Double> entry : economyData.entrySet()) {
-            dataset.addValue(entry.getValue(), "Economy", entry.getKey());
+            builder.value(entry.getKey(), entry.getValue());
         }
+        return builder.build();
+    }
 
-        // создаем диаграмму
-        JFreeChart barChart = ChartFactory.createBarChart(
-                "Средний GDP per Capita по регионам", // Название диаграммы
-                "Country", // Название оси X
-                "GDP per Capita", // Название оси Y
-                dataset,
-                PlotOrientation.VERTICAL,
-                true, true, false);
-
-        //  внешний вид диаграммы
-        barChart.getTitle().setFont(new Font("SansSerif", Font.BOLD, 16));
-        barChart.getTitle().setPaint(Color.DARK_GRAY);
-
-        CategoryPlot plot = barChart.getCategoryPlot();
-        plot.setBackgroundPaint(Color.WHITE);
-        plot.setRangeGridlinePaint(Color.LIGHT_GRAY);
-
-        BarRenderer renderer = (BarRenderer) plot.getRenderer();
-        renderer.setSeriesPaint(0, new Color(41, 98, 255)); // Цвет столбцов
-
-        renderer.setDefaultItemLabelGenerator(new StandardCategoryItemLabelGenerator("{2}", DECIMAL_FORMAT));
-        renderer.setDefaultItemLabelsVisible(true);
-        renderer.setDefaultItemLabelPaint(Color.DARK_GRAY);
-        renderer.setDefaultItemLabelFont(new Font("SansSerif", Font.PLAIN, 10));
-
-        CategoryAxis domainAxis = plot.getDomainAxis();
-        domainAxis.setCategoryLabelPositions(CategoryLabelPositions.UP_45);
-        domainAxis.setTickLabelFont(new Font("SansSerif", Font.PLAIN, 10));
-        domainAxis.setTickLabelPaint(Color.DARK_GRAY);
-
-        ValueAxis rangeAxis = plot.getRangeAxis();
-        rangeAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
-        rangeAxis.setTickLabelFont(new Font("SansSerif", Font.PLAIN, 10));
-        rangeAxis.setTickLabelPaint(Color.DARK_GRAY);
-
-        // создаем папку для диаграмм если ее нет
-        File dir = new File("charts");
-        if (!dir.exists()) {
-            dir.mkdirs();
+    // описание диаграммы стран с наибольшим индексом счастья
+    public static ChartSpec topCountriesChartSpec(List<String> countries, List<Double> scores, String filename) {
+        ChartSpec.Builder builder = ChartSpec.builder(filename)
+                .title("Top 10 Happiest Countries (2015)")
+                .axes("Country", "Happiness Score")
+                .series("Happiness Score")
+                .barPaint(new Color(41, 182, 246));
+        for (int i = 0; i < countries.size(); i++) {
+            builder.value(countries.get(i), scores.get(i));
+        }
+        return builder.build();
+    }
+
+    // описание диаграммы коэффициентов регрессии: столбец на каждый фактор модели
+    public static ChartSpec coefficientChartSpec(RegressionModel model, String title, String filename) {
+        ChartSpec.Builder builder = ChartSpec.builder(filename)
+                .title(title)
+                .axes("Factor", "Coefficient")
+                .series("Coefficient")
+                .barPaint(new Color(0, 150, 136));
+        Metric[] factors = model.getFactors();
+        for (int i = 0; i < factors.length; i++) {
+            builder.value(factors[i].getTitle(), model.getCoefficient(i));
         }
+        return builder.build();
+    }
+
+    // часть имени файла диаграммы из названия региона: "Western Europe" -> "western_europe"
+    public static String regionSlug(String regionName) {
+        return regionName.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_");
+    }
 
+    public static void createEconomyChart(Map<String, Double> economyData, String filename) {
+        createEconomyChart(economyData, filename, System.out);
+    }
+
+    // out - поток сообщений; задачи графа отчетов передают свой буфер
+    public static void createEconomyChart(Map<String, Double> economyData, String filename, PrintStream out) {
         // сохраняем диаграмму в файл
         try {
-            ChartUtils.saveChartAsPNG(new File("charts/" + filename), barChart, 1000, 600);
-            System.out.println("Диаграмма экономики успешно сохранена в файл: charts/" + filename);
+            String saved = save(economyChartSpec(economyData, filename), out);
+            if (saved != null) {
+                out.println("Диаграмма экономики успешно сохранена в файл: charts/" + saved);
+            }
         } catch (IOException e) {
-            System.out.println("Ошибка при сохранении диаграммы экономики");
+            out.println("Ошибка при сохранении диаграммы экономики");
             e.printStackTrace();
         }
     }
 
     public static void createTopCountriesChart(List<String> countries, List<Double> scores, String filename) {
-        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-
-        for (int i = 0; i < countries.size(); i++) {
-            dataset.addValue(scores.get(i), "Happiness Score", countries.get(i));
-        }
-
-        JFreeChart barChart = ChartFactory.createBarChart(
-                "Top 10 Happiest Countries (2015)",
-                "Country",
-                "Happiness Score",
-                dataset,
-                PlotOrientation.VERTICAL,
-                true, true, false);
-
-        barChart.getTitle().setFont(new Font("SansSerif", Font.BOLD, 16));
-        barChart.getTitle().setPaint(Color.DARK_GRAY);
-
-        CategoryPlot plot = barChart.getCategoryPlot();
-        plot.setBackgroundPaint(Color.WHITE);
-        plot.setRangeGridlinePaint(Color.LIGHT_GRAY);
-
-        BarRenderer renderer = (BarRenderer) plot.getRenderer();
-        renderer.setSeriesPaint(0, new Color(41, 182, 246));
-
-        renderer.setDefaultItemLabelGenerator(new StandardCategoryItemLabelGenerator("{2}", DECIMAL_FORMAT));
-        renderer.setDefaultItemLabelsVisible(true);
-        renderer.setDefaultItemLabelPaint(Color.DARK_GRAY);
-        renderer.setDefaultItemLabelFont(new Font("SansSerif", Font.PLAIN, 10));
-
-        CategoryAxis domainAxis = plot.getDomainAxis();
-        domainAxis.setCategoryLabelPositions(CategoryLabelPositions.UP_45);
-        domainAxis.setTickLabelFont(new Font("SansSerif", Font.PLAIN, 10));
-        domainAxis.setTickLabelPaint(Color.DARK_GRAY);
-
-        ValueAxis rangeAxis = plot.getRangeAxis();
-        rangeAxis.setTickLabelFont(new Font("SansSerif", Font.PLAIN, 10));
-        rangeAxis.setTickLabelPaint(Color.DARK_GRAY);
-
-        // создаем папку для диаграмм если ее нет
-        File dir = new File("charts");
-        if (!dir.exists()) {
-            dir.mkdirs();
-        }
+        createTopCountriesChart(countries, scores, filename, System.out);
+    }
 
+    public static void createTopCountriesChart(List<String> countries, List<Double> scores, String filename,
+                                               PrintStream out) {
         // сохраняем диаграмму в файл
         try {
-            ChartUtils.saveChartAsPNG(new File("charts/" + filename), barChart, 1000, 600);
-            System.out.println("Диаграмма индекса счастья успешно сохранена в файл: charts/" + filename);
+            String saved = save(topCountriesChartSpec(countries, scores, filename), out);
+            if (saved != null) {
+                out.println("Диаграмма индекса счастья успешно сохранена в файл: charts/" + saved);
+            }
         } catch (IOException e) {
-            System.out.println("Ошибка при сохранении диаграммы индекса счастья");
+            out.println("Ошибка при сохранении диаграммы индекса счастья");
             e.printStackTrace();
         }
     }
+
+    // сохраняет диаграмму текущим экспортером, возвращает имя файла с расширением формата
+    // или null, если данные не изменились и файл взят из кэша
+    private static String save(ChartSpec spec, PrintStream out) throws IOException {
+        ChartExporter chartExporter = exporter;
+        ChartCache chartCache = cache;
+        String filename = chartExporter.fileName(spec.getFilename());
+
+        String fingerprint = null;
+        if (chartCache != null) {
+            fingerprint = ChartCache.fingerprint(spec, chartExporter);
+            if (chartCache.isFresh(filename, fingerprint)) {
+                ChartMetrics.CACHE_HITS.increment();
+                out.println("Данные диаграммы не изменились, используется файл: charts/" + filename);
+                return null;
+            }
+        }
+
+        long start = System.nanoTime();
+        JFreeChart barChart = spec.createChart(ChartTheme.DEFAULT);
+        ChartExporter.Drawing drawing = chartExporter.draw(barChart, spec.getWidth(), spec.getHeight());
+        ChartMetrics.renderTimer(chartExporter.getFormat()).recordSince(start);
+
+        // папка для диаграмм создается экспортером, файл пишется атомарно
+        start = System.nanoTime();
+        long bytes = chartExporter.write(drawing, new File("charts", filename));
+        ChartMetrics.encodeTimer(chartExporter.getFormat()).recordSince(start);
+        if (chartCache != null) {
+            chartCache.record(filename, fingerprint, bytes);
+        }
+        return filename;
+    }
 }
\ No newline at end of file
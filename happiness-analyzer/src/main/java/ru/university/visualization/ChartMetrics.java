@@ -0,0 +1,25 @@
+package ru.university.visualization;
+
+import ru.university.metrics.Counter;
+import ru.university.metrics.MetricsRegistry;
+import ru.university.metrics.Timer;
+
+// Метрики диаграмм: отрисовка (построение JFreeChart и рисование) и кодирование с записью файла,
+// метка format - формат экспорта
+final class ChartMetrics {
+    static final Counter CACHE_HITS = MetricsRegistry.DEFAULT.counter("chart_cache_hits_total",
+            "Диаграммы, взятые из кэша без перерисовки");
+
+    private ChartMetrics() {
+    }
+
+    static Timer renderTimer(ChartExporter.Format format) {
+        return MetricsRegistry.DEFAULT.timer("chart_render_seconds", "Отрисовка диаграммы",
+                "format", format.getExtension());
+    }
+
+    static Timer encodeTimer(ChartExporter.Format format) {
+        return MetricsRegistry.DEFAULT.timer("chart_encode_seconds", "Кодирование и запись файла диаграммы",
+                "format", format.getExtension());
+    }
+}
\ No newline at end of file
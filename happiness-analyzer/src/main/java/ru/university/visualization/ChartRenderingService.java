@@ -0,0 +1,243 @@
+package ru.university.visualization;
+
+import org.jfree.chart.JFreeChart;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Пакетная отрисовка диаграмм: диаграммы рисуются во внеэкранные изображения (или SVG) на ограниченном пуле потоков,
+// а кодирование и запись файла через ChartExporter выполняются отдельным пулом. Очереди обоих пулов ограничены,
+// так что число изображений в памяти не растет вместе с размером пакета: при переполнении очереди отрисовки
+// диаграмму рисует поток, который ее отправил, а поток отрисовки при переполнении очереди кодирования
+// ждет места в ней и сам не кодирует.
+public class ChartRenderingService implements AutoCloseable {
+    private static final int QUEUE_PER_THREAD = 4;
+
+    static {
+        // отрисовка без дисплея; свойство должно быть задано до первого обращения к AWT
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+    }
+
+    private final File outputDir;
+    private final ChartTheme theme;
+    private final ChartExporter exporter;
+    private final ChartCache cache;
+    private final ThreadPoolExecutor renderPool;
+    private final ThreadPoolExecutor encodePool;
+
+    public ChartRenderingService(File outputDir) {
+        this(outputDir, new ChartExporter());
+    }
+
+    public ChartRenderingService(File outputDir, ChartExporter exporter) {
+        this(outputDir, exporter, null);
+    }
+
+    // cache может быть null - тогда диаграммы перерисовываются всегда
+    public ChartRenderingService(File outputDir, ChartExporter exporter, ChartCache cache) {
+        this(outputDir, ChartTheme.DEFAULT, exporter, cache, Runtime.getRuntime().availableProcessors(),
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    public ChartRenderingService(File outputDir, ChartTheme theme, ChartExporter exporter, ChartCache cache,
+                                 int renderThreads, int encodeThreads) {
+        this.outputDir = outputDir;
+        this.theme = theme;
+        this.exporter = exporter;
+        this.cache = cache;
+        this.renderPool = newPool("chart-render", Math.max(1, renderThreads), new ThreadPoolExecutor.CallerRunsPolicy());
+        this.encodePool = newPool("chart-encode", Math.max(1, encodeThreads), ChartRenderingService::waitForQueue);
+    }
+
+    private static ThreadPoolExecutor newPool(String name, int threads, RejectedExecutionHandler overflow) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), factory, overflow);
+    }
+
+    // блокирующая передача в пул: отправитель ждет места в очереди, а не выполняет задачу сам
+    private static void waitForQueue(Runnable task, ThreadPoolExecutor pool) {
+        try {
+            while (!pool.getQueue().offer(task, 100, TimeUnit.MILLISECONDS)) {
+                if (pool.isShutdown()) {
+                    throw new RejectedExecutionException("Пул " + pool + " остановлен");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Ожидание места в очереди прервано", e);
+        }
+    }
+
+    public CompletableFuture<RenderResult> submit(ChartSpec spec) {
+        String fileName = exporter.fileName(spec.getFilename());
+        String fingerprint = cache != null ? ChartCache.fingerprint(spec, exporter) : null;
+        if (cache != null && cache.isFresh(fileName, fingerprint)) {
+            ChartMetrics.CACHE_HITS.increment();
+            File file = new File(outputDir, fileName);
+            return CompletableFuture.completedFuture(new RenderResult(file, 0, 0, file.length(), true));
+        }
+        return CompletableFuture
+                .supplyAsync(() -> render(spec), renderPool)
+                .thenApplyAsync(rendered -> encode(rendered, fileName, fingerprint), encodePool);
+    }
+
+    // отрисовывает все диаграммы и ждет завершения; ошибки отдельных диаграмм не останавливают пакет
+    public List<RenderResult> renderAll(List<ChartSpec> specs) {
+        List<CompletableFuture<RenderResult>> futures = new ArrayList<>(specs.size());
+        for (ChartSpec spec : specs) {
+            futures.add(submit(spec).exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                System.out.println("Ошибка при сохранении диаграммы " + spec.getFilename() + ": " + cause.getMessage());
+                return null;
+            }));
+        }
+        List<RenderResult> results = new ArrayList<>(specs.size());
+        for (CompletableFuture<RenderResult> future : futures) {
+            RenderResult result = future.join();
+            if (result != null) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    private Rendered render(ChartSpec spec) {
+        long start = System.nanoTime();
+        JFreeChart chart = spec.createChart(theme);
+        ChartExporter.Drawing drawing = exporter.draw(chart, spec.getWidth(), spec.getHeight());
+        long elapsed = System.nanoTime() - start;
+        ChartMetrics.renderTimer(exporter.getFormat()).record(elapsed);
+        return new Rendered(spec, drawing, elapsed);
+    }
+
+    private RenderResult encode(Rendered rendered, String fileName, String fingerprint) {
+        long start = System.nanoTime();
+        File file = new File(outputDir, fileName);
+        long bytes;
+        try {
+            bytes = exporter.write(rendered.drawing, file);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        if (cache != null) {
+            cache.record(fileName, fingerprint, bytes);
+        }
+        long elapsed = System.nanoTime() - start;
+        ChartMetrics.encodeTimer(exporter.getFormat()).record(elapsed);
+        return new RenderResult(file, rendered.renderNanos, elapsed, bytes, false);
+    }
+
+    public static void printSummary(List<RenderResult> results) {
+        long renderTotal = 0;
+        long encodeTotal = 0;
+        int cached = 0;
+        for (RenderResult result : results) {
+            if (result.isCached()) {
+                cached++;
+                continue;
+            }
+            System.out.printf("- %s: отрисовка %.1f мс, кодирование %.1f мс, %d КБ%n",
+                    result.getFile().getName(), result.getRenderMillis(), result.getEncodeMillis(),
+                    result.getBytes() / 1024);
+            renderTotal += result.getRenderNanos();
+            encodeTotal += result.getEncodeNanos();
+        }
+        System.out.printf("Диаграмм: %d, из кэша: %d, суммарно отрисовка %.1f мс, кодирование %.1f мс%n",
+                results.size(), cached, renderTotal / 1_000_000.0, encodeTotal / 1_000_000.0);
+    }
+
+    @Override
+    public void close() {
+        shutdown(renderPool);
+        shutdown(encodePool);
+    }
+
+    private static void shutdown(ExecutorService pool) {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Rendered {
+        private final ChartSpec spec;
+        private final ChartExporter.Drawing drawing;
+        private final long renderNanos;
+
+        private Rendered(ChartSpec spec, ChartExporter.Drawing drawing, long renderNanos) {
+            this.spec = spec;
+            this.drawing = drawing;
+            this.renderNanos = renderNanos;
+        }
+    }
+
+    public static class RenderResult {
+        private final File file;
+        private final long renderNanos;
+        private final long encodeNanos;
+        private final long bytes;
+        private final boolean cached;
+
+        public RenderResult(File file, long renderNanos, long encodeNanos, long bytes, boolean cached) {
+            this.file = file;
+            this.renderNanos = renderNanos;
+            this.encodeNanos = encodeNanos;
+            this.bytes = bytes;
+            this.cached = cached;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getRenderNanos() {
+            return renderNanos;
+        }
+
+        public long getEncodeNanos() {
+            return encodeNanos;
+        }
+
+        public double getRenderMillis() {
+            return renderNanos / 1_000_000.0;
+        }
+
+        public double getEncodeMillis() {
+            return encodeNanos / 1_000_000.0;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        // файл не перерисовывался: отпечаток данных совпал с кэшем
+        public boolean isCached() {
+            return cached;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,169 @@
+package ru.university.visualization;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.data.category.DefaultCategoryDataset;
+
+import java.awt.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Неизменяемое описание столбчатой диаграммы: данные, подписи и размер файла.
+// Диаграмма JFreeChart строится из описания в потоке отрисовки.
+public final class ChartSpec {
+    public static final int DEFAULT_WIDTH = 1000;
+    public static final int DEFAULT_HEIGHT = 600;
+
+    private final String filename;
+    private final String title;
+    private final String categoryAxisLabel;
+    private final String valueAxisLabel;
+    private final String seriesName;
+    private final List<String> categories;
+    private final List<Double> values;
+    private final Color barPaint;
+    private final boolean integerTicks;
+    private final int width;
+    private final int height;
+
+    private ChartSpec(Builder builder) {
+        this.filename = builder.filename;
+        this.title = builder.title;
+        this.categoryAxisLabel = builder.categoryAxisLabel;
+        this.valueAxisLabel = builder.valueAxisLabel;
+        this.seriesName = builder.seriesName;
+        this.categories = Collections.unmodifiableList(new ArrayList<>(builder.categories));
+        this.values = Collections.unmodifiableList(new ArrayList<>(builder.values));
+        this.barPaint = builder.barPaint;
+        this.integerTicks = builder.integerTicks;
+        this.width = builder.width;
+        this.height = builder.height;
+    }
+
+    public static Builder builder(String filename) {
+        return new Builder(filename);
+    }
+
+    public JFreeChart createChart(ChartTheme theme) {
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        for (int i = 0; i < categories.size(); i++) {
+            dataset.addValue(values.get(i), seriesName, categories.get(i));
+        }
+        JFreeChart chart = ChartFactory.createBarChart(title, categoryAxisLabel, valueAxisLabel, dataset,
+                PlotOrientation.VERTICAL, true, true, false);
+        theme.apply(chart, barPaint, integerTicks);
+        return chart;
+    }
+
+    // все, что влияет на изображение, для отпечатка в ChartCache
+    void updateDigest(MessageDigest digest) {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * Math.max(1, values.size()) + Integer.BYTES * 4);
+        for (double value : values) {
+            buffer.putLong(Double.doubleToLongBits(value));
+        }
+        buffer.putInt(barPaint.getRGB()).putInt(integerTicks ? 1 : 0).putInt(width).putInt(height);
+        digest.update(buffer.array(), 0, buffer.position());
+        for (String text : new String[]{title, categoryAxisLabel, valueAxisLabel, seriesName}) {
+            updateDigest(digest, text);
+        }
+        for (String category : categories) {
+            updateDigest(digest, category);
+        }
+    }
+
+    private static void updateDigest(MessageDigest digest, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        // длина перед строкой, чтобы ("ab", "c") и ("a", "bc") давали разные отпечатки
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public List<Double> getValues() {
+        return values;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public static class Builder {
+        private final String filename;
+        private String title = "";
+        private String categoryAxisLabel = "Country";
+        private String valueAxisLabel = "";
+        private String seriesName = "";
+        private final List<String> categories = new ArrayList<>();
+        private final List<Double> values = new ArrayList<>();
+        private Color barPaint = new Color(41, 98, 255);
+        private boolean integerTicks;
+        private int width = DEFAULT_WIDTH;
+        private int height = DEFAULT_HEIGHT;
+
+        private Builder(String filename) {
+            this.filename = filename;
+        }
+
+        public Builder title(String title) {
+            this.title = title;
+            return this;
+        }
+
+        public Builder axes(String categoryAxisLabel, String valueAxisLabel) {
+            this.categoryAxisLabel = categoryAxisLabel;
+            this.valueAxisLabel = valueAxisLabel;
+            return this;
+        }
+
+        public Builder series(String seriesName) {
+            this.seriesName = seriesName;
+            return this;
+        }
+
+        public Builder value(String category, double value) {
+            categories.add(category);
+            values.add(value);
+            return this;
+        }
+
+        public Builder barPaint(Color barPaint) {
+            this.barPaint = barPaint;
+            return this;
+        }
+
+        public Builder integerTicks(boolean integerTicks) {
+            this.integerTicks = integerTicks;
+            return this;
+        }
+
+        public Builder size(int width, int height) {
+            this.width = width;
+            this.height = height;
+            return this;
+        }
+
+        public ChartSpec build() {
+            return new ChartSpec(this);
+        }
+    }
+}
\ No newline at end of file
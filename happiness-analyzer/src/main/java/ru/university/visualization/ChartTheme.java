@@ -0,0 +1,65 @@
+package ru.university.visualization;
+
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.CategoryAxis;
+import org.jfree.chart.axis.CategoryLabelPositions;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.labels.StandardCategoryItemLabelGenerator;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.renderer.category.BarRenderer;
+
+import java.awt.*;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+// Общее оформление столбчатых диаграмм. Шрифты и цвета создаются один раз и неизменяемы,
+// поэтому одна тема используется всеми потоками отрисовки.
+public final class ChartTheme {
+    public static final ChartTheme DEFAULT = new ChartTheme();
+
+    private final Font titleFont = new Font("SansSerif", Font.BOLD, 16);
+    private final Font labelFont = new Font("SansSerif", Font.PLAIN, 10);
+    private final Color textPaint = Color.DARK_GRAY;
+    private final Color backgroundPaint = Color.WHITE;
+    private final Color gridlinePaint = Color.LIGHT_GRAY;
+    private final DecimalFormat labelFormat;
+
+    private ChartTheme() {
+        labelFormat = new DecimalFormat("0.00");
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+        symbols.setDecimalSeparator('.');
+        labelFormat.setDecimalFormatSymbols(symbols);
+    }
+
+    public void apply(JFreeChart chart, Color barPaint, boolean integerTicks) {
+        chart.getTitle().setFont(titleFont);
+        chart.getTitle().setPaint(textPaint);
+
+        CategoryPlot plot = chart.getCategoryPlot();
+        plot.setBackgroundPaint(backgroundPaint);
+        plot.setRangeGridlinePaint(gridlinePaint);
+
+        BarRenderer renderer = (BarRenderer) plot.getRenderer();
+        renderer.setSeriesPaint(0, barPaint);
+
+        // DecimalFormat не потокобезопасен: каждой диаграмме своя копия
+        renderer.setDefaultItemLabelGenerator(new StandardCategoryItemLabelGenerator("{2}",
+                (DecimalFormat) labelFormat.clone()));
+        renderer.setDefaultItemLabelsVisible(true);
+        renderer.setDefaultItemLabelPaint(textPaint);
+        renderer.setDefaultItemLabelFont(labelFont);
+
+        CategoryAxis domainAxis = plot.getDomainAxis();
+        domainAxis.setCategoryLabelPositions(CategoryLabelPositions.UP_45);
+        domainAxis.setTickLabelFont(labelFont);
+        domainAxis.setTickLabelPaint(textPaint);
+
+        ValueAxis rangeAxis = plot.getRangeAxis();
+        if (integerTicks) {
+            rangeAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+        }
+        rangeAxis.setTickLabelFont(labelFont);
+        rangeAxis.setTickLabelPaint(textPaint);
+    }
+}
\ No newline at end of file
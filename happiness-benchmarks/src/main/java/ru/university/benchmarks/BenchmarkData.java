@@ -0,0 +1,119 @@
+package ru.university.benchmarks;
+
+import ru.university.Main;
+import ru.university.database.DatabaseManager;
+import ru.university.generator.SyntheticDataGenerator;
+import ru.university.model.Country;
+import ru.university.model.Region;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Общие данные бенчмарков: исходный CSV 2015 года и синтетические файлы нужного размера.
+// Файлы создаются один раз на форк JVM и удаляются при ее завершении.
+final class BenchmarkData {
+    static final long SEED = 2015L;
+    private static final String SOURCE_CSV = "happiness_data_2015.csv";
+
+    private static final Map<Integer, Path> CSV_FILES = new HashMap<>();
+    private static final PrintStream ORIGINAL_OUT = System.out;
+
+    private BenchmarkData() {
+    }
+
+    // CSV из ресурсов happiness-analyzer (rows = 158) или синтетический файл из rows строк
+    static synchronized Path csv(int rows) throws IOException {
+        Path file = CSV_FILES.get(rows);
+        if (file != null) {
+            return file;
+        }
+        file = Files.createTempFile("happiness-bench-" + rows + "-", ".csv");
+        file.toFile().deleteOnExit();
+        Path source = sourceCsv();
+        if (rows == sourceSize()) {
+            Files.copy(source, file, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            new SyntheticDataGenerator(parse(source).countries, SEED).write(file, rows);
+        }
+        CSV_FILES.put(rows, file);
+        return file;
+    }
+
+    static Parsed parse(Path csv) {
+        Parsed parsed = new Parsed();
+        Main.parseCSVFile(csv.toString(), parsed.countries, parsed.regions);
+        return parsed;
+    }
+
+    // новая база во временном файле с таблицами, индексами и PRAGMA как в Main
+    static DatabaseManager createDatabase(Path dbFile) {
+        DatabaseManager dbManager = new DatabaseManager(dbFile.toString());
+        dbManager.createTables();
+        dbManager.createIndexes();
+        dbManager.applyBulkLoadPragmas();
+        return dbManager;
+    }
+
+    static Path tempDatabase() throws IOException {
+        Path dbFile = Files.createTempFile("happiness-bench-", ".db");
+        dbFile.toFile().deleteOnExit();
+        return dbFile;
+    }
+
+    static void deleteDatabase(Path dbFile) throws IOException {
+        Files.deleteIfExists(dbFile);
+        Files.deleteIfExists(Path.of(dbFile + "-wal"));
+        Files.deleteIfExists(Path.of(dbFile + "-shm"));
+    }
+
+    // приложение пишет в консоль на каждом шаге; на время замеров вывод отключается
+    static void silence() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    static void restoreOutput() {
+        System.setOut(ORIGINAL_OUT);
+    }
+
+    private static Path sourceCsv() throws IOException {
+        Path file = CSV_FILES.get(-1);
+        if (file == null) {
+            file = Files.createTempFile("happiness-bench-source-", ".csv");
+            file.toFile().deleteOnExit();
+            try (InputStream in = Main.class.getClassLoader().getResourceAsStream(SOURCE_CSV)) {
+                if (in == null) {
+                    throw new IOException("Ресурс не найден: " + SOURCE_CSV);
+                }
+                Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            CSV_FILES.put(-1, file);
+        }
+        return file;
+    }
+
+    private static int sourceSize() throws IOException {
+        try (Stream<String> lines = Files.lines(sourceCsv())) {
+            return (int) (lines.count() - 1);
+        }
+    }
+
+    static final class Parsed {
+        final List<Country> countries = new ArrayList<>();
+        final Map<String, Region> regions = new LinkedHashMap<>();
+
+        List<Region> regionList() {
+            return new ArrayList<>(regions.values());
+        }
+    }
+}
\ No newline at end of file
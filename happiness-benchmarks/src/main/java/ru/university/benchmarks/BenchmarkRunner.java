@@ -0,0 +1,45 @@
+package ru.university.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+// Точка входа benchmarks.jar: принимает обычные параметры JMH (фильтр бенчмарков, -p rows=..., -f, -wi, -i)
+// и по умолчанию сохраняет результаты в JSON, чтобы прогоны можно было сравнивать между собой
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        CommandLineOptions cmdOptions;
+        try {
+            cmdOptions = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Ошибка в параметрах: " + e.getMessage());
+            return;
+        }
+        if (cmdOptions.shouldHelp()) {
+            try {
+                cmdOptions.showHelp();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions);
+        if (cmdOptions.getResult().hasValue() || cmdOptions.getResultFormat().hasValue()) {
+            // формат или файл результатов заданы явно через -rf / -rff
+            new Runner(builder.build()).run();
+            return;
+        }
+        String resultFile = "jmh-results-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json";
+        builder.resultFormat(ResultFormatType.JSON).result(resultFile);
+        new Runner(builder.build()).run();
+        System.out.println("Результаты сохранены в файл: " + resultFile);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+package ru.university.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.university.model.Country;
+import ru.university.visualization.ChartExporter;
+import ru.university.visualization.ChartGenerator;
+import ru.university.visualization.ChartSpec;
+import ru.university.visualization.ChartTheme;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Диаграммы по данным 2015 года: отрисовка и кодирование по отдельности и полный путь ChartGenerator.
+// Кэш диаграмм не подключается, поэтому каждый вызов действительно рисует и пишет файл.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChartBenchmark {
+    @Param({"png", "svg"})
+    public String format;
+
+    private Map<String, Double> economyData;
+    private List<String> topCountries;
+    private List<Double> happinessScores;
+    private ChartSpec economySpec;
+    private ChartExporter exporter;
+    private ChartExporter.Drawing economyDrawing;
+    private Path outputDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData.silence();
+        List<Country> countries = BenchmarkData.parse(BenchmarkData.csv(158)).countries;
+
+        // те же данные, что строит Main для economy_chart и happiness_chart
+        economyData = new TreeMap<>(countries.stream().collect(Collectors.groupingBy(
+                country -> country.getRegion().getName(), Collectors.averagingDouble(Country::getEconomy))));
+        List<Country> top = countries.stream()
+                .sorted(Comparator.comparingInt(Country::getHappinessRank))
+                .limit(10)
+                .collect(Collectors.toList());
+        topCountries = new ArrayList<>();
+        happinessScores = new ArrayList<>();
+        for (Country country : top) {
+            topCountries.add(country.getName());
+            happinessScores.add(country.getHappinessScore());
+        }
+
+        exporter = new ChartExporter(ChartExporter.Format.valueOf(format.toUpperCase()),
+                ChartExporter.DEFAULT_DEFLATE_LEVEL);
+        ChartGenerator.setExporter(exporter);
+        ChartGenerator.setCache(null);
+        economySpec = ChartGenerator.economyChartSpec(economyData, "bench_economy_chart.png");
+        economyDrawing = drawEconomy();
+        outputDir = Files.createTempDirectory("happiness-bench-charts-");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.list(outputDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(outputDir);
+        ChartGenerator.setExporter(new ChartExporter());
+        BenchmarkData.restoreOutput();
+    }
+
+    // построение JFreeChart и отрисовка в изображение или SVG, без кодирования и записи
+    @Benchmark
+    public ChartExporter.Drawing renderEconomyChart() {
+        return drawEconomy();
+    }
+
+    // кодирование готовой отрисовки (deflate для PNG) и атомарная запись файла
+    @Benchmark
+    public long encodeEconomyChart() throws IOException {
+        return exporter.write(economyDrawing, new File(outputDir.toFile(), exporter.fileName("economy_chart.png")));
+    }
+
+    // полный путь приложения: спецификация, отрисовка, кодирование, запись в charts/
+    @Benchmark
+    public void createEconomyChart() {
+        ChartGenerator.createEconomyChart(economyData, "bench_economy_chart.png");
+    }
+
+    @Benchmark
+    public void createTopCountriesChart() {
+        ChartGenerator.createTopCountriesChart(topCountries, happinessScores, "bench_happiness_chart.png");
+    }
+
+    private ChartExporter.Drawing drawEconomy() {
+        return exporter.draw(economySpec.createChart(ChartTheme.DEFAULT), economySpec.getWidth(), economySpec.getHeight());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+package ru.university.benchmarks;
+
+import org.jfree.chart.ChartUtils;
+import org.jfree.chart.JFreeChart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.university.visualization.ChartExporter;
+import ru.university.visualization.ChartSpec;
+import ru.university.visualization.ChartTheme;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Варианты экспорта одной диаграммы отчетов (10 столбцов с подписями значений):
+// ChartUtils.saveChartAsPNG, PNG с уровнями deflate 1/4/6/9 и SVG.
+// Размер файла варианта печатается в конце прогона.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChartExportBenchmark {
+    @Param({"chartutils", "png-1", "png-4", "png-6", "png-9", "svg"})
+    public String variant;
+
+    private ChartSpec spec;
+    private JFreeChart chart;
+    private ChartExporter exporter;
+    private File target;
+    private Path outputDir;
+    private long bytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(BenchmarkData.SEED);
+        ChartSpec.Builder builder = ChartSpec.builder("export_chart.png")
+                .title("Benchmark chart")
+                .axes("Country", "Value")
+                .series("Value");
+        for (int bar = 0; bar < 10; bar++) {
+            builder.value("Country " + bar, random.nextDouble() * 8);
+        }
+        spec = builder.build();
+        chart = spec.createChart(ChartTheme.DEFAULT);
+        if (variant.equals("svg")) {
+            exporter = new ChartExporter(ChartExporter.Format.SVG, ChartExporter.DEFAULT_DEFLATE_LEVEL);
+        } else if (variant.startsWith("png-")) {
+            exporter = new ChartExporter(ChartExporter.Format.PNG, Integer.parseInt(variant.substring(4)));
+        }
+        outputDir = Files.createTempDirectory("happiness-bench-export-");
+        String fileName = exporter != null ? exporter.fileName(spec.getFilename()) : spec.getFilename();
+        target = new File(outputDir.toFile(), fileName);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.printf("%s: %d байт на диаграмму%n", variant, bytes);
+        Files.deleteIfExists(target.toPath());
+        Files.deleteIfExists(outputDir);
+    }
+
+    @Benchmark
+    public long export() throws IOException {
+        if (exporter == null) {
+            ChartUtils.saveChartAsPNG(target, chart, spec.getWidth(), spec.getHeight());
+            bytes = target.length();
+        } else {
+            bytes = exporter.export(chart, target, spec.getWidth(), spec.getHeight());
+        }
+        return bytes;
+    }
+}
\ No newline at end of file
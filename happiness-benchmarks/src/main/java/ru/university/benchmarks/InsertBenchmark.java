@@ -0,0 +1,71 @@
+package ru.university.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.university.database.DatabaseManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Запись стран в SQLite: построчные INSERT (insertCountries) против пакетной вставки в одной транзакции.
+// Каждый вызов пишет в новую пустую базу, поэтому измерение однократное на вызов.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InsertBenchmark {
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private BenchmarkData.Parsed data;
+    private Path dbFile;
+    private DatabaseManager dbManager;
+
+    @Setup(Level.Trial)
+    public void loadData() throws IOException {
+        BenchmarkData.silence();
+        data = BenchmarkData.parse(BenchmarkData.csv(rows));
+    }
+
+    @Setup(Level.Invocation)
+    public void openDatabase() throws IOException {
+        dbFile = BenchmarkData.tempDatabase();
+        dbManager = BenchmarkData.createDatabase(dbFile);
+        dbManager.insertRegionsBatch(data.regionList(), DatabaseManager.DEFAULT_BATCH_SIZE);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeDatabase() throws IOException {
+        dbManager.closeConnection();
+        BenchmarkData.deleteDatabase(dbFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.restoreOutput();
+    }
+
+    @Benchmark
+    public void insertCountriesPerRow() {
+        dbManager.insertCountries(data.countries);
+    }
+
+    @Benchmark
+    public void insertCountriesBatched() {
+        dbManager.insertCountriesBatch(data.countries, DatabaseManager.DEFAULT_BATCH_SIZE);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,48 @@
+package ru.university.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Разбор CSV через Main.parseCSVFile (OpenCSV + CountryRowMapper)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({"158", "100000", "1000000"})
+    public int rows;
+
+    private Path csv;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData.silence();
+        csv = BenchmarkData.csv(rows);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.restoreOutput();
+    }
+
+    @Benchmark
+    public int parseCSVFile() {
+        return BenchmarkData.parse(csv).countries.size();
+    }
+}
\ No newline at end of file
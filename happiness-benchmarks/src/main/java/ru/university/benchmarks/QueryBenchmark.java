@@ -0,0 +1,97 @@
+package ru.university.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.university.database.DatabaseManager;
+import ru.university.report.ReportDefinitions;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+// Четыре отчета режима --sql на заполненной базе; SQL берется из ReportDefinitions, чтобы замер совпадал с приложением
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+    @Param({"158", "100000", "1000000"})
+    public int rows;
+
+    private Path dbFile;
+    private DatabaseManager dbManager;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData.silence();
+        BenchmarkData.Parsed data = BenchmarkData.parse(BenchmarkData.csv(rows));
+        dbFile = BenchmarkData.tempDatabase();
+        dbManager = BenchmarkData.createDatabase(dbFile);
+        dbManager.insertRegionsBatch(data.regionList(), DatabaseManager.DEFAULT_BATCH_SIZE);
+        dbManager.insertCountriesBatch(data.countries, DatabaseManager.DEFAULT_BATCH_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        dbManager.closeConnection();
+        BenchmarkData.deleteDatabase(dbFile);
+        BenchmarkData.restoreOutput();
+    }
+
+    @Benchmark
+    public double economyByRegion() {
+        return dbManager.executeQuery(ReportDefinitions.ECONOMY_BY_REGION_SQL, Collections.emptyList(), rs -> {
+            double sum = 0;
+            while (rs.next()) {
+                sum += rs.getDouble("avg_economy");
+            }
+            return sum;
+        });
+    }
+
+    @Benchmark
+    public String richestCountry() {
+        return dbManager.executeQuery(ReportDefinitions.RICHEST_COUNTRY_SQL, ReportDefinitions.RICHEST_REGIONS,
+                rs -> rs.next() ? rs.getString("name") : null);
+    }
+
+    // отчет 3 состоит из двух запросов: средние по регионам и перебор стран этих регионов
+    @Benchmark
+    public void closestToAverage(Blackhole blackhole) {
+        blackhole.consume(dbManager.executeQuery(ReportDefinitions.WEST_AVERAGES_SQL, ReportDefinitions.WEST_REGIONS,
+                rs -> rs.next() ? rs.getDouble("avg_economy") : 0));
+        blackhole.consume(dbManager.executeQuery(ReportDefinitions.WEST_COUNTRIES_SQL, ReportDefinitions.WEST_REGIONS, rs -> {
+            int count = 0;
+            while (rs.next()) {
+                blackhole.consume(rs.getDouble("economy"));
+                count++;
+            }
+            return count;
+        }));
+    }
+
+    @Benchmark
+    public int topHappiness() {
+        return dbManager.executeQuery(ReportDefinitions.TOP_HAPPINESS_SQL, Collections.emptyList(), rs -> {
+            int count = 0;
+            while (rs.next()) {
+                count++;
+            }
+            return count;
+        });
+    }
+}
\ No newline at end of file